@@ -34,6 +34,7 @@ import java.util.Locale;
  * - Daily Quest section with completion tracking
  * - Lobby list with game mode filtering
  * - Leaderboard with top players
+ * - Profile dialog with player stats and match history
  * - Settings dialog with SFX toggle and logout
  *
  * @author Royal FlushG Team
@@ -71,6 +72,25 @@ public class LobbyController implements ViewRenderer {
     private List<com.mygame.shared.model.MatchHistoryEntry> matchHistoryEntries = new java.util.ArrayList<>();
     private boolean sfxEnabled = true;
 
+    // Keyset pagination: leaderboard + match history stream thêm trang khi cuộn gần cuối
+    private static final int LEADERBOARD_PAGE_SIZE = 20;
+    private static final int HISTORY_PAGE_SIZE = 20;
+    private static final float LOAD_MORE_MARGIN = 60f;
+    private ScrollPane leaderboardScroll;
+    private boolean leaderboardHasMore = false;
+    private boolean leaderboardLoading = false;
+    private long leaderboardCursorCredits;
+    private int leaderboardCursorUserId;
+    private int leaderboardRankOffset;
+    private Table historyTable;
+    private ScrollPane historyScroll;
+    private boolean historyHasMore = false;
+    private boolean historyLoading = false;
+    private long historyCursorTimestampMicros;
+    private int historyCursorMatchId;
+    private Table statsTable;
+    private PlayerStatsResponse playerStats;
+
     // Auto-refresh timer for lobby list
     private float lobbyRefreshTimer = 0f;
     private static final float LOBBY_REFRESH_INTERVAL = 2.0f; // Refresh every 2.0 seconds
@@ -112,6 +132,14 @@ public class LobbyController implements ViewRenderer {
             requestRoomList();
         }
 
+        // Stream trang tiếp theo khi người dùng cuộn gần cuối danh sách
+        if (leaderboardHasMore && !leaderboardLoading && isNearBottom(leaderboardScroll)) {
+            requestLeaderboardPage(false);
+        }
+        if (historyHasMore && !historyLoading && isNearBottom(historyScroll)) {
+            requestMatchHistoryPage(false);
+        }
+
         // Update and render stage
         stage.act(Math.min(delta, 1 / 30f));
         stage.draw();
@@ -356,12 +384,12 @@ public class LobbyController implements ViewRenderer {
             }
         });
 
-        TextButton historyBtn = new TextButton("HISTORY", skin, "blue_text_button");
-        historyBtn.getLabel().setFontScale(1.3f);
-        historyBtn.addListener(new ChangeListener() {
+        TextButton profileBtn = new TextButton("PROFILE", skin, "blue_text_button");
+        profileBtn.getLabel().setFontScale(1.3f);
+        profileBtn.addListener(new ChangeListener() {
             @Override
             public void changed(ChangeEvent event, Actor actor) {
-                showMatchHistoryDialog();
+                showProfileDialog();
             }
         });
 
@@ -376,7 +404,7 @@ public class LobbyController implements ViewRenderer {
         });
 
         buttonTable.add(createBtn).width(180).height(65).pad(130, 0, 20, 0);
-        buttonTable.add(historyBtn).width(180).height(65).pad(130, 20, 20, 0);
+        buttonTable.add(profileBtn).width(180).height(65).pad(130, 20, 20, 0);
         buttonTable.add(botBtn).width(180).height(65).pad(130, 20, 20, 0);
 
         container.add(buttonTable).padTop(10);
@@ -395,11 +423,11 @@ public class LobbyController implements ViewRenderer {
 
         refreshLeaderboard();
 
-        ScrollPane scroll = new ScrollPane(leaderboardContent, skin);
-        scroll.setScrollingDisabled(true, false);
+        leaderboardScroll = new ScrollPane(leaderboardContent, skin);
+        leaderboardScroll.setScrollingDisabled(true, false);
 
         // Strict Width to fit in grid
-        container.add(scroll).width(350).expandY().fillY().pad(20);
+        container.add(leaderboardScroll).width(350).expandY().fillY().pad(20);
 
         return container;
     }
@@ -487,18 +515,15 @@ public class LobbyController implements ViewRenderer {
         PlayerProfile profile = sessionManager.getPlayerProfile();
         int currentUserId = (profile != null) ? profile.id : -1;
 
-        // Request leaderboard (top 50)
-        LeaderboardRequest leaderboardReq = new LeaderboardRequest();
-        leaderboardReq.limit = 50;
-        networkService.sendPacket(leaderboardReq);
+        // Request first leaderboard page, later pages are loaded on scroll
+        requestLeaderboardPage(true);
 
         // Request room list (all modes initially)
         requestRoomList();
 
-        // Request match history (limit 5 most recent)
+        // Request first page of match history
         if (currentUserId > 0) {
-            MatchHistoryRequest historyReq = new MatchHistoryRequest(currentUserId, 5);
-            networkService.sendPacket(historyReq);
+            requestMatchHistoryPage(true);
 
             // Request daily quests
             if (networkService.isConnected()) {
@@ -620,34 +645,89 @@ public class LobbyController implements ViewRenderer {
 
         leaderboardContent.clearChildren();
 
-        int rank = 1;
         for (LeaderboardEntry entry : leaderboardEntries) {
-            Table row = new Table();
+            addLeaderboardRow(entry);
+        }
+
+        if (leaderboardEntries.isEmpty()) {
+            Label emptyLabel = new Label("No data", transparentStyle);
+            emptyLabel.setColor(Color.GRAY);
+            leaderboardContent.add(emptyLabel).pad(20);
+        }
+    }
+
+    private void addLeaderboardRow(LeaderboardEntry entry) {
+        Table row = new Table();
 
-            Label rankLbl = new Label(rank + ".", transparentStyle);
-            rankLbl.setFontScale(1.1f);
+        Label rankLbl = new Label(entry.rank + ".", transparentStyle);
+        rankLbl.setFontScale(1.1f);
 
-            Label nameLbl = new Label(entry.username != null ? entry.username : "Unknown", transparentStyle);
-            nameLbl.setEllipsis(true);
-            nameLbl.setFontScale(1.1f);
+        Label nameLbl = new Label(entry.username != null ? entry.username : "Unknown", transparentStyle);
+        nameLbl.setEllipsis(true);
+        nameLbl.setFontScale(1.1f);
 
-            Label creditLbl = new Label(formatNumber(entry.credits), goldStyle);
-            creditLbl.setAlignment(Align.right);
-            creditLbl.setFontScale(1.0f);
+        Label creditLbl = new Label(formatNumber(entry.credits), goldStyle);
+        creditLbl.setAlignment(Align.right);
+        creditLbl.setFontScale(1.0f);
 
-            row.add(rankLbl).width(40).left();
-            row.add(nameLbl).width(180).left().padRight(5);
-            row.add(creditLbl).width(90).right();
+        row.add(rankLbl).width(40).left();
+        row.add(nameLbl).width(180).left().padRight(5);
+        row.add(creditLbl).width(90).right();
 
-            leaderboardContent.add(row).width(300).height(20).row();
-            rank++;
+        leaderboardContent.add(row).width(300).height(20).row();
+    }
+
+    /**
+     * Request a leaderboard page. reset = true starts again from the top.
+     */
+    private void requestLeaderboardPage(boolean reset) {
+        if (!networkService.isConnected()) {
+            return;
         }
+        LeaderboardRequest request = new LeaderboardRequest();
+        request.limit = LEADERBOARD_PAGE_SIZE;
+        if (!reset) {
+            request.cursorCredits = leaderboardCursorCredits;
+            request.cursorUserId = leaderboardCursorUserId;
+            request.rankOffset = leaderboardRankOffset;
+        }
+        leaderboardLoading = true;
+        networkService.sendPacket(request);
+    }
 
-        if (leaderboardEntries.isEmpty()) {
-            Label emptyLabel = new Label("No data", transparentStyle);
-            emptyLabel.setColor(Color.GRAY);
-            leaderboardContent.add(emptyLabel).pad(20);
+    /**
+     * Request a match history page for the current user. reset = true starts from the newest match.
+     */
+    private void requestMatchHistoryPage(boolean reset) {
+        PlayerProfile profile = sessionManager.getPlayerProfile();
+        if (profile == null || profile.id <= 0 || !networkService.isConnected()) {
+            return;
         }
+        MatchHistoryRequest request = reset
+                ? new MatchHistoryRequest(profile.id, HISTORY_PAGE_SIZE)
+                : new MatchHistoryRequest(profile.id, HISTORY_PAGE_SIZE,
+                        historyCursorTimestampMicros, historyCursorMatchId);
+        historyLoading = true;
+        networkService.sendPacket(request);
+    }
+
+    /**
+     * Request lifetime stats of the current user (server only serves the caller's own stats).
+     */
+    private void requestPlayerStats() {
+        PlayerProfile profile = sessionManager.getPlayerProfile();
+        if (profile == null || profile.id <= 0 || !networkService.isConnected()) {
+            return;
+        }
+        networkService.sendPacket(new PlayerStatsRequest(profile.id, null, 0, 0));
+    }
+
+    private boolean isNearBottom(ScrollPane scroll) {
+        if (scroll == null || scroll.getStage() == null) {
+            return false;
+        }
+        // maxY == 0 nghĩa là nội dung chưa đủ dài để cuộn -> cần thêm dữ liệu luôn
+        return scroll.getMaxY() <= 0 || scroll.getScrollY() >= scroll.getMaxY() - LOAD_MORE_MARGIN;
     }
 
     private void setupNetworkListener() {
@@ -663,6 +743,8 @@ public class LobbyController implements ViewRenderer {
                     handleRoomsResponse((ListRoomsResponse) packet);
                 } else if (packet instanceof MatchHistoryResponse) {
                     handleMatchHistoryResponse((MatchHistoryResponse) packet);
+                } else if (packet instanceof PlayerStatsResponse) {
+                    handlePlayerStatsResponse((PlayerStatsResponse) packet);
                 } else if (packet instanceof DailyRewardResponse) {
                     handleDailyRewardResponse((DailyRewardResponse) packet);
                 } else if (packet instanceof GetQuestsResponse) {
@@ -681,12 +763,28 @@ public class LobbyController implements ViewRenderer {
     }
 
     private void handleLeaderboardResponse(LeaderboardResponse response) {
-        if (response.entries != null) {
+        leaderboardLoading = false;
+        if (response.entries == null) {
+            return;
+        }
+        if (response.firstPage) {
             leaderboardEntries.clear();
             leaderboardEntries.addAll(response.entries);
             refreshLeaderboard();
-            logger.info("Received {} leaderboard entries", leaderboardEntries.size());
+        } else {
+            leaderboardEntries.addAll(response.entries);
+            if (leaderboardContent != null) {
+                for (LeaderboardEntry entry : response.entries) {
+                    addLeaderboardRow(entry);
+                }
+            }
         }
+        leaderboardHasMore = response.hasMore;
+        leaderboardCursorCredits = response.nextCursorCredits;
+        leaderboardCursorUserId = response.nextCursorUserId;
+        leaderboardRankOffset = response.nextRankOffset;
+        logger.info("Received {} leaderboard entries (total {}, more: {})",
+                response.entries.size(), leaderboardEntries.size(), leaderboardHasMore);
     }
 
     private void handleRoomsResponse(ListRoomsResponse response) {
@@ -699,11 +797,37 @@ public class LobbyController implements ViewRenderer {
     }
 
     private void handleMatchHistoryResponse(MatchHistoryResponse response) {
-        if (response.entries != null) {
+        historyLoading = false;
+        if (response.entries == null) {
+            return;
+        }
+        if (response.firstPage) {
             matchHistoryEntries.clear();
             matchHistoryEntries.addAll(response.entries);
-            logger.info("Received {} match history entries", matchHistoryEntries.size());
+            refreshHistoryTable();
+        } else {
+            matchHistoryEntries.addAll(response.entries);
+            if (historyTable != null) {
+                for (com.mygame.shared.model.MatchHistoryEntry entry : response.entries) {
+                    addHistoryRow(entry);
+                }
+            }
+        }
+        historyHasMore = response.hasMore;
+        historyCursorTimestampMicros = response.nextCursorTimestampMicros;
+        historyCursorMatchId = response.nextCursorMatchId;
+        logger.info("Received {} match history entries (total {}, more: {})",
+                response.entries.size(), matchHistoryEntries.size(), historyHasMore);
+    }
+
+    private void handlePlayerStatsResponse(PlayerStatsResponse response) {
+        if (!response.success) {
+            logger.warn("Failed to get player stats: {}", response.errorMessage);
+        } else {
+            logger.info("Received stats: {} hands, win rate {}", response.hands, response.winRate);
         }
+        playerStats = response;
+        refreshStatsTable();
     }
 
     private void handleDailyRewardResponse(DailyRewardResponse response) {
@@ -887,14 +1011,10 @@ public class LobbyController implements ViewRenderer {
         dialog.show(stage);
     }
 
-    private void showMatchHistoryDialog() {
-        // Request fresh data
-        PlayerProfile profile = sessionManager.getPlayerProfile();
-        int currentUserId = (profile != null) ? profile.id : -1;
-        if (currentUserId > 0) {
-            MatchHistoryRequest historyReq = new MatchHistoryRequest(currentUserId, 5);
-            networkService.sendPacket(historyReq);
-        }
+    private void showProfileDialog() {
+        // Request fresh stats and first history page; cached data is shown until they arrive
+        requestPlayerStats();
+        requestMatchHistoryPage(true);
 
         // Create dialog
         Window.WindowStyle winStyle = new Window.WindowStyle(
@@ -902,104 +1022,42 @@ public class LobbyController implements ViewRenderer {
                 Color.WHITE,
                 skin.getDrawable("panel1"));
 
-        final Dialog dialog = new Dialog("Match History", winStyle);
+        final Dialog dialog = new Dialog("Profile", winStyle);
         dialog.pad(40);
 
         Table content = dialog.getContentTable();
 
+        // Stats summary
+        Label statsTitle = new Label("STATS", transparentStyle);
+        statsTitle.setFontScale(1.5f);
+        content.add(statsTitle).padBottom(10).row();
+
+        statsTable = new Table();
+        refreshStatsTable();
+        content.add(statsTable).width(500).padBottom(20).row();
+
         // Title
         Label title = new Label("RECENT MATCHES", transparentStyle);
         title.setFontScale(1.5f);
         content.add(title).padBottom(20).row();
 
         // History table
-        Table historyTable = new Table();
+        historyTable = new Table();
         historyTable.top().left();
+        refreshHistoryTable();
 
-        if (matchHistoryEntries.isEmpty()) {
-            Label emptyLabel = new Label("No match history", transparentStyle);
-            emptyLabel.setColor(Color.GRAY);
-            emptyLabel.setFontScale(1.0f);
-            historyTable.add(emptyLabel).pad(20);
-        } else {
-            // Header row
-            Table headerRow = new Table();
-            Label resultHeader = new Label("Result", transparentStyle);
-            resultHeader.setFontScale(1.0f);
-            resultHeader.setColor(Color.BLACK);
-            Label modeHeader = new Label("Mode", transparentStyle);
-            modeHeader.setFontScale(1.0f);
-            modeHeader.setColor(Color.BLACK);
-            Label creditsHeader = new Label("Credits", transparentStyle);
-            creditsHeader.setFontScale(1.0f);
-            creditsHeader.setColor(Color.BLACK);
-            Label timeHeader = new Label("Time", transparentStyle);
-            timeHeader.setFontScale(1.0f);
-            timeHeader.setColor(Color.BLACK);
-
-            headerRow.add(resultHeader).width(100).padRight(10);
-            headerRow.add(modeHeader).width(120).padRight(10);
-            headerRow.add(creditsHeader).width(100).padRight(10);
-            headerRow.add(timeHeader).width(150);
-            historyTable.add(headerRow).padBottom(10).row();
-
-            // Data rows
-            for (com.mygame.shared.model.MatchHistoryEntry entry : matchHistoryEntries) {
-                Table row = new Table();
-
-                // Result (Win/Lose) - Green for Win, Red for Lose
-                String resultText = entry.result != null ? entry.result.toUpperCase() : "UNKNOWN";
-                Label resultLabel = new Label(resultText, transparentStyle);
-                resultLabel.setFontScale(0.9f);
-                if ("WIN".equalsIgnoreCase(resultText) || entry.creditsChange > 0) {
-                    resultLabel.setColor(Color.GREEN);
-                } else if ("LOSE".equalsIgnoreCase(resultText) || entry.creditsChange < 0) {
-                    resultLabel.setColor(Color.RED);
-                } else {
-                    resultLabel.setColor(Color.WHITE);
-                }
-
-                // Mode
-                String modeText = (entry.gameType != null ? entry.gameType : "UNKNOWN") +
-                        (entry.matchMode != null ? " - " + entry.matchMode : "");
-                Label modeLabel = new Label(modeText, transparentStyle);
-                modeLabel.setFontScale(0.9f);
-                modeLabel.setColor(Color.WHITE);
-
-                // Credits change - Green for positive, Red for negative
-                String creditsText = (entry.creditsChange >= 0 ? "+" : "") + formatNumber(entry.creditsChange);
-                Label creditsLabel = new Label(creditsText, transparentStyle);
-                creditsLabel.setFontScale(0.9f);
-                creditsLabel.setColor(entry.creditsChange >= 0 ? Color.GREEN : Color.RED);
-
-                // Time
-                String timeText = "N/A";
-                if (entry.timestamp != null) {
-                    java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("MM/dd HH:mm");
-                    timeText = sdf.format(entry.timestamp);
-                }
-                Label timeLabel = new Label(timeText, transparentStyle);
-                timeLabel.setFontScale(0.9f);
-                timeLabel.setColor(Color.GRAY);
-
-                row.add(resultLabel).width(100).padRight(10).left();
-                row.add(modeLabel).width(120).padRight(10).left();
-                row.add(creditsLabel).width(100).padRight(10).right();
-                row.add(timeLabel).width(150).left();
-
-                historyTable.add(row).padBottom(5).row();
-            }
-        }
-
-        ScrollPane scroll = new ScrollPane(historyTable, skin);
-        scroll.setScrollingDisabled(true, false);
-        content.add(scroll).width(500).height(300).padBottom(20).row();
+        historyScroll = new ScrollPane(historyTable, skin);
+        historyScroll.setScrollingDisabled(true, false);
+        content.add(historyScroll).width(500).height(300).padBottom(20).row();
 
         // Close button
         TextButton closeBtn = new TextButton("CLOSE", skin, "blue_text_button");
         closeBtn.addListener(new ChangeListener() {
             @Override
             public void changed(ChangeEvent event, Actor actor) {
+                historyTable = null;
+                historyScroll = null;
+                statsTable = null;
                 dialog.hide();
             }
         });
@@ -1008,6 +1066,133 @@ public class LobbyController implements ViewRenderer {
         dialog.show(stage);
     }
 
+    private void refreshStatsTable() {
+        if (statsTable == null)
+            return;
+
+        statsTable.clearChildren();
+
+        if (playerStats == null || !playerStats.success) {
+            String text = playerStats == null ? "Loading stats..."
+                    : (playerStats.errorMessage != null ? playerStats.errorMessage : "Stats unavailable");
+            Label emptyLabel = new Label(text, transparentStyle);
+            emptyLabel.setColor(Color.GRAY);
+            emptyLabel.setFontScale(1.0f);
+            statsTable.add(emptyLabel).pad(10);
+            return;
+        }
+
+        addStatCell("Hands", String.valueOf(playerStats.hands), Color.WHITE);
+        addStatCell("Win rate", String.format(Locale.US, "%.1f%%", playerStats.winRate * 100), Color.WHITE);
+        addStatCell("VPIP", String.format(Locale.US, "%.1f%%", playerStats.vpip * 100), Color.WHITE);
+        statsTable.row();
+        addStatCell("W / L", playerStats.wins + " / " + playerStats.losses, Color.WHITE);
+        addStatCell("Avg pot", formatNumber(Math.round(playerStats.averagePot)), goldStyle.fontColor);
+        addStatCell("Net", (playerStats.netCredits >= 0 ? "+" : "") + formatNumber(playerStats.netCredits),
+                playerStats.netCredits >= 0 ? Color.GREEN : Color.RED);
+    }
+
+    private void addStatCell(String name, String value, Color valueColor) {
+        Label nameLabel = new Label(name, transparentStyle);
+        nameLabel.setFontScale(0.9f);
+        nameLabel.setColor(Color.BLACK);
+        Label valueLabel = new Label(value, transparentStyle);
+        valueLabel.setFontScale(1.0f);
+        valueLabel.setColor(valueColor);
+
+        Table cell = new Table();
+        cell.add(nameLabel).row();
+        cell.add(valueLabel);
+        statsTable.add(cell).width(160).padBottom(8);
+    }
+
+    private void refreshHistoryTable() {
+        if (historyTable == null)
+            return;
+
+        historyTable.clearChildren();
+
+        if (matchHistoryEntries.isEmpty()) {
+            Label emptyLabel = new Label("No match history", transparentStyle);
+            emptyLabel.setColor(Color.GRAY);
+            emptyLabel.setFontScale(1.0f);
+            historyTable.add(emptyLabel).pad(20);
+            return;
+        }
+
+        // Header row
+        Table headerRow = new Table();
+        Label resultHeader = new Label("Result", transparentStyle);
+        resultHeader.setFontScale(1.0f);
+        resultHeader.setColor(Color.BLACK);
+        Label modeHeader = new Label("Mode", transparentStyle);
+        modeHeader.setFontScale(1.0f);
+        modeHeader.setColor(Color.BLACK);
+        Label creditsHeader = new Label("Credits", transparentStyle);
+        creditsHeader.setFontScale(1.0f);
+        creditsHeader.setColor(Color.BLACK);
+        Label timeHeader = new Label("Time", transparentStyle);
+        timeHeader.setFontScale(1.0f);
+        timeHeader.setColor(Color.BLACK);
+
+        headerRow.add(resultHeader).width(100).padRight(10);
+        headerRow.add(modeHeader).width(120).padRight(10);
+        headerRow.add(creditsHeader).width(100).padRight(10);
+        headerRow.add(timeHeader).width(150);
+        historyTable.add(headerRow).padBottom(10).row();
+
+        // Data rows
+        for (com.mygame.shared.model.MatchHistoryEntry entry : matchHistoryEntries) {
+            addHistoryRow(entry);
+        }
+    }
+
+    private void addHistoryRow(com.mygame.shared.model.MatchHistoryEntry entry) {
+        Table row = new Table();
+
+        // Result (Win/Lose) - Green for Win, Red for Lose
+        String resultText = entry.result != null ? entry.result.toUpperCase() : "UNKNOWN";
+        Label resultLabel = new Label(resultText, transparentStyle);
+        resultLabel.setFontScale(0.9f);
+        if ("WIN".equalsIgnoreCase(resultText) || entry.creditsChange > 0) {
+            resultLabel.setColor(Color.GREEN);
+        } else if ("LOSE".equalsIgnoreCase(resultText) || entry.creditsChange < 0) {
+            resultLabel.setColor(Color.RED);
+        } else {
+            resultLabel.setColor(Color.WHITE);
+        }
+
+        // Mode
+        String modeText = (entry.gameType != null ? entry.gameType : "UNKNOWN") +
+                (entry.matchMode != null ? " - " + entry.matchMode : "");
+        Label modeLabel = new Label(modeText, transparentStyle);
+        modeLabel.setFontScale(0.9f);
+        modeLabel.setColor(Color.WHITE);
+
+        // Credits change - Green for positive, Red for negative
+        String creditsText = (entry.creditsChange >= 0 ? "+" : "") + formatNumber(entry.creditsChange);
+        Label creditsLabel = new Label(creditsText, transparentStyle);
+        creditsLabel.setFontScale(0.9f);
+        creditsLabel.setColor(entry.creditsChange >= 0 ? Color.GREEN : Color.RED);
+
+        // Time
+        String timeText = "N/A";
+        if (entry.timestamp != null) {
+            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("MM/dd HH:mm");
+            timeText = sdf.format(entry.timestamp);
+        }
+        Label timeLabel = new Label(timeText, transparentStyle);
+        timeLabel.setFontScale(0.9f);
+        timeLabel.setColor(Color.GRAY);
+
+        row.add(resultLabel).width(100).padRight(10).left();
+        row.add(modeLabel).width(120).padRight(10).left();
+        row.add(creditsLabel).width(100).padRight(10).right();
+        row.add(timeLabel).width(150).left();
+
+        historyTable.add(row).padBottom(5).row();
+    }
+
     // =================================================================================
     // VS BOT DIALOG
     // =================================================================================
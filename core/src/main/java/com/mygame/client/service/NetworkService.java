@@ -6,6 +6,12 @@ import com.esotericsoftware.kryonet.Listener;
 import com.github.czyzby.autumn.annotation.Component;
 import com.github.czyzby.autumn.annotation.Initiate;
 import com.mygame.shared.network.Network;
+import com.mygame.shared.network.packets.HeartbeatPacket;
+import com.mygame.shared.network.packets.LoginResponse;
+import com.mygame.shared.network.packets.ResumeRequest;
+import com.mygame.shared.network.packets.ResumeResponse;
+import com.mygame.shared.network.packets.game.ActionAckPacket;
+import com.mygame.shared.network.packets.game.PlayerActionPacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,9 +19,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Optimized NetworkService with auto-reconnect, packet queuing, and connection
@@ -23,6 +31,14 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Senior-level implementation with proper error handling and thread safety.
  * 
  * Auto-connects to localhost on initialization for development/testing.
+ *
+ * Keeps the resume token from the last LoginResponse/ResumeResponse; after an
+ * auto-reconnect it sends a ResumeRequest before any queued packet, so the
+ * server rebinds the session and seat without a new login.
+ *
+ * Every PlayerActionPacket gets a sequence number and is kept until the server
+ * acks it (ActionAckPacket). Unacked actions are resent after a successful resume;
+ * the server drops the duplicates, so actions can be pipelined safely.
  */
 @Component
 public class NetworkService {
@@ -46,6 +62,13 @@ public class NetworkService {
     private final AtomicBoolean isConnected = new AtomicBoolean(false);
     private final AtomicInteger reconnectAttempts = new AtomicInteger(0);
 
+    // Token to resume the session after a reconnect, null when not logged in
+    private volatile String resumeToken;
+
+    // Action sequence for the current login; actions sent but not yet acked, by sequence
+    private final AtomicLong actionSequence = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, PlayerActionPacket> unackedActions = new ConcurrentSkipListMap<>();
+
     private String host;
     private int tcpPort;
     private int udpPort;
@@ -89,6 +112,13 @@ public class NetworkService {
                 isConnecting.set(false);
                 reconnectAttempts.set(0);
 
+                // Resume must reach the server before any queued packet
+                String token = resumeToken;
+                if (token != null) {
+                    logger.info("Resuming previous session");
+                    client.sendTCP(new ResumeRequest(token));
+                }
+
                 // Process queued packets
                 startPacketSender();
 
@@ -218,6 +248,10 @@ public class NetworkService {
             return;
         }
 
+        if (packet instanceof PlayerActionPacket) {
+            trackAction((PlayerActionPacket) packet);
+        }
+
         if (isConnected.get()) {
             try {
                 client.sendTCP(packet);
@@ -233,6 +267,33 @@ public class NetworkService {
         }
     }
 
+    private void trackAction(PlayerActionPacket action) {
+        if (action.getSequence() == 0) {
+            action.setSequence(actionSequence.incrementAndGet());
+        }
+        if (unackedActions.size() >= PACKET_QUEUE_SIZE) {
+            // Server is not acking; keep the newest actions only
+            unackedActions.pollFirstEntry();
+        }
+        unackedActions.put(action.getSequence(), action);
+    }
+
+    /**
+     * Resend unacked actions in order after a resume; duplicates are dropped by the server.
+     */
+    private void resendUnackedActions() {
+        for (PlayerActionPacket action : unackedActions.values()) {
+            if (isConnected.get()) {
+                client.sendTCP(action);
+            } else {
+                queuePacket(action);
+            }
+        }
+        if (!unackedActions.isEmpty()) {
+            logger.info("Resent {} unacked actions", unackedActions.size());
+        }
+    }
+
     private void queuePacket(Object packet) {
         if (!packetQueue.offer(packet)) {
             logger.warn("Packet queue full, dropping packet: {}", packet.getClass().getSimpleName());
@@ -276,6 +337,34 @@ public class NetworkService {
     private void handleReceivedPacket(Object packet) {
         logger.debug("Received packet: {}", packet.getClass().getSimpleName());
 
+        if (packet instanceof HeartbeatPacket) {
+            // Echo straight back so the server can measure round-trip and keep our seat
+            client.sendTCP(packet);
+            return;
+        }
+
+        if (packet instanceof LoginResponse) {
+            LoginResponse response = (LoginResponse) packet;
+            if (response.success) {
+                resumeToken = response.resumeToken;
+                // New login: the server starts a fresh dedupe window
+                unackedActions.clear();
+                actionSequence.set(0);
+            }
+        } else if (packet instanceof ResumeResponse) {
+            ResumeResponse response = (ResumeResponse) packet;
+            resumeToken = response.success ? response.resumeToken : null;
+            if (response.success) {
+                resendUnackedActions();
+            } else {
+                logger.warn("Resume failed: {}", response.errorMessage);
+                unackedActions.clear();
+            }
+        } else if (packet instanceof ActionAckPacket) {
+            unackedActions.remove(((ActionAckPacket) packet).getSequence());
+            return;
+        }
+
         for (PacketListener listener : listeners) {
             try {
                 listener.onPacketReceived(packet);
@@ -307,6 +396,8 @@ public class NetworkService {
     public void disconnect() {
         logger.info("Disconnecting from server");
         host = null; // Prevent auto-reconnect
+        resumeToken = null;
+        unackedActions.clear();
         reconnectAttempts.set(MAX_RECONNECT_ATTEMPTS);
         stopPacketSender();
 
@@ -1,7 +1,23 @@
 package com.mygame.server;
 
 import com.esotericsoftware.kryonet.Server;
-import com.mygame.server.database.DatabaseManager;
+import com.mygame.server.daily.DailyRolloverJob;
+import com.mygame.server.database.DatabaseHealthMonitor;
+import com.mygame.server.database.JdbcStorage;
+import com.mygame.server.history.MatchHistoryWriter;
+import com.mygame.server.journal.HandJournal;
+import com.mygame.server.metrics.MetricsHttpServer;
+import com.mygame.server.quest.QuestProgressService;
+import com.mygame.server.replay.SessionRestorer;
+import com.mygame.server.session.HeartbeatMonitor;
+import com.mygame.server.snapshot.SessionSnapshotter;
+import com.mygame.server.stats.HandStatsStore;
+import com.mygame.server.stats.PlayerCounterService;
+import com.mygame.server.storage.AsyncDao;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.timer.TimingWheel;
+import com.mygame.server.traffic.TrafficRecorder;
+import com.mygame.server.wallet.WalletService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,7 +30,8 @@ public class ServerLauncher {
     private static final int UDP_PORT = 54777;
 
     private Server server;
-    private DatabaseManager dbManager;
+    private Storage storage;
+    private final MetricsHttpServer metricsServer = new MetricsHttpServer();
 
     // --- HÀM MAIN ---
     public static void main(String[] args) {
@@ -44,28 +61,51 @@ public class ServerLauncher {
 
     public void start() {
         try {
-            // 1. Kết nối Database
-            logger.info("Step 1/4: Connecting to database...");
-            dbManager = DatabaseManager.getInstance();
-            dbManager.connect();
-            logger.info("✓ Database connected");
+            // 1. Kết nối Database (storage.engine=postgres|embedded)
+            logger.info("Step 1/5: Connecting to database...");
+            storage = Storage.create();
+            logger.info("Step 2/5: Opening {} storage and initializing schema...", storage.name());
+            storage.open();
+            logger.info("✓ Storage ready ({})", storage.name());
+            if (storage instanceof JdbcStorage) {
+                // Circuit breaker: database lỗi/chậm thì chuyển sang chế độ degraded thay vì treo
+                DatabaseHealthMonitor.getInstance().start(((JdbcStorage) storage).getDatabaseManager());
+            }
 
-            logger.info("Step 2/4: Initializing schema...");
-            dbManager.initDatabase();
-            logger.info("✓ Schema initialized");
+            logger.info("Step 3/5: Recovering wallet and daily state...");
+            WalletService.getInstance().start(storage);
+            AsyncDao.getInstance().start(storage);
+            MatchHistoryWriter.getInstance().start(storage);
+            QuestProgressService.getInstance().start(storage);
+            PlayerCounterService.getInstance().start(storage);
+            HandStatsStore.getInstance().start(storage);
+            DailyRolloverJob.getInstance().start(storage);
+            HandJournal.getInstance().start();
+            TrafficRecorder.getInstance().start();
+            logger.info("✓ Wallet and daily state ready");
 
             // 2. Khởi tạo Mạng
-            logger.info("Step 3/4: Starting network server...");
+            logger.info("Step 4/5: Starting network server...");
             server = new Server(16384, 8192);
             com.mygame.shared.network.Network.registerPackets(server.getKryo());
 
-            logger.info("Step 4/4: Setting up listeners...");
-            ServerListener serverListener = new ServerListener(dbManager);
+            logger.info("Step 5/5: Setting up listeners...");
+            ServerListener serverListener = new ServerListener(storage);
             server.addListener(serverListener.createListener());
 
+            // Dựng lại các bàn đang chơi trước khi nhận kết nối
+            SessionSnapshotter snapshotter = SessionSnapshotter.getInstance();
+            if (snapshotter.isEnabled()) {
+                new SessionRestorer(serverListener.getRoomManager(), serverListener.getGameSessionManager())
+                        .restore(snapshotter.getFile(), HandJournal.getInstance().getDirectory());
+                snapshotter.start(serverListener.getGameSessionManager());
+            }
+
             // 3. Mở cổng
             server.bind(TCP_PORT, UDP_PORT);
             server.start();
+            HeartbeatMonitor.getInstance().start();
+            metricsServer.start();
 
             logger.info("\n========================================");
             logger.info("✅ SERVER STARTED SUCCESSFULLY ON PORT " + TCP_PORT);
@@ -82,6 +122,20 @@ public class ServerLauncher {
 
     public void stop() {
         if (server != null) server.stop();
-        if (dbManager != null) dbManager.close();
+        TrafficRecorder.getInstance().shutdown();
+        metricsServer.stop();
+        HeartbeatMonitor.getInstance().shutdown();
+        TimingWheel.getInstance().shutdown();
+        SessionSnapshotter.getInstance().shutdown();
+        HandJournal.getInstance().shutdown();
+        DailyRolloverJob.getInstance().shutdown();
+        AsyncDao.getInstance().shutdown();
+        WalletService.getInstance().shutdown();
+        MatchHistoryWriter.getInstance().shutdown();
+        QuestProgressService.getInstance().shutdown();
+        PlayerCounterService.getInstance().shutdown();
+        HandStatsStore.getInstance().shutdown();
+        DatabaseHealthMonitor.getInstance().shutdown();
+        if (storage != null) storage.close();
     }
 }
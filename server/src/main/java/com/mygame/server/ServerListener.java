@@ -2,53 +2,186 @@ package com.mygame.server;
 
 import com.esotericsoftware.kryonet.Connection;
 import com.esotericsoftware.kryonet.Listener;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.handlers.*;
+import com.mygame.server.network.OutboundQueue;
+import com.mygame.server.network.PacketDispatcher;
+import com.mygame.server.network.RateLimit;
 import com.mygame.server.game.GameSessionManager;
+import com.mygame.server.quest.QuestProgressService;
+import com.mygame.server.room.GameRoomManager;
+import com.mygame.server.session.ClientSession;
+import com.mygame.server.session.HeartbeatMonitor;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.traffic.TrafficRecorder;
 import com.mygame.shared.network.packets.*;
+import com.mygame.shared.network.packets.game.PlayAgainVotePacket;
+import com.mygame.shared.network.packets.game.PlayerActionPacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+
 /**
  * Helper class để tạo Listener xử lý các kết nối và packets từ client
  */
 public class ServerListener {
     private static final Logger logger = LoggerFactory.getLogger(ServerListener.class);
 
-    private final DatabaseManager dbManager;
+    private final Storage storage;
     private final LoginHandler loginHandler;
     private final RegisterHandler registerHandler;
     private final LeaderboardHandler leaderboardHandler;
     private final MatchHistoryHandler matchHistoryHandler;
+    private final PlayerStatsHandler playerStatsHandler;
     private final DailyRewardHandler dailyRewardHandler;
     private final QuestHandler questHandler;
+    private final ResumeHandler resumeHandler;
     private final com.mygame.server.handlers.RoomHandler roomHandler;
     private final GameSessionManager gameSessionManager;
 
-    // Map connection -> userId để track logged in users
-    private final java.util.Map<com.esotericsoftware.kryonet.Connection, Integer> connectionToUser = new java.util.concurrent.ConcurrentHashMap<>();
+    // Session của mọi kết nối (connection id -> user, room, ghế)
+    private final SessionRegistry sessionRegistry = SessionRegistry.getInstance();
+    private final PacketDispatcher dispatcher = new PacketDispatcher();
+    private final TrafficRecorder trafficRecorder = TrafficRecorder.getInstance();
 
-    public ServerListener(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
+    public ServerListener(Storage storage) {
+        this.storage = storage;
 
         // Khởi tạo các handlers
-        this.loginHandler = new LoginHandler(dbManager);
-        this.registerHandler = new RegisterHandler(dbManager);
-        this.leaderboardHandler = new LeaderboardHandler(dbManager);
-        this.matchHistoryHandler = new MatchHistoryHandler(dbManager);
-        this.dailyRewardHandler = new DailyRewardHandler(dbManager);
-        this.questHandler = new QuestHandler(dbManager, connectionToUser);
-        this.roomHandler = new com.mygame.server.handlers.RoomHandler(dbManager);
-        this.gameSessionManager = new GameSessionManager(dbManager, roomHandler.getRoomManager());
+        this.loginHandler = new LoginHandler(storage);
+        this.registerHandler = new RegisterHandler(storage);
+        this.leaderboardHandler = new LeaderboardHandler(storage);
+        this.matchHistoryHandler = new MatchHistoryHandler(storage);
+        this.playerStatsHandler = new PlayerStatsHandler();
+        this.dailyRewardHandler = new DailyRewardHandler(storage);
+        this.questHandler = new QuestHandler(storage);
+        this.roomHandler = new com.mygame.server.handlers.RoomHandler(storage);
+        this.gameSessionManager = new GameSessionManager(storage, roomHandler.getRoomManager());
         // Wire GameSessionManager to RoomHandler for starting sessions
         this.roomHandler.setGameSessionManager(this.gameSessionManager);
+        this.resumeHandler = new ResumeHandler(roomHandler.getRoomManager(), gameSessionManager);
 
         // Setup login callback để lưu userId
         loginHandler.setLoginCallback((connection, userId) -> {
-            connectionToUser.put(connection, userId);
-            roomHandler.setUserId(connection, userId);
+            sessionRegistry.bindUser(connection, userId);
+            sessionRegistry.resetActions(userId);
+            // Login lại trong thời gian giữ ghế cũng lấy lại ghế như resume
+            resumeHandler.reclaimSeat(connection, userId);
+            QuestProgressService.getInstance().onLogin(userId);
             logger.info("Đã lưu userId {} cho connection {}", userId, connection.getID());
         });
+
+        registerRoutes();
+    }
+
+    /**
+     * Bảng packet -> handler. Packet mới chỉ cần thêm một dòng ở đây.
+     * Giới hạn theo kết nối; packet sheddable (BCrypt/SQL, ngoài ván chơi) bị từ chối khi quá tải.
+     * Request có response kèm cách dựng response lỗi để client biết mà thử lại; packet
+     * fire-and-forget (rời phòng, action, vote, heartbeat) bị từ chối thì chỉ bỏ.
+     */
+    private void registerRoutes() {
+        dispatcher
+                .register(LoginRequest.class, loginHandler::handle, RateLimit.of(1, 5).sheddable(),
+                        (request, error) -> loginFailure(error))
+                .register(RegisterRequest.class, registerHandler::handle, RateLimit.of(0.2, 3).sheddable(),
+                        (request, error) -> registerFailure(error))
+                .register(ResumeRequest.class, resumeHandler::handle, RateLimit.of(1, 5),
+                        (request, error) -> resumeFailure(error))
+                .register(LeaderboardRequest.class, leaderboardHandler::handle, RateLimit.of(2, 5).sheddable(),
+                        (request, error) -> emptyLeaderboard(request))
+                .register(MatchHistoryRequest.class, matchHistoryHandler::handle, RateLimit.of(2, 5).sheddable(),
+                        (request, error) -> emptyMatchHistory(request))
+                .register(PlayerStatsRequest.class, playerStatsHandler::handle, RateLimit.of(2, 5),
+                        (request, error) -> PlayerStatsHandler.failure(error))
+                .register(DailyRewardRequest.class, dailyRewardHandler::handle, RateLimit.of(1, 3).sheddable(),
+                        (request, error) -> dailyRewardFailure(error))
+                .register(GetQuestsRequest.class, questHandler::handleGetQuests, RateLimit.of(2, 5).sheddable(),
+                        (request, error) -> getQuestsFailure(error))
+                .register(ClaimQuestRequest.class, questHandler::handleClaimQuest, RateLimit.of(2, 5).sheddable(),
+                        ServerListener::claimQuestFailure)
+                .register(CreateRoomRequest.class, roomHandler::handleCreateRoom, RateLimit.of(1, 3).sheddable(),
+                        (request, error) -> new CreateRoomResponse(false, null, error))
+                .register(JoinRoomRequest.class, roomHandler::handleJoinRoom, RateLimit.of(1, 5).sheddable(),
+                        (request, error) -> new JoinRoomResponse(false, null, error))
+                .register(LeaveRoomRequest.class, roomHandler::handleLeaveRoom, RateLimit.of(2, 5))
+                .register(ListRoomsRequest.class, roomHandler::handleListRooms, RateLimit.of(2, 5).sheddable(),
+                        (request, error) -> new ListRoomsResponse(new ArrayList<>()))
+                .register(StartGameRequest.class, roomHandler::handleStartGame, RateLimit.of(1, 3),
+                        (request, error) -> new StartGameResponse(false, error))
+                .register(PlayerActionPacket.class, gameSessionManager::handlePlayerAction, RateLimit.of(10, 20))
+                .register(PlayAgainVotePacket.class,
+                        (connection, packet) -> gameSessionManager.handlePlayAgainVote(packet), RateLimit.of(2, 5))
+                .register(HeartbeatPacket.class, HeartbeatMonitor.getInstance()::onHeartbeat, RateLimit.of(2, 5));
+    }
+
+    private static LoginResponse loginFailure(String error) {
+        LoginResponse response = new LoginResponse();
+        response.success = false;
+        response.errorMessage = error;
+        return response;
+    }
+
+    private static RegisterResponse registerFailure(String error) {
+        RegisterResponse response = new RegisterResponse();
+        response.success = false;
+        response.errorMessage = error;
+        return response;
+    }
+
+    private static ResumeResponse resumeFailure(String error) {
+        ResumeResponse response = new ResumeResponse();
+        response.success = false;
+        response.errorMessage = error;
+        return response;
+    }
+
+    private static DailyRewardResponse dailyRewardFailure(String error) {
+        DailyRewardResponse response = new DailyRewardResponse();
+        response.success = false;
+        response.errorMessage = error;
+        return response;
+    }
+
+    private static GetQuestsResponse getQuestsFailure(String error) {
+        GetQuestsResponse response = new GetQuestsResponse();
+        response.success = false;
+        response.errorMessage = error;
+        return response;
+    }
+
+    private static ClaimQuestResponse claimQuestFailure(ClaimQuestRequest request, String error) {
+        ClaimQuestResponse response = new ClaimQuestResponse();
+        response.success = false;
+        response.questId = request.questId;
+        response.errorMessage = error;
+        return response;
+    }
+
+    /**
+     * Leaderboard/history không có trường lỗi: trả trang rỗng, hasMore=false để client ngừng tải.
+     */
+    private static LeaderboardResponse emptyLeaderboard(LeaderboardRequest request) {
+        LeaderboardResponse response = new LeaderboardResponse();
+        response.firstPage = request.isFirstPage();
+        response.hasMore = false;
+        return response;
+    }
+
+    private static MatchHistoryResponse emptyMatchHistory(MatchHistoryRequest request) {
+        MatchHistoryResponse response = new MatchHistoryResponse();
+        response.firstPage = request.isFirstPage();
+        response.hasMore = false;
+        return response;
+    }
+
+    public GameSessionManager getGameSessionManager() {
+        return gameSessionManager;
+    }
+
+    public GameRoomManager getRoomManager() {
+        return roomHandler.getRoomManager();
     }
 
     /**
@@ -58,65 +191,49 @@ public class ServerListener {
         return new Listener() {
             @Override
             public void connected(Connection connection) {
+                sessionRegistry.register(connection);
+                trafficRecorder.connected(connection);
                 logger.info("Client kết nối: {} (ID: {})", connection.getRemoteAddressTCP(), connection.getID());
             }
 
             @Override
             public void disconnected(Connection connection) {
                 logger.info("Client ngắt kết nối: {} (ID: {})", connection.getRemoteAddressTCP(), connection.getID());
-                // Cleanup room data
-                roomHandler.handleDisconnection(connection);
-                connectionToUser.remove(connection);
+                trafficRecorder.disconnected(connection);
+                // Bỏ session trước; chỉ giữ ghế/dọn room nếu đây vẫn là kết nối hiện tại của user
+                ClientSession session = sessionRegistry.unregister(connection);
+                dispatcher.forget(connection);
+                if (session != null && session.isAuthenticated()) {
+                    roomHandler.handleDisconnection(session.getUserId());
+                }
             }
 
             @Override
             public void received(Connection connection, Object object) {
+                ClientSession session = sessionRegistry.get(connection);
+                if (session != null) {
+                    session.touch(); // mọi dữ liệu, kể cả KeepAlive, đều chứng tỏ kết nối còn sống
+                }
+
                 // Ignore internal KryoNet framework messages (KeepAlive, etc.)
                 if (object instanceof com.esotericsoftware.kryonet.FrameworkMessage) {
                     return;
                 }
 
-                // Route packets đến các handlers tương ứng
-                logger.debug("Nhận packet từ client {}: {}", connection.getID(), object.getClass().getSimpleName());
-
-                if (object instanceof LoginRequest) {
-                    loginHandler.handle(connection, (LoginRequest) object);
-                } else if (object instanceof RegisterRequest) {
-                    registerHandler.handle(connection, (RegisterRequest) object);
-                } else if (object instanceof LeaderboardRequest) {
-                    leaderboardHandler.handle(connection, (LeaderboardRequest) object);
-                } else if (object instanceof MatchHistoryRequest) {
-                    matchHistoryHandler.handle(connection, (MatchHistoryRequest) object);
-                } else if (object instanceof DailyRewardRequest) {
-                    dailyRewardHandler.handle(connection, (DailyRewardRequest) object);
-                } else if (object instanceof GetQuestsRequest) {
-                    questHandler.handleGetQuests(connection, (GetQuestsRequest) object);
-                } else if (object instanceof ClaimQuestRequest) {
-                    questHandler.handleClaimQuest(connection, (ClaimQuestRequest) object);
-                } else if (object instanceof CreateRoomRequest) {
-                    roomHandler.handleCreateRoom(connection, (CreateRoomRequest) object);
-                } else if (object instanceof JoinRoomRequest) {
-                    roomHandler.handleJoinRoom(connection, (JoinRoomRequest) object);
-                } else if (object instanceof LeaveRoomRequest) {
-                    roomHandler.handleLeaveRoom(connection, (LeaveRoomRequest) object);
-                } else if (object instanceof ListRoomsRequest) {
-                    roomHandler.handleListRooms(connection, (ListRoomsRequest) object);
-                } else if (object instanceof StartGameRequest) {
-                    roomHandler.handleStartGame(connection, (StartGameRequest) object);
-                } else if (object instanceof com.mygame.shared.network.packets.game.PlayerActionPacket) {
-                    gameSessionManager
-                            .handlePlayerAction((com.mygame.shared.network.packets.game.PlayerActionPacket) object);
-                } else if (object instanceof com.mygame.shared.network.packets.game.PlayAgainVotePacket) {
-                    gameSessionManager
-                            .handlePlayAgainVote((com.mygame.shared.network.packets.game.PlayAgainVotePacket) object);
-                } else {
-                    logger.warn("Unknown packet type: {}", object.getClass().getName());
+                if (trafficRecorder.isRecording()) {
+                    int userId = session != null ? session.getUserId() : 0;
+                    int roomId = userId != 0 ? sessionRegistry.getRoomId(userId) : SessionRegistry.NO_ROOM;
+                    trafficRecorder.received(connection, userId, roomId, object);
                 }
+
+                // Route packets đến các handlers tương ứng
+                dispatcher.dispatch(connection, object);
             }
 
             @Override
             public void idle(Connection connection) {
-                // Có thể dùng để ping/pong nếu cần
+                // Write buffer đã vơi: xả hàng đợi gửi của kết nối
+                OutboundQueue.flush(connection);
             }
         };
     }
@@ -0,0 +1,105 @@
+package com.mygame.server.daily;
+
+import com.mygame.server.database.DailyRewardDAO;
+import com.mygame.server.storage.StorageSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooldown daily reward trong bộ nhớ: userId -> thời điểm nhận gần nhất.
+ *
+ * Chỉ giữ user còn trong 24h chờ; user không có trong index là nhận được ngay.
+ * Nạp một lần lúc khởi động ({@link #load}), sau đó chỉ server ghi last_daily_reward
+ * nên index luôn khớp với database và handler không cần đọc lại.
+ */
+public class DailyRewardIndex {
+    private static final Logger logger = LoggerFactory.getLogger(DailyRewardIndex.class);
+
+    public static final long COOLDOWN_MS = TimeUnit.HOURS.toMillis(24);
+
+    private static DailyRewardIndex instance;
+
+    private final Map<Integer, Long> lastClaims = new ConcurrentHashMap<>();
+
+    private DailyRewardIndex() {
+        // Private constructor for singleton
+    }
+
+    public static synchronized DailyRewardIndex getInstance() {
+        if (instance == null) {
+            instance = new DailyRewardIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Nạp các lần nhận trong 24h gần nhất bằng một câu lệnh.
+     */
+    public void load(DailyRewardDAO dailyRewardDAO, StorageSession session) throws SQLException {
+        long now = System.currentTimeMillis();
+        Map<Integer, Long> claims = dailyRewardDAO.loadRecentClaims(session, toLocal(now - COOLDOWN_MS));
+        lastClaims.clear();
+        lastClaims.putAll(claims);
+        logger.info("Đã nạp cooldown daily reward của {} user", claims.size());
+    }
+
+    public boolean canClaim(int userId, long nowMillis) {
+        Long last = lastClaims.get(userId);
+        return last == null || last + COOLDOWN_MS < nowMillis;
+    }
+
+    /**
+     * Thời điểm nhận được lần tiếp theo (bây giờ nếu đã hết cooldown).
+     */
+    public LocalDateTime getNextRewardTime(int userId, long nowMillis) {
+        Long last = lastClaims.get(userId);
+        return toLocal(last == null ? nowMillis : Math.max(nowMillis, last + COOLDOWN_MS));
+    }
+
+    /**
+     * Giữ chỗ lượt nhận tại nowMillis nếu đã hết cooldown. Hai request đồng thời chỉ một cái thành công.
+     */
+    public boolean tryReserve(int userId, long nowMillis) {
+        boolean[] reserved = new boolean[1];
+        lastClaims.compute(userId, (id, last) -> {
+            if (last == null || last + COOLDOWN_MS < nowMillis) {
+                reserved[0] = true;
+                return nowMillis;
+            }
+            return last;
+        });
+        return reserved[0];
+    }
+
+    /**
+     * Huỷ lượt đã giữ chỗ khi trả thưởng thất bại.
+     */
+    public void cancel(int userId, long reservedAt) {
+        lastClaims.remove(userId, reservedAt);
+    }
+
+    /**
+     * Bỏ các user đã hết cooldown để index chỉ chứa user còn phải chờ.
+     */
+    public int prune(long nowMillis) {
+        int before = lastClaims.size();
+        lastClaims.values().removeIf(last -> last + COOLDOWN_MS < nowMillis);
+        return before - lastClaims.size();
+    }
+
+    public int size() {
+        return lastClaims.size();
+    }
+
+    public static LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,146 @@
+package com.mygame.server.daily;
+
+import com.mygame.server.database.DailyRewardDAO;
+import com.mygame.server.database.QuestDAO;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.quest.QuestProgressService;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.storage.StorageSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rollover daily quest và daily reward lúc 00:00.
+ *
+ * Thay cho việc reset lười trong từng request (request đầu tiên sau nửa đêm của mỗi user
+ * phải xoá/gán lại quest): một job gán quest của ngày mới cho mọi user hoạt động trong
+ * {@link #ACTIVE_DAYS} ngày bằng một câu INSERT ... SELECT, rồi báo cho
+ * {@link QuestProgressService} là ngày mới không cần đọc database.
+ *
+ * Lúc khởi động job chạy bù cho hôm nay và nạp progress + cooldown daily reward vào bộ nhớ,
+ * để handler chỉ còn tra cứu bộ nhớ.
+ */
+public class DailyRolloverJob {
+    private static final Logger logger = LoggerFactory.getLogger(DailyRolloverJob.class);
+
+    private static final int ACTIVE_DAYS = 7;
+
+    private static DailyRolloverJob instance;
+
+    private final LongAdder runs;
+    private final LongAdder failures;
+
+    private Storage storage;
+    private QuestDAO questDAO;
+    private DailyRewardDAO dailyRewardDAO;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    private DailyRolloverJob() {
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        runs = metrics.counter("daily_rollover.runs");
+        failures = metrics.counter("daily_rollover.failures");
+    }
+
+    public static synchronized DailyRolloverJob getInstance() {
+        if (instance == null) {
+            instance = new DailyRolloverJob();
+        }
+        return instance;
+    }
+
+    /**
+     * Chạy bù cho hôm nay, nạp dữ liệu vào bộ nhớ rồi lên lịch cho nửa đêm tiếp theo.
+     * Phải gọi sau {@link QuestProgressService#start} (cần quest config).
+     */
+    public synchronized void start(Storage storage) {
+        if (running) {
+            return;
+        }
+        this.storage = storage;
+        this.questDAO = storage.quests();
+        this.dailyRewardDAO = storage.dailyRewards();
+
+        LocalDate today = LocalDate.now();
+        try (StorageSession session = storage.openSession()) {
+            try {
+                int assigned = questDAO.assignDailyQuests(session, today, activeSince(today));
+                session.commit();
+                QuestProgressService.getInstance().preload(today, questDAO.loadAllProgress(session, today));
+                DailyRewardIndex.getInstance().load(dailyRewardDAO, session);
+                session.commit();
+                logger.info("Rollover khởi động cho ngày {}: gán {} dòng quest", today, assigned);
+            } catch (SQLException e) {
+                session.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            // Không chặn khởi động: quest vẫn load lười theo user, daily reward index rỗng
+            failures.increment();
+            logger.error("Lỗi khi chạy rollover lúc khởi động: {}", e.getMessage(), e);
+        }
+
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "daily-rollover");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleNext(today.plusDays(1));
+    }
+
+    private void scheduleNext(LocalDate date) {
+        if (!running) {
+            return;
+        }
+        long delayMs = Math.max(0, Duration.between(LocalDateTime.now(), date.atStartOfDay()).toMillis());
+        scheduler.schedule(() -> rollover(date), delayMs, TimeUnit.MILLISECONDS);
+        logger.info("Rollover tiếp theo cho ngày {} sau {} phút", date, TimeUnit.MILLISECONDS.toMinutes(delayMs));
+    }
+
+    private void rollover(LocalDate date) {
+        long start = System.nanoTime();
+        try (StorageSession session = storage.openSession()) {
+            try {
+                int assigned = questDAO.assignDailyQuests(session, date, activeSince(date));
+                session.commit();
+                QuestProgressService.getInstance().markDayAssigned(date);
+                int pruned = DailyRewardIndex.getInstance().prune(System.currentTimeMillis());
+                runs.increment();
+                logger.info("Rollover ngày {}: gán {} dòng quest, bỏ {} cooldown hết hạn ({} ms)",
+                        date, assigned, pruned, (System.nanoTime() - start) / 1_000_000);
+            } catch (SQLException e) {
+                session.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            // Quest của ngày mới vẫn được tạo lười khi user có progress, chỉ mất phần gán trước
+            failures.increment();
+            logger.error("Lỗi khi rollover ngày {}: {}", date, e.getMessage(), e);
+        } finally {
+            scheduleNext(date.plusDays(1));
+        }
+    }
+
+    private static LocalDateTime activeSince(LocalDate date) {
+        return date.minusDays(ACTIVE_DAYS).atStartOfDay();
+    }
+
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow();
+        logger.info("Daily rollover job đã dừng");
+    }
+}
@@ -1,134 +1,35 @@
 package com.mygame.server.database;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mygame.server.storage.StorageSession;
 
-import java.sql.*;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.Map;
 
 /**
  * Data Access Object cho daily reward system
  */
-public class DailyRewardDAO {
-    private static final Logger logger = LoggerFactory.getLogger(DailyRewardDAO.class);
-    private final DatabaseManager dbManager;
-    
+public interface DailyRewardDAO {
     // Số credits nhận được mỗi ngày (random từ 1000-5000)
-    private static final long MIN_DAILY_REWARD = 1000;
-    private static final long MAX_DAILY_REWARD = 5000;
-    
-    public DailyRewardDAO(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
-    }
-    
+    long MIN_DAILY_REWARD = 1000;
+    long MAX_DAILY_REWARD = 5000;
+
     /**
-     * Kiểm tra user có thể nhận daily reward không (24h từ lần cuối)
+     * Đọc last_daily_reward của các user còn trong thời gian chờ (nhận sau {@code since}),
+     * dùng để nạp cooldown index lúc khởi động. Trả về userId -> epoch millis.
      */
-    public boolean canClaimDailyReward(int userId) throws SQLException {
-        String sql = "SELECT last_daily_reward FROM users WHERE user_id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                Timestamp lastReward = rs.getTimestamp("last_daily_reward");
-                
-                if (lastReward == null) {
-                    // Chưa nhận lần nào
-                    return true;
-                }
-                
-                // Kiểm tra đã qua 24h chưa
-                LocalDateTime lastRewardTime = LocalDateTime.ofInstant(
-                    lastReward.toInstant(), ZoneId.systemDefault());
-                LocalDateTime now = LocalDateTime.now();
-                
-                // Nếu lastRewardTime + 24h < now thì có thể nhận
-                return lastRewardTime.plusHours(24).isBefore(now);
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi kiểm tra daily reward: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        return false;
-    }
-    
+    Map<Integer, Long> loadRecentClaims(StorageSession session, LocalDateTime since) throws SQLException;
+
     /**
-     * Nhận daily reward và cập nhật credits
+     * Nhận daily reward và cập nhật credits.
+     * Cooldown đã được kiểm tra bởi caller (DailyRewardIndex); claimedAt được ghi lại.
      */
-    public long claimDailyReward(int userId) throws SQLException {
-        if (!canClaimDailyReward(userId)) {
-            throw new SQLException("Chưa đến thời gian nhận daily reward");
-        }
-        
-        // Random credits từ MIN đến MAX
-        long creditsReward = MIN_DAILY_REWARD + 
-            (long)(Math.random() * (MAX_DAILY_REWARD - MIN_DAILY_REWARD + 1));
-        
-        String sql = "UPDATE users SET credits = credits + ?, last_daily_reward = CURRENT_TIMESTAMP WHERE user_id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setLong(1, creditsReward);
-            pstmt.setInt(2, userId);
-            pstmt.executeUpdate();
-            
-            // Tính lại rank nếu cần
-            UserDAO userDAO = new UserDAO(dbManager);
-            userDAO.updateCredits(userId, 0); // Chỉ để trigger update rank
-            
-            dbManager.getConnection().commit();
-            logger.info("User {} đã nhận daily reward: {} credits", userId, creditsReward);
-            return creditsReward;
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            logger.error("Lỗi khi nhận daily reward: {}", e.getMessage(), e);
-            throw e;
-        }
-    }
-    
+    long claimDailyReward(int userId, LocalDateTime claimedAt) throws SQLException;
+
     /**
-     * Lấy thời gian có thể nhận reward tiếp theo
+     * Random credits từ MIN đến MAX
      */
-    public LocalDateTime getNextRewardTime(int userId) throws SQLException {
-        String sql = "SELECT last_daily_reward FROM users WHERE user_id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                Timestamp lastReward = rs.getTimestamp("last_daily_reward");
-                
-                if (lastReward == null) {
-                    // Có thể nhận ngay
-                    return LocalDateTime.now();
-                }
-                
-                LocalDateTime lastRewardTime = LocalDateTime.ofInstant(
-                    lastReward.toInstant(), ZoneId.systemDefault());
-                
-                // Thời gian nhận tiếp theo = lastRewardTime + 24h
-                return lastRewardTime.plusHours(24);
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi lấy next reward time: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        return LocalDateTime.now();
+    static long randomReward() {
+        return MIN_DAILY_REWARD + (long) (Math.random() * (MAX_DAILY_REWARD - MIN_DAILY_REWARD + 1));
     }
 }
-
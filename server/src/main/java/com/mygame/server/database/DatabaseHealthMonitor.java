@@ -0,0 +1,248 @@
+package com.mygame.server.database;
+
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Theo dõi sức khoẻ PostgreSQL và giữ circuit breaker cho mọi truy cập database.
+ *
+ * Một thread nền chạy {@code SELECT 1} trên connection riêng mỗi {@code db.health.intervalMs}.
+ * Probe lỗi hoặc chậm hơn {@code db.health.slowMs} liên tiếp {@code db.breaker.failures} lần thì
+ * breaker mở: {@link DatabaseManager#getConnection()} và {@link DatabaseManager#openConnection()}
+ * ném {@link SQLTransientConnectionException} ngay thay vì treo, connection dùng chung bị abort để
+ * giải phóng các thread đang chờ. Khi mở, caller dùng dữ liệu cache, wallet giữ settlement trong
+ * log cục bộ và các writer nền tạm dừng.
+ *
+ * Probe vẫn chạy khi breaker mở; đủ {@code db.breaker.successes} lần thành công liên tiếp thì
+ * breaker đóng lại và các listener đăng ký qua {@link #onRecovered} được gọi để replay phần việc
+ * đã dồn. Chưa {@link #start} (vd. embedded storage) thì breaker luôn đóng.
+ */
+public class DatabaseHealthMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseHealthMonitor.class);
+
+    private static final long INTERVAL_MILLIS = Long.getLong("db.health.intervalMs", 1000L);
+    private static final int PROBE_TIMEOUT_SECONDS = Integer.getInteger("db.health.timeoutSec", 2);
+    private static final long SLOW_MILLIS = Long.getLong("db.health.slowMs", 1500L);
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("db.breaker.failures", 3);
+    private static final int SUCCESS_THRESHOLD = Integer.getInteger("db.breaker.successes", 2);
+    private static final double LATENCY_EWMA_WEIGHT = 0.3;
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private static DatabaseHealthMonitor instance;
+
+    private final Object lock = new Object();
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram pingTime;
+    private final LongAdder opened;
+    private final LongAdder rejected;
+    private final LongAdder slowProbes;
+
+    // Được bảo vệ bởi lock (state volatile để isAvailable không cần lock)
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int consecutiveSuccesses;
+    private long openedAtMillis;
+    private volatile double latencyNanos; // EWMA độ trễ probe, chỉ thread probe ghi
+
+    private DatabaseManager dbManager;
+    private ScheduledExecutorService prober;
+
+    private DatabaseHealthMonitor() {
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.pingTime = metrics.histogram("db.ping");
+        this.opened = metrics.counter("db.breaker.opened");
+        this.rejected = metrics.counter("db.breaker.rejected");
+        this.slowProbes = metrics.counter("db.health.slow");
+        metrics.gauge("db.breaker.state", () -> state.ordinal());
+    }
+
+    public static synchronized DatabaseHealthMonitor getInstance() {
+        if (instance == null) {
+            instance = new DatabaseHealthMonitor();
+        }
+        return instance;
+    }
+
+    public synchronized void start(DatabaseManager dbManager) {
+        if (prober != null) {
+            return;
+        }
+        this.dbManager = dbManager;
+        prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-health");
+            t.setDaemon(true);
+            return t;
+        });
+        prober.scheduleWithFixedDelay(this::probe, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        logger.info("DB health monitor đã khởi động (probe mỗi {} ms, mở sau {} lỗi, đóng sau {} lần ổn)",
+                INTERVAL_MILLIS, FAILURE_THRESHOLD, SUCCESS_THRESHOLD);
+    }
+
+    /**
+     * true nếu breaker đóng (database dùng được).
+     */
+    public boolean isAvailable() {
+        return state == State.CLOSED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Độ trễ trung bình (EWMA) của probe gần đây: độ trễ một round trip tới database, không gồm
+     * thời gian hàng đợi hay xử lý của server. 0 nếu monitor chưa chạy.
+     */
+    public long latencyNanos() {
+        return (long) latencyNanos;
+    }
+
+    /**
+     * Ném {@link SQLTransientConnectionException} nếu breaker đang mở.
+     */
+    public void checkAvailable() throws SQLException {
+        if (state != State.CLOSED) {
+            rejected.increment();
+            throw new SQLTransientConnectionException("Database tạm thời không khả dụng, vui lòng thử lại sau");
+        }
+    }
+
+    /**
+     * Đăng ký việc cần chạy mỗi khi breaker đóng lại. Listener chạy trên thread health monitor
+     * nên chỉ nên đẩy việc sang executor của mình.
+     */
+    public void onRecovered(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    /**
+     * Chờ tới khi breaker đóng hoặc hết {@code timeout}; trả về {@link #isAvailable()}.
+     */
+    public boolean awaitAvailable(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (state != State.CLOSED) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Lỗi kết nối do caller gặp (vd. {@link DatabaseManager#connect()}), tính như một probe lỗi.
+     */
+    void recordFailure(SQLException e) {
+        if (prober != null) {
+            onFailure(e.getMessage());
+        }
+    }
+
+    private void probe() {
+        long start = System.nanoTime();
+        String failure = null;
+        try {
+            dbManager.ping(PROBE_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            failure = e.getMessage();
+        } catch (RuntimeException e) {
+            failure = e.toString();
+        }
+        long nanos = System.nanoTime() - start;
+        pingTime.recordNanos(nanos);
+        latencyNanos += LATENCY_EWMA_WEIGHT * (nanos - latencyNanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (failure == null && millis > SLOW_MILLIS) {
+            slowProbes.increment();
+            failure = "probe chậm " + millis + " ms";
+        }
+        if (failure == null) {
+            onSuccess();
+        } else {
+            onFailure(failure);
+        }
+    }
+
+    private void onFailure(String reason) {
+        boolean tripped = false;
+        synchronized (lock) {
+            consecutiveSuccesses = 0;
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN
+                    || (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD)) {
+                tripped = state == State.CLOSED;
+                state = State.OPEN;
+                if (tripped) {
+                    openedAtMillis = System.currentTimeMillis();
+                }
+            }
+        }
+        if (tripped) {
+            opened.increment();
+            logger.error("Circuit breaker database MỞ sau {} lỗi liên tiếp ({}), chuyển sang chế độ degraded",
+                    FAILURE_THRESHOLD, reason);
+            // Giải phóng các thread đang treo trên connection dùng chung
+            dbManager.abortConnection();
+        } else {
+            logger.debug("DB health probe lỗi ({}): {}", state, reason);
+        }
+    }
+
+    private void onSuccess() {
+        long downMillis;
+        synchronized (lock) {
+            consecutiveFailures = 0;
+            if (state == State.CLOSED) {
+                return;
+            }
+            consecutiveSuccesses++;
+            if (consecutiveSuccesses < SUCCESS_THRESHOLD) {
+                state = State.HALF_OPEN;
+                return;
+            }
+            state = State.CLOSED;
+            consecutiveSuccesses = 0;
+            downMillis = System.currentTimeMillis() - openedAtMillis;
+            lock.notifyAll();
+        }
+        logger.info("Circuit breaker database ĐÓNG sau {} ms, replay phần việc đã dồn", downMillis);
+        for (Runnable listener : recoveryListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                logger.error("Lỗi khi chạy recovery listener: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (prober == null) {
+            return;
+        }
+        prober.shutdownNow();
+        try {
+            prober.awaitTermination(PROBE_TIMEOUT_SECONDS + 1L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        prober = null;
+        dbManager.closeProbe();
+        logger.info("DB health monitor đã dừng (breaker {}, đã mở {} lần, từ chối {} lần gọi)",
+                state, opened.sum(), rejected.sum());
+    }
+}
@@ -11,6 +11,8 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -19,20 +21,43 @@ import java.util.stream.Collectors;
 public class DatabaseManager {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
 
-    private static final String DB_HOST = "localhost";
-    private static final String DB_PORT = "5432";
-    private static final String DB_NAME = "postgres";
-    private static final String DB_USER = "postgres";
-    private static final String DB_PASSWORD = "12212332";
+    // Cấu hình qua system property db.host, db.port, db.name, db.user, db.password.
+    // Mật khẩu không có mặc định: lấy từ db.password, không có thì từ biến môi trường DB_PASSWORD
+    private static final String DB_HOST = System.getProperty("db.host", "localhost");
+    private static final String DB_PORT = System.getProperty("db.port", "5432");
+    private static final String DB_NAME = System.getProperty("db.name", "postgres");
+    private static final String DB_USER = System.getProperty("db.user", "postgres");
+    private static final String DB_PASSWORD = System.getProperty("db.password", System.getenv("DB_PASSWORD"));
 
     private static final String POSTGRES_URL = "jdbc:postgresql://" + DB_HOST + ":" + DB_PORT + "/postgres";
     private static final String DB_URL = "jdbc:postgresql://" + DB_HOST + ":" + DB_PORT + "/" + DB_NAME;
 
+    // Số lần chạy một câu SQL trước khi pgjdbc chuyển sang server-side prepared statement (driver
+    // mặc định 5). Driver cache statement theo chuỗi SQL trên từng connection, nên DAO tạo
+    // PreparedStatement mới mỗi lần vẫn dùng lại statement đã prepare trên server.
+    private static final int PREPARE_THRESHOLD = Integer.getInteger("db.prepareThreshold", 1);
+
+    // Giới hạn thời gian mở kết nối và chờ mỗi lần đọc socket (giây), để database treo không giữ
+    // thread mãi mãi. Phát hiện database chậm/chết là việc của DatabaseHealthMonitor.
+    private static final int CONNECT_TIMEOUT_SECONDS = Integer.getInteger("db.connectTimeoutSec", 5);
+    private static final int SOCKET_TIMEOUT_SECONDS = Integer.getInteger("db.socketTimeoutSec", 30);
+
+    private static final String CONNECTION_PARAMS = "prepareThreshold=" + PREPARE_THRESHOLD
+            + "&connectTimeout=" + CONNECT_TIMEOUT_SECONDS + "&socketTimeout=" + SOCKET_TIMEOUT_SECONDS;
+
     private static DatabaseManager instance;
-    private Connection connection;
+    private volatile Connection connection;
+    private Connection probeConnection; // chỉ thread health monitor dùng
+    // Connection riêng của các thread I/O (xem bindThreadConnection); null ở thread khác
+    private final ThreadLocal<Connection[]> threadConnection = new ThreadLocal<>();
+    private final Set<Connection> threadConnections = ConcurrentHashMap.newKeySet();
+    private final DatabaseHealthMonitor health = DatabaseHealthMonitor.getInstance();
 
     private DatabaseManager() {
-        // Private constructor for singleton
+        if (DB_PASSWORD == null) {
+            throw new IllegalStateException("Chưa cấu hình mật khẩu database: đặt -Ddb.password=... "
+                    + "hoặc biến môi trường DB_PASSWORD (hoặc dùng -Dstorage.engine=embedded)");
+        }
     }
 
     public static synchronized DatabaseManager getInstance() {
@@ -79,7 +104,7 @@ public class DatabaseManager {
     /**
      * Kết nối đến database
      */
-    public void connect() throws SQLException {
+    public synchronized void connect() throws SQLException {
         if (connection != null && !connection.isClosed()) {
             // Verify we're connected to the correct database
             try {
@@ -106,7 +131,7 @@ public class DatabaseManager {
         ensureDatabaseExists();
 
         try {
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+            connection = DriverManager.getConnection(DB_URL + "?" + CONNECTION_PARAMS, DB_USER, DB_PASSWORD);
             connection.setAutoCommit(false); // Sử dụng transactions
 
             // Verify đúng database
@@ -120,19 +145,130 @@ public class DatabaseManager {
             logger.info("Đã kết nối đến PostgreSQL database: {} (catalog: {})", DB_NAME, currentDb);
         } catch (SQLException e) {
             logger.error("Lỗi kết nối database '{}': {}", DB_NAME, e.getMessage(), e);
+            health.recordFailure(e);
             throw new SQLException("Không thể kết nối đến database '" + DB_NAME + "'. " +
                                  "Hãy đảm bảo database đã được tạo. Lỗi: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Lấy connection hiện tại
+     * Lấy connection hiện tại. Ném {@link java.sql.SQLTransientConnectionException} ngay khi
+     * circuit breaker đang mở.
      */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+        health.checkAvailable();
+        Connection[] own = threadConnection.get();
+        if (own != null) {
+            return ownConnection(own);
+        }
+        Connection current = connection;
+        if (current == null || current.isClosed()) {
             connect();
+            current = connection;
+        }
+        return current;
+    }
+
+    /**
+     * Cho thread hiện tại (thread I/O của AsyncDao) connection riêng: từ giờ
+     * {@link #getConnection()} trên thread này trả về connection đó (mở khi dùng lần đầu, mở lại
+     * sau khi bị đóng) thay cho connection dùng chung, nên DAO chạy song song trên nhiều thread I/O
+     * mà không đụng transaction của nhau hay của thread nhận packet.
+     */
+    public void bindThreadConnection() {
+        if (threadConnection.get() == null) {
+            threadConnection.set(new Connection[1]);
+        }
+    }
+
+    private Connection ownConnection(Connection[] own) throws SQLException {
+        Connection current = own[0];
+        if (current == null || current.isClosed()) {
+            if (current != null) {
+                threadConnections.remove(current);
+            }
+            current = openConnection();
+            own[0] = current;
+            threadConnections.add(current);
+        }
+        return current;
+    }
+
+    /**
+     * Mở một connection riêng (không dùng chung) cho background worker.
+     * Connection dùng chung không thread-safe nên các thread nền phải dùng connection riêng.
+     * Caller chịu trách nhiệm đóng connection.
+     * Bật reWriteBatchedInserts để JDBC batch INSERT được gộp thành multi-row INSERT.
+     */
+    public Connection openConnection() throws SQLException {
+        health.checkAvailable();
+        Connection conn;
+        try {
+            conn = DriverManager.getConnection(DB_URL + "?reWriteBatchedInserts=true&" + CONNECTION_PARAMS,
+                    DB_USER, DB_PASSWORD);
+        } catch (SQLException e) {
+            health.recordFailure(e);
+            throw e;
+        }
+        conn.setAutoCommit(false);
+        return conn;
+    }
+
+    /**
+     * Probe của {@link DatabaseHealthMonitor}: chạy {@code SELECT 1} trên connection riêng, không
+     * qua circuit breaker. Lỗi thì đóng connection probe để lần sau mở lại.
+     */
+    void ping(int timeoutSeconds) throws SQLException {
+        try {
+            if (probeConnection == null || probeConnection.isClosed()) {
+                probeConnection = DriverManager.getConnection(DB_URL + "?" + CONNECTION_PARAMS, DB_USER, DB_PASSWORD);
+            }
+            try (Statement stmt = probeConnection.createStatement()) {
+                stmt.setQueryTimeout(timeoutSeconds);
+                stmt.execute("SELECT 1");
+            }
+        } catch (SQLException e) {
+            closeProbe();
+            throw e;
+        }
+    }
+
+    void closeProbe() {
+        if (probeConnection == null) {
+            return;
+        }
+        try {
+            probeConnection.close();
+        } catch (SQLException ignored) {
+            // Connection probe đã hỏng, bỏ qua
+        }
+        probeConnection = null;
+    }
+
+    /**
+     * Bỏ connection dùng chung khi breaker mở: các thread đang chờ trên nó nhận SQLException ngay,
+     * lần {@link #getConnection()} sau khi breaker đóng sẽ kết nối lại.
+     */
+    void abortConnection() {
+        Connection current = connection;
+        connection = null;
+        abortQuietly(current);
+        // Connection của thread I/O: thread tự mở lại ở lần dùng sau
+        for (Connection own : threadConnections) {
+            threadConnections.remove(own);
+            abortQuietly(own);
+        }
+    }
+
+    private static void abortQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.abort(Runnable::run);
+        } catch (SQLException e) {
+            logger.warn("Lỗi khi abort connection: {}", e.getMessage());
         }
-        return connection;
     }
 
     /**
@@ -195,6 +331,14 @@ public class DatabaseManager {
      * Đóng kết nối database
      */
     public void close() {
+        for (Connection own : threadConnections) {
+            threadConnections.remove(own);
+            try {
+                own.close();
+            } catch (SQLException ignored) {
+                // Đang tắt, bỏ qua
+            }
+        }
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
@@ -0,0 +1,75 @@
+package com.mygame.server.database;
+
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.wallet.WalletService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Data Access Object cho daily reward system
+ */
+public class JdbcDailyRewardDAO implements DailyRewardDAO {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcDailyRewardDAO.class);
+    private final DatabaseManager dbManager;
+    
+    public JdbcDailyRewardDAO(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+    
+    /**
+     * Đọc last_daily_reward của các user còn trong thời gian chờ (nhận sau {@code since}),
+     * dùng để nạp cooldown index lúc khởi động. Trả về userId -> epoch millis.
+     */
+    @Override
+    public Map<Integer, Long> loadRecentClaims(StorageSession session, LocalDateTime since) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "SELECT user_id, last_daily_reward FROM users WHERE last_daily_reward > ?";
+
+        Map<Integer, Long> claims = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, Timestamp.valueOf(since));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    claims.put(rs.getInt("user_id"), rs.getTimestamp("last_daily_reward").getTime());
+                }
+            }
+        }
+        return claims;
+    }
+    
+    /**
+     * Nhận daily reward và cập nhật credits.
+     * Cooldown đã được kiểm tra bởi caller (DailyRewardIndex); claimedAt được ghi vào last_daily_reward.
+     */
+    @Override
+    public long claimDailyReward(int userId, LocalDateTime claimedAt) throws SQLException {
+        long creditsReward = DailyRewardDAO.randomReward();
+        
+        // Cộng credits qua wallet trước; key theo ngày nên claim lặp lại không được trả hai lần
+        String key = "daily:" + userId + ":" + claimedAt.toLocalDate();
+        if (!WalletService.getInstance().creditAndWait(key, userId, creditsReward)) {
+            throw new SQLException("Đã nhận daily reward hôm nay");
+        }
+
+        String sql = "UPDATE users SET last_daily_reward = ? WHERE user_id = ?";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setTimestamp(1, Timestamp.valueOf(claimedAt));
+            pstmt.setInt(2, userId);
+            pstmt.executeUpdate();
+            
+            dbManager.getConnection().commit();
+            logger.info("User {} đã nhận daily reward: {} credits", userId, creditsReward);
+            return creditsReward;
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            logger.error("Lỗi khi nhận daily reward: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mygame.server.database;
+
+import com.mygame.server.stats.PlayerCounterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object cho leaderboard
+ */
+public class JdbcLeaderboardDAO implements LeaderboardDAO {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcLeaderboardDAO.class);
+    private final DatabaseManager dbManager;
+    
+    public JdbcLeaderboardDAO(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+    
+    /**
+     * Lấy một trang leaderboard theo keyset (credits, user_id) giảm dần.
+     * Trang đầu: cursorUserId = 0. rankOffset là số entry đã hiển thị ở các trang trước.
+     */
+    @Override
+    public List<LeaderboardEntry> getPage(long cursorCredits, int cursorUserId, int rankOffset, int limit)
+            throws SQLException {
+        boolean firstPage = cursorUserId == 0;
+        String sql = "SELECT user_id, username, credits, current_rank, total_wins, total_losses " +
+                     "FROM users " +
+                     (firstPage ? "" : "WHERE (credits, user_id) < (?, ?) ") +
+                     "ORDER BY credits DESC, user_id DESC " +
+                     "LIMIT ?";
+        
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            int idx = 1;
+            if (!firstPage) {
+                pstmt.setLong(idx++, cursorCredits);
+                pstmt.setInt(idx++, cursorUserId);
+            }
+            pstmt.setInt(idx, limit);
+            ResultSet rs = pstmt.executeQuery();
+            
+            int rank = rankOffset + 1;
+            while (rs.next()) {
+                LeaderboardEntry entry = new LeaderboardEntry();
+                entry.setRank(rank++);
+                entry.setUserId(rs.getInt("user_id"));
+                entry.setUsername(rs.getString("username"));
+                entry.setCredits(rs.getLong("credits"));
+                entry.setRankEnum(rs.getString("current_rank"));
+                // Bộ đếm trong database cộng delta chưa flush
+                PlayerCounterService.Delta pending = PlayerCounterService.getInstance().pending(entry.getUserId());
+                entry.setTotalWins(rs.getInt("total_wins") + pending.getWins());
+                entry.setTotalLosses(rs.getInt("total_losses") + pending.getLosses());
+                
+                entries.add(entry);
+            }
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            logger.error("Lỗi khi lấy leaderboard: {}", e.getMessage(), e);
+            throw e;
+        }
+        
+        logger.debug("Đã lấy {} players từ leaderboard", entries.size());
+        return entries;
+    }
+    
+    /**
+     * Lấy rank của player trong leaderboard (vị trí xếp hạng)
+     */
+    @Override
+    public int getPlayerRank(int userId) throws SQLException {
+        String sql = "SELECT COUNT(*) + 1 as rank " +
+                     "FROM users " +
+                     "WHERE credits > (SELECT credits FROM users WHERE user_id = ?)";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (rs.next()) {
+                return rs.getInt("rank");
+            }
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            logger.error("Lỗi khi lấy player rank: {}", e.getMessage(), e);
+            throw e;
+        }
+        
+        return -1; // Không tìm thấy
+    }
+}
@@ -0,0 +1,181 @@
+package com.mygame.server.database;
+
+import com.mygame.server.history.MatchRecord;
+import com.mygame.server.storage.StorageSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Data Access Object cho bảng match_history
+ */
+public class JdbcMatchHistoryDAO implements MatchHistoryDAO {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcMatchHistoryDAO.class);
+    private final DatabaseManager dbManager;
+
+    public JdbcMatchHistoryDAO(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * Lưu lịch sử trận đấu
+     */
+    @Override
+    public void saveMatch(int userId, String gameType, String matchMode,
+            String result, long creditsChange, int opponentCount,
+            int durationSeconds) throws SQLException {
+        String sql = "INSERT INTO match_history " +
+                "(user_id, game_type, match_mode, result, credits_change, opponent_count, duration_seconds, timestamp) "
+                +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, gameType);
+            pstmt.setString(3, matchMode);
+            pstmt.setString(4, result);
+            pstmt.setLong(5, creditsChange);
+            pstmt.setInt(6, opponentCount);
+            pstmt.setInt(7, durationSeconds);
+
+            pstmt.executeUpdate();
+            dbManager.getConnection().commit();
+            logger.info("Đã lưu lịch sử trận đấu cho user {}: {} - {}", userId, gameType, result);
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            logger.error("Lỗi khi lưu lịch sử: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Ghi nhiều dòng lịch sử trong một JDBC batch trên connection do caller quản lý
+     * (dùng bởi background writer, không dùng connection chung). Caller tự commit/rollback.
+     */
+    @Override
+    public void saveMatches(StorageSession session, List<MatchRecord> records) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "INSERT INTO match_history " +
+                "(user_id, game_type, match_mode, result, credits_change, opponent_count, duration_seconds, timestamp) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (MatchRecord record : records) {
+                pstmt.setInt(1, record.getUserId());
+                pstmt.setString(2, record.getGameType());
+                pstmt.setString(3, record.getMatchMode());
+                pstmt.setString(4, record.getResult());
+                pstmt.setLong(5, record.getCreditsChange());
+                pstmt.setInt(6, record.getOpponentCount());
+                pstmt.setInt(7, record.getDurationSeconds());
+                pstmt.setTimestamp(8, new Timestamp(record.getTimestampMillis()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Lấy một trang lịch sử theo keyset (timestamp, match_id) giảm dần.
+     * Trang đầu: cursorMatchId = 0. Trang sau: cursor là dòng cuối của trang trước.
+     * Dùng index (user_id, timestamp DESC, match_id DESC) nên trang sâu vẫn có chi phí như trang đầu.
+     */
+    @Override
+    public List<MatchHistoryEntry> getMatchesPage(int userId, long cursorTimestampMicros, int cursorMatchId,
+            int limit) throws SQLException {
+        boolean firstPage = cursorMatchId == 0;
+        String sql = "SELECT match_id, game_type, match_mode, result, credits_change, opponent_count, " +
+                "duration_seconds, timestamp " +
+                "FROM match_history " +
+                "WHERE user_id = ? " +
+                (firstPage ? "" : "AND (timestamp, match_id) < (?, ?) ") +
+                "ORDER BY timestamp DESC, match_id DESC " +
+                "LIMIT ?";
+
+        List<MatchHistoryEntry> matches = new ArrayList<>();
+
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            int idx = 1;
+            pstmt.setInt(idx++, userId);
+            if (!firstPage) {
+                pstmt.setTimestamp(idx++, fromMicros(cursorTimestampMicros));
+                pstmt.setInt(idx++, cursorMatchId);
+            }
+            pstmt.setInt(idx, limit);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                MatchHistoryEntry entry = new MatchHistoryEntry();
+                entry.setId(rs.getInt("match_id"));
+                entry.setGameType(rs.getString("game_type"));
+                entry.setMatchMode(rs.getString("match_mode"));
+                entry.setResult(rs.getString("result"));
+                entry.setCreditsChange(rs.getLong("credits_change"));
+                entry.setOpponentCount(rs.getInt("opponent_count"));
+                entry.setDurationSeconds(rs.getInt("duration_seconds"));
+
+                Timestamp timestamp = rs.getTimestamp("timestamp");
+                if (timestamp != null) {
+                    entry.setTimestamp(LocalDateTime.ofInstant(
+                            timestamp.toInstant(), ZoneId.systemDefault()));
+                    entry.setTimestampMicros(toMicros(timestamp));
+                }
+
+                matches.add(entry);
+            }
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            logger.error("Lỗi khi lấy match history: {}", e.getMessage(), e);
+            throw e;
+        }
+
+        return matches;
+    }
+
+    /**
+     * Duyệt toàn bộ match_history theo match_id trên connection do caller quản lý. Autocommit phải
+     * tắt để PostgreSQL đọc theo fetch size thay vì nạp cả bảng vào bộ nhớ.
+     */
+    @Override
+    public void scanMatches(StorageSession session, Consumer<MatchRecord> consumer) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "SELECT user_id, game_type, match_mode, result, credits_change, opponent_count, " +
+                "duration_seconds, timestamp FROM match_history ORDER BY match_id";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(10_000);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp timestamp = rs.getTimestamp("timestamp");
+                    consumer.accept(new MatchRecord(rs.getInt("user_id"), rs.getString("game_type"),
+                            rs.getString("match_mode"), rs.getString("result"), rs.getLong("credits_change"),
+                            rs.getInt("opponent_count"), rs.getInt("duration_seconds"),
+                            timestamp != null ? timestamp.getTime() : 0L));
+                }
+            }
+        }
+    }
+
+    /**
+     * Timestamp -> microseconds (độ chính xác của PostgreSQL), để cursor không bị lệch khi so sánh.
+     */
+    private static long toMicros(Timestamp timestamp) {
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1000;
+    }
+
+    private static Timestamp fromMicros(long micros) {
+        Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1000L);
+        timestamp.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1000);
+        return timestamp;
+    }
+}
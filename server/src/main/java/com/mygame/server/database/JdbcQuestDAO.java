@@ -0,0 +1,230 @@
+package com.mygame.server.database;
+
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.quest.QuestDefinition;
+import com.mygame.server.quest.QuestEventType;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.wallet.WalletService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Access Object for Daily Quest System
+ */
+public class JdbcQuestDAO implements QuestDAO {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcQuestDAO.class);
+    private final DatabaseManager dbManager;
+    private final LatencyHistogram claimTime;
+    
+    public JdbcQuestDAO(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        this.claimTime = ServerMetrics.getInstance().histogram("db.quest.claim");
+    }
+    
+    /**
+     * Đọc toàn bộ daily_quest_config (bảng nhỏ, chỉ gọi khi cache reload)
+     */
+    @Override
+    public List<QuestDefinition> loadQuestConfig(StorageSession session) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "SELECT quest_id, description, game_type, event_type, target_count, reward_credits " +
+                     "FROM daily_quest_config ORDER BY quest_id";
+
+        List<QuestDefinition> quests = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                String description = rs.getString("description");
+                String eventType = rs.getString("event_type");
+                quests.add(new QuestDefinition(
+                    rs.getInt("quest_id"),
+                    description,
+                    rs.getString("game_type"),
+                    eventType != null ? QuestEventType.valueOf(eventType) : QuestEventType.infer(description),
+                    rs.getInt("target_count"),
+                    rs.getLong("reward_credits")
+                ));
+            }
+        }
+        return quests;
+    }
+
+    /**
+     * Fingerprint của daily_quest_config để phát hiện thay đổi mà không phải đọc lại cả bảng
+     */
+    @Override
+    public String questConfigFingerprint(StorageSession session) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "SELECT md5(COALESCE(string_agg(concat_ws('|', quest_id, description, game_type, " +
+                     "event_type, target_count, reward_credits), ',' ORDER BY quest_id), '')) " +
+                     "FROM daily_quest_config";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : "";
+        }
+    }
+
+    /**
+     * Đọc progress của user trong một ngày (chỉ quest_id, current_progress, is_claimed)
+     */
+    @Override
+    public List<QuestProgress> loadProgress(StorageSession session, int userId, LocalDate date) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "SELECT quest_id, current_progress, is_claimed FROM user_quest_progress " +
+                     "WHERE user_id = ? AND date_assigned = ?";
+
+        List<QuestProgress> rows = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setDate(2, Date.valueOf(date));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    QuestProgress row = new QuestProgress();
+                    row.setQuestId(rs.getInt("quest_id"));
+                    row.setCurrentProgress(rs.getInt("current_progress"));
+                    row.setClaimed(rs.getBoolean("is_claimed"));
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public List<QuestProgress> loadProgress(int userId, LocalDate date) throws SQLException {
+        try {
+            return loadProgress(new JdbcSession(dbManager.getConnection()), userId, date);
+        } catch (SQLException e) {
+            // Lệnh lỗi làm hỏng transaction của connection dùng chung
+            rollbackQuietly();
+            throw e;
+        }
+    }
+
+    /**
+     * Đọc progress đã có trong ngày của mọi user bằng một câu lệnh (bỏ qua dòng còn 0 và chưa claim).
+     * Trả về userId -> các dòng progress.
+     */
+    @Override
+    public Map<Integer, List<QuestProgress>> loadAllProgress(StorageSession session, LocalDate date) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "SELECT user_id, quest_id, current_progress, is_claimed FROM user_quest_progress " +
+                     "WHERE date_assigned = ? AND (current_progress > 0 OR is_claimed)";
+
+        Map<Integer, List<QuestProgress>> rows = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(date));
+            pstmt.setFetchSize(1000);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    QuestProgress row = new QuestProgress();
+                    row.setQuestId(rs.getInt("quest_id"));
+                    row.setCurrentProgress(rs.getInt("current_progress"));
+                    row.setClaimed(rs.getBoolean("is_claimed"));
+                    rows.computeIfAbsent(rs.getInt("user_id"), k -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Gán quest của một ngày cho mọi user đăng nhập từ activeSince trở đi, trong một câu set-based.
+     * Dòng đã tồn tại được giữ nguyên (ON CONFLICT DO NOTHING) nên chạy lại an toàn. Caller tự commit.
+     */
+    @Override
+    public int assignDailyQuests(StorageSession session, LocalDate date, LocalDateTime activeSince) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "INSERT INTO user_quest_progress (user_id, quest_id, current_progress, is_claimed, date_assigned) " +
+                     "SELECT u.user_id, dqc.quest_id, 0, FALSE, ? " +
+                     "FROM users u CROSS JOIN daily_quest_config dqc " +
+                     "WHERE u.last_login >= ? " +
+                     "ON CONFLICT (user_id, quest_id, date_assigned) DO NOTHING";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setDate(1, Date.valueOf(date));
+            pstmt.setTimestamp(2, Timestamp.valueOf(activeSince));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Ghi progress của nhiều (user, quest, ngày) trong một câu lệnh dựa trên unnest.
+     * Progress là giá trị tuyệt đối và chỉ tăng (GREATEST), nên ghi lặp lại hay ghi trễ đều an toàn.
+     * Quest đã bị xoá khỏi config được bỏ qua nhờ JOIN. Caller tự commit/rollback.
+     */
+    @Override
+    public int saveProgress(StorageSession session, Integer[] userIds, Integer[] questIds, String[] dates,
+                            Integer[] progress) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "INSERT INTO user_quest_progress (user_id, quest_id, date_assigned, current_progress, is_claimed) " +
+                     "SELECT t.user_id, t.quest_id, t.day, t.progress, FALSE " +
+                     "FROM unnest(?::int[], ?::int[], ?::date[], ?::int[]) AS t(user_id, quest_id, day, progress) " +
+                     "JOIN daily_quest_config dqc ON dqc.quest_id = t.quest_id " +
+                     "ON CONFLICT (user_id, quest_id, date_assigned) DO UPDATE " +
+                     "SET current_progress = GREATEST(user_quest_progress.current_progress, EXCLUDED.current_progress)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", userIds));
+            pstmt.setArray(2, conn.createArrayOf("integer", questIds));
+            pstmt.setArray(3, conn.createArrayOf("text", dates));
+            pstmt.setArray(4, conn.createArrayOf("integer", progress));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Trả thưởng quest đã hoàn thành (progress đã được kiểm tra trong bộ nhớ bởi caller)
+     * và đánh dấu is_claimed. Dòng progress có thể chưa được flush nên dùng upsert.
+     */
+    @Override
+    public boolean claimQuestReward(int userId, int questId, LocalDate date, int progress) throws SQLException {
+        // Add credits (always 20,000) qua wallet; key theo ngày chặn claim trùng
+        String key = "quest:" + userId + ":" + questId + ":" + date;
+        if (!WalletService.getInstance().creditAndWait(key, userId, QUEST_REWARD)) {
+            logger.warn("Quest {} reward already paid to user {}", questId, userId);
+        }
+
+        // Mark as claimed: một câu upsert (không SELECT trước)
+        String claimSql = "INSERT INTO user_quest_progress (user_id, quest_id, date_assigned, current_progress, is_claimed) " +
+                          "VALUES (?, ?, ?, ?, TRUE) " +
+                          "ON CONFLICT (user_id, quest_id, date_assigned) DO UPDATE SET is_claimed = TRUE, " +
+                          "current_progress = GREATEST(user_quest_progress.current_progress, EXCLUDED.current_progress)";
+
+        long start = System.nanoTime();
+        try (PreparedStatement claimStmt = dbManager.getConnection().prepareStatement(claimSql)) {
+            claimStmt.setInt(1, userId);
+            claimStmt.setInt(2, questId);
+            claimStmt.setDate(3, Date.valueOf(date));
+            claimStmt.setInt(4, progress);
+            claimStmt.executeUpdate();
+            dbManager.getConnection().commit();
+            logger.info("User {} claimed quest {} reward: {} credits", userId, questId, QUEST_REWARD);
+            return true;
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            logger.error("Failed to claim quest reward: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            claimTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    private void rollbackQuietly() {
+        try {
+            dbManager.getConnection().rollback();
+        } catch (SQLException rollbackEx) {
+            logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.mygame.server.database;
+
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object cho bảng game_rooms và room_players
+ */
+public class JdbcRoomDAO implements RoomDAO {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcRoomDAO.class);
+    // Cột của game_rooms cho RoomData
+    private static final String ROOM_COLUMNS = "id, room_name, game_type, host_user_id, max_players, current_players, " +
+                                               "status, created_at";
+    private final DatabaseManager dbManager;
+    private final LatencyHistogram createTime;
+    private final LatencyHistogram joinTime;
+    
+    public JdbcRoomDAO(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.createTime = metrics.histogram("db.room.create");
+        this.joinTime = metrics.histogram("db.room.add_player");
+    }
+    
+    /**
+     * Tạo room mới. Một câu CTE: INSERT room, INSERT host vào room_players rồi trả về room kèm
+     * username của host (trước đây: INSERT, INSERT, UPDATE đếm lại, rồi hai SELECT).
+     */
+    @Override
+    public RoomData createRoom(String roomName, String gameType, int hostUserId, int maxPlayers) throws SQLException {
+        long start = System.nanoTime();
+        String sql = "WITH r AS (" +
+                     "INSERT INTO game_rooms (room_name, game_type, host_user_id, max_players, current_players, status) " +
+                     "VALUES (?, ?, ?, ?, 1, 'WAITING') RETURNING " + ROOM_COLUMNS + "), " +
+                     "p AS (INSERT INTO room_players (room_id, user_id, position) SELECT id, host_user_id, 0 FROM r) " +
+                     "SELECT r.*, u.username FROM r LEFT JOIN users u ON u.user_id = r.host_user_id";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, roomName);
+            pstmt.setString(2, gameType);
+            pstmt.setInt(3, hostUserId);
+            pstmt.setInt(4, maxPlayers);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    RoomData room = toRoom(rs);
+                    room.setHostUsername(rs.getString("username"));
+                    
+                    RoomPlayerData host = new RoomPlayerData();
+                    host.setUserId(hostUserId);
+                    host.setUsername(room.getHostUsername());
+                    host.setPosition(0);
+                    List<RoomPlayerData> players = new ArrayList<>();
+                    players.add(host);
+                    room.setPlayers(players);
+                    
+                    dbManager.getConnection().commit();
+                    logger.info("Đã tạo room: {} (ID: {})", roomName, room.getRoomId());
+                    return room;
+                }
+            }
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            logger.error("Lỗi khi tạo room: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            createTime.recordNanos(System.nanoTime() - start);
+        }
+        
+        throw new SQLException("Không thể tạo room");
+    }
+    
+    /**
+     * Thêm player vào room. INSERT và cập nhật current_players trong một câu CTE; subquery đếm
+     * thấy snapshot trước INSERT nên cộng thêm số dòng vừa chèn.
+     */
+    @Override
+    public void addPlayerToRoom(int roomId, int userId, int position) throws SQLException {
+        long start = System.nanoTime();
+        String sql = "WITH ins AS (INSERT INTO room_players (room_id, user_id, position) VALUES (?, ?, ?) " +
+                     "ON CONFLICT (room_id, user_id) DO NOTHING RETURNING 1) " +
+                     "UPDATE game_rooms SET current_players = " +
+                     "(SELECT COUNT(*) FROM room_players WHERE room_id = ?) + (SELECT COUNT(*) FROM ins) " +
+                     "WHERE id = ?";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, roomId);
+            pstmt.setInt(2, userId);
+            pstmt.setInt(3, position);
+            pstmt.setInt(4, roomId);
+            pstmt.setInt(5, roomId);
+            pstmt.executeUpdate();
+            
+            dbManager.getConnection().commit();
+            logger.debug("Đã thêm player {} vào room {}", userId, roomId);
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            throw e;
+        } finally {
+            joinTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Xóa player khỏi room (DELETE và cập nhật current_players trong một câu CTE)
+     */
+    @Override
+    public void removePlayerFromRoom(int roomId, int userId) throws SQLException {
+        String sql = "WITH del AS (DELETE FROM room_players WHERE room_id = ? AND user_id = ? RETURNING 1) " +
+                     "UPDATE game_rooms SET current_players = " +
+                     "(SELECT COUNT(*) FROM room_players WHERE room_id = ?) - (SELECT COUNT(*) FROM del) " +
+                     "WHERE id = ?";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, roomId);
+            pstmt.setInt(2, userId);
+            pstmt.setInt(3, roomId);
+            pstmt.setInt(4, roomId);
+            pstmt.executeUpdate();
+            
+            dbManager.getConnection().commit();
+            logger.debug("Đã xóa player {} khỏi room {}", userId, roomId);
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            throw e;
+        }
+    }
+    
+    /**
+     * Lấy thông tin room cùng danh sách players trong một câu (LEFT JOIN room_players, users)
+     */
+    @Override
+    public RoomData getRoomData(int roomId) throws SQLException {
+        String sql = "SELECT r.id, r.room_name, r.game_type, r.host_user_id, r.max_players, r.current_players, " +
+                     "r.status, r.created_at, h.username AS host_username, " +
+                     "rp.user_id AS player_id, rp.position, u.username " +
+                     "FROM game_rooms r " +
+                     "LEFT JOIN users h ON h.user_id = r.host_user_id " +
+                     "LEFT JOIN room_players rp ON rp.room_id = r.id " +
+                     "LEFT JOIN users u ON u.user_id = rp.user_id " +
+                     "WHERE r.id = ? " +
+                     "ORDER BY rp.position";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, roomId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                RoomData room = null;
+                List<RoomPlayerData> players = new ArrayList<>();
+                while (rs.next()) {
+                    if (room == null) {
+                        room = toRoom(rs);
+                        room.setHostUsername(rs.getString("host_username"));
+                    }
+                    // Room chưa có player: một dòng với cột player NULL
+                    int playerId = rs.getInt("player_id");
+                    if (!rs.wasNull() && rs.getString("username") != null) {
+                        RoomPlayerData player = new RoomPlayerData();
+                        player.setUserId(playerId);
+                        player.setUsername(rs.getString("username"));
+                        player.setPosition(rs.getInt("position"));
+                        players.add(player);
+                    }
+                }
+                if (room != null) {
+                    room.setPlayers(players);
+                    return room;
+                }
+            }
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            logger.error("Lỗi khi lấy room data: {}", e.getMessage(), e);
+            throw e;
+        }
+        
+        throw new SQLException("Room không tồn tại");
+    }
+    
+    /**
+     * Lấy danh sách players trong room
+     */
+    @Override
+    public List<RoomPlayerData> getRoomPlayers(int roomId) throws SQLException {
+        String sql = "SELECT rp.user_id, rp.position, u.username " +
+                     "FROM room_players rp " +
+                     "JOIN users u ON rp.user_id = u.user_id " +
+                     "WHERE rp.room_id = ? " +
+                     "ORDER BY rp.position";
+        
+        List<RoomPlayerData> players = new ArrayList<>();
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, roomId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                RoomPlayerData player = new RoomPlayerData();
+                player.setUserId(rs.getInt("user_id"));
+                player.setUsername(rs.getString("username"));
+                player.setPosition(rs.getInt("position"));
+                players.add(player);
+            }
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            logger.error("Lỗi khi lấy room players: {}", e.getMessage(), e);
+            throw e;
+        }
+        
+        return players;
+    }
+    
+    /**
+     * Lấy danh sách rooms đang chờ (WAITING). Username của host lấy bằng JOIN thay vì một query
+     * profile cho mỗi room.
+     */
+    @Override
+    public List<RoomData> getWaitingRooms(String gameType, int limit) throws SQLException {
+        String sql = "SELECT r.id, r.room_name, r.game_type, r.host_user_id, r.max_players, r.current_players, " +
+                     "r.status, r.created_at, u.username " +
+                     "FROM game_rooms r " +
+                     "LEFT JOIN users u ON u.user_id = r.host_user_id " +
+                     "WHERE r.status = 'WAITING' " +
+                     (gameType != null ? "AND r.game_type = ? " : "") +
+                     "AND r.current_players < r.max_players " +
+                     "ORDER BY r.created_at DESC " +
+                     "LIMIT ?";
+        
+        List<RoomData> rooms = new ArrayList<>();
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            int paramIndex = 1;
+            if (gameType != null) {
+                pstmt.setString(paramIndex++, gameType);
+            }
+            pstmt.setInt(paramIndex, limit);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    RoomData room = toRoom(rs);
+                    String host = rs.getString("username");
+                    room.setHostUsername(host != null ? host : "Unknown");
+                    rooms.add(room);
+                }
+            }
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            logger.error("Lỗi khi lấy waiting rooms: {}", e.getMessage(), e);
+            throw e;
+        }
+        
+        return rooms;
+    }
+
+    /**
+     * Dựng RoomData (chưa có players) từ các cột của {@link #ROOM_COLUMNS}
+     */
+    private static RoomData toRoom(ResultSet rs) throws SQLException {
+        RoomData room = new RoomData();
+        room.setRoomId(rs.getInt("id"));
+        room.setRoomName(rs.getString("room_name"));
+        room.setGameType(rs.getString("game_type"));
+        room.setHostUserId(rs.getInt("host_user_id"));
+        room.setMaxPlayers(rs.getInt("max_players"));
+        room.setCurrentPlayers(rs.getInt("current_players"));
+        room.setStatus(rs.getString("status"));
+        
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            room.setCreatedAt(LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()));
+        }
+        return room;
+    }
+    
+    /**
+     * Cập nhật host của room
+     */
+    @Override
+    public void updateHost(int roomId, int newHostId) throws SQLException {
+        String sql = "UPDATE game_rooms SET host_user_id = ? WHERE id = ?";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, newHostId);
+            pstmt.setInt(2, roomId);
+            pstmt.executeUpdate();
+            dbManager.getConnection().commit();
+            logger.info("Đã cập nhật host của room {} thành user {}", roomId, newHostId);
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            logger.error("Lỗi khi cập nhật host: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Cập nhật status của room
+     */
+    @Override
+    public void updateRoomStatus(int roomId, String status) throws SQLException {
+        // started_at được đặt trong cùng câu UPDATE khi chuyển sang PLAYING
+        String sql = "UPDATE game_rooms SET status = ?, " +
+                     "started_at = CASE WHEN ? = 'PLAYING' THEN CURRENT_TIMESTAMP ELSE started_at END " +
+                     "WHERE id = ?";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, status);
+            pstmt.setString(2, status);
+            pstmt.setInt(3, roomId);
+            pstmt.executeUpdate();
+            
+            dbManager.getConnection().commit();
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            throw e;
+        }
+    }
+    
+    /**
+     * Xóa room (khi empty hoặc finished)
+     */
+    @Override
+    public void deleteRoom(int roomId) throws SQLException {
+        // Xóa room_players và room trong một câu (CTE)
+        String sql = "WITH p AS (DELETE FROM room_players WHERE room_id = ?) " +
+                     "DELETE FROM game_rooms WHERE id = ?";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, roomId);
+            pstmt.setInt(2, roomId);
+            pstmt.executeUpdate();
+            dbManager.getConnection().commit();
+            logger.info("Đã xóa room: {}", roomId);
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.mygame.server.database;
+
+import com.mygame.server.storage.StorageSession;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Session JDBC: một connection riêng (autocommit tắt) do {@link DatabaseManager#openConnection()} mở.
+ */
+public final class JdbcSession implements StorageSession {
+    private final Connection connection;
+
+    JdbcSession(Connection connection) {
+        this.connection = connection;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Connection của session; DAO JDBC chỉ nhận session do {@link JdbcStorage} tạo.
+     */
+    static Connection connectionOf(StorageSession session) {
+        if (!(session instanceof JdbcSession)) {
+            throw new IllegalArgumentException("Session không thuộc JDBC storage: " + session);
+        }
+        return ((JdbcSession) session).connection;
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        connection.commit();
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return connection.isClosed();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        connection.close();
+    }
+}
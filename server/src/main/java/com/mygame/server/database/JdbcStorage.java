@@ -0,0 +1,115 @@
+package com.mygame.server.database;
+
+import com.mygame.server.storage.Storage;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.wallet.JdbcWalletStore;
+import com.mygame.server.wallet.WalletStore;
+
+import java.sql.SQLException;
+
+/**
+ * Storage trên PostgreSQL: các DAO JDBC dùng connection chung của {@link DatabaseManager},
+ * session là connection riêng.
+ */
+public class JdbcStorage implements Storage {
+    private final DatabaseManager dbManager;
+    private final UserDAO userDAO;
+    private final RoomDAO roomDAO;
+    private final QuestDAO questDAO;
+    private final MatchHistoryDAO matchHistoryDAO;
+    private final LeaderboardDAO leaderboardDAO;
+    private final DailyRewardDAO dailyRewardDAO;
+
+    public JdbcStorage(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        this.userDAO = new JdbcUserDAO(dbManager);
+        this.roomDAO = new JdbcRoomDAO(dbManager);
+        this.questDAO = new JdbcQuestDAO(dbManager);
+        this.matchHistoryDAO = new JdbcMatchHistoryDAO(dbManager);
+        this.leaderboardDAO = new JdbcLeaderboardDAO(dbManager);
+        this.dailyRewardDAO = new JdbcDailyRewardDAO(dbManager);
+    }
+
+    @Override
+    public String name() {
+        return "postgres";
+    }
+
+    @Override
+    public void open() throws SQLException {
+        dbManager.connect();
+        dbManager.initDatabase();
+    }
+
+    @Override
+    public StorageSession openSession() throws SQLException {
+        return new JdbcSession(dbManager.openConnection());
+    }
+
+    public DatabaseManager getDatabaseManager() {
+        return dbManager;
+    }
+
+    @Override
+    public UserDAO users() {
+        return userDAO;
+    }
+
+    @Override
+    public RoomDAO rooms() {
+        return roomDAO;
+    }
+
+    @Override
+    public QuestDAO quests() {
+        return questDAO;
+    }
+
+    @Override
+    public MatchHistoryDAO matchHistory() {
+        return matchHistoryDAO;
+    }
+
+    @Override
+    public LeaderboardDAO leaderboard() {
+        return leaderboardDAO;
+    }
+
+    @Override
+    public DailyRewardDAO dailyRewards() {
+        return dailyRewardDAO;
+    }
+
+    @Override
+    public WalletStore walletStore(String walletId) {
+        return new JdbcWalletStore(dbManager, walletId);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return dbManager.isConnected();
+    }
+
+    /**
+     * Mỗi thread I/O có connection riêng (xem {@link #onIoThreadStart()}), số thread lấy từ
+     * {@code db.ioConnections}.
+     */
+    @Override
+    public int ioParallelism() {
+        return Integer.getInteger("db.ioConnections", 4);
+    }
+
+    /**
+     * DAO trên thread I/O dùng connection riêng của thread, không dùng connection chung (không
+     * thread-safe) mà thread nhận packet đang dùng.
+     */
+    @Override
+    public void onIoThreadStart() {
+        dbManager.bindThreadConnection();
+    }
+
+    @Override
+    public void close() {
+        dbManager.close();
+    }
+}
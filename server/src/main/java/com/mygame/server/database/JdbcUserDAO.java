@@ -0,0 +1,274 @@
+package com.mygame.server.database;
+
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.stats.PlayerCounterService;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.wallet.WalletService;
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Data Access Object cho bảng users
+ */
+public class JdbcUserDAO implements UserDAO {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcUserDAO.class);
+    // Các cột của UserProfile, dùng chung cho SELECT và RETURNING
+    private static final String PROFILE_COLUMNS = "user_id, username, credits, total_wins, total_losses, " +
+                                                  "hands_played, biggest_pot, created_at, last_login";
+    private static final int PROFILE_CACHE_SIZE = Integer.getInteger("db.profileCacheSize", 10_000);
+    private final DatabaseManager dbManager;
+    private final DatabaseHealthMonitor health = DatabaseHealthMonitor.getInstance();
+    private final LatencyHistogram registerTime;
+    private final LatencyHistogram loginTime;
+    private final LongAdder cacheHits;
+    // Profile đọc gần nhất của mỗi user (LRU), trả về thay database khi circuit breaker mở
+    private final Map<Integer, UserProfile> profileCache = Collections.synchronizedMap(
+            new LinkedHashMap<Integer, UserProfile>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, UserProfile> eldest) {
+                    return size() > PROFILE_CACHE_SIZE;
+                }
+            });
+    
+    public JdbcUserDAO(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.registerTime = metrics.histogram("db.user.register");
+        this.loginTime = metrics.histogram("db.user.login");
+        this.cacheHits = metrics.counter("db.user.profile_cache_hits");
+    }
+    
+    /**
+     * Đăng ký user mới. INSERT ... ON CONFLICT DO NOTHING RETURNING: kiểm tra trùng, tạo user và
+     * đọc profile trong một round trip (không còn race giữa bước kiểm tra và INSERT).
+     */
+    @Override
+    public UserProfile register(String username, String password) throws SQLException {
+        // Hash password
+        String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt());
+        long start = System.nanoTime();
+        
+        String sql = "INSERT INTO users (username, password_hash, credits, created_at) " +
+                     "VALUES (?, ?, 50000, CURRENT_TIMESTAMP) " +
+                     "ON CONFLICT (username) DO NOTHING RETURNING " + PROFILE_COLUMNS;
+        
+        UserProfile profile = null;
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, username);
+            pstmt.setString(2, passwordHash);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    profile = toProfile(rs);
+                }
+            }
+            dbManager.getConnection().commit();
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            logger.error("Lỗi khi đăng ký user: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            registerTime.recordNanos(System.nanoTime() - start);
+        }
+        
+        // Không có dòng RETURNING: username đã tồn tại
+        if (profile == null) {
+            throw new SQLException("Account already exists");
+        }
+        logger.info("Đã đăng ký user mới: {} (ID: {})", username, profile.getId());
+        return profile;
+    }
+    
+    /**
+     * Đăng nhập user. Profile được đọc cùng password hash; sau khi verify chỉ còn một UPDATE
+     * last_login ... RETURNING (trước đây: SELECT, UPDATE, rồi SELECT profile lần nữa).
+     */
+    @Override
+    public UserProfile login(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        String sql = "SELECT password_hash, " + PROFILE_COLUMNS + " FROM users WHERE username = ?";
+        String updateSql = "UPDATE users SET last_login = CURRENT_TIMESTAMP WHERE user_id = ? RETURNING last_login";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, username);
+            UserProfile profile;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    logger.warn("User not found: {}", username);
+                    throw new SQLException("Incorrect username or password");
+                }
+                // Verify password (không tính vào thời gian database)
+                long verifyStart = System.nanoTime();
+                boolean valid = BCrypt.checkpw(password, rs.getString("password_hash"));
+                start += System.nanoTime() - verifyStart;
+                if (!valid) {
+                    logger.warn("Incorrect password for user: {}", username);
+                    throw new SQLException("Incorrect username or password");
+                }
+                profile = toProfile(rs);
+            }
+            
+            // Update last_login
+            try (PreparedStatement update = dbManager.getConnection().prepareStatement(updateSql)) {
+                update.setInt(1, profile.getId());
+                try (ResultSet rs = update.executeQuery()) {
+                    if (rs.next()) {
+                        profile.setLastLogin(toLocal(rs.getTimestamp(1)));
+                    }
+                }
+            }
+            
+            dbManager.getConnection().commit();
+            logger.info("User đăng nhập thành công: {}", username);
+            return profile;
+        } catch (SQLException e) {
+            dbManager.getConnection().rollback();
+            throw e;
+        } finally {
+            loginTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Lấy thông tin user profile. Khi circuit breaker mở, trả về profile đã đọc trước đó (credits
+     * lấy từ wallet, bộ đếm có thể cũ); user chưa có trong cache thì lỗi như database.
+     */
+    @Override
+    public UserProfile getUserProfile(int userId) throws SQLException {
+        if (!health.isAvailable()) {
+            UserProfile cached = cachedProfile(userId);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+        }
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM users WHERE user_id = ?";
+        
+        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return toProfile(rs);
+                }
+            }
+        } catch (SQLException e) {
+            try {
+                dbManager.getConnection().rollback();
+            } catch (SQLException rollbackEx) {
+                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
+            }
+            throw e;
+        }
+        
+        throw new SQLException("User not found");
+    }
+
+    /**
+     * Dựng profile từ một dòng có đủ {@link #PROFILE_COLUMNS}
+     */
+    private UserProfile toProfile(ResultSet rs) throws SQLException {
+        int userId = rs.getInt("user_id");
+        UserProfile profile = new UserProfile();
+        profile.setId(userId);
+        profile.setUsername(rs.getString("username"));
+        // Wallet giữ số dư mới nhất (database có thể chưa flush kịp)
+        long credits = WalletService.getInstance().getBalanceOrDefault(userId, rs.getLong("credits"));
+        profile.setCredits(credits);
+        // Calculate rank from credits
+        profile.setRank(calculateRank(credits));
+        // Bộ đếm trong database cộng delta chưa flush
+        PlayerCounterService.Delta pending = PlayerCounterService.getInstance().pending(userId);
+        profile.setTotalWins(rs.getInt("total_wins") + pending.getWins());
+        profile.setTotalLosses(rs.getInt("total_losses") + pending.getLosses());
+        profile.setHandsPlayed(rs.getInt("hands_played") + pending.getHands());
+        profile.setBiggestPot(Math.max(rs.getLong("biggest_pot"), pending.getBiggestPot()));
+        profile.setCreatedAt(toLocal(rs.getTimestamp("created_at")));
+        profile.setLastLogin(toLocal(rs.getTimestamp("last_login")));
+        profileCache.put(userId, profile);
+        return profile;
+    }
+
+    /**
+     * Bản sao profile trong cache với số dư hiện tại của wallet, null nếu chưa có.
+     */
+    private UserProfile cachedProfile(int userId) {
+        UserProfile cached = profileCache.get(userId);
+        if (cached == null) {
+            return null;
+        }
+        UserProfile copy = new UserProfile();
+        copy.setId(userId);
+        copy.setUsername(cached.getUsername());
+        long credits = WalletService.getInstance().getBalanceOrDefault(userId, cached.getCredits());
+        copy.setCredits(credits);
+        copy.setRank(calculateRank(credits));
+        copy.setTotalWins(cached.getTotalWins());
+        copy.setTotalLosses(cached.getTotalLosses());
+        copy.setHandsPlayed(cached.getHandsPlayed());
+        copy.setBiggestPot(cached.getBiggestPot());
+        copy.setCreatedAt(cached.getCreatedAt());
+        copy.setLastLogin(cached.getLastLogin());
+        return copy;
+    }
+
+    private static LocalDateTime toLocal(Timestamp timestamp) {
+        return timestamp != null ? LocalDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault()) : null;
+    }
+    
+    /**
+     * Cộng delta bộ đếm của nhiều user trong một câu lệnh (caller tự commit).
+     */
+    @Override
+    public int addCounters(StorageSession session, Integer[] userIds, Integer[] wins, Integer[] losses,
+                           Integer[] hands, Long[] biggestPots) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "UPDATE users u SET total_wins = u.total_wins + t.wins, " +
+                     "total_losses = u.total_losses + t.losses, " +
+                     "hands_played = u.hands_played + t.hands, " +
+                     "biggest_pot = GREATEST(u.biggest_pot, t.pot) " +
+                     "FROM unnest(?::int[], ?::int[], ?::int[], ?::int[], ?::bigint[]) " +
+                     "AS t(user_id, wins, losses, hands, pot) " +
+                     "WHERE u.user_id = t.user_id";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("integer", userIds));
+            pstmt.setArray(2, conn.createArrayOf("integer", wins));
+            pstmt.setArray(3, conn.createArrayOf("integer", losses));
+            pstmt.setArray(4, conn.createArrayOf("integer", hands));
+            pstmt.setArray(5, conn.createArrayOf("bigint", biggestPots));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Tính bộ đếm từ match_history cho user chưa từng được đếm (hands_played = 0), ví dụ user có
+     * từ trước khi có bộ đếm. User đã được flush ít nhất một lần không bị đụng tới, nên chạy lại
+     * mỗi lần khởi động cũng không đếm trùng. match_history không có pot nên biggest_pot giữ nguyên.
+     */
+    @Override
+    public int backfillCounters(StorageSession session) throws SQLException {
+        Connection conn = JdbcSession.connectionOf(session);
+        String sql = "UPDATE users u SET total_wins = m.wins, total_losses = m.losses, hands_played = m.hands " +
+                     "FROM (SELECT user_id, COUNT(*) AS hands, " +
+                     "COUNT(*) FILTER (WHERE result = 'WIN') AS wins, " +
+                     "COUNT(*) FILTER (WHERE result = 'LOSE') AS losses " +
+                     "FROM match_history " +
+                     "WHERE user_id IN (SELECT user_id FROM users WHERE hands_played = 0) " +
+                     "GROUP BY user_id) m " +
+                     "WHERE u.user_id = m.user_id AND u.hands_played = 0";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            return pstmt.executeUpdate();
+        }
+    }
+}
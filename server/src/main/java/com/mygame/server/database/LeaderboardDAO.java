@@ -1,93 +1,31 @@
 package com.mygame.server.database;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.sql.*;
-import java.util.ArrayList;
+import java.sql.SQLException;
 import java.util.List;
 
 /**
  * Data Access Object cho leaderboard
  */
-public class LeaderboardDAO {
-    private static final Logger logger = LoggerFactory.getLogger(LeaderboardDAO.class);
-    private final DatabaseManager dbManager;
-    
-    public LeaderboardDAO(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
-    }
-    
+public interface LeaderboardDAO {
     /**
      * Lấy top players theo credits
      */
-    public List<LeaderboardEntry> getTopPlayers(int limit) throws SQLException {
-        String sql = "SELECT user_id, username, credits, current_rank, total_wins, total_losses " +
-                     "FROM users " +
-                     "ORDER BY credits DESC " +
-                     "LIMIT ?";
-        
-        List<LeaderboardEntry> entries = new ArrayList<>();
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, limit);
-            ResultSet rs = pstmt.executeQuery();
-            
-            int rank = 1;
-            while (rs.next()) {
-                LeaderboardEntry entry = new LeaderboardEntry();
-                entry.setRank(rank++);
-                entry.setUserId(rs.getInt("user_id"));
-                entry.setUsername(rs.getString("username"));
-                entry.setCredits(rs.getLong("credits"));
-                entry.setRankEnum(rs.getString("current_rank"));
-                entry.setTotalWins(rs.getInt("total_wins"));
-                entry.setTotalLosses(rs.getInt("total_losses"));
-                
-                entries.add(entry);
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi lấy leaderboard: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        logger.debug("Đã lấy {} players từ leaderboard", entries.size());
-        return entries;
+    default List<LeaderboardEntry> getTopPlayers(int limit) throws SQLException {
+        return getPage(0, 0, 0, limit);
     }
-    
+
     /**
-     * Lấy rank của player trong leaderboard (vị trí xếp hạng)
+     * Lấy một trang leaderboard theo keyset (credits, user_id) giảm dần.
+     * Trang đầu: cursorUserId = 0. rankOffset là số entry đã hiển thị ở các trang trước.
      */
-    public int getPlayerRank(int userId) throws SQLException {
-        String sql = "SELECT COUNT(*) + 1 as rank " +
-                     "FROM users " +
-                     "WHERE credits > (SELECT credits FROM users WHERE user_id = ?)";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt("rank");
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi lấy player rank: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        return -1; // Không tìm thấy
-    }
-    
+    List<LeaderboardEntry> getPage(long cursorCredits, int cursorUserId, int rankOffset, int limit)
+            throws SQLException;
+
+    /**
+     * Lấy rank của player trong leaderboard (vị trí xếp hạng), -1 nếu không tìm thấy
+     */
+    int getPlayerRank(int userId) throws SQLException;
+
     /**
      * Inner class để chứa leaderboard entry data
      */
@@ -123,4 +61,3 @@ public class LeaderboardDAO {
         public void setTotalLosses(int totalLosses) { this.totalLosses = totalLosses; }
     }
 }
-
@@ -1,104 +1,47 @@
 package com.mygame.server.database;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mygame.server.history.MatchRecord;
+import com.mygame.server.storage.StorageSession;
 
-import java.sql.*;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * Data Access Object cho bảng match_history
+ * Data Access Object cho lịch sử trận đấu
  */
-public class MatchHistoryDAO {
-    private static final Logger logger = LoggerFactory.getLogger(MatchHistoryDAO.class);
-    private final DatabaseManager dbManager;
-
-    public MatchHistoryDAO(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
-    }
-
+public interface MatchHistoryDAO {
     /**
      * Lưu lịch sử trận đấu
      */
-    public void saveMatch(int userId, String gameType, String matchMode,
-            String result, long creditsChange, int opponentCount,
-            int durationSeconds) throws SQLException {
-        String sql = "INSERT INTO match_history " +
-                "(user_id, game_type, match_mode, result, credits_change, opponent_count, duration_seconds, timestamp) "
-                +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
-
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            pstmt.setString(2, gameType);
-            pstmt.setString(3, matchMode);
-            pstmt.setString(4, result);
-            pstmt.setLong(5, creditsChange);
-            pstmt.setInt(6, opponentCount);
-            pstmt.setInt(7, durationSeconds);
-
-            pstmt.executeUpdate();
-            dbManager.getConnection().commit();
-            logger.info("Đã lưu lịch sử trận đấu cho user {}: {} - {}", userId, gameType, result);
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            logger.error("Lỗi khi lưu lịch sử: {}", e.getMessage(), e);
-            throw e;
-        }
-    }
+    void saveMatch(int userId, String gameType, String matchMode, String result, long creditsChange,
+                   int opponentCount, int durationSeconds) throws SQLException;
+
+    /**
+     * Ghi nhiều dòng lịch sử trong session của caller (background writer). Caller tự commit/rollback.
+     */
+    void saveMatches(StorageSession session, List<MatchRecord> records) throws SQLException;
 
     /**
      * Lấy lịch sử trận đấu gần nhất của user
      */
-    public List<MatchHistoryEntry> getRecentMatches(int userId, int limit) throws SQLException {
-        String sql = "SELECT match_id, game_type, match_mode, result, credits_change, opponent_count, " +
-                "duration_seconds, timestamp " +
-                "FROM match_history " +
-                "WHERE user_id = ? " +
-                "ORDER BY timestamp DESC " +
-                "LIMIT ?";
-
-        List<MatchHistoryEntry> matches = new ArrayList<>();
-
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            pstmt.setInt(2, limit);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                MatchHistoryEntry entry = new MatchHistoryEntry();
-                entry.setId(rs.getInt("match_id"));
-                entry.setGameType(rs.getString("game_type"));
-                entry.setMatchMode(rs.getString("match_mode"));
-                entry.setResult(rs.getString("result"));
-                entry.setCreditsChange(rs.getLong("credits_change"));
-                entry.setOpponentCount(rs.getInt("opponent_count"));
-                entry.setDurationSeconds(rs.getInt("duration_seconds"));
-
-                Timestamp timestamp = rs.getTimestamp("timestamp");
-                if (timestamp != null) {
-                    entry.setTimestamp(LocalDateTime.ofInstant(
-                            timestamp.toInstant(), ZoneId.systemDefault()));
-                }
-
-                matches.add(entry);
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi lấy match history: {}", e.getMessage(), e);
-            throw e;
-        }
-
-        return matches;
+    default List<MatchHistoryEntry> getRecentMatches(int userId, int limit) throws SQLException {
+        return getMatchesPage(userId, 0, 0, limit);
     }
 
+    /**
+     * Lấy một trang lịch sử theo keyset (timestamp, match_id) giảm dần.
+     * Trang đầu: cursorMatchId = 0. Trang sau: cursor là dòng cuối của trang trước.
+     */
+    List<MatchHistoryEntry> getMatchesPage(int userId, long cursorTimestampMicros, int cursorMatchId,
+                                           int limit) throws SQLException;
+
+    /**
+     * Duyệt toàn bộ lịch sử theo match_id tăng dần trong session của caller.
+     */
+    void scanMatches(StorageSession session, Consumer<MatchRecord> consumer) throws SQLException;
+
     /**
      * Inner class để chứa match history data
      */
@@ -111,6 +54,7 @@ public class MatchHistoryDAO {
         private int opponentCount;
         private int durationSeconds;
         private LocalDateTime timestamp;
+        private long timestampMicros;
 
         // Getters and Setters
         public int getId() {
@@ -176,5 +120,13 @@ public class MatchHistoryDAO {
         public void setTimestamp(LocalDateTime timestamp) {
             this.timestamp = timestamp;
         }
+
+        public long getTimestampMicros() {
+            return timestampMicros;
+        }
+
+        public void setTimestampMicros(long timestampMicros) {
+            this.timestampMicros = timestampMicros;
+        }
     }
 }
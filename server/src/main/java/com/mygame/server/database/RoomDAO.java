@@ -1,340 +1,58 @@
 package com.mygame.server.database;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.sql.*;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Data Access Object cho bảng game_rooms và room_players
+ * Data Access Object cho game rooms và players trong room
  */
-public class RoomDAO {
-    private static final Logger logger = LoggerFactory.getLogger(RoomDAO.class);
-    private final DatabaseManager dbManager;
-    
-    public RoomDAO(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
-    }
-    
+public interface RoomDAO {
     /**
-     * Tạo room mới
+     * Tạo room mới (host được thêm vào room)
      */
-    public RoomData createRoom(String roomName, String gameType, int hostUserId, int maxPlayers) throws SQLException {
-        String sql = "INSERT INTO game_rooms (room_name, game_type, host_user_id, max_players, current_players, status) " +
-                     "VALUES (?, ?, ?, ?, 1, 'WAITING') RETURNING id";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, roomName);
-            pstmt.setString(2, gameType);
-            pstmt.setInt(3, hostUserId);
-            pstmt.setInt(4, maxPlayers);
-            
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                int roomId = rs.getInt("id");
-                
-                // Thêm host vào room_players
-                addPlayerToRoom(roomId, hostUserId, 0);
-                
-                dbManager.getConnection().commit();
-                logger.info("Đã tạo room: {} (ID: {})", roomName, roomId);
-                return getRoomData(roomId);
-            }
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            logger.error("Lỗi khi tạo room: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        throw new SQLException("Không thể tạo room");
-    }
-    
+    RoomData createRoom(String roomName, String gameType, int hostUserId, int maxPlayers) throws SQLException;
+
     /**
      * Thêm player vào room
      */
-    public void addPlayerToRoom(int roomId, int userId, int position) throws SQLException {
-        String sql = "INSERT INTO room_players (room_id, user_id, position) VALUES (?, ?, ?) " +
-                     "ON CONFLICT (room_id, user_id) DO NOTHING";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, roomId);
-            pstmt.setInt(2, userId);
-            pstmt.setInt(3, position);
-            pstmt.executeUpdate();
-            
-            // Update current_players count
-            updatePlayerCount(roomId);
-            
-            dbManager.getConnection().commit();
-            logger.debug("Đã thêm player {} vào room {}", userId, roomId);
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            throw e;
-        }
-    }
-    
+    void addPlayerToRoom(int roomId, int userId, int position) throws SQLException;
+
     /**
      * Xóa player khỏi room
      */
-    public void removePlayerFromRoom(int roomId, int userId) throws SQLException {
-        String sql = "DELETE FROM room_players WHERE room_id = ? AND user_id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, roomId);
-            pstmt.setInt(2, userId);
-            pstmt.executeUpdate();
-            
-            // Update current_players count
-            updatePlayerCount(roomId);
-            
-            dbManager.getConnection().commit();
-            logger.debug("Đã xóa player {} khỏi room {}", userId, roomId);
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            throw e;
-        }
-    }
-    
-    /**
-     * Cập nhật số lượng players trong room
-     */
-    private void updatePlayerCount(int roomId) throws SQLException {
-        String sql = "UPDATE game_rooms SET current_players = " +
-                     "(SELECT COUNT(*) FROM room_players WHERE room_id = ?) " +
-                     "WHERE id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, roomId);
-            pstmt.setInt(2, roomId);
-            pstmt.executeUpdate();
-        }
-    }
-    
+    void removePlayerFromRoom(int roomId, int userId) throws SQLException;
+
     /**
      * Lấy thông tin room
      */
-    public RoomData getRoomData(int roomId) throws SQLException {
-        String sql = "SELECT id, room_name, game_type, host_user_id, max_players, current_players, status, created_at " +
-                     "FROM game_rooms WHERE id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, roomId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                RoomData room = new RoomData();
-                room.setRoomId(rs.getInt("id"));
-                room.setRoomName(rs.getString("room_name"));
-                room.setGameType(rs.getString("game_type"));
-                room.setHostUserId(rs.getInt("host_user_id"));
-                room.setMaxPlayers(rs.getInt("max_players"));
-                room.setCurrentPlayers(rs.getInt("current_players"));
-                room.setStatus(rs.getString("status"));
-                
-                Timestamp createdAt = rs.getTimestamp("created_at");
-                if (createdAt != null) {
-                    room.setCreatedAt(LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()));
-                }
-                
-                // Lấy danh sách players
-                room.setPlayers(getRoomPlayers(roomId));
-                
-                return room;
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi lấy room data: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        throw new SQLException("Room không tồn tại");
-    }
-    
+    RoomData getRoomData(int roomId) throws SQLException;
+
     /**
-     * Lấy danh sách players trong room
+     * Lấy danh sách players trong room theo position
      */
-    public List<RoomPlayerData> getRoomPlayers(int roomId) throws SQLException {
-        String sql = "SELECT rp.user_id, rp.position, u.username " +
-                     "FROM room_players rp " +
-                     "JOIN users u ON rp.user_id = u.user_id " +
-                     "WHERE rp.room_id = ? " +
-                     "ORDER BY rp.position";
-        
-        List<RoomPlayerData> players = new ArrayList<>();
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, roomId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                RoomPlayerData player = new RoomPlayerData();
-                player.setUserId(rs.getInt("user_id"));
-                player.setUsername(rs.getString("username"));
-                player.setPosition(rs.getInt("position"));
-                players.add(player);
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi lấy room players: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        return players;
-    }
-    
+    List<RoomPlayerData> getRoomPlayers(int roomId) throws SQLException;
+
     /**
-     * Lấy danh sách rooms đang chờ (WAITING)
+     * Lấy danh sách rooms đang chờ (WAITING), mới nhất trước
      */
-    public List<RoomData> getWaitingRooms(String gameType, int limit) throws SQLException {
-        String sql = "SELECT id, room_name, game_type, host_user_id, max_players, current_players, status, created_at " +
-                     "FROM game_rooms " +
-                     "WHERE status = 'WAITING' " +
-                     (gameType != null ? "AND game_type = ? " : "") +
-                     "AND current_players < max_players " +
-                     "ORDER BY created_at DESC " +
-                     "LIMIT ?";
-        
-        List<RoomData> rooms = new ArrayList<>();
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            int paramIndex = 1;
-            if (gameType != null) {
-                pstmt.setString(paramIndex++, gameType);
-            }
-            pstmt.setInt(paramIndex, limit);
-            
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                RoomData room = new RoomData();
-                room.setRoomId(rs.getInt("id"));
-                room.setRoomName(rs.getString("room_name"));
-                room.setGameType(rs.getString("game_type"));
-                room.setHostUserId(rs.getInt("host_user_id"));
-                room.setMaxPlayers(rs.getInt("max_players"));
-                room.setCurrentPlayers(rs.getInt("current_players"));
-                room.setStatus(rs.getString("status"));
-                
-                Timestamp createdAt = rs.getTimestamp("created_at");
-                if (createdAt != null) {
-                    room.setCreatedAt(LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()));
-                }
-                
-                // Lấy host username
-                UserDAO userDAO = new UserDAO(dbManager);
-                try {
-                    UserDAO.UserProfile host = userDAO.getUserProfile(room.getHostUserId());
-                    room.setHostUsername(host.getUsername());
-                } catch (SQLException e) {
-                    try {
-                        dbManager.getConnection().rollback();
-                    } catch (SQLException rollbackEx) {
-                        logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-                    }
-                    room.setHostUsername("Unknown");
-                }
-                
-                rooms.add(room);
-            }
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi lấy waiting rooms: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        return rooms;
-    }
-    
+    List<RoomData> getWaitingRooms(String gameType, int limit) throws SQLException;
+
     /**
      * Cập nhật host của room
      */
-    public void updateHost(int roomId, int newHostId) throws SQLException {
-        String sql = "UPDATE game_rooms SET host_user_id = ? WHERE id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, newHostId);
-            pstmt.setInt(2, roomId);
-            pstmt.executeUpdate();
-            dbManager.getConnection().commit();
-            logger.info("Đã cập nhật host của room {} thành user {}", roomId, newHostId);
-        } catch (SQLException e) {
-            try {
-                dbManager.getConnection().rollback();
-            } catch (SQLException rollbackEx) {
-                logger.error("Lỗi rollback: {}", rollbackEx.getMessage());
-            }
-            logger.error("Lỗi khi cập nhật host: {}", e.getMessage(), e);
-            throw e;
-        }
-    }
-    
+    void updateHost(int roomId, int newHostId) throws SQLException;
+
     /**
      * Cập nhật status của room
      */
-    public void updateRoomStatus(int roomId, String status) throws SQLException {
-        String sql = "UPDATE game_rooms SET status = ? WHERE id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, status);
-            pstmt.setInt(2, roomId);
-            pstmt.executeUpdate();
-            
-            if ("PLAYING".equals(status)) {
-                // Update started_at
-                String updateStarted = "UPDATE game_rooms SET started_at = CURRENT_TIMESTAMP WHERE id = ?";
-                try (PreparedStatement pstmt2 = dbManager.getConnection().prepareStatement(updateStarted)) {
-                    pstmt2.setInt(1, roomId);
-                    pstmt2.executeUpdate();
-                }
-            }
-            
-            dbManager.getConnection().commit();
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            throw e;
-        }
-    }
-    
+    void updateRoomStatus(int roomId, String status) throws SQLException;
+
     /**
      * Xóa room (khi empty hoặc finished)
      */
-    public void deleteRoom(int roomId) throws SQLException {
-        // Xóa room_players trước (CASCADE sẽ tự động xóa)
-        String deletePlayers = "DELETE FROM room_players WHERE room_id = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(deletePlayers)) {
-            pstmt.setInt(1, roomId);
-            pstmt.executeUpdate();
-        }
-        
-        // Xóa room
-        String deleteRoom = "DELETE FROM game_rooms WHERE id = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(deleteRoom)) {
-            pstmt.setInt(1, roomId);
-            pstmt.executeUpdate();
-            dbManager.getConnection().commit();
-            logger.info("Đã xóa room: {}", roomId);
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            throw e;
-        }
-    }
-    
+    void deleteRoom(int roomId) throws SQLException;
+
     /**
      * Inner class chứa room data
      */
@@ -381,7 +99,7 @@ public class RoomDAO {
         public List<RoomPlayerData> getPlayers() { return players; }
         public void setPlayers(List<RoomPlayerData> players) { this.players = players; }
     }
-    
+
     /**
      * Inner class chứa room player data
      */
@@ -401,4 +119,3 @@ public class RoomDAO {
         public void setPosition(int position) { this.position = position; }
     }
 }
-
@@ -1,162 +1,44 @@
 package com.mygame.server.database;
 
-import org.mindrot.jbcrypt.BCrypt;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mygame.server.storage.StorageSession;
 
-import java.sql.*;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 
 /**
- * Data Access Object cho bảng users
+ * Data Access Object cho users (tài khoản, profile, bộ đếm thắng/thua)
  */
-public class UserDAO {
-    private static final Logger logger = LoggerFactory.getLogger(UserDAO.class);
-    private final DatabaseManager dbManager;
-    
-    public UserDAO(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
-    }
-    
+public interface UserDAO {
     /**
      * Đăng ký user mới
      */
-    public UserProfile register(String username, String password) throws SQLException {
-        // Kiểm tra username đã tồn tại chưa
-        if (usernameExists(username)) {
-            throw new SQLException("Account already exists");
-        }
-        
-        // Hash password
-        String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt());
-        
-        String sql = "INSERT INTO users (username, password_hash, credits, created_at) " +
-                     "VALUES (?, ?, 50000, CURRENT_TIMESTAMP) RETURNING user_id";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, username);
-            pstmt.setString(2, passwordHash);
-            
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                int userId = rs.getInt("user_id");
-                dbManager.getConnection().commit();
-                logger.info("Đã đăng ký user mới: {} (ID: {})", username, userId);
-                return getUserProfile(userId);
-            }
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            logger.error("Lỗi khi đăng ký user: {}", e.getMessage(), e);
-            throw e;
-        }
-        
-        throw new SQLException("Không thể tạo user");
-    }
-    
+    UserProfile register(String username, String password) throws SQLException;
+
     /**
-     * Đăng nhập user
+     * Đăng nhập user (cập nhật last_login)
      */
-    public UserProfile login(String username, String password) throws SQLException {
-        String sql = "SELECT user_id, username, password_hash, credits " +
-                     "FROM users WHERE username = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                String storedHash = rs.getString("password_hash");
-                
-                // Verify password
-                if (BCrypt.checkpw(password, storedHash)) {
-                    int userId = rs.getInt("user_id");
-                    
-                    // Update last_login
-                    updateLastLogin(userId);
-                    
-                    dbManager.getConnection().commit();
-                    logger.info("User đăng nhập thành công: {}", username);
-                    return getUserProfile(userId);
-                } else {
-                    logger.warn("Incorrect password for user: {}", username);
-                    throw new SQLException("Incorrect username or password");
-                }
-            } else {
-                logger.warn("User not found: {}", username);
-                throw new SQLException("Incorrect username or password");
-            }
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            throw e;
-        }
-    }
-    
+    UserProfile login(String username, String password) throws SQLException;
+
     /**
      * Lấy thông tin user profile
      */
-    public UserProfile getUserProfile(int userId) throws SQLException {
-        String sql = "SELECT user_id, username, credits, created_at, last_login " +
-                     "FROM users WHERE user_id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                UserProfile profile = new UserProfile();
-                profile.setId(rs.getInt("user_id"));
-                profile.setUsername(rs.getString("username"));
-                profile.setCredits(rs.getLong("credits"));
-                // Calculate rank from credits
-                profile.setRank(calculateRank(rs.getLong("credits")));
-                // Set defaults for wins/losses (can be calculated from match_history if needed)
-                profile.setTotalWins(0);
-                profile.setTotalLosses(0);
-                
-                Timestamp createdAt = rs.getTimestamp("created_at");
-                if (createdAt != null) {
-                    profile.setCreatedAt(LocalDateTime.ofInstant(
-                        createdAt.toInstant(), ZoneId.systemDefault()));
-                }
-                
-                Timestamp lastLogin = rs.getTimestamp("last_login");
-                if (lastLogin != null) {
-                    profile.setLastLogin(LocalDateTime.ofInstant(
-                        lastLogin.toInstant(), ZoneId.systemDefault()));
-                }
-                
-                return profile;
-            }
-        }
-        
-        throw new SQLException("User not found");
-    }
-    
+    UserProfile getUserProfile(int userId) throws SQLException;
+
     /**
-     * Cập nhật credits
+     * Cộng delta bộ đếm của nhiều user trong session của caller (caller tự commit).
      */
-    public void updateCredits(int userId, long amount) throws SQLException {
-        String sql = "UPDATE users SET credits = credits + ? WHERE user_id = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setLong(1, amount);
-            pstmt.setInt(2, userId);
-            pstmt.executeUpdate();
-            
-            dbManager.getConnection().commit();
-            logger.debug("Đã cập nhật credits cho user {}: {}", userId, amount);
-        } catch (SQLException e) {
-            dbManager.getConnection().rollback();
-            logger.error("Lỗi khi cập nhật credits: {}", e.getMessage(), e);
-            throw e;
-        }
-    }
-    
+    int addCounters(StorageSession session, Integer[] userIds, Integer[] wins, Integer[] losses,
+                    Integer[] hands, Long[] biggestPots) throws SQLException;
+
+    /**
+     * Tính bộ đếm từ lịch sử trận cho user chưa từng được đếm (hands_played = 0).
+     */
+    int backfillCounters(StorageSession session) throws SQLException;
+
     /**
      * Tính rank dựa trên credits (logic-based, no database column)
      */
-    public String calculateRank(long credits) {
+    default String calculateRank(long credits) {
         if (credits >= 8_000_001) return "MASTER";
         if (credits >= 5_000_001) return "PLATINUM";
         if (credits >= 2_000_001) return "GOLD";
@@ -164,33 +46,7 @@ public class UserDAO {
         if (credits >= 100_001) return "BRONZE";
         return "IRON";
     }
-    
-    /**
-     * Kiểm tra username đã tồn tại chưa
-     */
-    private boolean usernameExists(String username) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-        }
-        return false;
-    }
-    
-    /**
-     * Cập nhật last_login
-     */
-    private void updateLastLogin(int userId) throws SQLException {
-        String sql = "UPDATE users SET last_login = CURRENT_TIMESTAMP WHERE user_id = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, userId);
-            pstmt.executeUpdate();
-        }
-    }
-    
+
     /**
      * Inner class để chứa user profile data
      */
@@ -201,6 +57,8 @@ public class UserDAO {
         private String rank;
         private int totalWins;
         private int totalLosses;
+        private int handsPlayed;
+        private long biggestPot;
         private LocalDateTime createdAt;
         private LocalDateTime lastLogin;
         
@@ -223,6 +81,12 @@ public class UserDAO {
         public int getTotalLosses() { return totalLosses; }
         public void setTotalLosses(int totalLosses) { this.totalLosses = totalLosses; }
         
+        public int getHandsPlayed() { return handsPlayed; }
+        public void setHandsPlayed(int handsPlayed) { this.handsPlayed = handsPlayed; }
+        
+        public long getBiggestPot() { return biggestPot; }
+        public void setBiggestPot(long biggestPot) { this.biggestPot = biggestPot; }
+        
         public LocalDateTime getCreatedAt() { return createdAt; }
         public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
         
@@ -230,4 +94,3 @@ public class UserDAO {
         public void setLastLogin(LocalDateTime lastLogin) { this.lastLogin = lastLogin; }
     }
 }
-
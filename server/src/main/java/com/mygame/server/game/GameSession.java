@@ -1,12 +1,16 @@
 package com.mygame.server.game;
 
+import com.mygame.server.journal.HandJournal;
 import com.mygame.server.room.GameRoom;
+import com.mygame.server.timer.Timeout;
 import com.mygame.shared.model.GameType;
 import com.mygame.shared.network.packets.game.GameStatePacket;
 import com.mygame.shared.network.packets.game.PlayerActionPacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.UUID;
+
 /**
  * Base server-side game session gắn với một {@link GameRoom}.
  *
@@ -21,12 +25,62 @@ public abstract class GameSession {
 
     protected final int roomId;
     protected final GameType gameType;
-    protected final GameRoom room;
+    protected final GameRoom room; // null khi replay
+    protected final GameTable table;
+    private final UUID uuid;
+    protected final String sessionId;
+    // Khoá của session trong hand journal
+    protected final long journalId;
+    private final long startedAtMillis;
+
+    // Tăng mỗi khi lượt đổi; timer hết lượt chỉ có hiệu lực nếu sequence chưa đổi
+    private long turnSequence;
+    // Deadline hiện tại (hết lượt hoặc hết giờ vote), chỉ GameSessionManager dùng trên executor của room
+    private Timeout deadline;
+    private long deadlineSequence = -1;
 
-    protected GameSession(int roomId, GameType gameType, GameRoom room) {
+    protected GameSession(int roomId, GameType gameType, GameRoom room, GameTable table) {
         this.roomId = roomId;
         this.gameType = gameType;
         this.room = room;
+        this.table = table;
+        this.uuid = table.sessionUuid();
+        this.sessionId = uuid.toString();
+        this.journalId = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        this.startedAtMillis = table.sessionStartedAt();
+    }
+
+    /**
+     * Journal hiện tại của bàn (bàn đang khôi phục chỉ ghi journal sau khi đã bắt kịp).
+     */
+    protected HandJournal journal() {
+        return table.journal();
+    }
+
+    /**
+     * Id duy nhất của session, dùng làm idempotency key khi settle credits.
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public UUID getSessionUuid() {
+        return uuid;
+    }
+
+    public long getJournalId() {
+        return journalId;
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    /**
+     * Số hand (Poker) hoặc ván (Tiến Lên) hiện tại trong session, bắt đầu từ 1.
+     */
+    public int getHandNumber() {
+        return 0;
     }
 
     public int getRoomId() {
@@ -41,6 +95,50 @@ public abstract class GameSession {
         return room;
     }
 
+    public long getTurnSequence() {
+        return turnSequence;
+    }
+
+    /**
+     * Gọi khi lượt chuyển sang người khác, ván mới bắt đầu hoặc ván kết thúc.
+     */
+    protected void markTurnChanged() {
+        turnSequence++;
+    }
+
+    /**
+     * userId đang tới lượt, -1 nếu không có lượt nào đang chờ.
+     */
+    public int getCurrentTurnPlayerId() {
+        return -1;
+    }
+
+    /**
+     * Action tự động khi người chơi hết giờ (luôn hợp lệ với state hiện tại),
+     * null nếu game không hỗ trợ.
+     */
+    public PlayerActionPacket buildTimeoutAction(int playerId) {
+        return null;
+    }
+
+    boolean hasDeadlineFor(long sequence) {
+        return deadline != null && deadlineSequence == sequence;
+    }
+
+    void setDeadline(Timeout timeout, long sequence) {
+        cancelDeadline();
+        this.deadline = timeout;
+        this.deadlineSequence = sequence;
+    }
+
+    void cancelDeadline() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+        deadlineSequence = -1;
+    }
+
     /**
      * Xử lý một action đến từ client.
      */
@@ -51,6 +149,14 @@ public abstract class GameSession {
      */
     public abstract GameStatePacket buildGameStatePacket();
 
+    /**
+     * Packet đưa một người chơi vừa quay lại về đúng state hiện tại, khi không gửi bù
+     * được các packet đã lỡ. Mặc định là snapshot {@link #buildGameStatePacket()}.
+     */
+    public Object buildResyncPacket(int playerId) {
+        return buildGameStatePacket();
+    }
+
     /**
      * Cho biết ván đã kết thúc hay chưa.
      */
@@ -66,4 +172,20 @@ public abstract class GameSession {
      * Positive = won, Negative = lost
      */
     public abstract java.util.Map<Integer, Long> getCreditChanges();
+
+    /**
+     * Tổng số credits mỗi người chơi đã đặt trong ván (dùng cho quest BET).
+     * Mặc định rỗng với game không có khái niệm đặt cược.
+     */
+    public java.util.Map<Integer, Long> getAmountsWagered() {
+        return java.util.Collections.emptyMap();
+    }
+
+    /**
+     * Người chơi tự nguyện bỏ tiền vào pot trước flop ở ván vừa xong (VPIP).
+     * Mặc định rỗng với game không có khái niệm này.
+     */
+    public java.util.Set<Integer> getVoluntaryPlayers() {
+        return java.util.Collections.emptySet();
+    }
 }
@@ -1,12 +1,25 @@
 package com.mygame.server.game;
 
-import com.mygame.server.database.DatabaseManager;
-import com.mygame.server.database.MatchHistoryDAO;
-import com.mygame.server.database.UserDAO;
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.history.MatchHistoryWriter;
+import com.mygame.server.history.MatchRecord;
+import com.mygame.server.journal.HandJournal;
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.quest.QuestProgressService;
 import com.mygame.server.room.GameRoom;
 import com.mygame.server.room.GameRoomManager;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.stats.HandStatsStore;
+import com.mygame.server.stats.PlayerCounterService;
+import com.mygame.server.stats.SettledHand;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.timer.Timeout;
+import com.mygame.server.timer.TimingWheel;
+import com.mygame.server.wallet.WalletService;
 import com.mygame.shared.model.GameType;
 import com.mygame.shared.model.MatchMode;
+import com.mygame.shared.network.packets.game.ActionAckPacket;
 import com.mygame.shared.network.packets.game.GameEndPacket;
 import com.mygame.shared.network.packets.game.GameStartPacket;
 import com.mygame.shared.network.packets.game.GameStatePacket;
@@ -19,7 +32,10 @@ import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Quản lý vòng đời các {@link GameSession} gắn với {@link GameRoom}.
@@ -33,28 +49,87 @@ import java.util.concurrent.ConcurrentHashMap;
  * và {@link GameEndPacket} tới toàn bộ room.
  * - Kết thúc ván: cập nhật credits, rank, thống kê win/loss và lưu match
  * history.
+ *
+ * Action, vote và timer của một room đều chạy trên executor tuần tự của room đó.
+ * Mỗi lượt có deadline trên {@link TimingWheel} (system property
+ * {@code game.turnTimeoutSeconds}, mặc định 30): hết giờ thì server tự đánh thay
+ * (Poker: check/fold, Tiến Lên: bỏ lượt hoặc đánh lá nhỏ nhất). Vote chơi lại của Tiến Lên
+ * hết hạn sau {@code game.voteTimeoutSeconds} (mặc định 30) và coi như về lobby.
+ *
+ * Poker là bàn chơi liên tục: mỗi hand xong được settle và ghi history ngay, hand kế tiếp
+ * được chia trên cùng session sau {@code poker.handIntervalSeconds} (mặc định 5). Thời gian
+ * dựng session và chia hand mới có trong metrics {@code game.session_setup} và {@code poker.hand_setup}.
+ *
+ * Tiến Lên: history ghi ngay khi mỗi ván xong, còn credits của các ván chơi lại liên tiếp
+ * được settle theo lô ({@code tienlen.settleBatchGames} ván, mặc định 10, hoặc khi về lobby).
+ * Thời gian chơi lại sau vote có trong {@code tienlen.restart}.
+ *
+ * Action có sequence được dedupe theo user ({@link com.mygame.server.session.ActionWindow}) ngay
+ * trên thread nhận packet: bản trùng hoặc quá cũ chỉ được ack lại, không tới session. Ack
+ * {@link ActionAckPacket} của action hợp lệ gửi sau khi executor của room xử lý xong.
+ *
+ * Mọi action tới session (kể cả action tự động khi hết giờ), kết quả settle của từng hand/ván
+ * và lúc đóng bàn được ghi vào {@link HandJournal}; thứ tự bộ bài do chính session ghi khi chia.
  */
 public class GameSessionManager {
     private static final Logger logger = LoggerFactory.getLogger(GameSessionManager.class);
 
     private final GameRoomManager roomManager;
-    private final MatchHistoryDAO matchHistoryDAO;
-    private final UserDAO userDAO;
+    private final MatchHistoryWriter historyWriter;
+    private final WalletService walletService;
+    private final QuestProgressService questService;
+    private final HandStatsStore statsStore;
+    private final PlayerCounterService counters;
+    private final HandJournal journal;
+    private final TimingWheel timers;
+    private final long turnTimeoutMillis;
+    private final long voteTimeoutMillis;
+    private final long handIntervalMillis;
+    private final int settleBatchGames;
+    private final LongAdder turnTimeouts;
+    private final LongAdder voteTimeouts;
+    private final LongAdder duplicateActions;
+    private final LongAdder foreignActions;
+    private final SessionRegistry sessionRegistry;
+    private final LatencyHistogram sessionSetup;
+    private final LatencyHistogram handSetup;
+    private final LatencyHistogram restartTime;
 
     private final Map<Integer, GameSession> sessions = new ConcurrentHashMap<>(); // roomId -> session
     private final Map<Integer, Instant> sessionStartTimes = new ConcurrentHashMap<>();
 
-    public GameSessionManager(DatabaseManager dbManager, GameRoomManager roomManager) {
+    public GameSessionManager(Storage storage, GameRoomManager roomManager) {
         this.roomManager = roomManager;
-        this.matchHistoryDAO = new MatchHistoryDAO(dbManager);
-        this.userDAO = new UserDAO(dbManager);
+        this.historyWriter = MatchHistoryWriter.getInstance();
+        this.walletService = WalletService.getInstance();
+        this.questService = QuestProgressService.getInstance();
+        this.statsStore = HandStatsStore.getInstance();
+        this.counters = PlayerCounterService.getInstance();
+        this.journal = HandJournal.getInstance();
+        this.timers = TimingWheel.getInstance();
+        this.turnTimeoutMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger("game.turnTimeoutSeconds", 30));
+        this.voteTimeoutMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger("game.voteTimeoutSeconds", 30));
+        this.handIntervalMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger("poker.handIntervalSeconds", 5));
+        this.settleBatchGames = Math.max(1, Integer.getInteger("tienlen.settleBatchGames", 10));
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.turnTimeouts = metrics.counter("game.turn_timeouts");
+        this.voteTimeouts = metrics.counter("game.vote_timeouts");
+        this.duplicateActions = metrics.counter("game.duplicate_actions");
+        this.foreignActions = metrics.counter("game.foreign_actions");
+        this.sessionRegistry = SessionRegistry.getInstance();
+        this.sessionSetup = metrics.histogram("game.session_setup");
+        this.handSetup = metrics.histogram("poker.hand_setup");
+        this.restartTime = metrics.histogram("tienlen.restart");
     }
 
     /**
      * Tạo session mới cho room dựa trên GameType.
      * Nếu đã tồn tại session cho roomId thì trả về session cũ.
+     *
+     * Số dư của người chơi được nạp vào wallet trước, ngoài lock của manager: constructor của
+     * session chỉ đọc số dư trong bộ nhớ nên không room nào phải chờ database của room khác.
      */
-    public synchronized GameSession startSessionIfAbsent(int roomId, GameType gameType) {
+    public GameSession startSessionIfAbsent(int roomId, GameType gameType) {
         GameSession existing = sessions.get(roomId);
         if (existing != null) {
             return existing;
@@ -67,13 +142,47 @@ public class GameSessionManager {
         }
 
         // Lấy danh sách playerIds theo thứ tự chỗ ngồi (position tăng dần)
-        List<Map.Entry<Integer, Integer>> sortedEntries = new ArrayList<>(room.getPlayerPositions().entrySet());
+        List<Map.Entry<Integer, Integer>> sortedEntries;
+        synchronized (room.getPlayerPositions()) {
+            sortedEntries = new ArrayList<>(room.getPlayerPositions().entrySet());
+        }
         sortedEntries.sort(Comparator.comparingInt(Map.Entry::getValue));
         List<Integer> playerIds = new ArrayList<>();
         for (Map.Entry<Integer, Integer> entry : sortedEntries) {
             playerIds.add(entry.getKey());
         }
 
+        for (int playerId : playerIds) {
+            try {
+                walletService.getBalance(playerId); // thường đã có từ lúc login, khi đó không đọc database
+            } catch (SQLException e) {
+                // Session cho người này ngồi với 0 chips, như khi không đọc được số dư
+                logger.error("Không nạp được số dư của player {} cho room {}: {}", playerId, roomId, e.getMessage());
+            }
+        }
+        return startSession(room, gameType, playerIds);
+    }
+
+    private synchronized GameSession startSession(GameRoom room, GameType gameType, List<Integer> playerIds) {
+        int roomId = room.getRoomId();
+        GameSession existing = sessions.get(roomId);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (gameType == GameType.TIENLEN) {
+            for (int playerId : playerIds) {
+                long balance = walletService.getBalanceOrDefault(playerId, 0L);
+                if (balance < TienLenGameSession.BUY_IN_AMOUNT) {
+                    // Số thua của một ván không được vượt số dư (settle theo lô chỉ trừ ví sau nhiều ván)
+                    logger.warn("Không thể start Tiến Lên ở room {}: player {} chỉ có {} credits",
+                            roomId, playerId, balance);
+                    return null;
+                }
+            }
+        }
+
+        long setupStart = System.nanoTime();
         GameSession session;
         switch (gameType) {
             case POKER:
@@ -87,6 +196,7 @@ public class GameSessionManager {
                 return null;
         }
 
+        sessionSetup.recordNanos(System.nanoTime() - setupStart);
         sessions.put(roomId, session);
         sessionStartTimes.put(roomId, Instant.now());
         room.setStatus("PLAYING");
@@ -96,15 +206,98 @@ public class GameSessionManager {
         // constructor/startNewHand.
         // We don't need to broadcast here.
 
+        room.execute(() -> afterAction(room, session));
+
         logger.info("Đã start session {} cho room {} ({})", session.getClass().getSimpleName(), roomId, gameType);
         return session;
     }
 
     /**
-     * Xử lý PlayerActionPacket gửi từ client.
+     * Nhận session đã được dựng lại từ snapshot + hand journal lúc khởi động và cho bàn chạy tiếp
+     * như chưa từng restart. {@code settled}: hand/ván cuối đã settle trong journal (chỉ còn chờ
+     * hand mới hoặc vote), nên không settle và ghi history lại lần nữa.
+     */
+    public synchronized void adoptSession(GameRoom room, GameSession session, boolean settled) {
+        int roomId = room.getRoomId();
+        sessions.put(roomId, session);
+        sessionStartTimes.put(roomId, Instant.now());
+        room.setStatus("PLAYING");
+        room.execute(() -> {
+            if (settled && session instanceof PokerGameSession && ((PokerGameSession) session).isHandComplete()) {
+                // Journal đã có SETTLE nhưng wallet có thể chưa kịp durable: gửi lại cùng key,
+                // wallet bỏ qua nếu đã áp dụng
+                PokerGameSession poker = (PokerGameSession) session;
+                Map<Integer, Long> deltas = poker.getCreditChanges();
+                Map<Integer, Long> settlement = new HashMap<>();
+                for (int playerId : poker.getHandPlayers()) {
+                    long delta = deltas.getOrDefault(playerId, 0L);
+                    if (delta != 0) {
+                        settlement.put(playerId, delta);
+                    }
+                }
+                settleHand(roomId, poker, poker.getHandNumber(), settlement);
+                scheduleNextHand(room, poker);
+            } else if (settled && isVoting(session)) {
+                TienLenGameSession tienLen = (TienLenGameSession) session;
+                if (!canCoverNextGame(tienLen)) {
+                    tienLen.endVoting();
+                    finalizeSession(room, session);
+                    return;
+                }
+                tienLen.prepareNextDeal();
+                scheduleDeadline(room, session);
+            } else {
+                afterAction(room, session);
+            }
+        });
+        logger.info("Đã khôi phục session {} cho room {} ở hand #{}", session.getClass().getSimpleName(),
+                roomId, session.getHandNumber());
+    }
+
+    /**
+     * Các session đang chạy (roomId -> session), để snapshot.
+     */
+    public Map<Integer, GameSession> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Xử lý PlayerActionPacket gửi từ client (đẩy sang executor của room).
+     * Packet của kết nối chưa đăng nhập hoặc mang playerId của người khác bị bỏ.
      * Tự động tạo session nếu chưa có (lazy start ván chơi).
      */
-    public void handlePlayerAction(PlayerActionPacket packet) {
+    public void handlePlayerAction(Connection connection, PlayerActionPacket packet) {
+        GameRoom room = roomManager.getRoom(packet.getRoomId());
+        if (room == null) {
+            logger.warn("Không thể xử lý PlayerActionPacket: room {} không tồn tại", packet.getRoomId());
+            return;
+        }
+        long sequence = packet.getSequence();
+        int userId = sessionRegistry.getUserId(connection);
+        if (userId == 0 || packet.getPlayerId() != userId) {
+            // Dedupe theo userId của kết nối, nên action phải là của chính user đó
+            foreignActions.increment();
+            logger.warn("Bỏ action {} cho player {} từ kết nối {} (user {})",
+                    packet.getActionType(), packet.getPlayerId(), connection.getID(), userId);
+            return;
+        }
+        if (sequence <= 0) {
+            room.execute(() -> processAction(room, packet, false));
+            return;
+        }
+        int status = sessionRegistry.getActions(userId).accept(sequence);
+        if (status != ActionAckPacket.STATUS_ACCEPTED) {
+            duplicateActions.increment();
+            sessionRegistry.send(connection, new ActionAckPacket(room.getRoomId(), sequence, status));
+            return;
+        }
+        room.execute(() -> {
+            processAction(room, packet, false);
+            sessionRegistry.send(connection, new ActionAckPacket(room.getRoomId(), sequence, ActionAckPacket.STATUS_ACCEPTED));
+        });
+    }
+
+    private void processAction(GameRoom room, PlayerActionPacket packet, boolean timedOut) {
         int roomId = packet.getRoomId();
         GameType gameType = packet.getGameType();
 
@@ -117,37 +310,285 @@ public class GameSessionManager {
             }
         }
 
+        long turn = session.getTurnSequence();
         session.handlePlayerAction(packet);
-
-        GameRoom room = roomManager.getRoom(roomId);
-        if (room == null) {
-            logger.warn("Room {} không tồn tại khi broadcast game state", roomId);
-            return;
-        }
+        int flags = (session.getTurnSequence() != turn ? HandJournal.FLAG_APPLIED : 0)
+                | (timedOut ? HandJournal.FLAG_TIMEOUT : 0);
+        journal.action(session.getJournalId(), session.getHandNumber(), packet, flags);
 
         // Broadcast snapshot state sau action
         GameStatePacket statePacket = session.buildGameStatePacket();
         room.broadcast(statePacket);
 
-        // Nếu ván đã kết thúc, finalize (but don't remove session if in voting phase)
-        if (session.isFinished()) {
-            // For TienLen, check if in voting phase - don't finalize yet
-            if (session instanceof TienLenGameSession) {
-                TienLenGameSession tienLenSession = (TienLenGameSession) session;
-                if (tienLenSession.isInVotingPhase()) {
-                    // Don't finalize yet, wait for votes
-                    logger.info("Tien Len game {} finished, entering voting phase", roomId);
-                    return;
-                }
+        afterAction(room, session);
+    }
+
+    /**
+     * Sau mỗi thay đổi state: finalize nếu ván đã xong (trừ khi Tiến Lên đang vote),
+     * ngược lại hẹn deadline cho lượt/vote hiện tại.
+     */
+    private void afterAction(GameRoom room, GameSession session) {
+        if (sessions.get(room.getRoomId()) != session) {
+            return;
+        }
+        if (session instanceof PokerGameSession && ((PokerGameSession) session).isHandComplete()) {
+            completeHand(room, (PokerGameSession) session);
+            return;
+        }
+        if (session.isFinished() && !isVoting(session)) {
+            finalizeSession(room, session);
+            return;
+        }
+        if (session.isFinished() && !session.hasDeadlineFor(session.getTurnSequence())) {
+            logger.info("Tien Len game {} finished, entering voting phase", room.getRoomId());
+            if (!completeTienLenGame(room, (TienLenGameSession) session)) {
+                finalizeSession(room, session);
+                return;
+            }
+        }
+        scheduleDeadline(room, session);
+    }
+
+    /**
+     * Hand poker vừa xong: settle delta của hand (key theo session + số hand), ghi history,
+     * rồi hẹn chia hand kế tiếp trên executor của room.
+     */
+    private void completeHand(GameRoom room, PokerGameSession session) {
+        int roomId = room.getRoomId();
+        int hand = session.getHandNumber();
+        if (session.hasDeadlineFor(session.getTurnSequence())) {
+            return; // đã settle hand này, đang chờ hand mới
+        }
+
+        List<Integer> playerIds = session.getHandPlayers();
+        if (playerIds.isEmpty()) {
+            // Hand không được chia (thiếu người chơi được): không có gì để settle, chỉ hẹn kiểm tra lại
+            scheduleNextHand(room, session);
+            return;
+        }
+        Map<Integer, Long> deltas = session.getCreditChanges();
+        List<Long> creditChanges = new ArrayList<>(playerIds.size());
+        Map<Integer, Long> settlement = new HashMap<>();
+        for (int playerId : playerIds) {
+            long delta = deltas.getOrDefault(playerId, 0L);
+            creditChanges.add(delta);
+            if (delta != 0) {
+                settlement.put(playerId, delta);
             }
+        }
+        recordHistory(session, session.getGameType(), session.getWinnerId(), playerIds, creditChanges,
+                calculateDurationSeconds(roomId));
+        journal.settle(session.getJournalId(), hand, playerIds, deltas);
+        settleHand(roomId, session, hand, settlement);
+
+        scheduleNextHand(room, session);
+    }
+
+    private void settleHand(int roomId, PokerGameSession session, int hand, Map<Integer, Long> settlement) {
+        walletService.settle("settle:" + session.getSessionId() + ":" + hand, settlement)
+                .whenComplete((applied, error) -> {
+                    if (error != null) {
+                        logger.error("Lỗi khi settle hand #{} room {}: {}", hand, roomId, error.getMessage(), error);
+                    } else if (logger.isDebugEnabled()) {
+                        logger.debug("Settled hand #{} room {} (applied: {}): {}", hand, roomId, applied, settlement);
+                    }
+                });
+    }
+
+    private void scheduleNextHand(GameRoom room, PokerGameSession session) {
+        Timeout next = timers.schedule(() -> startNextHand(room, session),
+                handIntervalMillis, TimeUnit.MILLISECONDS, room.getExecutor());
+        session.setDeadline(next, session.getTurnSequence());
+    }
+
+    private void startNextHand(GameRoom room, PokerGameSession session) {
+        if (sessions.get(room.getRoomId()) != session || !session.isHandComplete()) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean dealt = session.startNextHand();
+        long setupNanos = System.nanoTime() - start;
+        if (!dealt) {
             finalizeSession(room, session);
+            return;
+        }
+        handSetup.recordNanos(setupNanos);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Room {} hand #{} setup: {} us", room.getRoomId(), session.getHandNumber(), setupNanos / 1000);
+        }
+        sessionStartTimes.put(room.getRoomId(), Instant.now());
+        afterAction(room, session);
+    }
+
+    /**
+     * Ván Tiến Lên vừa xong (bắt đầu vote): ghi history, settle nếu lô đã đủ ván,
+     * và chia sẵn ván sau trên executor của room trong lúc chờ vote.
+     *
+     * Trả về false (không cho chơi lại, lô được settle ngay) nếu ván sau có người có thể thua
+     * nhiều hơn số dư wallet cộng phần thắng/thua chưa settle của họ.
+     */
+    private boolean completeTienLenGame(GameRoom room, TienLenGameSession session) {
+        List<Integer> playerIds = session.getPlayerOrder();
+        Map<Integer, Long> deltas = session.getCreditChanges();
+        List<Long> creditChanges = new ArrayList<>(playerIds.size());
+        for (int playerId : playerIds) {
+            creditChanges.add(deltas.getOrDefault(playerId, 0L));
+        }
+        recordHistory(session, session.getGameType(), session.getWinnerId(), playerIds, creditChanges,
+                calculateDurationSeconds(room.getRoomId()));
+        journal.settle(session.getJournalId(), session.getGameNumber(), playerIds, deltas);
+
+        if (!canCoverNextGame(session)) {
+            logger.info("Room {}: có người không đủ credits cho ván Tiến Lên sau, settle và về lobby",
+                    room.getRoomId());
+            settleTienLenBatch(room, session);
+            session.endVoting();
+            return false;
+        }
+        if (session.getUnsettledGames() >= settleBatchGames) {
+            settleTienLenBatch(room, session);
+        }
+        room.execute(session::prepareNextDeal);
+        return true;
+    }
+
+    /**
+     * Mỗi người chơi còn đủ cho lần thua tối đa của một ván: số dư wallet (chưa gồm các ván chưa
+     * settle) cộng tổng delta chưa settle phải còn ít nhất {@link TienLenGameSession#BUY_IN_AMOUNT}.
+     */
+    private boolean canCoverNextGame(TienLenGameSession session) {
+        for (int playerId : session.getPlayerOrder()) {
+            long balance;
+            try {
+                balance = walletService.getLoadedBalance(playerId);
+            } catch (SQLException e) {
+                logger.warn("Không có số dư của player {} trong bộ nhớ: {}", playerId, e.getMessage());
+                return false;
+            }
+            if (balance + session.getUnsettled(playerId) < TienLenGameSession.BUY_IN_AMOUNT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Settle tổng delta của các ván chưa settle trong một thao tác wallet. Key gắn với số ván
+     * cuối của lô nên mỗi lô chỉ được áp dụng một lần.
+     */
+    private CompletableFuture<Boolean> settleTienLenBatch(GameRoom room, TienLenGameSession session) {
+        int roomId = room.getRoomId();
+        int games = session.getUnsettledGames();
+        if (games == 0) {
+            return CompletableFuture.completedFuture(Boolean.FALSE); // lô vừa settle, không còn gì
+        }
+        Map<Integer, Long> settlement = new HashMap<>();
+        for (Map.Entry<Integer, Long> entry : session.drainUnsettled().entrySet()) {
+            if (entry.getValue() != 0) {
+                settlement.put(entry.getKey(), entry.getValue());
+            }
         }
+        journal.batchSettled(session.getJournalId(), session.getGameNumber());
+        return walletService.settle("settle:" + session.getSessionId() + ":" + session.getGameNumber(), settlement)
+                .whenComplete((applied, error) -> {
+                    if (error != null) {
+                        logger.error("Lỗi khi settle {} ván ở room {}: {}", games, roomId, error.getMessage(), error);
+                    } else if (logger.isDebugEnabled()) {
+                        logger.debug("Settled {} ván ở room {} (applied: {}): {}", games, roomId, applied, settlement);
+                    }
+                });
+    }
+
+    private static boolean isVoting(GameSession session) {
+        return session instanceof TienLenGameSession && ((TienLenGameSession) session).isInVotingPhase();
     }
 
     /**
-     * Handle PlayAgainVotePacket for voting after game ends.
+     * Hẹn deadline cho lượt (hoặc vote) hiện tại. Không làm gì nếu lượt chưa đổi kể từ lần hẹn trước,
+     * nên action sai lượt không kéo dài thời gian của người đang AFK.
+     */
+    private void scheduleDeadline(GameRoom room, GameSession session) {
+        long sequence = session.getTurnSequence();
+        if (session.hasDeadlineFor(sequence)) {
+            return;
+        }
+        Timeout timeout;
+        if (session.isFinished()) {
+            timeout = timers.schedule(() -> onVoteTimeout(room, session, sequence),
+                    voteTimeoutMillis, TimeUnit.MILLISECONDS, room.getExecutor());
+        } else {
+            int playerId = session.getCurrentTurnPlayerId();
+            if (playerId <= 0) {
+                session.cancelDeadline();
+                return;
+            }
+            timeout = timers.schedule(() -> onTurnTimeout(room, session, sequence, playerId),
+                    turnTimeoutMillis, TimeUnit.MILLISECONDS, room.getExecutor());
+        }
+        session.setDeadline(timeout, sequence);
+    }
+
+    private void onTurnTimeout(GameRoom room, GameSession session, long sequence, int playerId) {
+        if (sessions.get(room.getRoomId()) != session || session.isFinished()
+                || session.getTurnSequence() != sequence) {
+            return;
+        }
+        session.cancelDeadline();
+        PlayerActionPacket action = session.buildTimeoutAction(playerId);
+        if (action == null) {
+            return;
+        }
+        turnTimeouts.increment();
+        if (session instanceof PokerGameSession) {
+            ((PokerGameSession) session).sitOut(playerId); // AFK: không chia bài hand sau cho tới khi SIT_IN
+        }
+        logger.info("Player {} hết giờ ở room {}, tự động {}", playerId, room.getRoomId(), action.getActionType());
+        processAction(room, action, true);
+        // Nếu action tự động không đổi được lượt, vẫn hẹn lại để bàn không bị treo
+        if (sessions.get(room.getRoomId()) == session) {
+            scheduleDeadline(room, session);
+        }
+    }
+
+    private void onVoteTimeout(GameRoom room, GameSession session, long sequence) {
+        if (sessions.get(room.getRoomId()) != session || !isVoting(session)
+                || session.getTurnSequence() != sequence) {
+            return;
+        }
+        voteTimeouts.increment();
+        ((TienLenGameSession) session).expireVote();
+        finalizeSession(room, session);
+    }
+
+    /**
+     * Player quay lại sau khi mất kết nối: trên executor của room, gắn connection mới vào ghế
+     * đang giữ và gửi bù packet bị lỡ; nếu đã lỡ quá nhiều thì gửi snapshot của session.
+     */
+    public void resumePlayer(GameRoom room, int userId, Connection connection) {
+        room.execute(() -> {
+            if (roomManager.reclaimSeat(room, userId, connection)) {
+                return;
+            }
+            GameSession session = sessions.get(room.getRoomId());
+            if (session != null) {
+                room.sendToPlayer(userId, session.buildResyncPacket(userId));
+            }
+        });
+    }
+
+    /**
+     * Handle PlayAgainVotePacket for voting after game ends (đẩy sang executor của room).
      */
     public void handlePlayAgainVote(PlayAgainVotePacket packet) {
+        GameRoom room = roomManager.getRoom(packet.getRoomId());
+        if (room == null) {
+            logger.warn("No room {} when handling vote", packet.getRoomId());
+            return;
+        }
+        room.execute(() -> processVote(room, packet));
+    }
+
+    private void processVote(GameRoom room, PlayAgainVotePacket packet) {
         int roomId = packet.getRoomId();
         GameSession session = sessions.get(roomId);
 
@@ -163,22 +604,19 @@ public class GameSessionManager {
         }
 
         TienLenGameSession tienLenSession = (TienLenGameSession) session;
+        int gameNumber = tienLenSession.getGameNumber();
+        long start = System.nanoTime();
         tienLenSession.handlePlayAgainVote(packet);
 
-        // Check if voting is complete and should remove session
-        if (!tienLenSession.isInVotingPhase()) {
-            // Voting complete
-            if (!tienLenSession.isFinished()) {
-                // Game restarted, keep session
-                logger.info("Tien Len game {} restarted after voting", roomId);
-            } else {
-                // Return to lobby - finalize and remove session
-                GameRoom room = roomManager.getRoom(roomId);
-                if (room != null) {
-                    finalizeSession(room, session);
-                }
-            }
+        if (tienLenSession.getGameNumber() != gameNumber) {
+            long restartNanos = System.nanoTime() - start;
+            restartTime.recordNanos(restartNanos);
+            sessionStartTimes.put(roomId, Instant.now());
+            logger.info("Tien Len game {} restarted after voting ({} us)", roomId, restartNanos / 1000);
         }
+        // Restart: hẹn deadline lượt đầu (hoặc vote mới nếu tới trắng); về lobby: finalize;
+        // vote chưa đủ: không đổi gì
+        afterAction(room, session);
     }
 
     /**
@@ -188,26 +626,39 @@ public class GameSessionManager {
         int roomId = room.getRoomId();
         GameType gameType = session.getGameType();
         int winnerId = session.getWinnerId();
+        // Poker đã settle và ghi history theo từng hand; khi đóng bàn chỉ gửi tổng kết
+        boolean settledPerHand = session instanceof PokerGameSession;
+        Map<Integer, Long> sessionCreditChanges = settledPerHand
+                ? ((PokerGameSession) session).getTableCreditChanges()
+                : session.getCreditChanges();
+        if (settledPerHand) {
+            long best = 0;
+            for (Map.Entry<Integer, Long> entry : sessionCreditChanges.entrySet()) {
+                if (entry.getValue() > best) {
+                    best = entry.getValue();
+                    winnerId = entry.getKey();
+                }
+            }
+        }
         if (winnerId <= 0) {
             logger.warn("Session cho room {} đánh dấu finished nhưng không có winnerId hợp lệ", roomId);
         }
 
-        List<Integer> playerIds = new ArrayList<>(room.getPlayerPositions().keySet());
-        List<Long> creditChanges = new ArrayList<>();
+        session.cancelDeadline();
+        journal.sessionEnd(session.getJournalId(), session.getHandNumber(), winnerId);
 
-        // Get actual credit changes from the game session
-        Map<Integer, Long> sessionCreditChanges = session.getCreditChanges();
+        List<Integer> playerIds;
+        synchronized (room.getPlayerPositions()) {
+            playerIds = new ArrayList<>(room.getPlayerPositions().keySet());
+        }
+        List<Long> creditChanges = new ArrayList<>();
+        Map<Integer, Long> settlement = new HashMap<>();
 
         for (int playerId : playerIds) {
             long delta = sessionCreditChanges.getOrDefault(playerId, 0L);
             creditChanges.add(delta);
-            try {
-                if (delta != 0) {
-                    userDAO.updateCredits(playerId, delta);
-                    logger.debug("Updated credits for player {}: {}", playerId, delta);
-                }
-            } catch (SQLException e) {
-                logger.error("Lỗi khi cập nhật kết quả ván cho user {}: {}", playerId, e.getMessage(), e);
+            if (delta != 0) {
+                settlement.put(playerId, delta);
             }
         }
 
@@ -218,8 +669,29 @@ public class GameSessionManager {
         endPacket.setPlayerIds(playerIds);
         endPacket.setCreditChanges(creditChanges);
 
+        if (settledPerHand) {
+            room.broadcast(endPacket);
+        } else if (session instanceof TienLenGameSession) {
+            // History đã ghi theo từng ván; settle phần còn lại của lô rồi mới gửi GameEndPacket
+            settleTienLenBatch(room, (TienLenGameSession) session)
+                    .whenComplete((applied, error) -> room.broadcast(endPacket));
+        } else {
+            recordHistory(session, gameType, winnerId, playerIds, creditChanges, calculateDurationSeconds(roomId));
+
+            // Settle cả ván trong một thao tác wallet; key theo session nên finalize lặp lại không trả hai lần.
+            // GameEndPacket chỉ gửi sau khi kết quả đã durable.
+            walletService.settle("settle:" + session.getSessionId(), settlement)
+                    .whenComplete((applied, error) -> {
+                        if (error != null) {
+                            logger.error("Lỗi khi settle credits cho room {}: {}", roomId, error.getMessage(), error);
+                        } else if (logger.isDebugEnabled()) {
+                            logger.debug("Settled room {} (applied: {}): {}", roomId, applied, settlement);
+                        }
+                        room.broadcast(endPacket);
+                    });
+        }
+
         room.setStatus("FINISHED");
-        room.broadcast(endPacket);
 
         sessions.remove(roomId);
         sessionStartTimes.remove(roomId);
@@ -227,6 +699,44 @@ public class GameSessionManager {
         logger.info("Đã kết thúc ván {} ở room {}, winner: {}", gameType, roomId, winnerId);
     }
 
+    /**
+     * Đưa kết quả ván vào hàng đợi ghi match history và hand stats store (mỗi người chơi một dòng)
+     * và cộng progress quest, bộ đếm user trong bộ nhớ. Không chạm database hay đĩa trên game thread.
+     */
+    private void recordHistory(GameSession session, GameType gameType, int winnerId, List<Integer> playerIds,
+                               List<Long> creditChanges, int durationSeconds) {
+        long now = System.currentTimeMillis();
+        int opponents = Math.max(0, playerIds.size() - 1);
+        Map<Integer, Long> wagered = session.getAmountsWagered();
+        Set<Integer> voluntary = session.getVoluntaryPlayers();
+        long pot = 0;
+        for (long amount : wagered.values()) {
+            pot += amount;
+        }
+        SettledHand hand = new SettledHand(now, gameType, pot, playerIds.size());
+        List<MatchRecord> records = new ArrayList<>(playerIds.size());
+        for (int i = 0; i < playerIds.size(); i++) {
+            int playerId = playerIds.get(i);
+            long delta = creditChanges.get(i);
+            String result;
+            if (delta > 0 || (delta == 0 && playerId == winnerId)) {
+                result = "WIN";
+            } else if (delta < 0) {
+                result = "LOSE";
+            } else {
+                result = "DRAW";
+            }
+            records.add(new MatchRecord(playerId, gameType.name(), MatchMode.MULTIPLAYER.name(),
+                    result, delta, opponents, durationSeconds, now));
+            questService.onHandFinished(playerId, gameType.name(), "WIN".equals(result),
+                    wagered.getOrDefault(playerId, 0L));
+            hand.add(playerId, result, delta, voluntary.contains(playerId));
+            counters.record(playerId, "WIN".equals(result), "LOSE".equals(result), pot);
+        }
+        historyWriter.submit(records);
+        statsStore.submit(hand);
+    }
+
     private int calculateDurationSeconds(int roomId) {
         Instant start = sessionStartTimes.get(roomId);
         if (start == null) {
@@ -0,0 +1,62 @@
+package com.mygame.server.game;
+
+import com.mygame.server.journal.HandJournal;
+import com.mygame.shared.game.card.Deck;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+/**
+ * Những gì một {@link GameSession} cần từ bên ngoài ván chơi: số dư, ai còn ngồi ở bàn,
+ * bộ bài, nơi gửi packet và hand journal.
+ *
+ * Trên server là {@link RoomTable} (GameRoom + wallet); replay dựng bàn từ hand journal,
+ * không network, không database.
+ */
+public interface GameTable {
+
+    /**
+     * Số dư người chơi mang vào bàn khi mở bàn.
+     */
+    long balanceOf(int userId) throws SQLException;
+
+    /**
+     * Rebuy: mang thêm vào bàn tối đa {@code max} credits từ phần số dư wallet chưa nằm trên bàn
+     * (số dư trừ {@code chips} đang có). Không bao giờ nạp thêm credits vào wallet và không chặn
+     * caller; {@code onChips} nhận số chips mới (bằng {@code chips} nếu bị từ chối) trên executor
+     * của room.
+     */
+    void buyIn(int userId, long chips, long max, LongConsumer onChips);
+
+    /**
+     * Người chơi còn ngồi trong room (chưa rời bàn).
+     */
+    boolean isSeated(int userId);
+
+    /**
+     * Xáo bộ bài cho hand/ván mới.
+     */
+    void shuffle(Deck deck);
+
+    void broadcast(Object packet);
+
+    void sendToPlayer(int userId, Object packet);
+
+    HandJournal journal();
+
+    /**
+     * Id của session sắp mở trên bàn này. Khi khôi phục sau restart là id cũ, để key settle
+     * và journal của session không đổi.
+     */
+    default UUID sessionUuid() {
+        return UUID.randomUUID();
+    }
+
+    /**
+     * Thời điểm session sắp mở bắt đầu (khi khôi phục: thời điểm ban đầu).
+     */
+    default long sessionStartedAt() {
+        return System.currentTimeMillis();
+    }
+}
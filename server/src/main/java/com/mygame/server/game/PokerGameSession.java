@@ -1,7 +1,5 @@
 package com.mygame.server.game;
 
-import com.mygame.server.database.DatabaseManager;
-import com.mygame.server.database.UserDAO;
 import com.mygame.server.room.GameRoom;
 import com.mygame.shared.game.card.Card;
 import com.mygame.shared.game.card.Deck;
@@ -13,12 +11,15 @@ import com.mygame.shared.network.packets.game.GameStatePacket;
 import com.mygame.shared.network.packets.game.GameStartPacket;
 import com.mygame.shared.network.packets.game.PlayerActionPacket;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,10 +31,21 @@ import org.slf4j.LoggerFactory;
  * - Small Blind (SB): 500
  * - Big Blind (BB): 1000
  * 
- * Position Assignment:
+ * Position Assignment (hand đầu tiên):
  * - Host (first player / room creator): Big Blind
  * - Player 2: Small Blind
  * - Player 3+: UTG (first to act pre-flop)
+ * Sau mỗi hand, BB chuyển sang người kế tiếp được chia bài và SB là người ngồi ngay trước BB.
+ *
+ * Bàn chơi liên tục: session sống qua nhiều hand. Kết thúc một hand chỉ đặt
+ * {@link #isHandComplete()}; GameSessionManager settle delta của hand đó rồi gọi
+ * {@link #startNextHand()}, hàm này reset state, deck và các collection tại chỗ (không
+ * đọc lại profile từ database). Session chỉ {@link #isFinished()} khi còn dưới 2 người chơi được.
+ *
+ * Action ngoài lượt (nhận bất cứ lúc nào, có hiệu lực từ hand sau):
+ * - SIT_OUT / SIT_IN: tạm nghỉ / quay lại bàn.
+ * - REBUY: người hết chips mang thêm phần số dư wallet chưa nằm trên bàn (vd. thưởng hằng ngày),
+ *   tối đa {@code poker.rebuyChips}; không còn gì để mang vào thì bị từ chối.
  * 
  * Game Flow:
  * - PREFLOP: Post blinds, deal 2 hole cards, UTG acts first
@@ -49,6 +61,8 @@ public class PokerGameSession extends GameSession {
     // Fixed blinds
     private static final long SMALL_BLIND = 500L;
     private static final long BIG_BLIND = 1000L;
+    // Mỗi lần rebuy mang vào bàn tối đa chừng này (mặc định bằng credits khi đăng ký)
+    private static final long REBUY_CHIPS = Long.getLong("poker.rebuyChips", 50_000L);
 
     private final List<Integer> playerOrder; // Join order (index 0 = host)
     private final PokerGameState gameState;
@@ -62,12 +76,27 @@ public class PokerGameSession extends GameSession {
     private Set<Integer> playersActedThisRound;
     private int lastRaiser = -1;
 
-    private boolean finished = false;
+    private boolean finished = false; // bàn đã đóng
+    private boolean handComplete = false; // hand hiện tại đã xong, chờ settle và chia hand mới
     private int winnerId = -1;
-    private Map<Integer, Long> initialChips = new HashMap<>(); // Track starting chips for credit calculation
+    private int handNumber = 0;
+    private Map<Integer, Long> initialChips = new HashMap<>(); // Chips khi ngồi vào bàn (tổng kết lúc đóng bàn)
+    private final Map<Integer, Long> handStartChips = new HashMap<>(); // Chips đầu hand, để tính delta từng hand
+    private final List<Integer> handPlayers = new ArrayList<>(); // Người được chia bài ở hand hiện tại
+    private final Set<Integer> voluntaryPlayers = new HashSet<>(); // Call/raise trước flop ở hand hiện tại (VPIP)
+    private final Set<Integer> sittingOut = new HashSet<>();
+    private final Set<Integer> pendingRebuys = new HashSet<>(); // Đang chờ đọc số dư wallet
+    private final Map<Integer, Long> readyRebuys = new HashMap<>(); // Chips mới, áp dụng từ hand sau
+    // Tra cứu cho hand journal, tạo một lần để ghi record không cấp phát
+    private final IntToLongFunction journalChips;
+    private final IntPredicate journalDealtIn;
 
     public PokerGameSession(int roomId, GameType gameType, GameRoom room, List<Integer> playerOrder) {
-        super(roomId, gameType, room);
+        this(roomId, gameType, room, new RoomTable(room), playerOrder);
+    }
+
+    public PokerGameSession(int roomId, GameType gameType, GameRoom room, GameTable table, List<Integer> playerOrder) {
+        super(roomId, gameType, room, table);
         this.playerOrder = new ArrayList<>(playerOrder);
         this.deck = new Deck();
         this.playersActedThisRound = new HashSet<>();
@@ -78,24 +107,18 @@ public class PokerGameSession extends GameSession {
         this.bbIndex = 0; // Host is always BB
         this.sbIndex = (playerCount >= 2) ? 1 : 0; // Player 2 is SB (or host if only 1 player)
 
-        // Load credits from database for each player
+        // Chips = số dư wallet, đọc một lần khi mở bàn (các hand sau chỉ settle delta)
         Map<Integer, Long> playerCredits = new HashMap<>();
-        try {
-            UserDAO userDAO = new UserDAO(DatabaseManager.getInstance());
-            for (Integer playerId : playerOrder) {
-                UserDAO.UserProfile profile = userDAO.getUserProfile(playerId);
-                if (profile != null) {
-                    playerCredits.put(playerId, profile.getCredits());
-                    logger.info("Loaded credits for player {}: {}", playerId, profile.getCredits());
-                } else {
-                    playerCredits.put(playerId, 10_000L); // Fallback
-                    logger.warn("Could not load profile for player {}, using fallback 10000", playerId);
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Error loading player credits from database, using fallback", e);
-            for (Integer playerId : playerOrder) {
-                playerCredits.put(playerId, 10_000L);
+        for (Integer playerId : playerOrder) {
+            try {
+                long credits = table.balanceOf(playerId);
+                playerCredits.put(playerId, credits);
+                logger.info("Loaded credits for player {}: {}", playerId, credits);
+            } catch (SQLException e) {
+                // Không đọc được số dư (vd. database đang lỗi và account chưa nạp lúc login): ngồi
+                // với 0 chips - không được chia bài, không có delta settle - thay vì tự sinh chips
+                playerCredits.put(playerId, 0L);
+                logger.error("Could not load credits for player {}, seating with 0 chips: {}", playerId, e.getMessage());
             }
         }
 
@@ -104,23 +127,137 @@ public class PokerGameSession extends GameSession {
 
         // Initialize game state with actual credits from database
         this.gameState = new PokerGameState(playerCredits, (int) SMALL_BLIND, (int) BIG_BLIND);
+        this.journalChips = playerId -> handStartChips.getOrDefault(playerId, 0L); // trước khi đặt blinds
+        this.journalDealtIn = playerId -> !gameState.isPlayerFolded(playerId);
 
+        journal().sessionStart(journalId, gameType, roomId, this.playerOrder);
+        startNewHand();
+    }
+
+    /**
+     * Chia hand kế tiếp ở cùng bàn: áp dụng rebuy, xoay blinds rồi reset state tại chỗ.
+     * Trả về false (và đóng bàn) nếu còn dưới 2 người chơi được.
+     */
+    public boolean startNextHand() {
+        applyRebuys();
+        // Rebuy còn đang chờ wallet chưa được chia bài, nhưng chưa phải lý do để đóng bàn
+        int eligible = pendingRebuys.size();
+        for (int playerId : playerOrder) {
+            if (isEligible(playerId)) {
+                eligible++;
+            }
+        }
+        handComplete = false;
+        if (eligible < 2) {
+            finished = true;
+            markTurnChanged();
+            logger.info("Room {}: chỉ còn {} người chơi được, đóng bàn sau {} hand", roomId, eligible, handNumber);
+            return false;
+        }
+        rotateBlinds();
         startNewHand();
+        return true;
+    }
+
+    /**
+     * Người chơi được chia bài ở hand mới: còn trong room, không tạm nghỉ, không chờ rebuy và còn chips.
+     */
+    private boolean isEligible(int playerId) {
+        return !sittingOut.contains(playerId)
+                && !pendingRebuys.contains(playerId)
+                && gameState.getPlayerChips(playerId) > 0
+                && table.isSeated(playerId);
+    }
+
+    private void applyRebuys() {
+        if (readyRebuys.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Integer, Long> entry : readyRebuys.entrySet()) {
+            int playerId = entry.getKey();
+            long chips = entry.getValue();
+            long added = chips - gameState.getPlayerChips(playerId);
+            gameState.setPlayerChips(playerId, chips);
+            // Phần mang vào không phải kết quả chơi, không tính vào tổng kết lúc đóng bàn
+            initialChips.merge(playerId, added, Long::sum);
+            logger.info("Player {} rebuy: +{} -> {} chips", playerId, added, chips);
+        }
+        readyRebuys.clear();
+    }
+
+    /**
+     * Kết quả đọc số dư cho rebuy (trên executor của room): có thêm chips thì áp dụng từ hand sau.
+     */
+    private void onRebuy(int playerId, long chips) {
+        if (!pendingRebuys.remove(playerId)) {
+            return;
+        }
+        if (chips > gameState.getPlayerChips(playerId)) {
+            readyRebuys.put(playerId, chips);
+        } else {
+            logger.warn("Player {} không còn số dư ngoài bàn, từ chối rebuy", playerId);
+        }
+    }
+
+    /**
+     * BB chuyển sang người được chia bài kế tiếp; SB là người được chia bài ngay trước BB.
+     */
+    private void rotateBlinds() {
+        int count = playerOrder.size();
+        int nextBb = bbIndex;
+        for (int i = 1; i <= count; i++) {
+            int idx = (bbIndex + i) % count;
+            if (isEligible(playerOrder.get(idx))) {
+                nextBb = idx;
+                break;
+            }
+        }
+        int nextSb = nextBb;
+        for (int i = 1; i < count; i++) {
+            int idx = (nextBb - i + count) % count;
+            if (isEligible(playerOrder.get(idx))) {
+                nextSb = idx;
+                break;
+            }
+        }
+        bbIndex = nextBb;
+        sbIndex = nextSb;
+        gameState.setDealerPosition(sbIndex);
     }
 
     /**
      * Start a new hand: post blinds, deal cards, set first actor.
      */
     private void startNewHand() {
-        // 1. Reset deck and state
-        deck.reset();
-        gameState.resetForNewRound();
+        // 1. Reset deck and state tại chỗ
+        table.shuffle(deck);
+        gameState.resetForNewHand();
         playersActedThisRound.clear();
         lastRaiser = -1;
+        winnerId = -1;
+        handNumber++;
+
+        handPlayers.clear();
+        voluntaryPlayers.clear();
+        handStartChips.clear();
+        for (int playerId : playerOrder) {
+            handStartChips.put(playerId, gameState.getPlayerChips(playerId));
+            if (isEligible(playerId)) {
+                handPlayers.add(playerId);
+            } else {
+                gameState.fold(playerId); // tạm nghỉ / hết chips: không được chia bài
+            }
+        }
 
         int playerCount = playerOrder.size();
-        if (playerCount < 2) {
-            logger.warn("Not enough players to start poker hand");
+        if (handPlayers.size() < 2) {
+            // Chưa đủ người để chia (vd. mở bàn khi có người 0 chips): hand xong mà không chia,
+            // GameSessionManager hẹn lần kiểm tra kế tiếp - có rebuy/sit-in thì chia, không thì đóng bàn
+            logger.warn("Room {}: chỉ {} người chơi được, chờ rebuy/sit-in trước khi đóng bàn",
+                    roomId, handPlayers.size());
+            handPlayers.clear();
+            handComplete = true;
+            markTurnChanged();
             return;
         }
 
@@ -144,17 +281,19 @@ public class PokerGameSession extends GameSession {
 
         // 3. Deal hole cards
         dealHoleCards();
+        journal().deal(journalId, handNumber, sbIndex, bbIndex, playerOrder, journalChips, journalDealtIn, deck);
 
         // 4. Set first actor (UTG = player after BB)
         // Pre-flop: UTG is the player after BB
         int utgIndex = (bbIndex + 1) % playerCount;
-        if (playerCount == 2) {
+        if (handPlayers.size() == 2) {
             // Heads up: SB acts first pre-flop
             utgIndex = sbIndex;
         }
         int firstActor = findNextActivePlayer(utgIndex);
         gameState.setCurrentPlayerTurn(firstActor);
-        logger.info("Pre-flop starts. First actor: Player {}", firstActor);
+        markTurnChanged();
+        logger.info("Hand #{} pre-flop starts. First actor: Player {}", handNumber, firstActor);
 
         // 5. Broadcast GameStartPacket to each player (with sanitized state)
         broadcastGameStart();
@@ -174,15 +313,27 @@ public class PokerGameSession extends GameSession {
 
     private void broadcastGameStart() {
         for (int playerId : playerOrder) {
-            GameStartPacket packet = new GameStartPacket();
-            packet.setRoomId(roomId);
-            packet.setGameType(gameType);
-            packet.setPlayerOrder(playerOrder);
-            packet.setInitialState(gameState.sanitizeFor(playerId));
-            room.sendToPlayer(playerId, packet);
+            table.sendToPlayer(playerId, buildGameStart(playerId));
         }
     }
 
+    private GameStartPacket buildGameStart(int playerId) {
+        GameStartPacket packet = new GameStartPacket();
+        packet.setRoomId(roomId);
+        packet.setGameType(gameType);
+        packet.setPlayerOrder(playerOrder);
+        packet.setInitialState(gameState.sanitizeFor(playerId));
+        return packet;
+    }
+
+    /**
+     * GameStartPacket với state của hand hiện tại (chỉ thấy bài của chính người chơi).
+     */
+    @Override
+    public Object buildResyncPacket(int playerId) {
+        return buildGameStart(playerId);
+    }
+
     @Override
     public void handlePlayerAction(PlayerActionPacket actionPacket) {
         if (finished) {
@@ -193,6 +344,14 @@ public class PokerGameSession extends GameSession {
         int playerId = actionPacket.getPlayerId();
         String actionType = actionPacket.getActionType();
 
+        if (handleTableAction(playerId, actionType)) {
+            return;
+        }
+        if (handComplete) {
+            logger.debug("Hand #{} finished, ignoring action", handNumber);
+            return;
+        }
+
         if (playerId != gameState.getCurrentPlayerTurn()) {
             logger.debug("Not player {}'s turn (current: {})", playerId, gameState.getCurrentPlayerTurn());
             return;
@@ -217,7 +376,15 @@ public class PokerGameSession extends GameSession {
                 actionValid = false;
         }
 
-        if (!finished && actionValid) {
+        if (actionValid) {
+            markTurnChanged();
+            if (("CALL".equals(actionType) || "RAISE".equals(actionType))
+                    && gameState.getCurrentStage() == PokerGameState.Stage.PREFLOP) {
+                voluntaryPlayers.add(playerId);
+            }
+        }
+
+        if (!handComplete && actionValid) {
             playersActedThisRound.add(playerId);
 
             // Broadcast updated state
@@ -232,6 +399,50 @@ public class PokerGameSession extends GameSession {
         }
     }
 
+    /**
+     * SIT_OUT / SIT_IN / REBUY, không cần tới lượt. Trả về false nếu không phải action loại này.
+     */
+    private boolean handleTableAction(int playerId, String actionType) {
+        if (!playerOrder.contains(playerId)) {
+            return false;
+        }
+        switch (actionType) {
+            case "SIT_OUT":
+                sitOut(playerId);
+                return true;
+            case "SIT_IN":
+                if (sittingOut.remove(playerId)) {
+                    logger.info("Player {} quay lại bàn từ hand sau", playerId);
+                }
+                return true;
+            case "REBUY":
+                long chips = gameState.getPlayerChips(playerId);
+                if (chips >= BIG_BLIND) {
+                    logger.warn("Player {} còn {} chips, không cần rebuy", playerId, chips);
+                } else if (!handComplete && handPlayers.contains(playerId)) {
+                    // Delta của hand đang chơi chưa settle, số dư wallet chưa khớp với chips trên bàn
+                    logger.warn("Player {} đang trong hand, rebuy sau khi hand kết thúc", playerId);
+                } else if (!pendingRebuys.contains(playerId) && !readyRebuys.containsKey(playerId)) {
+                    pendingRebuys.add(playerId);
+                    sittingOut.remove(playerId);
+                    table.buyIn(playerId, chips, REBUY_CHIPS, newChips -> onRebuy(playerId, newChips));
+                    logger.info("Player {} rebuy từ hand sau", playerId);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tạm nghỉ từ hand sau (hand đang chơi vẫn tiếp tục, hết giờ thì bị fold).
+     */
+    public void sitOut(int playerId) {
+        if (sittingOut.add(playerId)) {
+            logger.info("Player {} tạm nghỉ từ hand sau", playerId);
+        }
+    }
+
     private void handleFold(int playerId) {
         gameState.fold(playerId);
         logger.info("Player {} folds", playerId);
@@ -513,8 +724,9 @@ public class PokerGameSession extends GameSession {
             winnerId = activePlayers.get(0);
         }
 
-        finished = true;
-        logger.info("Game finished. Overall winner: Player {}", winnerId);
+        handComplete = true;
+        markTurnChanged();
+        logger.info("Hand #{} finished. Overall winner: Player {}", handNumber, winnerId);
 
         // Clear the pot since we've distributed it via side pots
         gameState.awardPot(-1); // This effectively zeros the pot
@@ -536,7 +748,8 @@ public class PokerGameSession extends GameSession {
     private void checkForWinnerByFold() {
         List<Integer> activePlayers = getActivePlayers();
         if (activePlayers.size() == 1) {
-            finished = true;
+            handComplete = true;
+            markTurnChanged();
             winnerId = activePlayers.get(0);
             gameState.awardPot(winnerId);
             logger.info("Winner by fold: Player {}", winnerId);
@@ -550,10 +763,29 @@ public class PokerGameSession extends GameSession {
             packet.setRoomId(roomId);
             packet.setGameType(gameType);
             packet.setGameState(gameState.sanitizeFor(playerId));
-            room.sendToPlayer(playerId, packet);
+            table.sendToPlayer(playerId, packet);
         }
     }
 
+    @Override
+    public int getCurrentTurnPlayerId() {
+        return finished || handComplete ? -1 : gameState.getCurrentPlayerTurn();
+    }
+
+    /**
+     * Hết giờ: CHECK nếu không phải theo thêm, ngược lại FOLD.
+     */
+    @Override
+    public PlayerActionPacket buildTimeoutAction(int playerId) {
+        long toCall = gameState.getCurrentBet() - gameState.getPlayerBet(playerId);
+        PlayerActionPacket action = new PlayerActionPacket();
+        action.setRoomId(roomId);
+        action.setGameType(gameType);
+        action.setPlayerId(playerId);
+        action.setActionType(toCall > 0 ? "FOLD" : "CHECK");
+        return action;
+    }
+
     @Override
     public GameStatePacket buildGameStatePacket() {
         GameStatePacket packet = new GameStatePacket();
@@ -568,16 +800,35 @@ public class PokerGameSession extends GameSession {
         return finished;
     }
 
+    public boolean isHandComplete() {
+        return handComplete;
+    }
+
+    @Override
+    public int getHandNumber() {
+        return handNumber;
+    }
+
+    /**
+     * Người được chia bài ở hand hiện tại, theo thứ tự chỗ ngồi.
+     */
+    public List<Integer> getHandPlayers() {
+        return new ArrayList<>(handPlayers);
+    }
+
     @Override
     public int getWinnerId() {
         return winnerId;
     }
 
+    /**
+     * Delta chips của hand hiện tại (settle sau mỗi hand).
+     */
     @Override
     public Map<Integer, Long> getCreditChanges() {
         Map<Integer, Long> changes = new HashMap<>();
-        for (int playerId : playerOrder) {
-            long initial = initialChips.getOrDefault(playerId, 0L);
+        for (int playerId : handPlayers) {
+            long initial = handStartChips.getOrDefault(playerId, 0L);
             long current = gameState.getPlayerChips(playerId);
             long delta = current - initial;
             changes.put(playerId, delta);
@@ -585,4 +836,29 @@ public class PokerGameSession extends GameSession {
         }
         return changes;
     }
+
+    /**
+     * Tổng delta từ lúc mở bàn (không tính rebuy), dùng cho GameEndPacket khi đóng bàn.
+     */
+    public Map<Integer, Long> getTableCreditChanges() {
+        Map<Integer, Long> changes = new HashMap<>();
+        for (int playerId : playerOrder) {
+            changes.put(playerId, gameState.getPlayerChips(playerId) - initialChips.getOrDefault(playerId, 0L));
+        }
+        return changes;
+    }
+
+    @Override
+    public Set<Integer> getVoluntaryPlayers() {
+        return voluntaryPlayers;
+    }
+
+    @Override
+    public Map<Integer, Long> getAmountsWagered() {
+        Map<Integer, Long> wagered = new HashMap<>();
+        for (int playerId : handPlayers) {
+            wagered.put(playerId, gameState.getTotalContribution(playerId));
+        }
+        return wagered;
+    }
 }
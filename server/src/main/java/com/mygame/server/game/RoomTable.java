@@ -0,0 +1,74 @@
+package com.mygame.server.game;
+
+import com.mygame.server.journal.HandJournal;
+import com.mygame.server.room.GameRoom;
+import com.mygame.server.wallet.WalletService;
+import com.mygame.shared.game.card.Deck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.function.LongConsumer;
+
+/**
+ * Bàn chơi thật: packet đi qua {@link GameRoom}, số dư đọc từ {@link WalletService},
+ * bộ bài xáo ngẫu nhiên và mọi ván được ghi vào {@link HandJournal}.
+ */
+public class RoomTable implements GameTable {
+    private static final Logger logger = LoggerFactory.getLogger(RoomTable.class);
+
+    private final GameRoom room;
+    private final HandJournal journal = HandJournal.getInstance();
+
+    public RoomTable(GameRoom room) {
+        this.room = room;
+    }
+
+    /**
+     * Chỉ đọc account đã có trong bộ nhớ: GameSessionManager nạp số dư trước khi mở bàn, nên mở bàn
+     * không bao giờ chờ database.
+     */
+    @Override
+    public long balanceOf(int userId) throws SQLException {
+        return WalletService.getInstance().getLoadedBalance(userId);
+    }
+
+    @Override
+    public void buyIn(int userId, long chips, long max, LongConsumer onChips) {
+        WalletService.getInstance().getBalanceAsync(userId, room.getExecutor()).whenComplete((balance, error) -> {
+            if (error != null) {
+                logger.error("Không đọc được số dư để rebuy cho player {}: {}", userId, error.getMessage());
+                onChips.accept(chips);
+                return;
+            }
+            // Chips trên bàn đã nằm trong số dư (mọi hand đều đã settle), chỉ phần còn lại được mang vào
+            long available = Math.min(max, balance - chips);
+            onChips.accept(available > 0 ? chips + available : chips);
+        });
+    }
+
+    @Override
+    public boolean isSeated(int userId) {
+        return room.getPlayers().containsKey(userId);
+    }
+
+    @Override
+    public void shuffle(Deck deck) {
+        deck.reset();
+    }
+
+    @Override
+    public void broadcast(Object packet) {
+        room.broadcast(packet);
+    }
+
+    @Override
+    public void sendToPlayer(int userId, Object packet) {
+        room.sendToPlayer(userId, packet);
+    }
+
+    @Override
+    public HandJournal journal() {
+        return journal;
+    }
+}
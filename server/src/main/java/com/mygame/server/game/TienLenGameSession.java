@@ -1,6 +1,5 @@
 package com.mygame.server.game;
 
-import com.mygame.server.database.UserDAO;
 import com.mygame.server.room.GameRoom;
 import com.mygame.shared.game.card.Card;
 import com.mygame.shared.game.card.Deck;
@@ -20,12 +19,19 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
 
 /**
  * Server-side session for Tien Len Mien Nam.
  * Implements strict rules: 3 < 2, Combinations, Round Logic (Skip/Pass),
  * Instant Win.
  * Scoring: Fixed Buy-In 10,000. Winner takes Pot.
+ *
+ * Chơi lại nhanh: khi vào pha vote, {@link #prepareNextDeal()} xáo và chia sẵn ván sau
+ * (deck, list bài dùng lại), nên khi mọi người đồng ý chơi lại chỉ còn copy bài vào state
+ * và gửi một GameStartPacket. Kết quả các ván liên tiếp được cộng dồn
+ * ({@link #drainUnsettled()}) để GameSessionManager settle theo lô.
  */
 public class TienLenGameSession extends GameSession {
     private static final Logger logger = LoggerFactory.getLogger(TienLenGameSession.class);
@@ -40,31 +46,44 @@ public class TienLenGameSession extends GameSession {
     private Set<Integer> playAgainVotes = new HashSet<>();
 
     // Scoring
-    private static final long BUY_IN_AMOUNT = 10_000L;
+    public static final long BUY_IN_AMOUNT = 10_000L; // cũng là số thua tối đa của một người trong một ván
+    private static final int CARDS_PER_PLAYER = 13;
+    private static final IntPredicate ALL_DEALT = playerId -> true;
     private Map<Integer, Long> initialCredits;
     private long pot = 0;
 
+    // Ván kế tiếp chia sẵn trong lúc vote
+    private final Deck deck = new Deck();
+    private final Map<Integer, List<Card>> nextHands = new HashMap<>();
+    private boolean nextDealReady = false;
+    private int gameNumber = 0;
+    private final IntToLongFunction journalCredits;
+
+    // Delta credits của các ván đã xong nhưng chưa settle
+    private final Map<Integer, Long> unsettled = new HashMap<>();
+    private int unsettledGames = 0;
+
     public TienLenGameSession(int roomId, GameType gameType, GameRoom room, List<Integer> playerOrder) {
-        super(roomId, gameType, room);
+        this(roomId, gameType, room, new RoomTable(room), playerOrder);
+    }
+
+    public TienLenGameSession(int roomId, GameType gameType, GameRoom room, GameTable table, List<Integer> playerOrder) {
+        super(roomId, gameType, room, table);
         this.playerOrder = new ArrayList<>(playerOrder);
         this.initialCredits = new HashMap<>();
 
-        // Load initial credits and deduct Buy-In
-        try {
-            UserDAO userDAO = new UserDAO(com.mygame.server.database.DatabaseManager.getInstance());
-            for (Integer userId : playerOrder) {
-                try {
-                    UserDAO.UserProfile profile = userDAO.getUserProfile(userId);
-                    long credits = (profile != null) ? profile.getCredits() : 0;
-                    initialCredits.put(userId, credits);
-                    pot += BUY_IN_AMOUNT; // Collect buy-in
-                } catch (SQLException e) {
-                    logger.error("Failed to load credits for user {}", userId, e);
-                    initialCredits.put(userId, 0L);
-                }
+        // Load initial credits (từ wallet, một lần cho cả chuỗi ván) and deduct Buy-In
+        for (Integer userId : playerOrder) {
+            try {
+                initialCredits.put(userId, table.balanceOf(userId));
+                pot += BUY_IN_AMOUNT; // Collect buy-in
+            } catch (SQLException e) {
+                logger.error("Failed to load credits for user {}", userId, e);
+                initialCredits.put(userId, 0L);
             }
-        } catch (Exception e) {
-            logger.error("Error creating UserDAO", e);
+        }
+        for (Integer userId : playerOrder) {
+            nextHands.put(userId, new ArrayList<>(CARDS_PER_PLAYER));
         }
 
         this.gameState = new TienLenGameState(playerOrder);
@@ -72,7 +91,9 @@ public class TienLenGameSession extends GameSession {
         for (Map.Entry<Integer, Long> entry : initialCredits.entrySet()) {
             this.gameState.setPlayerCredits(entry.getKey(), entry.getValue());
         }
+        this.journalCredits = gameState::getPlayerCredits;
 
+        journal().sessionStart(journalId, gameType, roomId, this.playerOrder);
         dealHands();
 
         // INTEGRATION FIX: Broadcast GameStart logic so clients navigate to GameScreen
@@ -93,33 +114,63 @@ public class TienLenGameSession extends GameSession {
     }
 
     private void broadcastGameStart() {
+        if (room != null) {
+            table.broadcast(buildGameStart());
+        }
+    }
+
+    private GameStartPacket buildGameStart() {
         GameStartPacket packet = new GameStartPacket();
         packet.setRoomId(roomId);
         packet.setGameType(gameType);
-        packet.setPlayerOrder(new ArrayList<>(playerOrder)); // Copy to avoid Kryo shared reference issues if any
+        packet.setPlayerOrder(playerOrder); // playerOrder không bao giờ đổi sau khi tạo session
         packet.setInitialState(gameState);
-        if (room != null) {
-            room.broadcast(packet);
-        }
+        return packet;
+    }
+
+    /**
+     * Đang chơi: GameStartPacket để client dựng lại bàn; đang vote: snapshot state.
+     */
+    @Override
+    public Object buildResyncPacket(int playerId) {
+        return finished ? buildGameStatePacket() : buildGameStart();
     }
 
     private void dealHands() {
-        Deck deck = new Deck();
-        deck.shuffle();
-        List<Card> allCards = new ArrayList<>();
-        for (int i = 0; i < 52; i++)
-            allCards.add(deck.deal());
-
-        int playerCount = playerOrder.size();
-        int cardsPerPlayer = 13;
-
-        for (int i = 0; i < playerCount; i++) {
-            int playerId = playerOrder.get(i);
-            List<Card> hand = new ArrayList<>();
-            for (int j = 0; j < cardsPerPlayer; j++) {
-                hand.add(allCards.get(i * cardsPerPlayer + j));
+        if (!nextDealReady) {
+            shuffleAndSplit();
+        }
+        for (Integer playerId : playerOrder) {
+            gameState.dealSortedHand(playerId, nextHands.get(playerId));
+        }
+        nextDealReady = false;
+        gameNumber++;
+        // deck vẫn giữ thứ tự của lần xáo vừa chia (có thể đã xáo sẵn trong lúc vote)
+        journal().deal(journalId, gameNumber, -1, -1, playerOrder, journalCredits, ALL_DEALT, deck);
+    }
+
+    /**
+     * Xáo deck và chia sẵn 13 lá (đã sắp xếp) cho mỗi người vào {@link #nextHands}.
+     */
+    private void shuffleAndSplit() {
+        table.shuffle(deck);
+        for (Integer playerId : playerOrder) {
+            List<Card> hand = nextHands.get(playerId);
+            hand.clear();
+            for (int j = 0; j < CARDS_PER_PLAYER; j++) {
+                hand.add(deck.deal());
             }
-            gameState.dealHand(playerId, hand);
+            CardCollection.sortHandTienLen(hand);
+        }
+        nextDealReady = true;
+    }
+
+    /**
+     * Chuẩn bị sẵn ván sau trong lúc người chơi vote (gọi trên executor của room).
+     */
+    public void prepareNextDeal() {
+        if (inVotingPhase && !nextDealReady) {
+            shuffleAndSplit();
         }
     }
 
@@ -150,6 +201,7 @@ public class TienLenGameSession extends GameSession {
 
         // Start new round state
         gameState.startNewRound();
+        markTurnChanged();
     }
 
     /**
@@ -274,6 +326,7 @@ public class TienLenGameSession extends GameSession {
 
         // 4. Update State
         gameState.playCards(playerId, cards, type);
+        markTurnChanged();
 
         // 5. Check Finish
         if (gameState.isPlayerFinished(playerId)) {
@@ -315,6 +368,7 @@ public class TienLenGameSession extends GameSession {
 
         gameState.passTurn(playerId);
         gameState.nextTurn();
+        markTurnChanged();
 
         checkRoundEnd();
         broadcastState();
@@ -399,6 +453,14 @@ public class TienLenGameSession extends GameSession {
         winnerId = winner;
         inVotingPhase = true;
         playAgainVotes.clear();
+        markTurnChanged();
+
+        // Cộng dồn kết quả để settle theo lô; credits hiển thị ở ván sau đã tính ván này
+        for (Map.Entry<Integer, Long> entry : getCreditChanges().entrySet()) {
+            unsettled.merge(entry.getKey(), entry.getValue(), Long::sum);
+            gameState.setPlayerCredits(entry.getKey(), gameState.getPlayerCredits(entry.getKey()) + entry.getValue());
+        }
+        unsettledGames++;
 
         broadcastState();
         broadcastGameEndPacket();
@@ -425,7 +487,7 @@ public class TienLenGameSession extends GameSession {
         }
         packet.setCreditChanges(creditChangesList);
 
-        room.broadcast(packet);
+        table.broadcast(packet);
         logger.info("Broadcast GameEndPacket. Winner: {}", winnerId);
     }
 
@@ -485,43 +547,95 @@ public class TienLenGameSession extends GameSession {
         packet.setStatus(status);
         packet.setVoterIds(new ArrayList<>(playAgainVotes));
 
-        room.broadcast(packet);
+        table.broadcast(packet);
         logger.info("Broadcast voting status: {} ({}/{})", status, playAgainVotes.size(), playerOrder.size());
     }
 
     /**
      * Restart the game with the same players.
+     * Bài đã chia sẵn trong lúc vote; state được reset tại chỗ và chỉ gửi một GameStartPacket
+     * (đã có lượt đầu tiên).
      */
     private void restartGame() {
         // Reset game state
         finished = false;
         winnerId = -1;
-        pot = 0;
+        pot = BUY_IN_AMOUNT * playerOrder.size(); // Collect buy-ins again
         playAgainVotes.clear();
 
-        // Collect buy-ins again
-        for (Integer userId : playerOrder) {
-            pot += BUY_IN_AMOUNT;
-        }
-
-        // Create new game state
         gameState.reset(playerOrder);
-
-        // Deal new hands
         dealHands();
 
-        // Broadcast game start
-        broadcastGameStart();
-        broadcastState();
-
         // Check instant win
         int instantWinner = checkInstantWin();
         if (instantWinner != -1) {
             logger.info("Instant Winner (Toi Trang) detected: {}", instantWinner);
+            broadcastGameStart();
             endGame(instantWinner);
         } else {
             determineFirstPlayer();
+            broadcastGameStart();
+        }
+    }
+
+    public int getGameNumber() {
+        return gameNumber;
+    }
+
+    @Override
+    public int getHandNumber() {
+        return gameNumber;
+    }
+
+    public int getUnsettledGames() {
+        return unsettledGames;
+    }
+
+    /**
+     * Tổng delta credits của người chơi trong các ván chưa settle.
+     */
+    public long getUnsettled(int playerId) {
+        return unsettled.getOrDefault(playerId, 0L);
+    }
+
+    /**
+     * Lấy tổng delta credits của các ván chưa settle và xoá khỏi session.
+     */
+    public Map<Integer, Long> drainUnsettled() {
+        Map<Integer, Long> drained = new HashMap<>(unsettled);
+        unsettled.clear();
+        unsettledGames = 0;
+        return drained;
+    }
+
+    /**
+     * Thứ tự người chơi (cố định trong suốt session).
+     */
+    public List<Integer> getPlayerOrder() {
+        return Collections.unmodifiableList(playerOrder);
+    }
+
+    /**
+     * Không cho chơi lại (vd. có người không đủ credits cho ván sau): cả bàn về lobby.
+     */
+    public void endVoting() {
+        if (!inVotingPhase) {
+            return;
+        }
+        inVotingPhase = false;
+        broadcastVotingStatus("RETURNING_TO_LOBBY");
+    }
+
+    /**
+     * Hết giờ vote: coi như có người chọn về lobby.
+     */
+    public void expireVote() {
+        if (!inVotingPhase) {
+            return;
         }
+        logger.info("Voting timed out in room {}, returning to lobby", roomId);
+        inVotingPhase = false;
+        broadcastVotingStatus("RETURNING_TO_LOBBY");
     }
 
     /**
@@ -533,10 +647,45 @@ public class TienLenGameSession extends GameSession {
 
     private void broadcastState() {
         if (room != null) {
-            room.broadcast(buildGameStatePacket());
+            table.broadcast(buildGameStatePacket());
         }
     }
 
+    @Override
+    public int getCurrentTurnPlayerId() {
+        return finished ? -1 : gameState.getCurrentPlayerId();
+    }
+
+    /**
+     * Hết giờ: SKIP nếu đang có bài trên bàn; nếu đang cầm cái (không được bỏ lượt)
+     * thì đánh lá nhỏ nhất, lá này là 3 bích nếu người chơi đang giữ nó.
+     */
+    @Override
+    public PlayerActionPacket buildTimeoutAction(int playerId) {
+        PlayerActionPacket action = new PlayerActionPacket();
+        action.setRoomId(roomId);
+        action.setGameType(gameType);
+        action.setPlayerId(playerId);
+        if (!gameState.getCurrentTrick().isEmpty()) {
+            action.setActionType("SKIP");
+            return action;
+        }
+        Card lowest = null;
+        for (Card card : gameState.getPlayerHand(playerId)) {
+            if (lowest == null || card.getRankValueForTienLen() < lowest.getRankValueForTienLen()
+                    || (card.getRankValueForTienLen() == lowest.getRankValueForTienLen()
+                            && card.getSuitValueForTienLen() < lowest.getSuitValueForTienLen())) {
+                lowest = card;
+            }
+        }
+        if (lowest == null) {
+            return null;
+        }
+        action.setActionType("PLAY");
+        action.setCards(new ArrayList<>(Collections.singletonList(lowest)));
+        return action;
+    }
+
     @Override
     public GameStatePacket buildGameStatePacket() {
         GameStatePacket packet = new GameStatePacket();
@@ -574,4 +723,17 @@ public class TienLenGameSession extends GameSession {
         }
         return changes;
     }
+
+    @Override
+    public Map<Integer, Long> getAmountsWagered() {
+        Map<Integer, Long> wagered = new HashMap<>();
+        if (!finished)
+            return wagered;
+
+        // Mỗi người chơi đặt đúng buy-in vào pot
+        for (Integer pid : playerOrder) {
+            wagered.put(pid, BUY_IN_AMOUNT);
+        }
+        return wagered;
+    }
 }
@@ -1,9 +1,10 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.room.GameRoom;
 import com.mygame.server.room.GameRoomManager;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.storage.Storage;
 import com.mygame.shared.model.GameType;
 import com.mygame.shared.model.RoomInfo;
 import com.mygame.shared.network.packets.CreateRoomRequest;
@@ -20,20 +21,16 @@ public class CreateRoomHandler {
     private static final Logger logger = LoggerFactory.getLogger(CreateRoomHandler.class);
     private final GameRoomManager roomManager;
     
-    // Map connection -> userId (tạm thời, nên lưu trong connection object)
-    private final java.util.Map<Connection, Integer> connectionToUser = new java.util.concurrent.ConcurrentHashMap<>();
+    private final SessionRegistry sessionRegistry;
     
-    public CreateRoomHandler(DatabaseManager dbManager) {
-        this.roomManager = new GameRoomManager(dbManager);
-    }
-    
-    public void setUserId(Connection connection, int userId) {
-        connectionToUser.put(connection, userId);
+    public CreateRoomHandler(Storage storage) {
+        this.roomManager = new GameRoomManager(storage);
+        this.sessionRegistry = SessionRegistry.getInstance();
     }
     
     public void handle(Connection connection, CreateRoomRequest request) {
-        Integer userId = connectionToUser.get(connection);
-        if (userId == null) {
+        int userId = sessionRegistry.getUserId(connection);
+        if (userId == 0) {
             logger.warn("Connection không có userId, không thể tạo room");
             CreateRoomResponse response = new CreateRoomResponse();
             response.setSuccess(false);
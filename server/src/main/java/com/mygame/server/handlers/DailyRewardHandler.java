@@ -1,8 +1,9 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
+import com.mygame.server.daily.DailyRewardIndex;
 import com.mygame.server.database.DailyRewardDAO;
+import com.mygame.server.storage.Storage;
 import com.mygame.shared.network.packets.DailyRewardRequest;
 import com.mygame.shared.network.packets.DailyRewardResponse;
 import org.slf4j.Logger;
@@ -17,42 +18,45 @@ import java.time.LocalDateTime;
 public class DailyRewardHandler {
     private static final Logger logger = LoggerFactory.getLogger(DailyRewardHandler.class);
     private final DailyRewardDAO dailyRewardDAO;
+    private final DailyRewardIndex rewardIndex;
     
-    public DailyRewardHandler(DatabaseManager dbManager) {
-        this.dailyRewardDAO = new DailyRewardDAO(dbManager);
+    public DailyRewardHandler(Storage storage) {
+        this.dailyRewardDAO = storage.dailyRewards();
+        this.rewardIndex = DailyRewardIndex.getInstance();
     }
     
     public void handle(Connection connection, DailyRewardRequest request) {
         logger.info("Nhận daily reward request từ connection {}: userId={}", connection.getID(), request.userId);
         
+        long now = System.currentTimeMillis();
+        
+        // Kiểm tra cooldown trong bộ nhớ và giữ chỗ, không đọc database
+        if (!rewardIndex.tryReserve(request.userId, now)) {
+            DailyRewardResponse response = new DailyRewardResponse();
+            response.success = false;
+            response.creditsReceived = 0;
+            response.nextRewardTime = rewardIndex.getNextRewardTime(request.userId, now);
+            response.errorMessage = "Chưa đến thời gian nhận daily reward";
+            connection.sendTCP(response);
+            logger.debug("User {} chưa thể nhận daily reward", request.userId);
+            return;
+        }
+        
         try {
-            // Kiểm tra có thể nhận không
-            if (!dailyRewardDAO.canClaimDailyReward(request.userId)) {
-                LocalDateTime nextTime = dailyRewardDAO.getNextRewardTime(request.userId);
-                DailyRewardResponse response = new DailyRewardResponse();
-                response.success = false;
-                response.creditsReceived = 0;
-                response.nextRewardTime = nextTime;
-                response.errorMessage = "Chưa đến thời gian nhận daily reward";
-                connection.sendTCP(response);
-                logger.debug("User {} chưa thể nhận daily reward", request.userId);
-                return;
-            }
-            
             // Nhận reward
-            long creditsReceived = dailyRewardDAO.claimDailyReward(request.userId);
-            LocalDateTime nextTime = dailyRewardDAO.getNextRewardTime(request.userId);
+            long creditsReceived = dailyRewardDAO.claimDailyReward(request.userId, DailyRewardIndex.toLocal(now));
             
             DailyRewardResponse response = new DailyRewardResponse();
             response.success = true;
             response.creditsReceived = creditsReceived;
-            response.nextRewardTime = nextTime;
+            response.nextRewardTime = rewardIndex.getNextRewardTime(request.userId, now);
             response.errorMessage = null;
             
             connection.sendTCP(response);
             logger.info("User {} đã nhận daily reward: {} credits", request.userId, creditsReceived);
             
         } catch (SQLException e) {
+            rewardIndex.cancel(request.userId, now);
             logger.error("Lỗi khi xử lý daily reward: {}", e.getMessage(), e);
             DailyRewardResponse response = new DailyRewardResponse();
             response.success = false;
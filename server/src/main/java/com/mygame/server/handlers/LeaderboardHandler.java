@@ -1,8 +1,8 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.database.LeaderboardDAO;
+import com.mygame.server.storage.Storage;
 import com.mygame.shared.model.LeaderboardEntry;
 import com.mygame.shared.model.Rank;
 import com.mygame.shared.network.packets.LeaderboardRequest;
@@ -12,7 +12,10 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Handler xử lý LeaderboardRequest
@@ -21,15 +24,49 @@ public class LeaderboardHandler {
     private static final Logger logger = LoggerFactory.getLogger(LeaderboardHandler.class);
     private final LeaderboardDAO leaderboardDAO;
     
-    public LeaderboardHandler(DatabaseManager dbManager) {
-        this.leaderboardDAO = new LeaderboardDAO(dbManager);
+    public LeaderboardHandler(Storage storage) {
+        this.leaderboardDAO = storage.leaderboard();
     }
     
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int CACHED_PAGES = 64;
+    
+    // Trang đọc thành công gần nhất theo (cursor, offset, limit), trả về khi database lỗi
+    private final Map<String, List<LeaderboardDAO.LeaderboardEntry>> lastPages = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<LeaderboardDAO.LeaderboardEntry>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<LeaderboardDAO.LeaderboardEntry>> eldest) {
+                    return size() > CACHED_PAGES;
+                }
+            });
+    
     public void handle(Connection connection, LeaderboardRequest request) {
-        logger.debug("Nhận leaderboard request từ connection {}: limit={}", connection.getID(), request.limit);
+        logger.debug("Nhận leaderboard request từ connection {}: limit={}, cursor=({}, {})",
+                connection.getID(), request.limit, request.cursorCredits, request.cursorUserId);
+        
+        int limit = Math.max(1, Math.min(request.limit, MAX_PAGE_SIZE));
+        LeaderboardResponse response = new LeaderboardResponse();
+        response.firstPage = request.isFirstPage();
         
+        String pageKey = request.cursorCredits + ":" + request.cursorUserId + ":" + request.rankOffset + ":" + limit;
         try {
-            List<LeaderboardDAO.LeaderboardEntry> dbEntries = leaderboardDAO.getTopPlayers(request.limit);
+            // Lấy thêm 1 dòng để biết còn trang sau không
+            List<LeaderboardDAO.LeaderboardEntry> dbEntries;
+            try {
+                dbEntries = leaderboardDAO.getPage(
+                        request.cursorCredits, request.cursorUserId, request.rankOffset, limit + 1);
+                lastPages.put(pageKey, dbEntries);
+            } catch (SQLException e) {
+                dbEntries = lastPages.get(pageKey);
+                if (dbEntries == null) {
+                    throw e;
+                }
+                logger.warn("Database lỗi, trả leaderboard từ cache: {}", e.getMessage());
+            }
+            response.hasMore = dbEntries.size() > limit;
+            if (response.hasMore) {
+                dbEntries = dbEntries.subList(0, limit);
+            }
             
             // Convert sang shared LeaderboardEntry
             List<LeaderboardEntry> sharedEntries = new ArrayList<>();
@@ -42,17 +79,22 @@ public class LeaderboardHandler {
                 sharedEntries.add(shared);
             }
             
-            LeaderboardResponse response = new LeaderboardResponse();
+            if (!dbEntries.isEmpty()) {
+                LeaderboardDAO.LeaderboardEntry last = dbEntries.get(dbEntries.size() - 1);
+                response.nextCursorCredits = last.getCredits();
+                response.nextCursorUserId = last.getUserId();
+            }
+            response.nextRankOffset = request.rankOffset + sharedEntries.size();
             response.entries = sharedEntries;
             
             connection.sendTCP(response);
-            logger.debug("Đã gửi {} entries trong leaderboard", sharedEntries.size());
+            logger.debug("Đã gửi {} entries trong leaderboard (hasMore={})", sharedEntries.size(), response.hasMore);
             
         } catch (SQLException e) {
             logger.error("Lỗi khi lấy leaderboard: {}", e.getMessage(), e);
             // Gửi response rỗng nếu có lỗi
-            LeaderboardResponse response = new LeaderboardResponse();
             response.entries = new ArrayList<>();
+            response.hasMore = false;
             connection.sendTCP(response);
         }
     }
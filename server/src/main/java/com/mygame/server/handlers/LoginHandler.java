@@ -1,8 +1,10 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.database.UserDAO;
+import com.mygame.server.session.ResumeTokenService;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.wallet.WalletService;
 import com.mygame.shared.model.PlayerProfile;
 import com.mygame.shared.model.Rank;
 import com.mygame.shared.network.packets.LoginRequest;
@@ -19,8 +21,8 @@ public class LoginHandler {
     private static final Logger logger = LoggerFactory.getLogger(LoginHandler.class);
     private final UserDAO userDAO;
     
-    public LoginHandler(DatabaseManager dbManager) {
-        this.userDAO = new UserDAO(dbManager);
+    public LoginHandler(Storage storage) {
+        this.userDAO = storage.users();
     }
     
     public interface LoginCallback {
@@ -38,6 +40,8 @@ public class LoginHandler {
         
         try {
             UserDAO.UserProfile dbProfile = userDAO.login(request.username, request.password);
+            // Nạp sẵn account vào wallet: bàn mở sau đó vẫn có số dư thật khi database gặp sự cố
+            WalletService.getInstance().preload(dbProfile.getId(), dbProfile.getCredits());
             
             // Convert sang shared PlayerProfile
             PlayerProfile sharedProfile = convertToSharedProfile(dbProfile);
@@ -46,6 +50,7 @@ public class LoginHandler {
             response.success = true;
             response.playerProfile = sharedProfile;
             response.errorMessage = null;
+            response.resumeToken = ResumeTokenService.getInstance().issue(dbProfile.getId());
             
             connection.sendTCP(response);
             
@@ -81,6 +86,8 @@ public class LoginHandler {
         shared.rank = Rank.valueOf(dbProfile.getRank());
         shared.totalWins = dbProfile.getTotalWins();
         shared.totalLosses = dbProfile.getTotalLosses();
+        shared.handsPlayed = dbProfile.getHandsPlayed();
+        shared.biggestPot = dbProfile.getBiggestPot();
         return shared;
     }
 }
@@ -1,8 +1,8 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.database.MatchHistoryDAO;
+import com.mygame.server.storage.Storage;
 import com.mygame.shared.model.MatchHistoryEntry;
 import com.mygame.shared.network.packets.MatchHistoryRequest;
 import com.mygame.shared.network.packets.MatchHistoryResponse;
@@ -20,17 +20,29 @@ public class MatchHistoryHandler {
     private static final Logger logger = LoggerFactory.getLogger(MatchHistoryHandler.class);
     private final MatchHistoryDAO matchHistoryDAO;
     
-    public MatchHistoryHandler(DatabaseManager dbManager) {
-        this.matchHistoryDAO = new MatchHistoryDAO(dbManager);
+    public MatchHistoryHandler(Storage storage) {
+        this.matchHistoryDAO = storage.matchHistory();
     }
     
+    private static final int MAX_PAGE_SIZE = 100;
+
     public void handle(Connection connection, MatchHistoryRequest request) {
-        logger.debug("Nhận match history request từ connection {}: userId={}, limit={}", 
-                     connection.getID(), request.userId, request.limit);
+        logger.debug("Nhận match history request từ connection {}: userId={}, limit={}, cursor=({}, {})", 
+                     connection.getID(), request.userId, request.limit,
+                     request.cursorTimestampMicros, request.cursorMatchId);
+        
+        int limit = Math.max(1, Math.min(request.limit, MAX_PAGE_SIZE));
+        MatchHistoryResponse response = new MatchHistoryResponse();
+        response.firstPage = request.isFirstPage();
         
         try {
-            List<MatchHistoryDAO.MatchHistoryEntry> dbEntries = 
-                matchHistoryDAO.getRecentMatches(request.userId, request.limit);
+            // Lấy thêm 1 dòng để biết còn trang sau không
+            List<MatchHistoryDAO.MatchHistoryEntry> dbEntries = matchHistoryDAO.getMatchesPage(
+                request.userId, request.cursorTimestampMicros, request.cursorMatchId, limit + 1);
+            response.hasMore = dbEntries.size() > limit;
+            if (response.hasMore) {
+                dbEntries = dbEntries.subList(0, limit);
+            }
             
             // Convert sang shared MatchHistoryEntry
             List<MatchHistoryEntry> sharedEntries = new ArrayList<>();
@@ -49,17 +61,21 @@ public class MatchHistoryHandler {
                 sharedEntries.add(shared);
             }
             
-            MatchHistoryResponse response = new MatchHistoryResponse();
+            if (!dbEntries.isEmpty()) {
+                MatchHistoryDAO.MatchHistoryEntry last = dbEntries.get(dbEntries.size() - 1);
+                response.nextCursorTimestampMicros = last.getTimestampMicros();
+                response.nextCursorMatchId = last.getId();
+            }
             response.entries = sharedEntries;
             
             connection.sendTCP(response);
-            logger.debug("Đã gửi {} entries trong match history", sharedEntries.size());
+            logger.debug("Đã gửi {} entries trong match history (hasMore={})", sharedEntries.size(), response.hasMore);
             
         } catch (SQLException e) {
             logger.error("Lỗi khi lấy match history: {}", e.getMessage(), e);
             // Gửi response rỗng nếu có lỗi
-            MatchHistoryResponse response = new MatchHistoryResponse();
             response.entries = new ArrayList<>();
+            response.hasMore = false;
             connection.sendTCP(response);
         }
     }
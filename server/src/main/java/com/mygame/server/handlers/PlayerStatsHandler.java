@@ -0,0 +1,58 @@
+package com.mygame.server.handlers;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.stats.HandStatsStore;
+import com.mygame.server.stats.PlayerStats;
+import com.mygame.shared.network.packets.PlayerStatsRequest;
+import com.mygame.shared.network.packets.PlayerStatsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handler xử lý PlayerStatsRequest: đọc từ hand stats store, không đụng database.
+ *
+ * Stats không công khai: chỉ người đã đăng nhập xem được, và chỉ của chính mình.
+ * request.userId = 0 nghĩa là user của connection; userId khác bị từ chối.
+ */
+public class PlayerStatsHandler {
+    private static final Logger logger = LoggerFactory.getLogger(PlayerStatsHandler.class);
+    private final SessionRegistry sessionRegistry = SessionRegistry.getInstance();
+
+    public void handle(Connection connection, PlayerStatsRequest request) {
+        int userId = sessionRegistry.getUserId(connection);
+        if (userId == 0) {
+            logger.warn("PlayerStatsRequest from unauthenticated connection {}", connection.getID());
+            connection.sendTCP(failure("Not authenticated"));
+            return;
+        }
+        if (request.userId != 0 && request.userId != userId) {
+            logger.warn("User {} yêu cầu stats của user {}, từ chối", userId, request.userId);
+            connection.sendTCP(failure("Chỉ xem được thống kê của chính mình"));
+            return;
+        }
+
+        long to = request.toMillis > 0 ? request.toMillis : Long.MAX_VALUE;
+        PlayerStats stats = HandStatsStore.getInstance().query(userId, request.gameType, request.fromMillis, to);
+
+        PlayerStatsResponse response = new PlayerStatsResponse();
+        response.success = true;
+        response.userId = userId;
+        response.hands = stats.getHands();
+        response.wins = stats.getWins();
+        response.losses = stats.getLosses();
+        response.winRate = stats.getWinRate();
+        response.vpip = stats.getVpip();
+        response.averagePot = stats.getAveragePot();
+        response.netCredits = stats.getNetCredits();
+        connection.sendTCP(response);
+        logger.debug("Đã gửi stats của user {} cho connection {}: {}", userId, connection.getID(), stats);
+    }
+
+    public static PlayerStatsResponse failure(String errorMessage) {
+        PlayerStatsResponse response = new PlayerStatsResponse();
+        response.success = false;
+        response.errorMessage = errorMessage;
+        return response;
+    }
+}
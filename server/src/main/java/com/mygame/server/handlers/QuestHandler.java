@@ -1,41 +1,40 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
-import com.mygame.server.database.QuestDAO;
 import com.mygame.server.database.UserDAO;
+import com.mygame.server.quest.QuestProgressService;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.storage.Storage;
 import com.mygame.shared.model.Quest;
 import com.mygame.shared.network.packets.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Handler for quest-related requests
  */
 public class QuestHandler {
     private static final Logger logger = LoggerFactory.getLogger(QuestHandler.class);
-    private final QuestDAO questDAO;
+    private final QuestProgressService questService;
     private final UserDAO userDAO;
-    private final Map<Connection, Integer> connectionToUser;
+    private final SessionRegistry sessionRegistry;
     
-    public QuestHandler(DatabaseManager dbManager, Map<Connection, Integer> connectionToUser) {
-        this.questDAO = new QuestDAO(dbManager);
-        this.userDAO = new UserDAO(dbManager);
-        this.connectionToUser = connectionToUser;
+    public QuestHandler(Storage storage) {
+        this.questService = QuestProgressService.getInstance();
+        this.userDAO = storage.users();
+        this.sessionRegistry = SessionRegistry.getInstance();
     }
     
     /**
      * Handle GetQuestsRequest
      */
     public void handleGetQuests(Connection connection, GetQuestsRequest request) {
-        Integer userId = connectionToUser.get(connection);
+        int userId = sessionRegistry.getUserId(connection);
         
-        if (userId == null) {
+        if (userId == 0) {
             logger.warn("GetQuestsRequest from unauthenticated connection {}", connection.getID());
             GetQuestsResponse response = new GetQuestsResponse();
             response.success = false;
@@ -45,10 +44,11 @@ public class QuestHandler {
         }
         
         try {
-            logger.info("Getting daily quests for user {}", userId);
-            List<QuestDAO.QuestProgress> dbQuests = questDAO.getUserDailyQuests(userId);
+            logger.debug("Getting daily quests for user {}", userId);
+            // Trả lời từ bộ nhớ; database chỉ được đọc lần đầu trong ngày
+            List<Quest> quests = questService.getQuests(userId);
             
-            if (dbQuests == null || dbQuests.isEmpty()) {
+            if (quests.isEmpty()) {
                 logger.warn("No quests returned for user {}", userId);
                 GetQuestsResponse response = new GetQuestsResponse();
                 response.success = false;
@@ -57,27 +57,12 @@ public class QuestHandler {
                 return;
             }
             
-            // Convert to shared model
-            List<Quest> quests = new ArrayList<>();
-            for (QuestDAO.QuestProgress dbQuest : dbQuests) {
-                Quest quest = new Quest(
-                    dbQuest.getQuestId(),
-                    dbQuest.getDescription(),
-                    dbQuest.getGameType(),
-                    dbQuest.getTargetCount(),
-                    dbQuest.getRewardCredits(),
-                    dbQuest.getCurrentProgress(),
-                    dbQuest.isClaimed()
-                );
-                quests.add(quest);
-            }
-            
             GetQuestsResponse response = new GetQuestsResponse();
             response.success = true;
             response.quests = quests;
             connection.sendTCP(response);
             
-            logger.info("Sent {} quests to user {}", quests.size(), userId);
+            logger.debug("Sent {} quests to user {}", quests.size(), userId);
             
         } catch (SQLException e) {
             logger.error("Failed to get quests for user {}: {}", userId, e.getMessage(), e);
@@ -102,9 +87,9 @@ public class QuestHandler {
      * Handle ClaimQuestRequest
      */
     public void handleClaimQuest(Connection connection, ClaimQuestRequest request) {
-        Integer userId = connectionToUser.get(connection);
+        int userId = sessionRegistry.getUserId(connection);
         
-        if (userId == null) {
+        if (userId == 0) {
             logger.warn("ClaimQuestRequest from unauthenticated connection {}", connection.getID());
             ClaimQuestResponse response = new ClaimQuestResponse();
             response.success = false;
@@ -114,7 +99,7 @@ public class QuestHandler {
         }
         
         try {
-            boolean claimed = questDAO.claimQuestReward(userId, request.questId);
+            boolean claimed = questService.claim(userId, request.questId);
             
             ClaimQuestResponse response = new ClaimQuestResponse();
             response.success = claimed;
@@ -141,4 +126,3 @@ public class QuestHandler {
         }
     }
 }
-
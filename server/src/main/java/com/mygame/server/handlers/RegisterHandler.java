@@ -1,8 +1,8 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.database.UserDAO;
+import com.mygame.server.storage.Storage;
 import com.mygame.shared.model.PlayerProfile;
 import com.mygame.shared.model.Rank;
 import com.mygame.shared.network.packets.RegisterRequest;
@@ -19,8 +19,8 @@ public class RegisterHandler {
     private static final Logger logger = LoggerFactory.getLogger(RegisterHandler.class);
     private final UserDAO userDAO;
     
-    public RegisterHandler(DatabaseManager dbManager) {
-        this.userDAO = new UserDAO(dbManager);
+    public RegisterHandler(Storage storage) {
+        this.userDAO = storage.users();
     }
     
     public void handle(Connection connection, RegisterRequest request) {
@@ -65,6 +65,8 @@ public class RegisterHandler {
         shared.rank = Rank.valueOf(dbProfile.getRank());
         shared.totalWins = dbProfile.getTotalWins();
         shared.totalLosses = dbProfile.getTotalLosses();
+        shared.handsPlayed = dbProfile.getHandsPlayed();
+        shared.biggestPot = dbProfile.getBiggestPot();
         return shared;
     }
 }
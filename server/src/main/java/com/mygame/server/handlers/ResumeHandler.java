@@ -0,0 +1,78 @@
+package com.mygame.server.handlers;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.game.GameSessionManager;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.room.GameRoom;
+import com.mygame.server.room.GameRoomManager;
+import com.mygame.server.session.ResumeTokenService;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.shared.network.packets.ResumeRequest;
+import com.mygame.shared.network.packets.ResumeResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handler xử lý ResumeRequest: client kết nối lại bằng resume token thay cho login.
+ *
+ * Token hợp lệ thì gắn kết nối vào user (như login), cấp token mới, rồi trả lại ghế đang giữ
+ * trong room cùng các packet đã lỡ. Không chạm BCrypt hay database.
+ */
+public class ResumeHandler {
+    private static final Logger logger = LoggerFactory.getLogger(ResumeHandler.class);
+
+    private final ResumeTokenService tokenService;
+    private final SessionRegistry sessionRegistry;
+    private final GameRoomManager roomManager;
+    private final GameSessionManager gameSessionManager;
+    private final LongAdder resumed;
+    private final LongAdder rejected;
+
+    public ResumeHandler(GameRoomManager roomManager, GameSessionManager gameSessionManager) {
+        this.tokenService = ResumeTokenService.getInstance();
+        this.sessionRegistry = SessionRegistry.getInstance();
+        this.roomManager = roomManager;
+        this.gameSessionManager = gameSessionManager;
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.resumed = metrics.counter("sessions.resumed");
+        this.rejected = metrics.counter("sessions.resume_rejected");
+    }
+
+    public void handle(Connection connection, ResumeRequest request) {
+        ResumeResponse response = new ResumeResponse();
+        int userId = tokenService.redeem(request.resumeToken);
+        if (userId == 0) {
+            rejected.increment();
+            response.success = false;
+            response.errorMessage = "Phiên đã hết hạn, vui lòng đăng nhập lại";
+            connection.sendTCP(response);
+            logger.info("Resume bị từ chối cho connection {}", connection.getID());
+            return;
+        }
+
+        sessionRegistry.bindUser(connection, userId);
+        resumed.increment();
+
+        response.success = true;
+        response.userId = userId;
+        response.roomId = sessionRegistry.getRoomId(userId);
+        response.resumeToken = tokenService.issue(userId);
+        connection.sendTCP(response);
+
+        // Packet bù gửi sau ResumeResponse
+        reclaimSeat(connection, userId);
+        logger.info("User {} resume trên connection {} (room {})", userId, connection.getID(), response.roomId);
+    }
+
+    /**
+     * Trả lại ghế đang giữ (nếu có) cho kết nối mới của user. Dùng cho cả resume và login lại.
+     */
+    public void reclaimSeat(Connection connection, int userId) {
+        GameRoom room = roomManager.getRoomByUser(userId);
+        if (room != null) {
+            gameSessionManager.resumePlayer(room, userId, connection);
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.mygame.server.handlers;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.database.UserDAO;
 import com.mygame.server.room.GameRoom;
 import com.mygame.server.room.GameRoomManager;
+import com.mygame.server.session.ClientSession;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.storage.AsyncDao;
+import com.mygame.server.storage.Storage;
 import com.mygame.shared.model.GameType;
 import com.mygame.shared.model.RoomInfo;
 import com.mygame.shared.network.packets.*;
@@ -13,25 +16,32 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handler tổng hợp xử lý tất cả room operations
  */
 public class RoomHandler {
     private static final Logger logger = LoggerFactory.getLogger(RoomHandler.class);
+    // Deadline cho các lookup profile khi dựng RoomInfo bất đồng bộ
+    private static final long LOOKUP_DEADLINE_MILLIS = Long.getLong("room.lookupDeadlineMs", 300L);
     private final GameRoomManager roomManager;
     private final UserDAO userDAO;
+    private final AsyncDao asyncDao = AsyncDao.getInstance();
     private com.mygame.server.game.GameSessionManager gameSessionManager;
 
-    // Map connection -> userId
-    private final Map<Connection, Integer> connectionToUser = new ConcurrentHashMap<>();
+    private final SessionRegistry sessionRegistry;
 
-    public RoomHandler(DatabaseManager dbManager) {
-        this.roomManager = new GameRoomManager(dbManager);
-        this.userDAO = new UserDAO(dbManager);
+    public RoomHandler(Storage storage) {
+        this.roomManager = new GameRoomManager(storage);
+        this.userDAO = storage.users();
+        this.sessionRegistry = SessionRegistry.getInstance();
     }
 
     /**
@@ -41,14 +51,6 @@ public class RoomHandler {
         this.gameSessionManager = manager;
     }
 
-    public void setUserId(Connection connection, int userId) {
-        connectionToUser.put(connection, userId);
-    }
-
-    public Integer getUserId(Connection connection) {
-        return connectionToUser.get(connection);
-    }
-
     /**
      * Cho phép các component khác (vd. GameSessionManager) truy cập roomManager.
      */
@@ -57,8 +59,8 @@ public class RoomHandler {
     }
 
     public void handleCreateRoom(Connection connection, CreateRoomRequest request) {
-        Integer userId = connectionToUser.get(connection);
-        if (userId == null) {
+        int userId = sessionRegistry.getUserId(connection);
+        if (userId == 0) {
             sendError(connection, new CreateRoomResponse(), "Chưa đăng nhập");
             return;
         }
@@ -81,7 +83,7 @@ public class RoomHandler {
             response.setSuccess(true);
             response.setRoomInfo(roomInfo);
             response.setErrorMessage(null);
-            connection.sendTCP(response);
+            sessionRegistry.send(connection, response);
 
         } catch (SQLException e) {
             sendError(connection, new CreateRoomResponse(), e.getMessage());
@@ -89,26 +91,28 @@ public class RoomHandler {
     }
 
     public void handleJoinRoom(Connection connection, JoinRoomRequest request) {
-        Integer userId = connectionToUser.get(connection);
-        if (userId == null) {
+        int userId = sessionRegistry.getUserId(connection);
+        if (userId == 0) {
             sendError(connection, new JoinRoomResponse(), "Chưa đăng nhập");
             return;
         }
 
         try {
             GameRoom room = roomManager.joinRoom(request.getRoomId(), userId, connection);
-            RoomInfo roomInfo = convertToRoomInfo(room);
 
-            JoinRoomResponse response = new JoinRoomResponse();
-            response.setSuccess(true);
-            response.setRoomInfo(roomInfo);
-            response.setErrorMessage(null);
-            connection.sendTCP(response);
+            // Profile của các player được tra song song; trả lời khi đủ hoặc hết deadline
+            convertToRoomInfoAsync(room).thenAccept(roomInfo -> {
+                JoinRoomResponse response = new JoinRoomResponse();
+                response.setSuccess(true);
+                response.setRoomInfo(roomInfo);
+                response.setErrorMessage(null);
+                sessionRegistry.send(connection, response);
 
-            // Broadcast room update đến tất cả players
-            RoomUpdatePacket update = new RoomUpdatePacket();
-            update.setRoomInfo(roomInfo);
-            roomManager.broadcastToRoom(room.getRoomId(), update);
+                // Broadcast room update đến tất cả players
+                RoomUpdatePacket update = new RoomUpdatePacket();
+                update.setRoomInfo(roomInfo);
+                roomManager.broadcastToRoom(room.getRoomId(), update);
+            });
 
         } catch (SQLException e) {
             sendError(connection, new JoinRoomResponse(), e.getMessage());
@@ -116,8 +120,8 @@ public class RoomHandler {
     }
 
     public void handleLeaveRoom(Connection connection, LeaveRoomRequest request) {
-        Integer userId = connectionToUser.get(connection);
-        if (userId == null) {
+        int userId = sessionRegistry.getUserId(connection);
+        if (userId == 0) {
             return;
         }
 
@@ -139,44 +143,79 @@ public class RoomHandler {
     }
 
     public void handleListRooms(Connection connection, ListRoomsRequest request) {
-        try {
-            String gameType = request.getGameType() != null ? request.getGameType().name() : null;
-            List<com.mygame.server.database.RoomDAO.RoomData> dbRooms = roomManager.getWaitingRooms(gameType, 50);
+        String gameType = request.getGameType() != null ? request.getGameType().name() : null;
+        ClientSession session = sessionRegistry.get(connection);
+        Executor owner = session != null ? session.getExecutor() : Runnable::run;
 
+        asyncDao.getWaitingRooms(gameType, 50, owner).whenComplete((dbRooms, error) -> {
             List<RoomInfo> roomInfos = new ArrayList<>();
-            for (com.mygame.server.database.RoomDAO.RoomData dbRoom : dbRooms) {
-                RoomInfo info = new RoomInfo();
-                info.setRoomId(dbRoom.getRoomId());
-                info.setRoomName(dbRoom.getRoomName());
-                info.setGameType(GameType.valueOf(dbRoom.getGameType()));
-                info.setHostUserId(dbRoom.getHostUserId());
-                info.setHostUsername(dbRoom.getHostUsername());
-                info.setMaxPlayers(dbRoom.getMaxPlayers());
-                info.setCurrentPlayers(dbRoom.getCurrentPlayers());
-                info.setStatus(dbRoom.getStatus());
-                roomInfos.add(info);
+            if (error != null) {
+                logger.error("Lỗi khi list rooms: {}", error.getMessage(), error);
+            } else {
+                for (com.mygame.server.database.RoomDAO.RoomData dbRoom : dbRooms) {
+                    RoomInfo info = new RoomInfo();
+                    info.setRoomId(dbRoom.getRoomId());
+                    info.setRoomName(dbRoom.getRoomName());
+                    info.setGameType(GameType.valueOf(dbRoom.getGameType()));
+                    info.setHostUserId(dbRoom.getHostUserId());
+                    info.setHostUsername(dbRoom.getHostUsername());
+                    info.setMaxPlayers(dbRoom.getMaxPlayers());
+                    info.setCurrentPlayers(dbRoom.getCurrentPlayers());
+                    info.setStatus(dbRoom.getStatus());
+                    roomInfos.add(info);
+                }
             }
 
             ListRoomsResponse response = new ListRoomsResponse();
             response.setRooms(roomInfos);
-            connection.sendTCP(response);
+            sessionRegistry.send(connection, response);
+        });
+    }
 
-        } catch (SQLException e) {
-            logger.error("Lỗi khi list rooms: {}", e.getMessage(), e);
-            ListRoomsResponse response = new ListRoomsResponse();
-            response.setRooms(new ArrayList<>());
-            connection.sendTCP(response);
+    /**
+     * Kết nối của user (đã bỏ khỏi SessionRegistry) bị ngắt: giữ ghế chờ resume, hết hạn thì rời room.
+     */
+    public void handleDisconnection(int userId) {
+        roomManager.handleDisconnection(userId);
+    }
+
+    private RoomInfo convertToRoomInfo(GameRoom room) {
+        // Fetch user profiles from database
+        Map<Integer, UserDAO.UserProfile> profiles = new HashMap<>();
+        for (Integer userId : room.getPlayerPositions().keySet()) {
+            try {
+                profiles.put(userId, userDAO.getUserProfile(userId));
+            } catch (SQLException e) {
+                logger.warn("Failed to fetch profile for user {}: {}", userId, e.getMessage());
+            }
         }
+        return convertToRoomInfo(room, profiles);
     }
 
-    public void handleDisconnection(Connection connection) {
-        Integer userId = connectionToUser.remove(connection);
-        if (userId != null) {
-            roomManager.handleDisconnection(userId);
+    /**
+     * Như {@link #convertToRoomInfo(GameRoom)} nhưng tra profile song song qua {@link AsyncDao},
+     * tối đa {@link #LOOKUP_DEADLINE_MILLIS}; player chưa có profile khi hết deadline dùng tên mặc
+     * định. Hoàn thành trên executor của room, với danh sách player lúc đó.
+     */
+    private CompletableFuture<RoomInfo> convertToRoomInfoAsync(GameRoom room) {
+        Map<Integer, UserDAO.UserProfile> profiles = new ConcurrentHashMap<>();
+        List<CompletableFuture<?>> lookups = new ArrayList<>();
+        for (Integer userId : new ArrayList<>(room.getPlayerPositions().keySet())) {
+            lookups.add(asyncDao.getUserProfile(userId, LOOKUP_DEADLINE_MILLIS, TimeUnit.MILLISECONDS, room.getExecutor())
+                    .handle((profile, error) -> {
+                        if (error != null) {
+                            logger.warn("Failed to fetch profile for user {}: {}", userId, error.getMessage());
+                        } else {
+                            profiles.put(userId, profile);
+                        }
+                        return null;
+                    }));
         }
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> convertToRoomInfo(room, profiles));
     }
 
-    private RoomInfo convertToRoomInfo(GameRoom room) {
+    private RoomInfo convertToRoomInfo(GameRoom room, Map<Integer, UserDAO.UserProfile> profiles) {
         RoomInfo info = new RoomInfo();
         info.setRoomId(room.getRoomId());
         info.setRoomName(room.getRoomName());
@@ -186,7 +225,7 @@ public class RoomHandler {
         info.setCurrentPlayers(room.getCurrentPlayers());
         info.setStatus(room.getStatus());
 
-        // Convert players - fetch real data from database
+        // Convert players
         List<RoomInfo.RoomPlayerInfo> playerInfos = new ArrayList<>();
         for (Map.Entry<Integer, Integer> entry : room.getPlayerPositions().entrySet()) {
             int userId = entry.getKey();
@@ -194,23 +233,16 @@ public class RoomHandler {
             playerInfo.setUserId(userId);
             playerInfo.setPosition(entry.getValue());
 
-            // Fetch user profile from database
-            try {
-                UserDAO.UserProfile profile = userDAO.getUserProfile(userId);
-                if (profile != null) {
-                    playerInfo.setUsername(profile.getUsername());
-                    playerInfo.setBalance(profile.getCredits());
-
-                    // Set host username if this is the host
-                    if (userId == room.getHostUserId()) {
-                        info.setHostUsername(profile.getUsername());
-                    }
-                } else {
-                    playerInfo.setUsername("Player " + userId);
-                    playerInfo.setBalance(0);
+            UserDAO.UserProfile profile = profiles.get(userId);
+            if (profile != null) {
+                playerInfo.setUsername(profile.getUsername());
+                playerInfo.setBalance(profile.getCredits());
+
+                // Set host username if this is the host
+                if (userId == room.getHostUserId()) {
+                    info.setHostUsername(profile.getUsername());
                 }
-            } catch (SQLException e) {
-                logger.warn("Failed to fetch profile for user {}: {}", userId, e.getMessage());
+            } else {
                 playerInfo.setUsername("Player " + userId);
                 playerInfo.setBalance(0);
             }
@@ -234,7 +266,7 @@ public class RoomHandler {
                 ((StartGameResponse) response).setSuccess(false);
                 ((StartGameResponse) response).setErrorMessage(error);
             }
-            connection.sendTCP(response);
+            sessionRegistry.send(connection, response);
         } catch (Exception e) {
             logger.error("Lỗi khi gửi error response: {}", e.getMessage());
         }
@@ -245,8 +277,8 @@ public class RoomHandler {
      * Validates host permission and minimum player count.
      */
     public void handleStartGame(Connection connection, StartGameRequest request) {
-        Integer userId = connectionToUser.get(connection);
-        if (userId == null) {
+        int userId = sessionRegistry.getUserId(connection);
+        if (userId == 0) {
             sendError(connection, new StartGameResponse(), "Chưa đăng nhập");
             return;
         }
@@ -299,7 +331,7 @@ public class RoomHandler {
 
         // Send success response to host
         StartGameResponse response = new StartGameResponse(true, null);
-        connection.sendTCP(response);
+        sessionRegistry.send(connection, response);
 
         logger.info("Game started in room {} by host {}", room.getRoomId(), userId);
     }
@@ -330,6 +362,10 @@ public class RoomHandler {
             logger.info("Player {} kicked from room {} due to bankruptcy", kickedUserId, roomId);
         }
 
+        if (!kicked.isEmpty() && room.getCurrentPlayers() == 0) {
+            roomManager.scheduleEmptyExpiry(room);
+        }
+
         return kicked;
     }
 }
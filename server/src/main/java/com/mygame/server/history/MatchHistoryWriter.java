@@ -0,0 +1,204 @@
+package com.mygame.server.history;
+
+import com.mygame.server.database.DatabaseHealthMonitor;
+import com.mygame.server.database.MatchHistoryDAO;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.storage.StorageSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ghi match_history bất đồng bộ.
+ *
+ * Game thread chỉ gọi {@link #submit} - một lệnh {@code offer} không block vào hàng đợi
+ * có giới hạn. Một background thread gom tối đa {@link #MAX_BATCH} dòng (hoặc chờ tối đa
+ * {@link #MAX_WAIT_MS}) rồi ghi cả batch trên session riêng.
+ *
+ * Khi hàng đợi đầy, dòng mới bị bỏ và đếm vào metric {@code match_history.dropped};
+ * batch ghi lỗi quá số lần retry cũng được đếm vào đó. Khi circuit breaker database mở, writer
+ * giữ batch và chờ breaker đóng (không tính vào số lần retry); hàng đợi là bộ đệm trong lúc đó.
+ */
+public class MatchHistoryWriter {
+    private static final Logger logger = LoggerFactory.getLogger(MatchHistoryWriter.class);
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 500;
+    private static final long MAX_WAIT_MS = 200;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static MatchHistoryWriter instance;
+
+    private final BlockingQueue<MatchRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder enqueued;
+    private final LongAdder dropped;
+    private final LongAdder written;
+    private final LongAdder batches;
+    private final LongAdder writeErrors;
+
+    private Storage storage;
+    private MatchHistoryDAO matchHistoryDAO;
+    private StorageSession session;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private MatchHistoryWriter() {
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        enqueued = metrics.counter("match_history.enqueued");
+        dropped = metrics.counter("match_history.dropped");
+        written = metrics.counter("match_history.written");
+        batches = metrics.counter("match_history.batches");
+        writeErrors = metrics.counter("match_history.write_errors");
+        metrics.gauge("match_history.queue_depth", queue::size);
+    }
+
+    public static synchronized MatchHistoryWriter getInstance() {
+        if (instance == null) {
+            instance = new MatchHistoryWriter();
+        }
+        return instance;
+    }
+
+    public synchronized void start(Storage storage) {
+        if (running) {
+            return;
+        }
+        this.storage = storage;
+        this.matchHistoryDAO = storage.matchHistory();
+        running = true;
+        writerThread = new Thread(this::writerLoop, "match-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Match history writer đã khởi động (queue: {}, batch: {})", QUEUE_CAPACITY, MAX_BATCH);
+    }
+
+    /**
+     * Đưa các dòng vào hàng đợi ghi. Không bao giờ block; trả về số dòng bị bỏ do hàng đợi đầy.
+     */
+    public int submit(List<MatchRecord> records) {
+        int rejected = 0;
+        for (MatchRecord record : records) {
+            if (running && queue.offer(record)) {
+                enqueued.increment();
+            } else {
+                rejected++;
+            }
+        }
+        if (rejected > 0) {
+            long before = dropped.sum();
+            dropped.add(rejected);
+            // Chỉ log lần đầu và mỗi 1000 dòng để không spam log trên game thread
+            if (before == 0 || before / 1000 != (before + rejected) / 1000) {
+                logger.warn("Match history queue đầy, bỏ {} dòng (tổng đã bỏ: {})", rejected, before + rejected);
+            }
+        }
+        return rejected;
+    }
+
+    private void writerLoop() {
+        List<MatchRecord> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                MatchRecord first = queue.poll(MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            writeWithRetry(batch);
+            batch.clear();
+        }
+        closeSession();
+    }
+
+    private void writeWithRetry(List<MatchRecord> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (!awaitDatabase()) {
+                break;
+            }
+            try {
+                if (session == null || session.isClosed()) {
+                    session = storage.openSession();
+                }
+                matchHistoryDAO.saveMatches(session, batch);
+                session.commit();
+                written.add(batch.size());
+                batches.increment();
+                logger.debug("Đã ghi {} dòng match history", batch.size());
+                return;
+            } catch (SQLException e) {
+                writeErrors.increment();
+                logger.warn("Lỗi khi ghi match history (lần {}/{}): {}", attempt, MAX_ATTEMPTS, e.getMessage());
+                closeSession();
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        dropped.add(batch.size());
+        logger.error("Bỏ {} dòng match history sau {} lần thử", batch.size(), MAX_ATTEMPTS);
+    }
+
+    /**
+     * Chờ circuit breaker đóng. Trả về false nếu writer đang dừng (hoặc bị ngắt) mà database vẫn lỗi.
+     */
+    private boolean awaitDatabase() {
+        DatabaseHealthMonitor health = DatabaseHealthMonitor.getInstance();
+        try {
+            while (!health.awaitAvailable(MAX_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void closeSession() {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (SQLException ignored) {
+            // Session đã hỏng, bỏ qua
+        }
+        session = null;
+    }
+
+    /**
+     * Dừng nhận dòng mới và chờ ghi hết hàng đợi.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Match history writer đã dừng (ghi: {}, bỏ: {}, còn trong queue: {})",
+                written.sum(), dropped.sum(), queue.size());
+    }
+}
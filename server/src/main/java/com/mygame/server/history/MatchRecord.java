@@ -0,0 +1,36 @@
+package com.mygame.server.history;
+
+/**
+ * Một dòng match_history chờ ghi: kết quả của một người chơi trong một ván đã settle.
+ */
+public final class MatchRecord {
+    private final int userId;
+    private final String gameType;
+    private final String matchMode;
+    private final String result;
+    private final long creditsChange;
+    private final int opponentCount;
+    private final int durationSeconds;
+    private final long timestampMillis;
+
+    public MatchRecord(int userId, String gameType, String matchMode, String result,
+                       long creditsChange, int opponentCount, int durationSeconds, long timestampMillis) {
+        this.userId = userId;
+        this.gameType = gameType;
+        this.matchMode = matchMode;
+        this.result = result;
+        this.creditsChange = creditsChange;
+        this.opponentCount = opponentCount;
+        this.durationSeconds = durationSeconds;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public int getUserId() { return userId; }
+    public String getGameType() { return gameType; }
+    public String getMatchMode() { return matchMode; }
+    public String getResult() { return result; }
+    public long getCreditsChange() { return creditsChange; }
+    public int getOpponentCount() { return opponentCount; }
+    public int getDurationSeconds() { return durationSeconds; }
+    public long getTimestampMillis() { return timestampMillis; }
+}
@@ -0,0 +1,513 @@
+package com.mygame.server.journal;
+
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.shared.game.card.Card;
+import com.mygame.shared.game.card.Deck;
+import com.mygame.shared.game.card.Suit;
+import com.mygame.shared.model.GameType;
+import com.mygame.shared.network.packets.game.PlayerActionPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Nhật ký append-only của mọi ván chơi: thứ tự bộ bài của từng hand, mọi action tới session,
+ * kết quả settle và lúc đóng bàn. Đủ để dựng lại và kiểm tra một hand bị khiếu nại.
+ *
+ * Ghi vào các segment memory-mapped ({@link JournalSegment}, {@code journal.segmentMegabytes},
+ * mặc định 64) trong thư mục {@code journal.dir} (mặc định {@code journal}). Game thread chỉ giữ
+ * chỗ bằng một CAS rồi ghi thẳng vào vùng đã map - không lock, không syscall, không cấp phát.
+ * Thread {@code hand-journal} force các trang đã ghi xuống đĩa mỗi {@code journal.flushMillis}
+ * (mặc định 1000), nên khi máy sập mất tối đa chừng đó dữ liệu; JVM chết thì không mất gì vì
+ * trang đã nằm trong page cache.
+ *
+ * Segment cũ hơn {@code journal.retentionHours} (mặc định 72) hoặc vượt tổng
+ * {@code journal.maxMegabytes} (mặc định 4096) bị xoá, cũ nhất trước. Tắt bằng
+ * {@code -Djournal.enabled=false}. Đọc lại bằng {@link HandJournalReader}.
+ *
+ * Record: {@code int length, byte type, long journalId, long timeMillis, int hand} rồi payload.
+ * Byte type được ghi sau cùng: record ghi dở (type 0) bị reader bỏ qua.
+ */
+public class HandJournal {
+    private static final Logger logger = LoggerFactory.getLogger(HandJournal.class);
+
+    public static final byte SESSION_START = 1; // byte gameType, int roomId, byte n, n x int playerId
+    public static final byte DEAL = 2;          // int sbIndex, int bbIndex, byte n, n x (int id, long chips, byte dealtIn), byte deckSize, deckSize x byte card
+    public static final byte ACTION = 3;        // int playerId, byte action, byte flags, long amount, long sequence, byte n, n x byte card
+    public static final byte SETTLE = 4;        // byte n, n x (int playerId, long delta)
+    public static final byte SESSION_END = 5;   // int winnerId
+    public static final byte BATCH_SETTLED = 6; // không payload: Tiến Lên đã settle vào wallet các ván tới hand này
+
+    /** Action đã được session chấp nhận (lượt đã đổi). */
+    public static final byte FLAG_APPLIED = 1;
+    /** Action do server đánh thay khi hết giờ (Poker: người chơi cũng bị tạm nghỉ). */
+    public static final byte FLAG_TIMEOUT = 2;
+
+    static final int RECORD_HEADER_BYTES = 4 + 1 + 8 + 8 + 4;
+    static final String SEGMENT_SUFFIX = ".hj";
+
+    private static final String[] ACTIONS = {
+            null, "FOLD", "CHECK", "CALL", "RAISE", "SIT_OUT", "SIT_IN", "REBUY", "PLAY", "SKIP"
+    };
+    private static final Suit[] SUITS = Suit.values();
+
+    private static HandJournal instance;
+    private static HandJournal disabled;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long flushMillis;
+    private final long retentionMillis;
+    private final long maxBytes;
+    private final LongAdder records;
+    private final LongAdder dropped;
+    private final LongAdder deletedSegments;
+    private final LatencyHistogram flushTime;
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+    private final List<JournalSegment> sealed = new ArrayList<>(); // segment đã đầy, force thêm một lần nữa
+
+    private volatile JournalSegment current;
+    private ScheduledExecutorService flusher;
+    private int segmentSeq;
+
+    private HandJournal() {
+        this.enabled = Boolean.parseBoolean(System.getProperty("journal.enabled", "true"));
+        this.dir = Paths.get(System.getProperty("journal.dir", "journal"));
+        this.segmentBytes = Integer.getInteger("journal.segmentMegabytes", 64) << 20;
+        this.flushMillis = Math.max(10, Integer.getInteger("journal.flushMillis", 1000));
+        this.retentionMillis = TimeUnit.HOURS.toMillis(Integer.getInteger("journal.retentionHours", 72));
+        this.maxBytes = (long) Integer.getInteger("journal.maxMegabytes", 4096) << 20;
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.records = metrics.counter("journal.records");
+        this.dropped = metrics.counter("journal.dropped");
+        this.deletedSegments = metrics.counter("journal.segments_deleted");
+        this.flushTime = metrics.histogram("journal.flush");
+    }
+
+    public static synchronized HandJournal getInstance() {
+        if (instance == null) {
+            instance = new HandJournal();
+        }
+        return instance;
+    }
+
+    /**
+     * Journal không bao giờ được start, mọi record bị bỏ qua (replay, tool chạy ngoài server).
+     */
+    public static synchronized HandJournal disabled() {
+        if (disabled == null) {
+            disabled = new HandJournal();
+        }
+        return disabled;
+    }
+
+    public synchronized void start() {
+        if (!enabled || flusher != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+            current = newSegment();
+        } catch (IOException e) {
+            logger.error("Không thể mở hand journal ở {}, journal bị tắt: {}", dir.toAbsolutePath(), e.getMessage());
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hand-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::enforceRetention, 0, 1, TimeUnit.MINUTES);
+        logger.info("Hand journal ở {} (segment {} MB, flush {} ms)",
+                dir.toAbsolutePath(), segmentBytes >> 20, flushMillis);
+    }
+
+    /**
+     * Dừng thread flush và force lần cuối; record ghi sau đó bị bỏ.
+     */
+    public synchronized void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+        flush();
+        current = null;
+        logger.info("Hand journal đã dừng ({} record, bỏ {})", records.sum(), dropped.sum());
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    public void sessionStart(long journalId, GameType gameType, int roomId, List<Integer> players) {
+        int n = players.size();
+        Cursor c = begin(SESSION_START, journalId, 0, 1 + 4 + 1 + n * 4);
+        if (c == null) {
+            return;
+        }
+        c.putByte(gameType.ordinal());
+        c.putInt(roomId);
+        c.putByte(n);
+        for (int i = 0; i < n; i++) {
+            c.putInt(players.get(i));
+        }
+        c.commit();
+    }
+
+    /**
+     * Đầu hand: vị trí blinds (-1 nếu game không có), chips và trạng thái được chia bài của
+     * từng người theo thứ tự ngồi, và toàn bộ thứ tự bộ bài vừa xáo.
+     */
+    public void deal(long journalId, int hand, int sbIndex, int bbIndex, List<Integer> players,
+                     IntToLongFunction chips, IntPredicate dealtIn, Deck deck) {
+        int n = players.size();
+        int cards = deck.size();
+        Cursor c = begin(DEAL, journalId, hand, 4 + 4 + 1 + n * 13 + 1 + cards);
+        if (c == null) {
+            return;
+        }
+        c.putInt(sbIndex);
+        c.putInt(bbIndex);
+        c.putByte(n);
+        for (int i = 0; i < n; i++) {
+            int playerId = players.get(i);
+            c.putInt(playerId);
+            c.putLong(chips.applyAsLong(playerId));
+            c.putByte(dealtIn.test(playerId) ? 1 : 0);
+        }
+        c.putByte(cards);
+        for (int i = 0; i < cards; i++) {
+            c.putByte(cardCode(deck.cardAt(i)));
+        }
+        c.commit();
+    }
+
+    public void action(long journalId, int hand, PlayerActionPacket packet, int flags) {
+        List<Card> cards = packet.getCards();
+        int n = cards == null ? 0 : cards.size();
+        Cursor c = begin(ACTION, journalId, hand, 4 + 1 + 1 + 8 + 8 + 1 + n);
+        if (c == null) {
+            return;
+        }
+        c.putInt(packet.getPlayerId());
+        c.putByte(actionCode(packet.getActionType()));
+        c.putByte(flags);
+        c.putLong(packet.getAmount());
+        c.putLong(packet.getSequence());
+        c.putByte(n);
+        for (int i = 0; i < n; i++) {
+            c.putByte(cardCode(cards.get(i)));
+        }
+        c.commit();
+    }
+
+    /**
+     * Delta credits đã settle cho hand (Poker) hoặc ván (Tiến Lên), theo thứ tự players.
+     */
+    public void settle(long journalId, int hand, List<Integer> players, Map<Integer, Long> deltas) {
+        int n = players.size();
+        Cursor c = begin(SETTLE, journalId, hand, 1 + n * 12);
+        if (c == null) {
+            return;
+        }
+        c.putByte(n);
+        for (int i = 0; i < n; i++) {
+            Integer playerId = players.get(i);
+            Long delta = deltas.get(playerId);
+            c.putInt(playerId);
+            c.putLong(delta == null ? 0L : delta);
+        }
+        c.commit();
+    }
+
+    public void batchSettled(long journalId, int hand) {
+        Cursor c = begin(BATCH_SETTLED, journalId, hand, 0);
+        if (c != null) {
+            c.commit();
+        }
+    }
+
+    public void sessionEnd(long journalId, int hand, int winnerId) {
+        Cursor c = begin(SESSION_END, journalId, hand, 4);
+        if (c == null) {
+            return;
+        }
+        c.putInt(winnerId);
+        c.commit();
+    }
+
+    /**
+     * Giữ chỗ cho record và ghi header (trừ byte type). Trả về null nếu journal đang tắt
+     * hoặc không ghi được.
+     */
+    private Cursor begin(byte type, long journalId, int hand, int payloadBytes) {
+        JournalSegment segment = current;
+        if (segment == null) {
+            return null;
+        }
+        int length = RECORD_HEADER_BYTES + payloadBytes;
+        if (length > segmentBytes - JournalSegment.HEADER_BYTES) {
+            dropped.increment();
+            return null;
+        }
+        int start = segment.reserve(length);
+        while (start < 0) {
+            segment = roll(segment);
+            if (segment == null) {
+                dropped.increment();
+                return null;
+            }
+            start = segment.reserve(length);
+        }
+        Cursor c = cursors.get();
+        c.buffer = segment.buffer;
+        c.start = start;
+        c.type = type;
+        c.position = start + 5;
+        c.buffer.putInt(start, length);
+        c.putLong(journalId);
+        c.putLong(System.currentTimeMillis());
+        c.putInt(hand);
+        return c;
+    }
+
+    /**
+     * Segment đầy: mở segment mới (nếu thread khác chưa mở). Chạy trên game thread nhưng chỉ
+     * mỗi {@code journal.segmentMegabytes} một lần, và file mới là file sparse nên rất nhanh.
+     */
+    private synchronized JournalSegment roll(JournalSegment full) {
+        if (current != full) {
+            return current;
+        }
+        sealed.add(full);
+        try {
+            current = newSegment();
+        } catch (IOException e) {
+            logger.error("Không thể mở segment journal mới, journal bị tắt: {}", e.getMessage());
+            current = null;
+        }
+        return current;
+    }
+
+    private JournalSegment newSegment() throws IOException {
+        long now = System.currentTimeMillis();
+        Path path = dir.resolve(String.format("hands-%013d-%04d%s", now, segmentSeq++ % 10_000, SEGMENT_SUFFIX));
+        JournalSegment segment = JournalSegment.create(path, segmentBytes, now);
+        logger.info("Hand journal segment mới: {}", path.getFileName());
+        return segment;
+    }
+
+    private void flush() {
+        long start = System.nanoTime();
+        List<JournalSegment> retired;
+        JournalSegment active;
+        synchronized (this) {
+            retired = new ArrayList<>(sealed);
+            sealed.clear();
+            active = current;
+        }
+        boolean forced = false;
+        try {
+            for (JournalSegment segment : retired) {
+                forced |= segment.force();
+            }
+            if (active != null) {
+                forced |= active.force();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Lỗi khi flush hand journal: {}", e.getMessage());
+        }
+        if (forced) {
+            flushTime.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Xoá segment quá hạn hoặc vượt dung lượng, cũ nhất trước; không bao giờ xoá segment đang ghi.
+     */
+    private void enforceRetention() {
+        List<Path> segments;
+        try {
+            segments = listSegments(dir);
+        } catch (IOException e) {
+            logger.warn("Không thể liệt kê hand journal: {}", e.getMessage());
+            return;
+        }
+        JournalSegment active = current;
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (Path path : segments) {
+            total += sizeOf(path);
+        }
+        for (Iterator<Path> it = segments.iterator(); it.hasNext(); ) {
+            Path path = it.next();
+            if (active != null && path.equals(active.path)) {
+                break;
+            }
+            boolean expired = now - createdAt(path) > retentionMillis;
+            if (!expired && total <= maxBytes) {
+                break;
+            }
+            long size = sizeOf(path);
+            try {
+                Files.deleteIfExists(path);
+                total -= size;
+                deletedSegments.increment();
+                logger.info("Đã xoá hand journal segment {} ({})", path.getFileName(), expired ? "quá hạn" : "vượt dung lượng");
+            } catch (IOException e) {
+                logger.warn("Không thể xoá {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Các segment có thể chứa record ghi từ {@code sinceMillis} trở đi: segment cuối cùng được tạo
+     * trước thời điểm đó và mọi segment sau nó.
+     */
+    public static List<Path> listSegments(Path dir, long sinceMillis) throws IOException {
+        List<Path> segments = listSegments(dir);
+        int first = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (createdAt(segments.get(i)) <= sinceMillis) {
+                first = i;
+            }
+        }
+        return new ArrayList<>(segments.subList(first, segments.size()));
+    }
+
+    /**
+     * Các segment trong thư mục, cũ nhất trước (tên file bắt đầu bằng thời điểm tạo).
+     */
+    public static List<Path> listSegments(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "hands-*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static long createdAt(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(6, 19));
+        } catch (RuntimeException e) {
+            return Long.MAX_VALUE; // tên lạ: không coi là quá hạn
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Mã action một byte (0 nếu không biết); switch trên String dùng hash đã cache, không cấp phát.
+     */
+    public static int actionCode(String actionType) {
+        if (actionType == null) {
+            return 0;
+        }
+        switch (actionType) {
+            case "FOLD":
+                return 1;
+            case "CHECK":
+                return 2;
+            case "CALL":
+                return 3;
+            case "RAISE":
+                return 4;
+            case "SIT_OUT":
+                return 5;
+            case "SIT_IN":
+                return 6;
+            case "REBUY":
+                return 7;
+            case "PLAY":
+                return 8;
+            case "SKIP":
+                return 9;
+            default:
+                return 0;
+        }
+    }
+
+    public static String actionName(int code) {
+        return code > 0 && code < ACTIONS.length ? ACTIONS[code] : null;
+    }
+
+    /**
+     * Mã lá bài 0..51: {@code suit.ordinal() * 13 + rank - 2}.
+     */
+    public static int cardCode(Card card) {
+        return card.getSuit().ordinal() * 13 + card.getRank() - 2;
+    }
+
+    public static Card decodeCard(int code) {
+        return new Card(code % 13 + 2, SUITS[code / 13]);
+    }
+
+    /**
+     * Vị trí ghi của thread hiện tại trong record đang mở (mỗi thread một cursor, dùng lại).
+     */
+    private final class Cursor {
+        MappedByteBuffer buffer;
+        int start;
+        int position;
+        byte type;
+
+        void putByte(int value) {
+            buffer.put(position, (byte) value);
+            position += 1;
+        }
+
+        void putInt(int value) {
+            buffer.putInt(position, value);
+            position += 4;
+        }
+
+        void putLong(long value) {
+            buffer.putLong(position, value);
+            position += 8;
+        }
+
+        void commit() {
+            buffer.put(start + 4, type);
+            buffer = null;
+            records.increment();
+        }
+    }
+}
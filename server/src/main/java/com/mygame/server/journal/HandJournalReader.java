@@ -0,0 +1,171 @@
+package com.mygame.server.journal;
+
+import com.mygame.shared.game.card.Card;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Đọc tuần tự các record của {@link HandJournal}, qua một segment hoặc cả thư mục journal
+ * (cũ nhất trước). Có thể đọc trong lúc server vẫn đang ghi: record chưa ghi xong bị bỏ qua.
+ *
+ * <pre>
+ * HandJournalReader reader = HandJournalReader.open(Paths.get("journal"));
+ * while (reader.next()) {
+ *     if (reader.type() == HandJournal.ACTION) {
+ *         int playerId = reader.readInt();
+ *         String action = HandJournal.actionName(reader.readByte());
+ *     }
+ * }
+ * </pre>
+ *
+ * Payload của từng loại record xem ở các hằng số trong {@link HandJournal}.
+ */
+public class HandJournalReader {
+    private final List<Path> segments;
+    private int segmentIndex = -1;
+    private MappedByteBuffer buffer;
+    private Path segmentPath;
+    private int recordStart;
+    private int recordEnd;
+    private int position;
+    private byte type;
+    private long journalId;
+    private long timeMillis;
+    private int hand;
+
+    private HandJournalReader(List<Path> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Mở một file segment, hoặc mọi segment trong thư mục nếu path là thư mục.
+     */
+    public static HandJournalReader open(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return new HandJournalReader(HandJournal.listSegments(path));
+        }
+        return new HandJournalReader(Collections.singletonList(path));
+    }
+
+    /**
+     * Mở các segment trong thư mục có thể chứa record ghi từ {@code sinceMillis} trở đi.
+     */
+    public static HandJournalReader open(Path dir, long sinceMillis) throws IOException {
+        return new HandJournalReader(HandJournal.listSegments(dir, sinceMillis));
+    }
+
+    /**
+     * Chuyển sang record đã ghi xong kế tiếp; false khi đã hết.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (buffer == null && !openNextSegment()) {
+                return false;
+            }
+            int start = recordEnd;
+            if (start + HandJournal.RECORD_HEADER_BYTES > buffer.limit()) {
+                buffer = null;
+                continue;
+            }
+            int length = buffer.getInt(start);
+            if (length < HandJournal.RECORD_HEADER_BYTES || start + length > buffer.limit()) {
+                buffer = null; // hết dữ liệu của segment này
+                continue;
+            }
+            recordStart = start;
+            recordEnd = start + length;
+            type = buffer.get(start + 4);
+            if (type == 0) {
+                continue; // record ghi dở khi server dừng
+            }
+            journalId = buffer.getLong(start + 5);
+            timeMillis = buffer.getLong(start + 13);
+            hand = buffer.getInt(start + 21);
+            position = start + HandJournal.RECORD_HEADER_BYTES;
+            return true;
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        while (++segmentIndex < segments.size()) {
+            Path path = segments.get(segmentIndex);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() < JournalSegment.HEADER_BYTES) {
+                    continue;
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.getInt(0) != JournalSegment.MAGIC || mapped.getInt(4) != JournalSegment.VERSION) {
+                    throw new IOException("Không phải hand journal segment: " + path);
+                }
+                buffer = mapped;
+                segmentPath = path;
+                recordEnd = JournalSegment.HEADER_BYTES;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Path segment() {
+        return segmentPath;
+    }
+
+    public byte type() {
+        return type;
+    }
+
+    public long journalId() {
+        return journalId;
+    }
+
+    public long timeMillis() {
+        return timeMillis;
+    }
+
+    public int hand() {
+        return hand;
+    }
+
+    /**
+     * Số byte payload còn lại của record hiện tại.
+     */
+    public int remaining() {
+        return recordEnd - position;
+    }
+
+    public int readByte() {
+        check(1);
+        return buffer.get(position++) & 0xFF;
+    }
+
+    public int readInt() {
+        check(4);
+        int value = buffer.getInt(position);
+        position += 4;
+        return value;
+    }
+
+    public long readLong() {
+        check(8);
+        long value = buffer.getLong(position);
+        position += 8;
+        return value;
+    }
+
+    public Card readCard() {
+        return HandJournal.decodeCard(readByte());
+    }
+
+    private void check(int bytes) {
+        if (position + bytes > recordEnd) {
+            throw new IllegalStateException("Đọc quá payload của record tại " + segmentPath + ":" + recordStart);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.mygame.server.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Một file segment của {@link HandJournal}, map toàn bộ vào memory.
+ *
+ * Layout: header {@code magic, version, createdAtMillis} rồi các record nối tiếp nhau.
+ * Chỗ cho record được giữ bằng một CAS trên {@link #position}, nên nhiều room-worker ghi song
+ * song vào các vùng không chồng nhau mà không cần lock. Phần chưa ghi của file là byte 0
+ * (file sparse), reader dừng ở record có length 0.
+ */
+final class JournalSegment {
+    static final int MAGIC = 0x484A4E4C; // "HJNL"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    final Path path;
+    final long createdAtMillis;
+    final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicInteger position = new AtomicInteger(HEADER_BYTES);
+    private int forcedPosition = HEADER_BYTES; // chỉ thread flush đọc/ghi
+
+    private JournalSegment(Path path, long createdAtMillis, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.createdAtMillis = createdAtMillis;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    static JournalSegment create(Path path, int capacity, long now) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping vẫn hợp lệ sau khi đóng channel
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, now);
+            return new JournalSegment(path, now, buffer, capacity);
+        }
+    }
+
+    /**
+     * Giữ chỗ cho một record {@code size} byte; trả về offset, hoặc -1 nếu segment đã đầy.
+     */
+    int reserve(int size) {
+        while (true) {
+            int start = position.get();
+            if (start + size > capacity) {
+                return -1;
+            }
+            if (position.compareAndSet(start, start + size)) {
+                return start;
+            }
+        }
+    }
+
+    int written() {
+        return position.get();
+    }
+
+    /**
+     * Đẩy phần đã ghi kể từ lần force trước xuống đĩa; không làm gì nếu không có gì mới.
+     */
+    boolean force() {
+        int end = written();
+        if (end == forcedPosition) {
+            return false;
+        }
+        buffer.force(forcedPosition, end - forcedPosition);
+        forcedPosition = end;
+        return true;
+    }
+}
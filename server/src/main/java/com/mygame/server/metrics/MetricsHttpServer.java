@@ -0,0 +1,74 @@
+package com.mygame.server.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Endpoint HTTP cho vận hành: {@code GET /metrics} trả về snapshot của {@link ServerMetrics},
+ * mỗi dòng {@code <tên> <giá trị>}.
+ *
+ * Cấu hình bằng system property {@code metrics.port} (mặc định 9100, {@code 0} để tắt) và
+ * {@code metrics.host} (mặc định 127.0.0.1, chỉ nghe local).
+ */
+public class MetricsHttpServer {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    private static final int DEFAULT_PORT = 9100;
+    private static final String DEFAULT_HOST = "127.0.0.1";
+
+    private HttpServer server;
+
+    public synchronized void start() throws IOException {
+        int port = Integer.getInteger("metrics.port", DEFAULT_PORT);
+        if (port <= 0 || server != null) {
+            return;
+        }
+        String host = System.getProperty("metrics.host", DEFAULT_HOST);
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+        logger.info("Metrics endpoint: http://{}:{}/metrics", host, port);
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder body = new StringBuilder(4096);
+            for (Map.Entry<String, Long> entry : ServerMetrics.getInstance().snapshot().entrySet()) {
+                body.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
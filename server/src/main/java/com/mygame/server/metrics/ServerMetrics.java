@@ -0,0 +1,95 @@
+package com.mygame.server.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry đơn giản cho các counter và gauge của server.
+ *
+ * Counter dùng {@link LongAdder} nên tăng từ nhiều thread không bị tranh chấp.
+ * Gauge là giá trị đọc tại thời điểm snapshot (vd. độ sâu hàng đợi); nhóm gauge có tên động
+ * (vd. theo từng kết nối) đăng ký qua {@link #gaugeGroup}.
+ * Histogram ghi phân bố độ trễ (xem {@link LatencyHistogram}).
+ */
+public class ServerMetrics {
+    private static ServerMetrics instance;
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Map<String, Long>>> gaugeGroups = new ConcurrentHashMap<>();
+
+    private ServerMetrics() {
+        // Private constructor for singleton
+    }
+
+    public static synchronized ServerMetrics getInstance() {
+        if (instance == null) {
+            instance = new ServerMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Lấy (hoặc tạo) counter theo tên. Nên giữ lại reference thay vì tra cứu mỗi lần tăng.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Đăng ký gauge; đăng ký lại cùng tên sẽ thay thế gauge cũ.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Đăng ký nhóm gauge: mỗi snapshot gọi {@code supplier} một lần và mỗi entry trở thành
+     * key {@code <prefix>.<tên>}.
+     */
+    public void gaugeGroup(String prefix, Supplier<Map<String, Long>> supplier) {
+        gaugeGroups.put(prefix, supplier);
+    }
+
+    /**
+     * Lấy (hoặc tạo) histogram độ trễ theo tên. Nên giữ lại reference như với counter.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Snapshot tất cả counter, gauge và histogram, sắp xếp theo tên.
+     * Histogram được trải thành các key {@code <name>.count}, {@code .mean_us}, {@code .p50_us},
+     * {@code .p99_us} và {@code .max_us}.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Supplier<Map<String, Long>>> group : gaugeGroups.entrySet()) {
+            for (Map.Entry<String, Long> entry : group.getValue().get().entrySet()) {
+                values.put(group.getKey() + '.' + entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean_us", histogram.getMeanMicros());
+            values.put(name + ".p50_us", histogram.getPercentileMicros(0.50));
+            values.put(name + ".p99_us", histogram.getPercentileMicros(0.99));
+            values.put(name + ".max_us", histogram.getMaxMicros());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,49 @@
+package com.mygame.server.network;
+
+import com.mygame.server.database.DatabaseHealthMonitor;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.storage.AsyncDao;
+import com.mygame.server.util.SerialExecutor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quyết định quá tải toàn cục cho {@link PacketDispatcher}.
+ *
+ * Server được coi là quá tải khi độ trễ storage vượt {@code admission.maxDbLatencyMs} (mặc
+ * định 200), hoặc số task đang chờ trên executor của các room vượt
+ * {@code admission.maxQueuedTasks} (mặc định 10000). Độ trễ storage là giá trị lớn hơn giữa
+ * độ trễ probe database ({@link DatabaseHealthMonitor#latencyNanos()}) và thời gian chờ của thao
+ * tác cũ nhất trong hàng đợi I/O ({@link AsyncDao#oldestQueuedNanos}). Không dùng thời gian chạy
+ * handler: login/register cố ý chậm vì BCrypt, vài request như vậy không có nghĩa server quá tải.
+ *
+ * Các tín hiệu trên tự cập nhật kể cả khi packet bị shed, nên server tự thoát khỏi trạng thái
+ * quá tải mà không cần cho request thăm dò đi qua.
+ */
+final class AdmissionControl {
+    private final long maxLatencyNanos;
+    private final long maxQueuedTasks;
+    private final DatabaseHealthMonitor health = DatabaseHealthMonitor.getInstance();
+    private final AsyncDao asyncDao = AsyncDao.getInstance();
+
+    private volatile long storageLatencyNanos;
+    private volatile boolean overloaded;
+
+    AdmissionControl() {
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("admission.maxDbLatencyMs", 200));
+        this.maxQueuedTasks = Integer.getInteger("admission.maxQueuedTasks", 10_000);
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        metrics.gauge("admission.overloaded", () -> overloaded ? 1 : 0);
+        metrics.gauge("admission.storage_latency_us", () -> storageLatencyNanos / 1000);
+        metrics.gauge("admission.queued_tasks", SerialExecutor::queuedTasks);
+    }
+
+    /**
+     * Có cho packet sheddable đi tiếp không.
+     */
+    boolean admitSheddable(long now) {
+        storageLatencyNanos = Math.max(health.latencyNanos(), asyncDao.oldestQueuedNanos(now));
+        overloaded = storageLatencyNanos > maxLatencyNanos || SerialExecutor.queuedTasks() > maxQueuedTasks;
+        return !overloaded;
+    }
+}
@@ -0,0 +1,290 @@
+package com.mygame.server.network;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.shared.network.packets.RoomUpdatePacket;
+import com.mygame.shared.network.packets.game.GameStatePacket;
+import com.mygame.shared.network.packets.game.PlayAgainStatusPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hàng đợi gửi của một kết nối, đứng trước write buffer của KryoNet
+ * ({@code Server(16384, 8192)}).
+ *
+ * Packet chỉ được ghi thẳng xuống socket khi write buffer còn dưới
+ * {@code net.writeBudgetBytes} (mặc định 8192); còn lại nằm trong hàng đợi và được xả khi
+ * KryoNet báo kết nối idle (write buffer đã vơi). Trong hàng đợi:
+ * - Snapshot theo room ({@link GameStatePacket}, {@link RoomUpdatePacket},
+ * {@link PlayAgainStatusPacket}) chưa gửi được thay bằng bản mới hơn, nếu sau nó chưa có
+ * packet quan trọng nào xếp hàng (nên không bao giờ vượt lên trước GameEndPacket...).
+ * - Các packet khác giữ nguyên thứ tự.
+ *
+ * Client chậm (hàng đợi vượt {@code net.outboundMaxPackets}, mặc định 256, hoặc vượt budget
+ * liên tục quá {@code net.slowClientMillis}, mặc định 5000) bị ngắt kết nối.
+ *
+ * Metrics theo kết nối: {@code net.outbound.conn.<id>.depth/.coalesced/.dropped} cho
+ * {@code net.outboundTopConnections} (mặc định 10) kết nối đang có hàng đợi sâu nhất.
+ */
+public final class OutboundQueue {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundQueue.class);
+
+    private static final int WRITE_BUDGET_BYTES = Integer.getInteger("net.writeBudgetBytes", 8192);
+    private static final int MAX_PACKETS = Integer.getInteger("net.outboundMaxPackets", 256);
+    private static final long SLOW_CLIENT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("net.slowClientMillis", 5000));
+    private static final int TOP_CONNECTIONS = Integer.getInteger("net.outboundTopConnections", 10);
+
+    // connection id -> hàng đợi đang có packet chờ; Listener.idle chỉ tra map này (không lock)
+    private static final Map<Integer, OutboundQueue> BACKLOGGED = new ConcurrentHashMap<>();
+    private static final AtomicLong QUEUED = new AtomicLong();
+    private static final AtomicLong PEAK_DEPTH = new AtomicLong();
+    private static final LongAdder COALESCED;
+    private static final LongAdder DROPPED;
+    private static final LongAdder DISCONNECTED;
+
+    static {
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        COALESCED = metrics.counter("net.outbound.coalesced");
+        DROPPED = metrics.counter("net.outbound.dropped");
+        DISCONNECTED = metrics.counter("net.outbound.slow_disconnects");
+        metrics.gauge("net.outbound.queued", QUEUED::get);
+        metrics.gauge("net.outbound.max_depth", OutboundQueue::maxDepth);
+        metrics.gauge("net.outbound.peak_depth", PEAK_DEPTH::get); // đỉnh từ lúc khởi động
+        metrics.gaugeGroup("net.outbound.conn", OutboundQueue::deepestConnections);
+    }
+
+    private final Connection connection;
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private final Map<Object, Entry> pendingSnapshots = new HashMap<>(); // coalesce key -> entry chưa gửi
+    private long barriers; // số packet không coalesce được đã xếp hàng
+    private long overBudgetSince;
+    private long coalesced;
+    private long dropped;
+    private boolean closed;
+
+    public OutboundQueue(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Gửi packet: ghi thẳng nếu còn budget và không có gì đang chờ, ngược lại xếp hàng.
+     */
+    public synchronized void send(Object packet) {
+        if (closed) {
+            return;
+        }
+        if (queue.isEmpty() && connection.getTcpWriteBufferSize() < WRITE_BUDGET_BYTES) {
+            write(packet);
+            return;
+        }
+        enqueue(packet);
+        flushLocked();
+    }
+
+    /**
+     * Xả hàng đợi của kết nối (nếu đang có packet chờ); gọi từ Listener.idle, tức là khi
+     * write buffer đã vơi. Kết nối không có gì chờ chỉ tốn một lần tra ConcurrentHashMap.
+     */
+    public static void flush(Connection connection) {
+        OutboundQueue backlogged = BACKLOGGED.get(connection.getID());
+        if (backlogged != null) {
+            backlogged.drain();
+        }
+    }
+
+    private synchronized void drain() {
+        if (!queue.isEmpty()) {
+            flushLocked();
+        }
+    }
+
+    public synchronized int depth() {
+        return queue.size();
+    }
+
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Độ sâu hàng đợi lớn nhất hiện tại (chỉ kết nối đang có packet chờ mới có hàng đợi).
+     */
+    private static long maxDepth() {
+        long max = 0;
+        for (OutboundQueue backlogged : BACKLOGGED.values()) {
+            max = Math.max(max, backlogged.depth());
+        }
+        return max;
+    }
+
+    /**
+     * Depth, số packet đã coalesce và đã bỏ của các kết nối có hàng đợi sâu nhất.
+     */
+    private static Map<String, Long> deepestConnections() {
+        List<OutboundQueue> deepest = new ArrayList<>(BACKLOGGED.values());
+        int[] depths = new int[deepest.size()];
+        Integer[] order = new Integer[deepest.size()];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = deepest.get(i).depth(); // đọc một lần, hàng đợi vẫn thay đổi trong lúc sắp xếp
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(depths[b], depths[a]));
+        Map<String, Long> values = new HashMap<>();
+        for (int i = 0; i < order.length && i < TOP_CONNECTIONS; i++) {
+            OutboundQueue queue = deepest.get(order[i]);
+            String id = Integer.toString(queue.connection.getID());
+            values.put(id + ".depth", (long) depths[order[i]]);
+            values.put(id + ".coalesced", queue.getCoalesced());
+            values.put(id + ".dropped", queue.getDropped());
+        }
+        return values;
+    }
+
+    /**
+     * Bỏ các packet còn chờ khi kết nối đã đóng.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dropped += queue.size();
+        DROPPED.add(queue.size());
+        QUEUED.addAndGet(-queue.size());
+        queue.clear();
+        pendingSnapshots.clear();
+        BACKLOGGED.remove(connection.getID(), this);
+    }
+
+    private void enqueue(Object packet) {
+        Object key = coalesceKey(packet);
+        if (key != null) {
+            Entry pending = pendingSnapshots.get(key);
+            if (pending != null && pending.barriersBefore == barriers) {
+                pending.packet = packet; // giữ chỗ cũ, không có packet quan trọng nào phía sau
+                coalesced++;
+                COALESCED.increment();
+                return;
+            }
+        } else {
+            barriers++;
+        }
+        Entry entry = new Entry(packet, key, barriers);
+        if (queue.isEmpty()) {
+            BACKLOGGED.put(connection.getID(), this);
+        }
+        queue.add(entry);
+        if (key != null) {
+            pendingSnapshots.put(key, entry);
+        }
+        QUEUED.incrementAndGet();
+        PEAK_DEPTH.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    private void flushLocked() {
+        while (!queue.isEmpty() && connection.getTcpWriteBufferSize() < WRITE_BUDGET_BYTES) {
+            Entry entry = queue.poll();
+            QUEUED.decrementAndGet();
+            if (entry.key != null && pendingSnapshots.get(entry.key) == entry) {
+                pendingSnapshots.remove(entry.key);
+            }
+            write(entry.packet);
+        }
+        if (queue.isEmpty()) {
+            overBudgetSince = 0;
+            BACKLOGGED.remove(connection.getID(), this);
+            return;
+        }
+        long now = System.nanoTime();
+        if (overBudgetSince == 0) {
+            overBudgetSince = now;
+        }
+        if (queue.size() > MAX_PACKETS || now - overBudgetSince > SLOW_CLIENT_NANOS) {
+            logger.warn("Client {} quá chậm ({} packet chờ, vượt budget {} ms), ngắt kết nối",
+                    connection.getID(), queue.size(), TimeUnit.NANOSECONDS.toMillis(now - overBudgetSince));
+            DISCONNECTED.increment();
+            close();
+            connection.close();
+        }
+    }
+
+    private void write(Object packet) {
+        try {
+            connection.sendTCP(packet);
+        } catch (Exception e) {
+            dropped++;
+            DROPPED.increment();
+            logger.error("Lỗi khi gửi đến connection {}: {}", connection.getID(), e.getMessage());
+        }
+    }
+
+    /**
+     * Key coalesce của packet snapshot theo room, null nếu packet phải giữ nguyên thứ tự.
+     */
+    private static Object coalesceKey(Object packet) {
+        if (packet instanceof GameStatePacket) {
+            return new SnapshotKey(GameStatePacket.class, ((GameStatePacket) packet).getRoomId());
+        }
+        if (packet instanceof RoomUpdatePacket) {
+            RoomUpdatePacket update = (RoomUpdatePacket) packet;
+            return update.getRoomInfo() != null
+                    ? new SnapshotKey(RoomUpdatePacket.class, update.getRoomInfo().getRoomId()) : null;
+        }
+        if (packet instanceof PlayAgainStatusPacket) {
+            return new SnapshotKey(PlayAgainStatusPacket.class, ((PlayAgainStatusPacket) packet).getRoomId());
+        }
+        return null;
+    }
+
+    private static final class Entry {
+        Object packet;
+        final Object key;
+        final long barriersBefore;
+
+        Entry(Object packet, Object key, long barriersBefore) {
+            this.packet = packet;
+            this.key = key;
+            this.barriersBefore = barriersBefore;
+        }
+    }
+
+    private static final class SnapshotKey {
+        final Class<?> type;
+        final int roomId;
+
+        SnapshotKey(Class<?> type, int roomId) {
+            this.type = type;
+            this.roomId = roomId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SnapshotKey)) {
+                return false;
+            }
+            SnapshotKey other = (SnapshotKey) o;
+            return type == other.type && roomId == other.roomId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + roomId;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.mygame.server.network;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.util.IntObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Điều phối packet theo bảng: class của packet -> handler, tra bằng một IdentityHashMap
+ * thay cho chuỗi instanceof.
+ *
+ * Mỗi loại packet có histogram độ trễ {@code packets.<Tên>} và counter lỗi
+ * {@code packets.<Tên>.errors} trong {@link ServerMetrics}; tên được tính một lần lúc đăng ký.
+ * Thêm loại packet mới chỉ cần một lời gọi {@link #register}. Đăng ký xong trước khi server
+ * nhận kết nối; sau đó bảng chỉ được đọc.
+ *
+ * Trước khi tới handler, packet đi qua admission: token bucket theo kết nối và loại packet
+ * ({@link RateLimit}, lưu dạng GCRA: mỗi bucket là một long trong mảng long[] của kết nối),
+ * rồi shed toàn cục nếu quá tải ({@link AdmissionControl}). Packet bị từ chối được đếm vào
+ * {@code packets.<Tên>.rejected} và {@code admission.rate_limited}/{@code admission.shed}; loại
+ * request/response đăng ký kèm {@link Rejection} nhận lại response báo lỗi (client không phải chờ
+ * mãi), loại fire-and-forget (action, heartbeat...) chỉ bị bỏ.
+ * dispatch và {@link #forget} chỉ được gọi từ thread nhận packet của KryoNet.
+ */
+public class PacketDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(PacketDispatcher.class);
+
+    private final Map<Class<?>, Route<?>> routes = new IdentityHashMap<>();
+    // connection id -> thời điểm "đầy" (GCRA) của từng route, tính từ baseNanos
+    private final IntObjectHashMap<long[]> buckets = new IntObjectHashMap<>(1024);
+    private final long baseNanos = System.nanoTime();
+    private final AdmissionControl admission = new AdmissionControl();
+    private final LongAdder unknownPackets;
+    private final LongAdder rateLimited;
+    private final LongAdder shed;
+    private final ServerMetrics metrics;
+
+    static final String RATE_LIMITED_MESSAGE = "Bạn thao tác quá nhanh, vui lòng thử lại";
+    static final String BUSY_MESSAGE = "Server đang bận, vui lòng thử lại sau";
+
+    /**
+     * Dựng response báo lỗi cho request bị từ chối ở admission.
+     */
+    @FunctionalInterface
+    public interface Rejection<T> {
+        Object reply(T packet, String errorMessage);
+    }
+
+    public PacketDispatcher() {
+        this.metrics = ServerMetrics.getInstance();
+        this.unknownPackets = metrics.counter("packets.unknown");
+        this.rateLimited = metrics.counter("admission.rate_limited");
+        this.shed = metrics.counter("admission.shed");
+    }
+
+    /**
+     * Đăng ký packet fire-and-forget: bị từ chối thì chỉ bỏ.
+     */
+    public <T> PacketDispatcher register(Class<T> type, PacketHandler<? super T> handler, RateLimit limit) {
+        return register(type, handler, limit, null);
+    }
+
+    /**
+     * Đăng ký request có response: bị từ chối thì gửi {@code rejection.reply(...)} cho client.
+     */
+    public <T> PacketDispatcher register(Class<T> type, PacketHandler<? super T> handler, RateLimit limit,
+                                         Rejection<? super T> rejection) {
+        String name = type.getSimpleName();
+        Route<T> route = new Route<>(name, routes.size(), handler, limit, rejection,
+                metrics.histogram("packets." + name), metrics.counter("packets." + name + ".errors"),
+                metrics.counter("packets." + name + ".rejected"));
+        if (routes.put(type, route) != null) {
+            throw new IllegalStateException("Packet đã được đăng ký: " + type.getName());
+        }
+        return this;
+    }
+
+    /**
+     * Bỏ bucket của kết nối đã ngắt.
+     */
+    public void forget(Connection connection) {
+        buckets.remove(connection.getID());
+    }
+
+    /**
+     * Gọi handler của packet và ghi lại độ trễ. Trả về false nếu loại packet chưa đăng ký.
+     */
+    public boolean dispatch(Connection connection, Object packet) {
+        Route<?> route = routes.get(packet.getClass());
+        if (route == null) {
+            unknownPackets.increment();
+            logger.warn("Unknown packet type: {}", packet.getClass().getName());
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Nhận packet từ client {}: {}", connection.getID(), route.name);
+        }
+        long start = System.nanoTime();
+        String rejectedWith = admit(connection, route, start);
+        if (rejectedWith != null) {
+            route.reject(connection, packet, rejectedWith);
+            return true;
+        }
+        try {
+            route.invoke(connection, packet);
+        } catch (RuntimeException e) {
+            route.errors.increment();
+            logger.error("Lỗi khi xử lý {} từ client {}: {}", route.name, connection.getID(), e.getMessage(), e);
+        } finally {
+            route.latency.recordNanos(System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    /**
+     * null nếu packet được đi tiếp, ngược lại là thông báo lỗi cho client.
+     */
+    private String admit(Connection connection, Route<?> route, long now) {
+        long[] state = buckets.get(connection.getID());
+        if (state == null) {
+            state = new long[routes.size()];
+            buckets.put(connection.getID(), state);
+        }
+        long t = now - baseNanos;
+        long tat = Math.max(state[route.index], t);
+        if (tat - t > route.limit.toleranceNanos) {
+            rateLimited.increment();
+            route.rejected.increment();
+            return RATE_LIMITED_MESSAGE;
+        }
+        if (route.limit.sheddable && !admission.admitSheddable(now)) {
+            shed.increment();
+            route.rejected.increment();
+            return BUSY_MESSAGE;
+        }
+        state[route.index] = tat + route.limit.intervalNanos;
+        return null;
+    }
+
+    private static final class Route<T> {
+        final String name;
+        final int index;
+        final PacketHandler<? super T> handler;
+        final RateLimit limit;
+        final Rejection<? super T> rejection;
+        final LatencyHistogram latency;
+        final LongAdder errors;
+        final LongAdder rejected;
+
+        Route(String name, int index, PacketHandler<? super T> handler, RateLimit limit,
+              Rejection<? super T> rejection, LatencyHistogram latency, LongAdder errors, LongAdder rejected) {
+            this.name = name;
+            this.index = index;
+            this.handler = handler;
+            this.limit = limit;
+            this.rejection = rejection;
+            this.latency = latency;
+            this.errors = errors;
+            this.rejected = rejected;
+        }
+
+        @SuppressWarnings("unchecked")
+        void invoke(Connection connection, Object packet) {
+            handler.handle(connection, (T) packet);
+        }
+
+        @SuppressWarnings("unchecked")
+        void reject(Connection connection, Object packet, String errorMessage) {
+            if (rejection != null) {
+                // Qua OutboundQueue như mọi packet khác, để phản hồi từ chối không vượt lên trước các packet đang chờ
+                SessionRegistry.getInstance().send(connection, rejection.reply((T) packet, errorMessage));
+            }
+        }
+    }
+}
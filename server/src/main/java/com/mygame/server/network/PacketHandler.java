@@ -0,0 +1,11 @@
+package com.mygame.server.network;
+
+import com.esotericsoftware.kryonet.Connection;
+
+/**
+ * Xử lý một loại packet đã đăng ký với {@link PacketDispatcher}.
+ */
+@FunctionalInterface
+public interface PacketHandler<T> {
+    void handle(Connection connection, T packet);
+}
@@ -0,0 +1,38 @@
+package com.mygame.server.network;
+
+/**
+ * Giới hạn tốc độ cho một loại packet trên mỗi kết nối (token bucket: {@code permitsPerSecond}
+ * token mỗi giây, tối đa {@code burst} token dồn lại).
+ *
+ * Packet {@link #sheddable()} là loại đắt (BCrypt, SQL) và không cần cho ván đang chơi;
+ * chúng bị từ chối toàn cục khi server quá tải (xem {@link AdmissionControl}).
+ */
+public final class RateLimit {
+    // Nhân toàn bộ tốc độ, để chỉnh khi load test mà không sửa code
+    private static final double RATE_SCALE = Double.parseDouble(System.getProperty("admission.rateScale", "1.0"));
+
+    final long intervalNanos;
+    final long toleranceNanos;
+    final boolean sheddable;
+
+    private RateLimit(long intervalNanos, long toleranceNanos, boolean sheddable) {
+        this.intervalNanos = intervalNanos;
+        this.toleranceNanos = toleranceNanos;
+        this.sheddable = sheddable;
+    }
+
+    public static RateLimit of(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond phải > 0 và burst >= 1");
+        }
+        long interval = Math.max(1, (long) (1_000_000_000L / (permitsPerSecond * RATE_SCALE)));
+        return new RateLimit(interval, interval * (burst - 1), false);
+    }
+
+    /**
+     * Cùng giới hạn, nhưng bị từ chối khi server quá tải.
+     */
+    public RateLimit sheddable() {
+        return new RateLimit(intervalNanos, toleranceNanos, true);
+    }
+}
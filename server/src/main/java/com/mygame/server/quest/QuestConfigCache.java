@@ -0,0 +1,64 @@
+package com.mygame.server.quest;
+
+import com.mygame.server.database.QuestDAO;
+import com.mygame.server.storage.StorageSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cache của daily_quest_config.
+ *
+ * Đọc request không join bảng config nữa mà dùng snapshot bất biến trong bộ nhớ.
+ * {@link #refreshIfChanged} chỉ chạy một câu fingerprint (md5 trên cả bảng) và chỉ
+ * đọc lại khi fingerprint đổi, nên có thể gọi định kỳ với chi phí rất nhỏ.
+ */
+public class QuestConfigCache {
+    private static final Logger logger = LoggerFactory.getLogger(QuestConfigCache.class);
+
+    private final QuestDAO questDAO;
+    private volatile List<QuestDefinition> quests = Collections.emptyList();
+    private volatile String fingerprint;
+
+    public QuestConfigCache(QuestDAO questDAO) {
+        this.questDAO = questDAO;
+    }
+
+    /**
+     * Đọc lại config nếu bảng đã thay đổi kể từ lần load trước. Trả về true nếu đã reload.
+     */
+    public boolean refreshIfChanged(StorageSession session) throws SQLException {
+        String current = questDAO.questConfigFingerprint(session);
+        if (current.equals(fingerprint)) {
+            return false;
+        }
+        List<QuestDefinition> loaded = Collections.unmodifiableList(questDAO.loadQuestConfig(session));
+        quests = loaded;
+        fingerprint = current;
+        if (loaded.isEmpty()) {
+            logger.error("daily_quest_config table is empty! Run fix_quests.sql");
+        } else {
+            logger.info("Đã load {} quest từ daily_quest_config", loaded.size());
+        }
+        return true;
+    }
+
+    /**
+     * Snapshot config hiện tại, theo thứ tự quest_id.
+     */
+    public List<QuestDefinition> getQuests() {
+        return quests;
+    }
+
+    public QuestDefinition find(int questId) {
+        for (QuestDefinition quest : quests) {
+            if (quest.getQuestId() == questId) {
+                return quest;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,38 @@
+package com.mygame.server.quest;
+
+/**
+ * Một dòng daily_quest_config đã cache trong bộ nhớ.
+ */
+public final class QuestDefinition {
+    private final int questId;
+    private final String description;
+    private final String gameType;
+    private final QuestEventType eventType;
+    private final int targetCount;
+    private final long rewardCredits;
+
+    public QuestDefinition(int questId, String description, String gameType, QuestEventType eventType,
+                           int targetCount, long rewardCredits) {
+        this.questId = questId;
+        this.description = description;
+        this.gameType = gameType;
+        this.eventType = eventType;
+        this.targetCount = targetCount;
+        this.rewardCredits = rewardCredits;
+    }
+
+    /**
+     * Quest có nhận sự kiện này từ loại game này không ('ANY' khớp mọi game).
+     */
+    public boolean matches(QuestEventType event, String eventGameType) {
+        return eventType == event
+                && ("ANY".equals(gameType) || eventGameType == null || gameType.equals(eventGameType));
+    }
+
+    public int getQuestId() { return questId; }
+    public String getDescription() { return description; }
+    public String getGameType() { return gameType; }
+    public QuestEventType getEventType() { return eventType; }
+    public int getTargetCount() { return targetCount; }
+    public long getRewardCredits() { return rewardCredits; }
+}
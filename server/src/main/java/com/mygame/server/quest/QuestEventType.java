@@ -0,0 +1,29 @@
+package com.mygame.server.quest;
+
+/**
+ * Loại sự kiện game làm tăng progress của quest (cột daily_quest_config.event_type).
+ */
+public enum QuestEventType {
+    LOGIN,
+    HAND_PLAYED,
+    HAND_WON,
+    BET;
+
+    /**
+     * Suy ra loại sự kiện từ description cho config cũ chưa có event_type
+     * (cùng quy tắc với câu backfill trong schema.sql).
+     */
+    public static QuestEventType infer(String description) {
+        String text = description != null ? description.toLowerCase() : "";
+        if (text.contains("login")) {
+            return LOGIN;
+        }
+        if (text.contains("win")) {
+            return HAND_WON;
+        }
+        if (text.contains("bet")) {
+            return BET;
+        }
+        return HAND_PLAYED;
+    }
+}
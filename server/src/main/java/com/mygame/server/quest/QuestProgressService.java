@@ -0,0 +1,433 @@
+package com.mygame.server.quest;
+
+import com.mygame.server.database.DatabaseHealthMonitor;
+import com.mygame.server.database.QuestDAO;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.shared.model.Quest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress daily quest giữ trong bộ nhớ, cập nhật theo sự kiện game.
+ *
+ * Game thread chỉ cộng progress vào bộ nhớ (không chạm database). Một background thread
+ * cứ {@link #FLUSH_INTERVAL_MS} ghi các user đã thay đổi bằng một câu upsert duy nhất
+ * ({@link QuestDAO#saveProgress}) trên session riêng, và định kỳ reload
+ * {@link QuestConfigCache} khi config đổi.
+ *
+ * Progress của user được đọc từ database một lần mỗi ngày (lần đầu cần tới); sự kiện đến
+ * trước khi load được giữ như delta và cộng dồn khi load. Khi ngày đã được
+ * {@link #preload} hoặc {@link #markDayAssigned}, không cần đọc nữa.
+ */
+public class QuestProgressService {
+    private static final Logger logger = LoggerFactory.getLogger(QuestProgressService.class);
+
+    private static final long FLUSH_INTERVAL_MS = 2_000;
+    private static final long CONFIG_REFRESH_MS = 30_000;
+
+    private static QuestProgressService instance;
+
+    private final Map<Integer, UserQuests> users = new ConcurrentHashMap<>();
+    // Entry của ngày cũ bị thay thế khi qua ngày nhưng vẫn còn progress chưa ghi
+    private final Queue<UserQuests> retired = new ConcurrentLinkedQueue<>();
+    private final LongAdder events;
+    private final LongAdder flushes;
+    private final LongAdder rowsFlushed;
+    private final LongAdder flushErrors;
+
+    private Storage storage;
+    private QuestDAO questDAO;
+    private QuestConfigCache config;
+    private StorageSession session;
+    private ScheduledExecutorService scheduler;
+    // Ngày mà mọi progress trong database đã có trong bộ nhớ: user mới của ngày này không cần đọc DB
+    private volatile LocalDate preloadedDate;
+    private volatile boolean running;
+
+    private QuestProgressService() {
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        events = metrics.counter("quest.events");
+        flushes = metrics.counter("quest.flushes");
+        rowsFlushed = metrics.counter("quest.rows_flushed");
+        flushErrors = metrics.counter("quest.flush_errors");
+        metrics.gauge("quest.cached_users", users::size);
+    }
+
+    public static synchronized QuestProgressService getInstance() {
+        if (instance == null) {
+            instance = new QuestProgressService();
+        }
+        return instance;
+    }
+
+    public synchronized void start(Storage storage) {
+        if (running) {
+            return;
+        }
+        this.storage = storage;
+        this.questDAO = storage.quests();
+        this.config = new QuestConfigCache(questDAO);
+        refreshConfig();
+
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "quest-progress-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        // Delta dồn trong bộ nhớ khi database lỗi, ghi ngay khi circuit breaker đóng lại
+        DatabaseHealthMonitor.getInstance().onRecovered(() -> {
+            if (running) {
+                scheduler.execute(this::flush);
+            }
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshConfig, CONFIG_REFRESH_MS, CONFIG_REFRESH_MS,
+                TimeUnit.MILLISECONDS);
+        logger.info("Quest progress service đã khởi động ({} quest)", config.getQuests().size());
+    }
+
+    public QuestConfigCache getConfig() {
+        return config;
+    }
+
+    /**
+     * User đăng nhập: tăng các quest LOGIN.
+     */
+    public void onLogin(int userId) {
+        record(userId, null, QuestEventType.LOGIN, 1);
+    }
+
+    /**
+     * Một ván kết thúc với người chơi này: HAND_PLAYED, HAND_WON nếu thắng, BET theo số tiền đã đặt.
+     */
+    public void onHandFinished(int userId, String gameType, boolean won, long wagered) {
+        record(userId, gameType, QuestEventType.HAND_PLAYED, 1);
+        if (won) {
+            record(userId, gameType, QuestEventType.HAND_WON, 1);
+        }
+        if (wagered > 0) {
+            record(userId, gameType, QuestEventType.BET, (int) Math.min(wagered, Integer.MAX_VALUE));
+        }
+    }
+
+    private void record(int userId, String gameType, QuestEventType event, int amount) {
+        if (!running) {
+            return;
+        }
+        List<QuestDefinition> quests = config.getQuests();
+        UserQuests user = current(userId);
+        synchronized (user) {
+            for (QuestDefinition quest : quests) {
+                if (quest.matches(event, gameType)) {
+                    user.add(quest, amount);
+                }
+            }
+        }
+        events.increment();
+    }
+
+    /**
+     * Quest hôm nay của user, trả lời từ bộ nhớ. Chỉ đọc database lần đầu trong ngày.
+     */
+    public List<Quest> getQuests(int userId) throws SQLException {
+        UserQuests user = current(userId);
+        ensureLoaded(user, null);
+
+        List<QuestDefinition> quests = config.getQuests();
+        List<Quest> result = new ArrayList<>(quests.size());
+        synchronized (user) {
+            for (QuestDefinition quest : quests) {
+                QuestState state = user.states.get(quest.getQuestId());
+                result.add(new Quest(
+                    quest.getQuestId(),
+                    quest.getDescription(),
+                    quest.getGameType(),
+                    quest.getTargetCount(),
+                    quest.getRewardCredits(),
+                    state != null ? state.progress : 0,
+                    state != null && state.claimed
+                ));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Nhận thưởng quest nếu đã hoàn thành và chưa nhận. Trả về false nếu chưa đủ điều kiện.
+     */
+    public boolean claim(int userId, int questId) throws SQLException {
+        QuestDefinition quest = config.find(questId);
+        if (quest == null) {
+            return false;
+        }
+        UserQuests user = current(userId);
+        ensureLoaded(user, null);
+
+        QuestState state;
+        int progress;
+        synchronized (user) {
+            state = user.states.get(questId);
+            if (state == null || state.claimed || state.progress < quest.getTargetCount()) {
+                logger.warn("Quest {} not claimable by user {} ({}/{})", questId, userId,
+                        state != null ? state.progress : 0, quest.getTargetCount());
+                return false;
+            }
+            // Giữ chỗ trước khi trả thưởng để request trùng không claim hai lần
+            state.claimed = true;
+            progress = state.progress;
+        }
+
+        try {
+            return questDAO.claimQuestReward(userId, questId, user.date, progress);
+        } catch (SQLException e) {
+            synchronized (user) {
+                state.claimed = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Nạp progress của cả ngày (đọc bằng {@link QuestDAO#loadAllProgress}) vào bộ nhớ.
+     * Sau đó user nào không có trong rows được coi là chưa có progress, không cần đọc database.
+     */
+    public void preload(LocalDate date, Map<Integer, List<QuestDAO.QuestProgress>> rows) {
+        for (Map.Entry<Integer, List<QuestDAO.QuestProgress>> entry : rows.entrySet()) {
+            UserQuests user = users.compute(entry.getKey(), (id, existing) ->
+                    existing != null && existing.date.equals(date) ? existing : new UserQuests(id, date));
+            synchronized (user) {
+                if (!user.loaded) {
+                    user.merge(entry.getValue(), config);
+                }
+            }
+        }
+        preloadedDate = date;
+        logger.info("Đã nạp quest progress ngày {} của {} user", date, rows.size());
+    }
+
+    /**
+     * Rollover lúc nửa đêm vừa gán quest mới (toàn bộ progress = 0) cho ngày này.
+     */
+    public void markDayAssigned(LocalDate date) {
+        preloadedDate = date;
+    }
+
+    private UserQuests current(int userId) {
+        LocalDate today = LocalDate.now();
+        UserQuests user = users.get(userId);
+        if (user != null && user.date.equals(today)) {
+            return user;
+        }
+        return users.compute(userId, (id, existing) -> {
+            if (existing != null && existing.date.equals(today)) {
+                return existing;
+            }
+            if (existing != null && existing.dirty) {
+                retired.add(existing);
+            }
+            UserQuests fresh = new UserQuests(id, today);
+            fresh.loaded = today.equals(preloadedDate);
+            return fresh;
+        });
+    }
+
+    /**
+     * session = null: đọc trên kết nối dùng chung của handler thread.
+     */
+    private void ensureLoaded(UserQuests user, StorageSession session) throws SQLException {
+        if (user.loaded) {
+            return;
+        }
+        List<QuestDAO.QuestProgress> rows = session != null
+                ? questDAO.loadProgress(session, user.userId, user.date)
+                : questDAO.loadProgress(user.userId, user.date);
+        synchronized (user) {
+            if (!user.loaded) {
+                user.merge(rows, config);
+            }
+        }
+    }
+
+    /**
+     * Ghi progress của mọi user đã thay đổi trong một câu lệnh. Chạy trên thread flusher.
+     */
+    private void flush() {
+        if (!DatabaseHealthMonitor.getInstance().isAvailable()) {
+            return; // Circuit breaker mở: giữ nguyên delta, thử lại khi breaker đóng
+        }
+        List<UserQuests> batch = new ArrayList<>();
+        UserQuests old;
+        while ((old = retired.poll()) != null) {
+            batch.add(old);
+        }
+        LocalDate today = LocalDate.now();
+        for (UserQuests user : users.values()) {
+            if (user.dirty) {
+                batch.add(user);
+            } else if (!user.date.equals(today)) {
+                users.remove(user.userId, user);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (session == null || session.isClosed()) {
+                session = storage.openSession();
+            }
+            for (UserQuests user : batch) {
+                ensureLoaded(user, session);
+            }
+
+            List<Integer> userIds = new ArrayList<>();
+            List<Integer> questIds = new ArrayList<>();
+            List<String> dates = new ArrayList<>();
+            List<Integer> progress = new ArrayList<>();
+            for (UserQuests user : batch) {
+                synchronized (user) {
+                    for (Map.Entry<Integer, QuestState> entry : user.states.entrySet()) {
+                        if (entry.getValue().progress > 0) {
+                            userIds.add(user.userId);
+                            questIds.add(entry.getKey());
+                            dates.add(user.date.toString());
+                            progress.add(entry.getValue().progress);
+                        }
+                    }
+                    user.dirty = false;
+                }
+            }
+
+            int written = questDAO.saveProgress(session,
+                    userIds.toArray(new Integer[0]), questIds.toArray(new Integer[0]),
+                    dates.toArray(new String[0]), progress.toArray(new Integer[0]));
+            session.commit();
+            flushes.increment();
+            rowsFlushed.add(written);
+            logger.debug("Đã ghi {} dòng quest progress của {} user", written, batch.size());
+        } catch (SQLException e) {
+            flushErrors.increment();
+            logger.warn("Lỗi khi ghi quest progress, sẽ thử lại: {}", e.getMessage());
+            closeSession();
+            for (UserQuests user : batch) {
+                synchronized (user) {
+                    user.dirty = true;
+                }
+                if (users.get(user.userId) != user) {
+                    retired.add(user);
+                }
+            }
+        }
+    }
+
+    private void refreshConfig() {
+        try {
+            if (session == null || session.isClosed()) {
+                session = storage.openSession();
+            }
+            config.refreshIfChanged(session);
+            session.commit();
+        } catch (SQLException e) {
+            logger.warn("Không thể reload daily_quest_config: {}", e.getMessage());
+            closeSession();
+        }
+    }
+
+    private void closeSession() {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (SQLException ignored) {
+            // Session đã hỏng, bỏ qua
+        }
+        session = null;
+    }
+
+    /**
+     * Dừng flusher và ghi nốt progress còn trong bộ nhớ.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        closeSession();
+        logger.info("Quest progress service đã dừng (sự kiện: {}, dòng đã ghi: {})", events.sum(), rowsFlushed.sum());
+    }
+
+    /**
+     * Progress của một quest trong ngày.
+     */
+    private static final class QuestState {
+        int progress;
+        boolean claimed;
+    }
+
+    /**
+     * Progress của một user trong một ngày. Mọi truy cập states/dirty đều giữ lock trên object.
+     */
+    private static final class UserQuests {
+        final int userId;
+        final LocalDate date;
+        final Map<Integer, QuestState> states = new HashMap<>();
+        volatile boolean loaded;
+        volatile boolean dirty;
+
+        UserQuests(int userId, LocalDate date) {
+            this.userId = userId;
+            this.date = date;
+        }
+
+        void add(QuestDefinition quest, int amount) {
+            QuestState state = states.computeIfAbsent(quest.getQuestId(), k -> new QuestState());
+            if (state.claimed) {
+                return;
+            }
+            int next = (int) Math.min((long) state.progress + amount, quest.getTargetCount());
+            if (next != state.progress) {
+                state.progress = next;
+                dirty = true;
+            }
+        }
+
+        /**
+         * Gộp giá trị trong database với delta đã tích luỹ trước khi load.
+         */
+        void merge(List<QuestDAO.QuestProgress> rows, QuestConfigCache config) {
+            for (QuestDAO.QuestProgress row : rows) {
+                QuestState state = states.computeIfAbsent(row.getQuestId(), k -> new QuestState());
+                QuestDefinition quest = config.find(row.getQuestId());
+                long merged = (long) row.getCurrentProgress() + state.progress;
+                state.progress = (int) Math.min(merged, quest != null ? quest.getTargetCount() : Integer.MAX_VALUE);
+                state.claimed = row.isClaimed();
+            }
+            loaded = true;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mygame.server.replay;
+
+import com.mygame.server.journal.HandJournal;
+import com.mygame.server.journal.HandJournalReader;
+
+/**
+ * Một record của {@link HandJournal} đã giải mã, để chuyển giữa thread đọc và các worker replay.
+ * Chỉ các field của đúng loại record được điền (xem payload ở các hằng số của HandJournal).
+ */
+final class JournalRecord {
+    byte type;
+    long journalId;
+    int hand;
+
+    // SESSION_START
+    int gameType;
+    int roomId;
+    // SESSION_START, DEAL, SETTLE: người chơi theo thứ tự ngồi
+    int[] players;
+    // DEAL: chips đầu hand; SETTLE: delta
+    long[] amounts;
+    // DEAL
+    int sbIndex;
+    int bbIndex;
+    boolean[] dealtIn;
+    byte[] cards; // DEAL: thứ tự bộ bài, ACTION: các lá đánh ra
+    // ACTION
+    int playerId;
+    int action;
+    int flags;
+    long amount;
+    long sequence;
+    // SESSION_END
+    int winnerId;
+
+    static JournalRecord read(HandJournalReader reader) {
+        JournalRecord record = new JournalRecord();
+        record.type = reader.type();
+        record.journalId = reader.journalId();
+        record.hand = reader.hand();
+        switch (record.type) {
+            case HandJournal.SESSION_START: {
+                record.gameType = reader.readByte();
+                record.roomId = reader.readInt();
+                int n = reader.readByte();
+                record.players = new int[n];
+                for (int i = 0; i < n; i++) {
+                    record.players[i] = reader.readInt();
+                }
+                break;
+            }
+            case HandJournal.DEAL: {
+                record.sbIndex = reader.readInt();
+                record.bbIndex = reader.readInt();
+                int n = reader.readByte();
+                record.players = new int[n];
+                record.amounts = new long[n];
+                record.dealtIn = new boolean[n];
+                for (int i = 0; i < n; i++) {
+                    record.players[i] = reader.readInt();
+                    record.amounts[i] = reader.readLong();
+                    record.dealtIn[i] = reader.readByte() != 0;
+                }
+                record.cards = readCards(reader);
+                break;
+            }
+            case HandJournal.ACTION:
+                record.playerId = reader.readInt();
+                record.action = reader.readByte();
+                record.flags = reader.readByte();
+                record.amount = reader.readLong();
+                record.sequence = reader.readLong();
+                record.cards = readCards(reader);
+                break;
+            case HandJournal.SETTLE: {
+                int n = reader.readByte();
+                record.players = new int[n];
+                record.amounts = new long[n];
+                for (int i = 0; i < n; i++) {
+                    record.players[i] = reader.readInt();
+                    record.amounts[i] = reader.readLong();
+                }
+                break;
+            }
+            case HandJournal.SESSION_END:
+                record.winnerId = reader.readInt();
+                break;
+            default:
+                break; // loại record mới hơn bản replay này: bỏ qua payload
+        }
+        return record;
+    }
+
+    private static byte[] readCards(HandJournalReader reader) {
+        int n = reader.readByte();
+        byte[] cards = new byte[n];
+        for (int i = 0; i < n; i++) {
+            cards[i] = (byte) reader.readByte();
+        }
+        return cards;
+    }
+}
@@ -0,0 +1,233 @@
+package com.mygame.server.replay;
+
+import com.mygame.server.journal.HandJournal;
+import com.mygame.server.journal.HandJournalReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chạy lại các hand trong {@link HandJournal} qua logic game thật, không network, không database,
+ * và kiểm tra kết quả settle có khớp với những gì đã ghi.
+ *
+ * Một thread đọc và giải mã journal (cũ nhất trước), chia record theo journalId cho các worker
+ * (mỗi session luôn ở cùng một worker nên record của nó được áp dụng đúng thứ tự); mỗi worker giữ
+ * các {@link SessionReplay} của mình. Dùng để xử lý khiếu nại, bắt lỗi luật chơi trước khi deploy
+ * và làm workload benchmark:
+ *
+ * <pre>
+ * java -cp server.jar com.mygame.server.replay.ReplayEngine journal [threads] [lần lặp]
+ * </pre>
+ *
+ * Session đều log ở INFO mỗi action; khi replay số lượng lớn nên tắt log của package game.
+ */
+public class ReplayEngine {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayEngine.class);
+
+    private static final int BATCH = 512;
+    private static final int QUEUE_BATCHES = 64;
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+    private static final List<JournalRecord> END = new ArrayList<>();
+
+    private final int threads;
+
+    public ReplayEngine(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "journal");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int repeat = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        ReplayEngine engine = new ReplayEngine(threads);
+        Result result = null;
+        for (int i = 0; i < repeat; i++) {
+            result = engine.replay(dir);
+            System.out.println(result);
+        }
+        if (result != null) {
+            for (String mismatch : result.getMismatches()) {
+                System.out.println("  " + mismatch);
+            }
+        }
+        System.exit(result == null || result.getMismatchCount() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Replay mọi session trong thư mục (hoặc file segment) journal.
+     */
+    public Result replay(Path journal) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        List<BlockingQueue<List<JournalRecord>>> queues = new ArrayList<>(threads);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<List<JournalRecord>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+            queues.add(queue);
+            Thread worker = new Thread(() -> work(queue, result), "replay-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        List<List<JournalRecord>> batches = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            batches.add(new ArrayList<>(BATCH));
+        }
+        try {
+            HandJournalReader reader = HandJournalReader.open(journal);
+            while (reader.next()) {
+                JournalRecord record = JournalRecord.read(reader);
+                int worker = Math.floorMod(Long.hashCode(record.journalId), threads);
+                List<JournalRecord> batch = batches.get(worker);
+                batch.add(record);
+                if (batch.size() == BATCH) {
+                    queues.get(worker).put(batch);
+                    batches.set(worker, new ArrayList<>(BATCH));
+                }
+                result.records.increment();
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                if (!batches.get(i).isEmpty()) {
+                    queues.get(i).put(batches.get(i));
+                }
+                queues.get(i).put(END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        logger.info("{}", result);
+        return result;
+    }
+
+    private void work(BlockingQueue<List<JournalRecord>> queue, Result result) {
+        Map<Long, SessionReplay> sessions = new HashMap<>();
+        try {
+            while (true) {
+                List<JournalRecord> batch = queue.take();
+                if (batch == END) {
+                    break;
+                }
+                for (JournalRecord record : batch) {
+                    try {
+                        apply(sessions, record, result);
+                    } catch (RuntimeException e) {
+                        sessions.remove(record.journalId);
+                        result.mismatch(String.format("journal %016x: record %d không đọc được: %s",
+                                record.journalId, record.type, e));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Session chưa có SESSION_END (server vẫn chạy hoặc bị kill): vẫn tính phần đã kiểm tra
+        for (SessionReplay session : sessions.values()) {
+            finish(session, result);
+            result.open.increment();
+        }
+    }
+
+    private void apply(Map<Long, SessionReplay> sessions, JournalRecord record, Result result) {
+        if (record.type == HandJournal.SESSION_START) {
+            sessions.put(record.journalId, new SessionReplay(record));
+            result.sessions.increment();
+            return;
+        }
+        SessionReplay session = sessions.get(record.journalId);
+        if (session == null) {
+            result.orphanRecords.increment(); // đầu session nằm ở segment đã bị xoá
+            return;
+        }
+        if (!session.apply(record)) {
+            sessions.remove(record.journalId);
+            finish(session, result);
+            result.mismatch(session.getMismatch());
+            return;
+        }
+        if (session.isEnded()) {
+            sessions.remove(record.journalId);
+            finish(session, result);
+        }
+    }
+
+    private static void finish(SessionReplay session, Result result) {
+        result.hands.add(session.getVerifiedHands());
+        result.actions.add(session.getActions());
+    }
+
+    /**
+     * Kết quả một lần replay; các counter được cộng từ nhiều worker.
+     */
+    public static final class Result {
+        private final LongAdder records = new LongAdder();
+        private final LongAdder sessions = new LongAdder();
+        private final LongAdder open = new LongAdder();
+        private final LongAdder hands = new LongAdder();
+        private final LongAdder actions = new LongAdder();
+        private final LongAdder orphanRecords = new LongAdder();
+        private final LongAdder mismatchCount = new LongAdder();
+        private final List<String> mismatches = new ArrayList<>();
+        private volatile long elapsedNanos;
+
+        private void mismatch(String description) {
+            mismatchCount.increment();
+            synchronized (mismatches) {
+                if (mismatches.size() < MAX_REPORTED_MISMATCHES) {
+                    mismatches.add(description);
+                }
+            }
+        }
+
+        public long getSessions() {
+            return sessions.sum();
+        }
+
+        public long getVerifiedHands() {
+            return hands.sum();
+        }
+
+        public long getActions() {
+            return actions.sum();
+        }
+
+        public long getMismatchCount() {
+            return mismatchCount.sum();
+        }
+
+        /**
+         * Tối đa 100 mô tả sai khác đầu tiên.
+         */
+        public List<String> getMismatches() {
+            synchronized (mismatches) {
+                return new ArrayList<>(mismatches);
+            }
+        }
+
+        public double getHandsPerMinute() {
+            return elapsedNanos == 0 ? 0 : hands.sum() * (double) TimeUnit.MINUTES.toNanos(1) / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Replay %d record, %d session (%d chưa đóng), %d hand, %d action, "
+                            + "%d record mồ côi, %d sai khác trong %d ms (%.0f hand/phút)",
+                    records.sum(), sessions.sum(), open.sum(), hands.sum(), actions.sum(), orphanRecords.sum(),
+                    mismatchCount.sum(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getHandsPerMinute());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.mygame.server.replay;
+
+import com.mygame.server.game.GameTable;
+import com.mygame.server.journal.HandJournal;
+import com.mygame.shared.game.card.Deck;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+/**
+ * Bàn chơi dựng từ record DEAL của hand kế tiếp: số dư và người còn ngồi lấy từ record,
+ * bộ bài được xếp đúng thứ tự đã ghi, packet không đi đâu cả và không ghi journal.
+ *
+ * Khi khôi phục session sau restart, bàn mang id/thời điểm bắt đầu cũ của session, và sau khi
+ * journal đã được chạy hết thì {@link #goLive} chuyển mọi lời gọi sang bàn thật.
+ */
+final class ReplayTable implements GameTable {
+    private final UUID sessionUuid;
+    private final long startedAtMillis;
+    private final Map<Integer, BuyIn> buyIns = new LinkedHashMap<>();
+    private JournalRecord deal;
+    private GameTable live;
+
+    ReplayTable() {
+        this(null, 0);
+    }
+
+    ReplayTable(UUID sessionUuid, long startedAtMillis) {
+        this.sessionUuid = sessionUuid;
+        this.startedAtMillis = startedAtMillis;
+    }
+
+    /**
+     * Đặt record DEAL cho lần chia kế tiếp (gọi trước khi session mở bàn hoặc chia hand mới).
+     */
+    void prepare(JournalRecord deal) {
+        this.deal = deal;
+        resolveBuyIns();
+    }
+
+    /**
+     * Từ giờ bàn là bàn thật: số dư, bộ bài, packet và journal đi qua {@code live}.
+     */
+    void goLive(GameTable live) {
+        this.live = live;
+        // Rebuy còn chờ wallet lúc restart: đọc lại số dư trên bàn thật
+        for (Map.Entry<Integer, BuyIn> entry : buyIns.entrySet()) {
+            BuyIn request = entry.getValue();
+            live.buyIn(entry.getKey(), request.chips, request.max, request.onChips);
+        }
+        buyIns.clear();
+    }
+
+    @Override
+    public long balanceOf(int userId) throws SQLException {
+        if (live != null) {
+            return live.balanceOf(userId);
+        }
+        int index = indexOf(userId);
+        return index < 0 ? 0 : deal.amounts[index];
+    }
+
+    /**
+     * Khi replay, kết quả rebuy lấy từ record DEAL đầu tiên mà chips của người chơi khác lúc yêu cầu
+     * (trên server người đang chờ rebuy không được chia bài, nên được chia với chips cũ nghĩa là
+     * rebuy đã bị từ chối). Kết quả được trả trong {@link #prepare}, trước khi session chia hand đó.
+     */
+    @Override
+    public void buyIn(int userId, long chips, long max, LongConsumer onChips) {
+        if (live != null) {
+            live.buyIn(userId, chips, max, onChips);
+            return;
+        }
+        buyIns.put(userId, new BuyIn(chips, max, onChips));
+    }
+
+    @Override
+    public boolean isSeated(int userId) {
+        if (live != null) {
+            return live.isSeated(userId);
+        }
+        int index = indexOf(userId);
+        return index >= 0 && deal.dealtIn[index];
+    }
+
+    @Override
+    public void shuffle(Deck deck) {
+        if (live != null) {
+            live.shuffle(deck);
+            return;
+        }
+        if (deal == null) {
+            throw new IllegalStateException("Chia bài khi chưa có record DEAL");
+        }
+        deck.arrange(deal.cards);
+    }
+
+    @Override
+    public void broadcast(Object packet) {
+        if (live != null) {
+            live.broadcast(packet);
+        }
+    }
+
+    @Override
+    public void sendToPlayer(int userId, Object packet) {
+        if (live != null) {
+            live.sendToPlayer(userId, packet);
+        }
+    }
+
+    @Override
+    public HandJournal journal() {
+        return live != null ? live.journal() : HandJournal.disabled();
+    }
+
+    @Override
+    public UUID sessionUuid() {
+        return sessionUuid != null ? sessionUuid : UUID.randomUUID();
+    }
+
+    @Override
+    public long sessionStartedAt() {
+        return sessionUuid != null ? startedAtMillis : System.currentTimeMillis();
+    }
+
+    private void resolveBuyIns() {
+        Iterator<Map.Entry<Integer, BuyIn>> it = buyIns.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, BuyIn> entry = it.next();
+            int index = indexOf(entry.getKey());
+            if (index < 0) {
+                continue;
+            }
+            BuyIn request = entry.getValue();
+            long chips = deal.amounts[index];
+            if (chips != request.chips || deal.dealtIn[index]) {
+                it.remove();
+                request.onChips.accept(chips);
+            }
+        }
+    }
+
+    private int indexOf(int userId) {
+        if (deal == null) {
+            return -1;
+        }
+        int[] players = deal.players;
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] == userId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class BuyIn {
+        final long chips;
+        final long max;
+        final LongConsumer onChips;
+
+        BuyIn(long chips, long max, LongConsumer onChips) {
+            this.chips = chips;
+            this.max = max;
+            this.onChips = onChips;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.mygame.server.replay;
+
+import com.mygame.server.game.GameSession;
+import com.mygame.server.game.PokerGameSession;
+import com.mygame.server.game.TienLenGameSession;
+import com.mygame.server.journal.HandJournal;
+import com.mygame.server.room.GameRoom;
+import com.mygame.shared.game.card.Card;
+import com.mygame.shared.model.GameType;
+import com.mygame.shared.network.packets.game.PlayAgainVotePacket;
+import com.mygame.shared.network.packets.game.PlayerActionPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chạy lại các record của một session qua đúng {@link PokerGameSession} / {@link TienLenGameSession}
+ * của server, làm đúng những gì GameSessionManager làm giữa các record:
+ * - DEAL đầu tiên mở bàn; DEAL sau đó chia hand mới (Poker) hoặc cho cả bàn vote chơi lại (Tiến Lên).
+ * - ACTION đi vào {@code handlePlayerAction}; action hết giờ của Poker cho người chơi tạm nghỉ trước.
+ * - SETTLE được so với {@code getCreditChanges()} của session.
+ *
+ * Sai khác đầu tiên (số hand, action được chấp nhận hay không, delta settle, exception) được ghi
+ * lại và session bị bỏ, vì state sau đó không còn so được nữa. Chỉ dùng trên một thread.
+ *
+ * Khi khôi phục sau restart ({@link SessionRestorer}) session được dựng trên room thật và bàn mang
+ * id cũ của session; sau khi chạy hết journal bàn được chuyển sang live.
+ */
+final class SessionReplay {
+    private final long journalId;
+    private final GameType gameType;
+    private final int roomId;
+    private final List<Integer> playerOrder;
+    private final GameRoom room;
+    private final ReplayTable table;
+
+    private GameSession session;
+    private String mismatch;
+    private int hands;
+    private int actions;
+    private boolean ended;
+    // Hand/ván hiện tại đã có SETTLE (hoặc BATCH_SETTLED) trong journal
+    private boolean settled;
+
+    SessionReplay(JournalRecord start) {
+        this(start, null, new ReplayTable());
+    }
+
+    SessionReplay(JournalRecord start, GameRoom room, ReplayTable table) {
+        this.room = room;
+        this.table = table;
+        this.journalId = start.journalId;
+        this.gameType = GameType.values()[start.gameType];
+        this.roomId = start.roomId;
+        List<Integer> players = new ArrayList<>(start.players.length);
+        for (int playerId : start.players) {
+            players.add(playerId);
+        }
+        this.playerOrder = players;
+    }
+
+    /**
+     * Áp dụng một record; trả về false nếu session đã lệch (xem {@link #getMismatch()}).
+     */
+    boolean apply(JournalRecord record) {
+        if (mismatch != null) {
+            return false;
+        }
+        try {
+            switch (record.type) {
+                case HandJournal.DEAL:
+                    deal(record);
+                    break;
+                case HandJournal.ACTION:
+                    action(record);
+                    break;
+                case HandJournal.SETTLE:
+                    settle(record);
+                    break;
+                case HandJournal.BATCH_SETTLED:
+                    if (session instanceof TienLenGameSession) {
+                        ((TienLenGameSession) session).drainUnsettled();
+                    }
+                    settled = true;
+                    break;
+                case HandJournal.SESSION_END:
+                    ended = true;
+                    break;
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            fail(record.hand, "exception " + e);
+        }
+        return mismatch == null;
+    }
+
+    private void deal(JournalRecord record) {
+        table.prepare(record);
+        settled = false;
+        if (session == null) {
+            session = gameType == GameType.POKER
+                    ? new PokerGameSession(roomId, gameType, room, table, playerOrder)
+                    : new TienLenGameSession(roomId, gameType, room, table, playerOrder);
+        } else if (session instanceof PokerGameSession) {
+            if (!((PokerGameSession) session).startNextHand()) {
+                fail(record.hand, "bàn đã đóng nhưng journal có hand mới");
+                return;
+            }
+        } else {
+            TienLenGameSession tienLen = (TienLenGameSession) session;
+            for (int playerId : playerOrder) {
+                PlayAgainVotePacket vote = new PlayAgainVotePacket();
+                vote.setRoomId(roomId);
+                vote.setPlayerId(playerId);
+                vote.setVoteType("PLAY_AGAIN");
+                tienLen.handlePlayAgainVote(vote);
+            }
+        }
+        if (session.getHandNumber() != record.hand) {
+            fail(record.hand, "session đang ở hand " + session.getHandNumber());
+        }
+    }
+
+    private void action(JournalRecord record) {
+        if (session == null) {
+            fail(record.hand, "action trước khi chia bài");
+            return;
+        }
+        PlayerActionPacket packet = new PlayerActionPacket();
+        packet.setRoomId(roomId);
+        packet.setGameType(gameType);
+        packet.setPlayerId(record.playerId);
+        packet.setActionType(HandJournal.actionName(record.action));
+        packet.setAmount(record.amount);
+        packet.setSequence(record.sequence);
+        if (record.cards.length > 0) {
+            List<Card> cards = new ArrayList<>(record.cards.length);
+            for (byte code : record.cards) {
+                cards.add(HandJournal.decodeCard(code));
+            }
+            packet.setCards(cards);
+        }
+        if ((record.flags & HandJournal.FLAG_TIMEOUT) != 0 && session instanceof PokerGameSession) {
+            ((PokerGameSession) session).sitOut(record.playerId);
+        }
+
+        long turn = session.getTurnSequence();
+        session.handlePlayerAction(packet);
+        boolean applied = session.getTurnSequence() != turn;
+        if (applied != ((record.flags & HandJournal.FLAG_APPLIED) != 0)) {
+            fail(record.hand, "action " + packet.getActionType() + " của player " + record.playerId
+                    + (applied ? " được chấp nhận" : " bị từ chối") + ", journal ghi ngược lại");
+        }
+        actions++;
+    }
+
+    private void settle(JournalRecord record) {
+        if (session == null) {
+            fail(record.hand, "settle trước khi chia bài");
+            return;
+        }
+        Map<Integer, Long> deltas = session.getCreditChanges();
+        for (int i = 0; i < record.players.length; i++) {
+            long replayed = deltas.getOrDefault(record.players[i], 0L);
+            if (replayed != record.amounts[i]) {
+                fail(record.hand, "player " + record.players[i] + " settle " + record.amounts[i]
+                        + ", replay ra " + replayed + " " + deltas);
+                return;
+            }
+        }
+        settled = true;
+        hands++;
+    }
+
+    private void fail(int hand, String reason) {
+        if (mismatch == null) {
+            mismatch = String.format("journal %016x (%s, room %d) hand #%d: %s",
+                    journalId, gameType, roomId, hand, reason);
+        }
+    }
+
+    String getMismatch() {
+        return mismatch;
+    }
+
+    int getVerifiedHands() {
+        return hands;
+    }
+
+    int getActions() {
+        return actions;
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Hand (ván) cuối cùng đã được settle trong journal, wallet không cần settle lại.
+     */
+    boolean isSettled() {
+        return settled;
+    }
+
+    GameSession getSession() {
+        return session;
+    }
+
+    ReplayTable getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,129 @@
+package com.mygame.server.replay;
+
+import com.mygame.server.game.GameSessionManager;
+import com.mygame.server.game.RoomTable;
+import com.mygame.server.journal.HandJournal;
+import com.mygame.server.journal.HandJournalReader;
+import com.mygame.server.room.GameRoom;
+import com.mygame.server.room.GameRoomManager;
+import com.mygame.server.session.ResumeTokenService;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.snapshot.SessionSnapshot;
+import com.mygame.server.snapshot.SnapshotFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Khôi phục các bàn đang chơi lúc khởi động, trước khi server nhận kết nối: đọc session snapshot
+ * để biết room, ghế và id của từng session, rồi chạy lại hand journal của các session đó
+ * (như {@link ReplayEngine}) để dựng lại đúng state ván đang dở, kể cả chips đã cược.
+ *
+ * Session đã có SESSION_END, chưa chia ván nào, hoặc replay bị lệch (vd. luật chơi đổi giữa hai bản
+ * deploy) thì không được khôi phục: ván dở của nó bị huỷ như trước đây. Sequence action đã ghi
+ * được nạp lại vào cửa sổ dedupe nên client gửi lại action sau khi resume không bị áp dụng hai lần.
+ */
+public class SessionRestorer {
+    private static final Logger logger = LoggerFactory.getLogger(SessionRestorer.class);
+
+    private final GameRoomManager roomManager;
+    private final GameSessionManager sessionManager;
+
+    public SessionRestorer(GameRoomManager roomManager, GameSessionManager sessionManager) {
+        this.roomManager = roomManager;
+        this.sessionManager = sessionManager;
+    }
+
+    /**
+     * Khôi phục từ snapshot và thư mục journal; trả về số session đã khôi phục.
+     */
+    public int restore(Path snapshotFile, Path journalDir) {
+        long start = System.nanoTime();
+        SnapshotFile snapshot;
+        try {
+            snapshot = SnapshotFile.read(snapshotFile);
+        } catch (IOException e) {
+            logger.error("Không đọc được session snapshot {}, bỏ qua khôi phục: {}", snapshotFile, e.getMessage());
+            return 0;
+        }
+        if (snapshot == null) {
+            return 0;
+        }
+        ResumeTokenService.getInstance().restoreNonces(snapshot.getResumeNonces());
+
+        Map<Long, SessionSnapshot> wanted = new HashMap<>();
+        long since = Long.MAX_VALUE;
+        for (SessionSnapshot session : snapshot.getSessions()) {
+            wanted.put(session.getJournalId(), session);
+            since = Math.min(since, session.getStartedAtMillis());
+        }
+        if (wanted.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, SessionReplay> replays = new LinkedHashMap<>();
+        SessionRegistry sessionRegistry = SessionRegistry.getInstance();
+        long records = 0;
+        try {
+            HandJournalReader reader = HandJournalReader.open(journalDir, since);
+            while (reader.next()) {
+                SessionSnapshot session = wanted.get(reader.journalId());
+                if (session == null) {
+                    continue;
+                }
+                JournalRecord record = JournalRecord.read(reader);
+                records++;
+                if (record.type == HandJournal.SESSION_START) {
+                    GameRoom room = new GameRoom(session.getRoomId(), session.getRoomName(), session.getGameType(),
+                            session.getHostUserId(), session.getMaxPlayers());
+                    ReplayTable table = new ReplayTable(session.getSessionUuid(), session.getStartedAtMillis());
+                    replays.put(record.journalId, new SessionReplay(record, room, table));
+                    continue;
+                }
+                SessionReplay replay = replays.get(record.journalId);
+                if (replay == null) {
+                    continue;
+                }
+                replay.apply(record);
+                if (record.type == HandJournal.ACTION && record.sequence > 0
+                        && (record.flags & HandJournal.FLAG_TIMEOUT) == 0) {
+                    sessionRegistry.getActions(record.playerId).accept(record.sequence);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Lỗi khi đọc hand journal {}, bỏ qua khôi phục: {}", journalDir, e.getMessage(), e);
+            return 0;
+        }
+
+        int restored = 0;
+        for (SessionReplay replay : replays.values()) {
+            if (replay.getMismatch() != null) {
+                logger.warn("Không khôi phục được: {}", replay.getMismatch());
+                continue;
+            }
+            if (replay.isEnded() || replay.getSession() == null) {
+                continue;
+            }
+            GameRoom room = replay.getSession().getRoom();
+            SessionSnapshot session = wanted.get(replay.getSession().getJournalId());
+            Map<Integer, Integer> seats = new LinkedHashMap<>();
+            for (int i = 0; i < session.getPlayerCount(); i++) {
+                seats.put(session.getUserId(i), session.getPosition(i));
+            }
+            roomManager.restoreRoom(room, seats);
+            replay.getTable().goLive(new RoomTable(room));
+            sessionManager.adoptSession(room, replay.getSession(), replay.isSettled());
+            restored++;
+        }
+        logger.info("Đã khôi phục {}/{} session từ snapshot lúc {} ({} record journal) trong {} ms",
+                restored, wanted.size(), snapshot.getWrittenAtMillis(), records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return restored;
+    }
+}
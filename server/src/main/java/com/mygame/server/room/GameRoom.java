@@ -1,29 +1,65 @@
 package com.mygame.server.room;
 
 import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.timer.Timeout;
+import com.mygame.server.util.SerialExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Class đại diện cho một game room trong memory
+ * Class đại diện cho một game room trong memory.
+ *
+ * Mọi thay đổi state game của room (action, vote, timer hết hạn) chạy qua {@link #execute},
+ * tuần tự trên pool {@code room-worker} dùng chung.
+ *
+ * Người chơi mất kết nối vẫn giữ ghế (connection = null) trong thời gian chờ resume; packet gửi
+ * cho họ trong lúc đó được giữ lại (tối đa {@value #MAX_MISSED_PACKETS}) để gửi bù đúng thứ tự.
+ * Mọi packet gửi đi qua hàng đợi gửi của từng kết nối ({@link SessionRegistry#send}).
  */
 public class GameRoom {
     private static final Logger logger = LoggerFactory.getLogger(GameRoom.class);
 
+    private static final int MAX_MISSED_PACKETS = 256;
+
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger();
+    private static final ExecutorService ROOM_WORKERS = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "room-worker-" + WORKER_COUNTER.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final SerialExecutor executor = new SerialExecutor(ROOM_WORKERS);
+    Timeout emptyExpiry; // do GameRoomManager quản lý, đọc/ghi khi giữ lock của room
+
     private int roomId;
     private String roomName;
     private String gameType;
     private int hostUserId;
     private int maxPlayers;
     private String status; // WAITING, PLAYING, FINISHED
+    // Tăng khi danh sách người chơi hoặc host đổi (snapshot chỉ encode lại room đã đổi)
+    private final AtomicInteger version = new AtomicInteger();
 
-    // Map: userId -> Connection
-    private final Map<Integer, Connection> players = new LinkedHashMap<>();
+    // Map: userId -> Connection (null khi đang giữ ghế chờ resume)
+    private final Map<Integer, Connection> players = Collections.synchronizedMap(new LinkedHashMap<>());
+    // userId -> ghế đang giữ; đọc/ghi khi giữ lock của players
+    private final Map<Integer, DetachedSeat> detachedSeats = new HashMap<>();
     // Map: userId -> position
-    private final Map<Integer, Integer> playerPositions = new LinkedHashMap<>();
+    private final Map<Integer, Integer> playerPositions = Collections.synchronizedMap(new LinkedHashMap<>());
 
     public GameRoom(int roomId, String roomName, String gameType, int hostUserId, int maxPlayers) {
         this.roomId = roomId;
@@ -51,42 +87,156 @@ public class GameRoom {
         }
     }
 
+    /**
+     * Chạy task trên executor tuần tự của room.
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    public SerialExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Pool dùng chung phía sau executor của mọi room (và của từng kết nối).
+     */
+    public static Executor workerPool() {
+        return ROOM_WORKERS;
+    }
+
     public void addPlayer(int userId, Connection connection, int position) {
         players.put(userId, connection);
         playerPositions.put(userId, position);
+        version.incrementAndGet();
         logger.debug("Đã thêm player {} vào room {} (position: {})", userId, roomId, position);
     }
 
     public void removePlayer(int userId) {
-        players.remove(userId);
+        DetachedSeat seat;
+        synchronized (players) {
+            players.remove(userId);
+            seat = detachedSeats.remove(userId);
+        }
+        if (seat != null && seat.release != null) {
+            seat.release.cancel();
+        }
         playerPositions.remove(userId);
+        version.incrementAndGet();
         logger.debug("Đã xóa player {} khỏi room {}", userId, roomId);
     }
 
+    /**
+     * Giữ ghế của player vừa mất kết nối: bỏ connection, bắt đầu giữ packet bị lỡ.
+     * Trả về false nếu player không ở room hoặc đã đang được giữ ghế.
+     */
+    boolean detachPlayer(int userId) {
+        synchronized (players) {
+            if (!players.containsKey(userId) || detachedSeats.containsKey(userId)) {
+                return false;
+            }
+            players.put(userId, null);
+            detachedSeats.put(userId, new DetachedSeat());
+            return true;
+        }
+    }
+
+    /**
+     * Ghế khôi phục sau restart: giữ ghế như player vừa mất kết nối, nhưng các packet trước
+     * restart đã mất nên khi quay lại player nhận snapshot state thay vì packet gửi bù.
+     */
+    boolean detachRestoredPlayer(int userId) {
+        synchronized (players) {
+            if (!detachPlayer(userId)) {
+                return false;
+            }
+            detachedSeats.get(userId).overflowed = true;
+            return true;
+        }
+    }
+
+    /**
+     * Gắn timer nhả ghế; huỷ luôn timer nếu player đã quay lại trước đó.
+     */
+    void setSeatRelease(int userId, Timeout release) {
+        synchronized (players) {
+            DetachedSeat seat = detachedSeats.get(userId);
+            if (seat != null) {
+                seat.release = release;
+                return;
+            }
+        }
+        release.cancel();
+    }
+
+    boolean isDetached(int userId) {
+        synchronized (players) {
+            return detachedSeats.containsKey(userId);
+        }
+    }
+
+    /**
+     * Gắn connection mới cho ghế của player và gửi bù, theo đúng thứ tự, các packet bị lỡ.
+     * Chạy dưới lock của players nên không packet mới nào chen vào giữa.
+     * Trả về false nếu player không ở room, hoặc số packet bị lỡ vượt giới hạn
+     * (khi đó caller phải gửi snapshot state thay thế).
+     */
+    boolean reattachPlayer(int userId, Connection connection) {
+        DetachedSeat seat;
+        synchronized (players) {
+            if (!players.containsKey(userId)) {
+                return false;
+            }
+            seat = detachedSeats.remove(userId);
+            players.put(userId, connection);
+            if (seat != null && !seat.overflowed) {
+                for (Object message : seat.missed) {
+                    send(connection, message);
+                }
+            }
+        }
+        if (seat != null && seat.release != null) {
+            seat.release.cancel();
+        }
+        logger.debug("Player {} quay lại room {} ({} packet gửi bù)", userId, roomId,
+                seat != null ? seat.missed.size() : 0);
+        return seat == null || !seat.overflowed;
+    }
+
     public void broadcast(Object message) {
         // Copy values to avoid ConcurrentModificationException if player disconnects
         // during broadcast
-        java.util.List<Connection> connections = new java.util.ArrayList<>(players.values());
+        List<Connection> connections;
+        synchronized (players) {
+            connections = new ArrayList<>(players.values());
+            for (DetachedSeat seat : detachedSeats.values()) {
+                seat.record(message);
+            }
+        }
         for (Connection connection : connections) {
             if (connection != null) {
-                try {
-                    connection.sendTCP(message);
-                } catch (Exception e) {
-                    logger.error("Lỗi khi broadcast đến connection: {}", e.getMessage());
-                }
+                send(connection, message);
             }
         }
     }
 
     public void sendToPlayer(int userId, Object message) {
-        Connection connection = players.get(userId);
-        if (connection != null) {
-            try {
-                connection.sendTCP(message);
-            } catch (Exception e) {
-                logger.error("Lỗi khi gửi message đến player {}: {}", userId, e.getMessage());
+        Connection connection;
+        synchronized (players) {
+            connection = players.get(userId);
+            if (connection == null) {
+                DetachedSeat seat = detachedSeats.get(userId);
+                if (seat != null) {
+                    seat.record(message);
+                }
+                return;
             }
         }
+        send(connection, message);
+    }
+
+    private void send(Connection connection, Object message) {
+        SessionRegistry.getInstance().send(connection, message);
     }
 
     // Getters and Setters
@@ -120,6 +270,7 @@ public class GameRoom {
 
     public void setHostUserId(int hostUserId) {
         this.hostUserId = hostUserId;
+        version.incrementAndGet();
     }
 
     public int getMaxPlayers() {
@@ -138,6 +289,10 @@ public class GameRoom {
         this.status = status;
     }
 
+    public int getVersion() {
+        return version.get();
+    }
+
     public int getCurrentPlayers() {
         return players.size();
     }
@@ -191,4 +346,25 @@ public class GameRoom {
         }
         return kicked;
     }
+
+    /**
+     * Ghế đang giữ cho player mất kết nối.
+     */
+    private static final class DetachedSeat {
+        final ArrayDeque<Object> missed = new ArrayDeque<>();
+        boolean overflowed;
+        Timeout release;
+
+        void record(Object message) {
+            if (overflowed) {
+                return;
+            }
+            if (missed.size() >= MAX_MISSED_PACKETS) {
+                overflowed = true; // quá nhiều: bỏ hết, gửi snapshot khi quay lại
+                missed.clear();
+                return;
+            }
+            missed.add(message);
+        }
+    }
 }
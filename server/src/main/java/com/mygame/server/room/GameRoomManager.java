@@ -1,39 +1,51 @@
 package com.mygame.server.room;
 
 import com.esotericsoftware.kryonet.Connection;
-import com.mygame.server.database.DatabaseManager;
 import com.mygame.server.database.RoomDAO;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.session.SessionRegistry;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.timer.TimingWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Manager quản lý game rooms trong memory
  * Kết hợp với RoomDAO để đồng bộ với database
- * Includes periodic cleanup for empty rooms
+ *
+ * Room trống được dọn bằng timer riêng của từng room trên {@link TimingWheel}
+ * (hẹn khi room trở nên trống, huỷ khi có người vào) thay cho việc quét mọi room định kỳ.
+ *
+ * Mất kết nối không rời room ngay: ghế được giữ {@code session.resumeGraceSeconds} giây
+ * (mặc định 60, 0 = rời ngay như trước) để client resume; hết hạn mới rời room.
  */
 public class GameRoomManager {
     private static final Logger logger = LoggerFactory.getLogger(GameRoomManager.class);
 
+    private static final long EMPTY_ROOM_TTL_SECONDS = 30;
+
     private final RoomDAO roomDAO;
     private final Map<Integer, GameRoom> activeRooms = new ConcurrentHashMap<>();
-    private final Map<Integer, Integer> userToRoom = new ConcurrentHashMap<>(); // userId -> roomId
-    private final ScheduledExecutorService cleanupScheduler = Executors.newSingleThreadScheduledExecutor();
-
-    public GameRoomManager(DatabaseManager dbManager) {
-        this.roomDAO = new RoomDAO(dbManager);
-
-        // Start periodic cleanup for empty rooms (every 30 seconds)
-        cleanupScheduler.scheduleAtFixedRate(this::cleanupEmptyRooms, 30, 30, TimeUnit.SECONDS);
-        logger.info("Started empty room cleanup scheduler (every 30 seconds)");
+    private final SessionRegistry sessionRegistry; // userId -> roomId, ghế
+    private final TimingWheel timers;
+    private final LongAdder expiredRooms;
+    private final LongAdder releasedSeats;
+    private final long resumeGraceMillis;
+
+    public GameRoomManager(Storage storage) {
+        this.roomDAO = storage.rooms();
+        this.sessionRegistry = SessionRegistry.getInstance();
+        this.timers = TimingWheel.getInstance();
+        this.expiredRooms = ServerMetrics.getInstance().counter("rooms.expired");
+        this.releasedSeats = ServerMetrics.getInstance().counter("rooms.seats_released");
+        this.resumeGraceMillis = TimeUnit.SECONDS.toMillis(Integer.getInteger("session.resumeGraceSeconds", 60));
+        ServerMetrics.getInstance().gauge("rooms.active", activeRooms::size);
     }
 
     /**
@@ -43,8 +55,8 @@ public class GameRoomManager {
             Connection hostConnection)
             throws SQLException {
         // IMPORTANT: Leave any existing room first to prevent duplicate players
-        Integer existingRoomId = userToRoom.get(hostUserId);
-        if (existingRoomId != null) {
+        int existingRoomId = sessionRegistry.getRoomId(hostUserId);
+        if (existingRoomId != SessionRegistry.NO_ROOM) {
             logger.info("User {} is already in room {}, leaving before creating new room", hostUserId, existingRoomId);
             leaveRoom(existingRoomId, hostUserId);
         }
@@ -57,7 +69,7 @@ public class GameRoomManager {
         room.addPlayer(hostUserId, hostConnection, 0);
 
         activeRooms.put(room.getRoomId(), room);
-        userToRoom.put(hostUserId, room.getRoomId());
+        sessionRegistry.setRoom(hostUserId, room.getRoomId(), 0);
 
         logger.info("Đã tạo room: {} (ID: {})", roomName, room.getRoomId());
         return room;
@@ -68,8 +80,8 @@ public class GameRoomManager {
      */
     public GameRoom joinRoom(int roomId, int userId, Connection connection) throws SQLException {
         // IMPORTANT: Leave any existing room first to prevent duplicate players
-        Integer existingRoomId = userToRoom.get(userId);
-        if (existingRoomId != null && existingRoomId != roomId) {
+        int existingRoomId = sessionRegistry.getRoomId(userId);
+        if (existingRoomId != SessionRegistry.NO_ROOM && existingRoomId != roomId) {
             logger.info("User {} is already in room {}, leaving before joining room {}", userId, existingRoomId,
                     roomId);
             leaveRoom(existingRoomId, userId);
@@ -82,25 +94,38 @@ public class GameRoomManager {
             RoomDAO.RoomData roomData = roomDAO.getRoomData(roomId);
             room = new GameRoom(roomData);
             activeRooms.put(roomId, room);
+            // Nếu join bên dưới thất bại, room vừa load sẽ tự hết hạn
+            scheduleEmptyExpiry(room);
         }
 
-        // Kiểm tra room có đầy không
-        if (room.getCurrentPlayers() >= room.getMaxPlayers()) {
-            throw new SQLException("Room đã đầy");
-        }
+        int position;
+        synchronized (room) {
+            if (activeRooms.get(roomId) != room) {
+                throw new SQLException("Room không tồn tại");
+            }
 
-        // Kiểm tra status
-        if (!"WAITING".equals(room.getStatus())) {
-            throw new SQLException("Room không còn chờ players");
-        }
+            // Kiểm tra room có đầy không
+            if (room.getCurrentPlayers() >= room.getMaxPlayers()) {
+                throw new SQLException("Room đã đầy");
+            }
+
+            // Kiểm tra status
+            if (!"WAITING".equals(room.getStatus())) {
+                throw new SQLException("Room không còn chờ players");
+            }
 
-        // Thêm vào database
-        int position = room.getCurrentPlayers();
-        roomDAO.addPlayerToRoom(roomId, userId, position);
+            // Thêm vào database
+            position = room.getCurrentPlayers();
+            roomDAO.addPlayerToRoom(roomId, userId, position);
 
-        // Thêm vào memory
-        room.addPlayer(userId, connection, position);
-        userToRoom.put(userId, roomId);
+            // Thêm vào memory
+            room.addPlayer(userId, connection, position);
+            if (room.emptyExpiry != null) {
+                room.emptyExpiry.cancel();
+                room.emptyExpiry = null;
+            }
+        }
+        sessionRegistry.setRoom(userId, roomId, position);
 
         logger.info("Player {} đã tham gia room {}", userId, roomId);
         return room;
@@ -124,7 +149,7 @@ public class GameRoomManager {
 
         // Xóa khỏi memory
         room.removePlayer(userId);
-        userToRoom.remove(userId);
+        sessionRegistry.clearRoom(userId, roomId);
 
         int playersAfterLeave = room.getCurrentPlayers();
 
@@ -168,8 +193,8 @@ public class GameRoomManager {
      * Lấy room mà user đang tham gia
      */
     public GameRoom getRoomByUser(int userId) {
-        Integer roomId = userToRoom.get(userId);
-        if (roomId != null) {
+        int roomId = sessionRegistry.getRoomId(userId);
+        if (roomId != SessionRegistry.NO_ROOM) {
             return activeRooms.get(roomId);
         }
         return null;
@@ -193,61 +218,122 @@ public class GameRoomManager {
     }
 
     /**
-     * Cleanup khi connection bị ngắt
+     * Đưa room dựng lại từ snapshot vào memory lúc khởi động (trước khi nhận kết nối). Mọi
+     * người chơi được giữ ghế như vừa mất kết nối: resume trong thời gian chờ thì quay lại đúng
+     * ván, quá hạn thì rời room như bình thường.
      */
-    public void handleDisconnection(int userId) {
-        Integer roomId = userToRoom.get(userId);
-        if (roomId != null) {
-            try {
-                leaveRoom(roomId, userId);
-            } catch (SQLException e) {
-                logger.error("Lỗi khi xử lý disconnect: {}", e.getMessage(), e);
+    public void restoreRoom(GameRoom room, Map<Integer, Integer> seats) {
+        int roomId = room.getRoomId();
+        room.setStatus("PLAYING");
+        for (Map.Entry<Integer, Integer> seat : seats.entrySet()) {
+            room.addPlayer(seat.getKey(), null, seat.getValue());
+        }
+        activeRooms.put(roomId, room);
+        long graceMillis = Math.max(resumeGraceMillis, 1);
+        for (Map.Entry<Integer, Integer> seat : seats.entrySet()) {
+            int userId = seat.getKey();
+            sessionRegistry.setRoom(userId, roomId, seat.getValue());
+            if (room.detachRestoredPlayer(userId)) {
+                room.setSeatRelease(userId, timers.schedule(() -> releaseSeat(room, userId),
+                        graceMillis, TimeUnit.MILLISECONDS, room.getExecutor()));
             }
         }
+        logger.info("Đã khôi phục room {} ({}, {} người chơi)", roomId, room.getGameType(), seats.size());
     }
 
     /**
-     * Periodically cleanup empty rooms from memory and database
+     * Cleanup khi connection bị ngắt: giữ ghế trong thời gian chờ resume, hết hạn thì rời room.
      */
-    private void cleanupEmptyRooms() {
+    public void handleDisconnection(int userId) {
+        int roomId = sessionRegistry.getRoomId(userId);
+        if (roomId == SessionRegistry.NO_ROOM) {
+            return;
+        }
+        GameRoom room = activeRooms.get(roomId);
+        if (room != null && resumeGraceMillis > 0) {
+            if (room.detachPlayer(userId)) {
+                room.setSeatRelease(userId, timers.schedule(() -> releaseSeat(room, userId),
+                        resumeGraceMillis, TimeUnit.MILLISECONDS, room.getExecutor()));
+                logger.info("Giữ ghế của player {} ở room {} trong {} ms", userId, roomId, resumeGraceMillis);
+            }
+            return;
+        }
         try {
-            List<Integer> emptyRoomIds = new ArrayList<>();
+            leaveRoom(roomId, userId);
+        } catch (SQLException e) {
+            logger.error("Lỗi khi xử lý disconnect: {}", e.getMessage(), e);
+        }
+    }
 
-            for (Map.Entry<Integer, GameRoom> entry : activeRooms.entrySet()) {
-                if (entry.getValue().getCurrentPlayers() == 0) {
-                    emptyRoomIds.add(entry.getKey());
-                }
-            }
+    /**
+     * Player quay lại (resume hoặc login lại): gắn connection mới vào ghế đang giữ và gửi bù
+     * packet bị lỡ. Gọi trên executor của room. Trả về false nếu không gửi bù được đầy đủ
+     * (caller gửi snapshot state); room null hoặc player không ở room thì không làm gì.
+     */
+    public boolean reclaimSeat(GameRoom room, int userId, Connection connection) {
+        if (room == null || !room.getPlayers().containsKey(userId)) {
+            return true;
+        }
+        boolean complete = room.reattachPlayer(userId, connection);
+        logger.info("Player {} quay lại ghế ở room {}", userId, room.getRoomId());
+        return complete;
+    }
 
-            for (Integer roomId : emptyRoomIds) {
-                try {
-                    roomDAO.deleteRoom(roomId);
-                    activeRooms.remove(roomId);
-                    logger.info("Cleanup: Deleted empty room {}", roomId);
-                } catch (SQLException e) {
-                    logger.error("Failed to cleanup room {}: {}", roomId, e.getMessage());
-                }
+    private void releaseSeat(GameRoom room, int userId) {
+        if (!room.isDetached(userId)) {
+            return;
+        }
+        releasedSeats.increment();
+        logger.info("Hết thời gian giữ ghế của player {} ở room {}", userId, room.getRoomId());
+        try {
+            leaveRoom(room.getRoomId(), userId);
+        } catch (SQLException e) {
+            logger.error("Lỗi khi nhả ghế của player {}: {}", userId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Hẹn xoá room sau {@value #EMPTY_ROOM_TTL_SECONDS}s nếu khi đó room vẫn trống
+     * (ví dụ room load từ database mà join thất bại, hoặc mọi người bị kick).
+     */
+    public void scheduleEmptyExpiry(GameRoom room) {
+        synchronized (room) {
+            if (room.emptyExpiry != null) {
+                room.emptyExpiry.cancel();
             }
+            room.emptyExpiry = timers.schedule(() -> expireIfEmpty(room),
+                    EMPTY_ROOM_TTL_SECONDS, TimeUnit.SECONDS, room.getExecutor());
+        }
+    }
 
-            if (!emptyRoomIds.isEmpty()) {
-                logger.info("Cleaned up {} empty rooms", emptyRoomIds.size());
+    private void expireIfEmpty(GameRoom room) {
+        int roomId = room.getRoomId();
+        synchronized (room) {
+            room.emptyExpiry = null;
+            if (room.getCurrentPlayers() != 0 || !activeRooms.remove(roomId, room)) {
+                return;
             }
-        } catch (Exception e) {
-            logger.error("Error during empty room cleanup: {}", e.getMessage(), e);
+        }
+        expiredRooms.increment();
+        try {
+            roomDAO.deleteRoom(roomId);
+            logger.info("Đã xoá room trống {} (hết hạn)", roomId);
+        } catch (SQLException e) {
+            logger.error("Failed to cleanup room {}: {}", roomId, e.getMessage());
         }
     }
 
     /**
-     * Shutdown cleanup scheduler
+     * Huỷ các timer room trống còn chờ
      */
     public void shutdown() {
-        cleanupScheduler.shutdown();
-        try {
-            if (!cleanupScheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupScheduler.shutdownNow();
+        for (GameRoom room : activeRooms.values()) {
+            synchronized (room) {
+                if (room.emptyExpiry != null) {
+                    room.emptyExpiry.cancel();
+                    room.emptyExpiry = null;
+                }
             }
-        } catch (InterruptedException e) {
-            cleanupScheduler.shutdownNow();
         }
         logger.info("GameRoomManager shutdown complete");
     }
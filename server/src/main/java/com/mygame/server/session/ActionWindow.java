@@ -0,0 +1,37 @@
+package com.mygame.server.session;
+
+import com.mygame.shared.network.packets.game.ActionAckPacket;
+
+/**
+ * Cửa sổ dedupe cho sequence action của một user: nhớ {@value #SIZE} sequence gần nhất
+ * trong một ring long[] nên kiểm tra là O(1), không cấp phát.
+ *
+ * Cho phép action tới không theo thứ tự trong cửa sổ (client pipeline), từ chối sequence
+ * đã thấy và sequence cũ hơn cửa sổ. Giữ qua resume, tạo mới khi login.
+ */
+public final class ActionWindow {
+    private static final int SIZE = 64; // luỹ thừa của 2
+    private static final int MASK = SIZE - 1;
+
+    private final long[] seen = new long[SIZE];
+    private long highest;
+
+    /**
+     * Ghi nhận sequence, trả về một trong các {@code ActionAckPacket.STATUS_*}.
+     */
+    public synchronized int accept(long sequence) {
+        if (sequence <= highest - SIZE) {
+            return ActionAckPacket.STATUS_STALE;
+        }
+        int slot = (int) (sequence & MASK);
+        if (seen[slot] == sequence) {
+            return ActionAckPacket.STATUS_DUPLICATE;
+        }
+        // Slot cũ (sequence - SIZE) đã nằm ngoài cửa sổ nên ghi đè được
+        seen[slot] = sequence;
+        if (sequence > highest) {
+            highest = sequence;
+        }
+        return ActionAckPacket.STATUS_ACCEPTED;
+    }
+}
@@ -0,0 +1,57 @@
+package com.mygame.server.session;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.network.OutboundQueue;
+import com.mygame.server.room.GameRoom;
+import com.mygame.server.util.SerialExecutor;
+
+/**
+ * Trạng thái của một kết nối client. Tạo khi client kết nối, bỏ khi ngắt kết nối.
+ */
+public final class ClientSession {
+    private final int connectionId;
+    private final Connection connection;
+    private final long connectedAtMillis;
+    private final OutboundQueue outbound;
+    // Callback của thao tác async thuộc kết nối này chạy tuần tự ở đây
+    private final SerialExecutor executor = new SerialExecutor(GameRoom.workerPool());
+    // 0 = chưa đăng nhập (hoặc user đã đăng nhập lại từ kết nối khác)
+    private volatile int userId;
+    private volatile long authenticatedAtMillis;
+    // Lần cuối nhận được bất kỳ dữ liệu nào (kể cả KeepAlive của KryoNet), System.nanoTime()
+    private volatile long lastSeenNanos;
+
+    ClientSession(Connection connection) {
+        this.connectionId = connection.getID();
+        this.connection = connection;
+        this.connectedAtMillis = System.currentTimeMillis();
+        this.outbound = new OutboundQueue(connection);
+        this.lastSeenNanos = System.nanoTime();
+    }
+
+    public void touch() {
+        lastSeenNanos = System.nanoTime();
+    }
+
+    void authenticate(int userId) {
+        this.userId = userId;
+        this.authenticatedAtMillis = System.currentTimeMillis();
+    }
+
+    void revoke() {
+        this.userId = 0;
+    }
+
+    public boolean isAuthenticated() {
+        return userId != 0;
+    }
+
+    public int getConnectionId() { return connectionId; }
+    public Connection getConnection() { return connection; }
+    public OutboundQueue getOutbound() { return outbound; }
+    public SerialExecutor getExecutor() { return executor; }
+    public long getConnectedAtMillis() { return connectedAtMillis; }
+    public int getUserId() { return userId; }
+    public long getAuthenticatedAtMillis() { return authenticatedAtMillis; }
+    public long getLastSeenNanos() { return lastSeenNanos; }
+}
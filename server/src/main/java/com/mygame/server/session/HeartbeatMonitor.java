@@ -0,0 +1,142 @@
+package com.mygame.server.session;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.timer.Timeout;
+import com.mygame.server.timer.TimingWheel;
+import com.mygame.shared.network.packets.HeartbeatPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heartbeat và dọn kết nối chết.
+ *
+ * Mỗi {@code net.heartbeatIntervalSeconds} (mặc định 5) một lượt quét trên {@link TimingWheel}
+ * duyệt mọi session một lần:
+ * - Kết nối đang ở trong room mà im lặng quá một chu kỳ được gửi {@link HeartbeatPacket};
+ * im lặng quá {@code net.heartbeatTimeoutSeconds} (mặc định 20) thì bị đóng.
+ * - Kết nối ở lobby ở chế độ tiết kiệm: không nhận push định kỳ nào, chỉ dựa vào KeepAlive
+ * của client, và bị đóng sau {@code net.lobbyIdleTimeoutSeconds} (mặc định 300) im lặng.
+ *
+ * Kết nối chết được gom trong lúc quét và đóng theo lô ngoài lock của registry;
+ * Listener.disconnected lo phần dọn session và giữ ghế như mọi lần ngắt kết nối khác.
+ */
+public class HeartbeatMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(HeartbeatMonitor.class);
+
+    private static HeartbeatMonitor instance;
+
+    private final SessionRegistry sessionRegistry;
+    private final long intervalNanos;
+    private final long timeoutNanos;
+    private final long lobbyTimeoutNanos;
+    private final LongAdder pings;
+    private final LongAdder reaped;
+    private final LatencyHistogram roundTrip;
+
+    private ExecutorService executor;
+    private Timeout next;
+    private volatile boolean running;
+
+    private HeartbeatMonitor() {
+        this.sessionRegistry = SessionRegistry.getInstance();
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("net.heartbeatIntervalSeconds", 5));
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("net.heartbeatTimeoutSeconds", 20));
+        this.lobbyTimeoutNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("net.lobbyIdleTimeoutSeconds", 300));
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.pings = metrics.counter("net.heartbeat.pings");
+        this.reaped = metrics.counter("net.heartbeat.reaped");
+        this.roundTrip = metrics.histogram("net.heartbeat.rtt");
+    }
+
+    public static synchronized HeartbeatMonitor getInstance() {
+        if (instance == null) {
+            instance = new HeartbeatMonitor();
+        }
+        return instance;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleNext();
+        logger.info("HeartbeatMonitor started (interval {} s, timeout {} s, lobby {} s)",
+                TimeUnit.NANOSECONDS.toSeconds(intervalNanos), TimeUnit.NANOSECONDS.toSeconds(timeoutNanos),
+                TimeUnit.NANOSECONDS.toSeconds(lobbyTimeoutNanos));
+    }
+
+    /**
+     * Client gửi lại heartbeat: ghi round-trip (lastSeen đã được cập nhật khi nhận packet).
+     */
+    public void onHeartbeat(Connection connection, HeartbeatPacket packet) {
+        long rtt = System.nanoTime() - packet.getSentAt();
+        if (rtt >= 0 && rtt < timeoutNanos) {
+            roundTrip.recordNanos(rtt);
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        if (running) {
+            next = TimingWheel.getInstance().schedule(this::sweep, intervalNanos, TimeUnit.NANOSECONDS, executor);
+        }
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        List<Connection> ping = new ArrayList<>();
+        List<Connection> dead = new ArrayList<>();
+        sessionRegistry.forEachSession(session -> {
+            long silent = now - session.getLastSeenNanos();
+            Connection connection = session.getConnection();
+            boolean inRoom = session.isAuthenticated()
+                    && sessionRegistry.getRoomId(session.getUserId()) != SessionRegistry.NO_ROOM;
+            if (!connection.isConnected() || silent > (inRoom ? timeoutNanos : lobbyTimeoutNanos)) {
+                dead.add(connection);
+            } else if (inRoom && silent > intervalNanos) {
+                ping.add(connection);
+            }
+        });
+
+        HeartbeatPacket heartbeat = new HeartbeatPacket(now);
+        for (Connection connection : ping) {
+            sessionRegistry.send(connection, heartbeat);
+        }
+        pings.add(ping.size());
+
+        for (Connection connection : dead) {
+            logger.debug("Đóng kết nối {} không phản hồi", connection.getID());
+            connection.close();
+        }
+        if (!dead.isEmpty()) {
+            reaped.add(dead.size());
+            logger.info("Heartbeat: đóng {} kết nối chết, ping {} kết nối", dead.size(), ping.size());
+        }
+        scheduleNext();
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        if (next != null) {
+            next.cancel();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        logger.info("HeartbeatMonitor shutdown complete");
+    }
+}
@@ -0,0 +1,144 @@
+package com.mygame.server.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cấp và kiểm tra resume token: {@code userId.expiresAtMillis.nonce.chữ-ký}, ký HMAC-SHA256
+ * bằng secret của server.
+ *
+ * Kiểm tra token chỉ tốn một HMAC (không BCrypt, không database), nên một đợt client kết nối
+ * lại cùng lúc không đè lên pool của LoginHandler. Mỗi user chỉ có một token còn hiệu lực
+ * (nonce mới nhất): login hoặc resume thành công cấp token mới và token cũ hết hiệu lực.
+ *
+ * Secret lấy từ system property {@code session.resumeSecret}; nếu không đặt thì sinh ngẫu nhiên
+ * lúc khởi động (token không sống qua restart). Khi đã đặt secret, nonce còn hiệu lực được lưu
+ * trong snapshot session nên client resume được vào ghế đã khôi phục sau restart.
+ * Thời hạn token: {@code session.resumeTokenTtlSeconds}, mặc định 12 giờ.
+ */
+public class ResumeTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(ResumeTokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static ResumeTokenService instance;
+
+    private final SecretKeySpec key;
+    private final boolean persistentSecret;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<Integer, Long> currentNonces = new ConcurrentHashMap<>(); // userId -> nonce còn hiệu lực
+
+    private ResumeTokenService(byte[] secret, boolean persistentSecret, long ttlMillis) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.persistentSecret = persistentSecret;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static synchronized ResumeTokenService getInstance() {
+        if (instance == null) {
+            String configured = System.getProperty("session.resumeSecret");
+            byte[] secret;
+            boolean persistent = configured != null && !configured.isEmpty();
+            if (persistent) {
+                secret = configured.getBytes(StandardCharsets.UTF_8);
+            } else {
+                secret = new byte[32];
+                new SecureRandom().nextBytes(secret);
+                logger.info("session.resumeSecret chưa đặt, dùng secret ngẫu nhiên cho lần chạy này");
+            }
+            long ttl = TimeUnit.SECONDS.toMillis(Long.getLong("session.resumeTokenTtlSeconds", 12 * 3600L));
+            instance = new ResumeTokenService(secret, persistent, ttl);
+        }
+        return instance;
+    }
+
+    /**
+     * Cấp token mới cho user; token cấp trước đó hết hiệu lực.
+     */
+    public String issue(int userId) {
+        long nonce = random.nextLong();
+        currentNonces.put(userId, nonce);
+        String payload = userId + "." + (System.currentTimeMillis() + ttlMillis) + "." + Long.toHexString(nonce);
+        return payload + "." + sign(payload);
+    }
+
+    /**
+     * Dùng token (một lần): trả về userId nếu chữ ký đúng, chưa hết hạn và vẫn là token mới nhất
+     * của user, ngược lại 0. Hai kết nối dùng cùng một token thì chỉ một kết nối thành công.
+     */
+    public int redeem(String token) {
+        if (token == null) {
+            return 0;
+        }
+        int sigStart = token.lastIndexOf('.');
+        if (sigStart <= 0) {
+            return 0;
+        }
+        String payload = token.substring(0, sigStart);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(sigStart + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return 0;
+        }
+
+        String[] parts = payload.split("\\.");
+        if (parts.length != 3) {
+            return 0;
+        }
+        try {
+            int userId = Integer.parseInt(parts[0]);
+            long expiresAt = Long.parseLong(parts[1]);
+            long nonce = Long.parseUnsignedLong(parts[2], 16);
+            if (expiresAt < System.currentTimeMillis()) {
+                return 0;
+            }
+            return currentNonces.remove(userId, nonce) ? userId : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Nonce còn hiệu lực của mọi user (cho snapshot).
+     */
+    public Map<Integer, Long> exportNonces() {
+        return new HashMap<>(currentNonces);
+    }
+
+    /**
+     * Nạp lại nonce từ snapshot lúc khởi động; không giữ gì nếu secret là ngẫu nhiên,
+     * vì token cũ không thể qua được chữ ký mới.
+     */
+    public void restoreNonces(Map<Integer, Long> nonces) {
+        if (!persistentSecret) {
+            return;
+        }
+        for (Map.Entry<Integer, Long> entry : nonces.entrySet()) {
+            currentNonces.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không thể ký resume token", e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.mygame.server.session;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.util.CopyOnWriteIntTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+
+/**
+ * Registry duy nhất cho session của các kết nối, thay cho các Map&lt;Connection, Integer&gt; riêng lẻ.
+ *
+ * Session được tra theo {@link Connection#getID()}; trạng thái của user (kết nối, room, ghế,
+ * cửa sổ dedupe action) nằm chung trong một {@link UserEntry} tra theo userId. Cả hai bảng là
+ * {@link CopyOnWriteIntTable} nên các hàm đọc trên mỗi packet ({@link #get}, {@link #getConnection},
+ * {@link #getActions}, {@link #getRoomId}...) không lấy lock. Lock của registry chỉ dùng cho các
+ * lần ghi (đăng ký, đăng nhập, ngắt kết nối, đổi room) để chúng nhất quán với nhau.
+ */
+public class SessionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(SessionRegistry.class);
+
+    public static final int NO_ROOM = 0;
+    public static final int NO_SEAT = -1;
+
+    private static SessionRegistry instance;
+
+    private final CopyOnWriteIntTable<ClientSession> sessions = new CopyOnWriteIntTable<>(1024); // connectionId -> session
+    private final CopyOnWriteIntTable<UserEntry> users = new CopyOnWriteIntTable<>(1024);
+    private volatile int authenticated; // số user có kết nối, ghi dưới lock
+
+    private SessionRegistry() {
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        metrics.gauge("sessions.connected", this::connectedCount);
+        metrics.gauge("sessions.authenticated", this::authenticatedCount);
+    }
+
+    public static synchronized SessionRegistry getInstance() {
+        if (instance == null) {
+            instance = new SessionRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Tạo session cho kết nối mới (gọi từ Listener.connected).
+     */
+    public synchronized ClientSession register(Connection connection) {
+        ClientSession session = sessions.get(connection.getID());
+        if (session == null) {
+            session = new ClientSession(connection);
+            sessions.put(session.getConnectionId(), session);
+        }
+        return session;
+    }
+
+    public ClientSession get(int connectionId) {
+        return sessions.get(connectionId);
+    }
+
+    public ClientSession get(Connection connection) {
+        return get(connection.getID());
+    }
+
+    /**
+     * Gửi qua hàng đợi gửi của kết nối (coalesce snapshot, ngắt client chậm).
+     * Kết nối không còn trong registry (đã ngắt) thì bỏ qua.
+     */
+    public void send(Connection connection, Object packet) {
+        ClientSession session = get(connection);
+        if (session != null) {
+            session.getOutbound().send(packet);
+        }
+    }
+
+    /**
+     * userId của kết nối, 0 nếu chưa đăng nhập.
+     */
+    public int getUserId(Connection connection) {
+        ClientSession session = get(connection);
+        return session != null ? session.getUserId() : 0;
+    }
+
+    /**
+     * Gắn user vào kết nối sau khi đăng nhập. Nếu user đang đăng nhập ở kết nối khác,
+     * kết nối cũ mất quyền (session cũ trở về chưa đăng nhập) và được trả về để caller xử lý.
+     */
+    public synchronized ClientSession bindUser(Connection connection, int userId) {
+        ClientSession session = register(connection);
+        UserEntry user = entry(userId);
+        int previousId = user.connectionId;
+        user.connectionId = session.getConnectionId();
+        if (previousId == 0) {
+            authenticated++;
+        }
+        ClientSession previous = null;
+        if (previousId != 0 && previousId != session.getConnectionId()) {
+            previous = sessions.get(previousId);
+            if (previous != null) {
+                previous.revoke();
+                logger.info("User {} đăng nhập lại từ connection {}, thu hồi connection {}",
+                        userId, session.getConnectionId(), previousId);
+            }
+        }
+        session.authenticate(userId);
+        return previous;
+    }
+
+    /**
+     * Login mới: client đánh số action lại từ đầu nên cửa sổ dedupe cũng bắt đầu lại.
+     * Resume thì không gọi hàm này.
+     */
+    public synchronized void resetActions(int userId) {
+        entry(userId).actions = new ActionWindow();
+    }
+
+    /**
+     * Cửa sổ dedupe action của user (tạo nếu chưa có; chỉ lần tạo mới lấy lock).
+     */
+    public ActionWindow getActions(int userId) {
+        UserEntry user = users.get(userId);
+        ActionWindow window = user != null ? user.actions : null;
+        return window != null ? window : createActions(userId);
+    }
+
+    private synchronized ActionWindow createActions(int userId) {
+        UserEntry user = entry(userId);
+        if (user.actions == null) {
+            user.actions = new ActionWindow();
+        }
+        return user.actions;
+    }
+
+    /**
+     * Bỏ session khi ngắt kết nối. Session trả về còn userId != 0 chỉ khi kết nối này vẫn là
+     * kết nối hiện tại của user (caller nên dọn room); nếu user đã đăng nhập lại ở nơi khác thì userId = 0.
+     */
+    public synchronized ClientSession unregister(Connection connection) {
+        ClientSession session = sessions.remove(connection.getID());
+        if (session != null) {
+            session.getOutbound().close();
+        }
+        if (session != null && session.isAuthenticated()) {
+            int userId = session.getUserId();
+            UserEntry user = users.get(userId);
+            if (user != null && user.connectionId == session.getConnectionId()) {
+                user.connectionId = 0;
+                authenticated--;
+            }
+            if (user != null && user.connectionId == 0 && user.roomId == NO_ROOM) {
+                users.remove(userId); // không có ghế để resume
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Kết nối hiện tại của user, null nếu offline.
+     */
+    public Connection getConnection(int userId) {
+        UserEntry user = users.get(userId);
+        int connectionId = user != null ? user.connectionId : 0;
+        ClientSession session = connectionId != 0 ? sessions.get(connectionId) : null;
+        return session != null ? session.getConnection() : null;
+    }
+
+    public synchronized void setRoom(int userId, int roomId, int seat) {
+        UserEntry user = entry(userId);
+        user.roomId = roomId;
+        user.seat = seat;
+    }
+
+    /**
+     * Bỏ user khỏi room (chỉ khi user vẫn đang ở đúng room đó).
+     */
+    public synchronized void clearRoom(int userId, int roomId) {
+        UserEntry user = users.get(userId);
+        if (user != null && user.roomId == roomId && roomId != NO_ROOM) {
+            user.roomId = NO_ROOM;
+            user.seat = NO_SEAT;
+            if (user.connectionId == 0) {
+                users.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Room user đang ở, {@link #NO_ROOM} nếu không ở room nào.
+     */
+    public int getRoomId(int userId) {
+        UserEntry user = users.get(userId);
+        return user != null ? user.roomId : NO_ROOM;
+    }
+
+    /**
+     * Ghế của user trong room, {@link #NO_SEAT} nếu không ở room nào.
+     */
+    public int getSeat(int userId) {
+        UserEntry user = users.get(userId);
+        return user != null ? user.seat : NO_SEAT;
+    }
+
+    /**
+     * Duyệt mọi session không lấy lock; session đăng ký/ngắt trong lúc duyệt có thể thấy hoặc không.
+     */
+    public void forEachSession(Consumer<ClientSession> action) {
+        sessions.forEachValue(action);
+    }
+
+    public int connectedCount() {
+        return sessions.size();
+    }
+
+    public int authenticatedCount() {
+        return authenticated;
+    }
+
+    /**
+     * Entry của user, tạo nếu chưa có. Gọi dưới lock.
+     */
+    private UserEntry entry(int userId) {
+        UserEntry user = users.get(userId);
+        if (user == null) {
+            user = new UserEntry();
+            users.put(userId, user);
+        }
+        return user;
+    }
+
+    /**
+     * Trạng thái của một user. Chỉ ghi dưới lock của registry; đọc không lock, mỗi trường là
+     * một giá trị volatile độc lập.
+     */
+    private static final class UserEntry {
+        volatile int connectionId; // 0 = offline
+        volatile int roomId = NO_ROOM;
+        volatile int seat = NO_SEAT;
+        volatile ActionWindow actions; // dedupe action; sống qua resume
+    }
+}
@@ -0,0 +1,136 @@
+package com.mygame.server.snapshot;
+
+import com.mygame.server.game.GameSession;
+import com.mygame.server.room.GameRoom;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Snapshot của một room đang chơi: thông tin room, ghế của từng người chơi và định danh của
+ * session. State ván chơi không nằm ở đây mà được dựng lại từ hand journal của session, nên
+ * snapshot chỉ vài chục byte và chỉ đổi khi người chơi vào/ra room.
+ */
+public final class SessionSnapshot {
+    private final int roomId;
+    private final String roomName;
+    private final String gameType;
+    private final int hostUserId;
+    private final int maxPlayers;
+    private final UUID sessionUuid;
+    private final long startedAtMillis;
+    private final int[] userIds;
+    private final int[] positions;
+
+    private SessionSnapshot(int roomId, String roomName, String gameType, int hostUserId, int maxPlayers,
+                            UUID sessionUuid, long startedAtMillis, int[] userIds, int[] positions) {
+        this.roomId = roomId;
+        this.roomName = roomName;
+        this.gameType = gameType;
+        this.hostUserId = hostUserId;
+        this.maxPlayers = maxPlayers;
+        this.sessionUuid = sessionUuid;
+        this.startedAtMillis = startedAtMillis;
+        this.userIds = userIds;
+        this.positions = positions;
+    }
+
+    static SessionSnapshot of(GameRoom room, GameSession session) {
+        List<Map.Entry<Integer, Integer>> seats;
+        synchronized (room.getPlayerPositions()) {
+            seats = new ArrayList<>(room.getPlayerPositions().entrySet());
+        }
+        int[] userIds = new int[seats.size()];
+        int[] positions = new int[seats.size()];
+        for (int i = 0; i < seats.size(); i++) {
+            userIds[i] = seats.get(i).getKey();
+            positions[i] = seats.get(i).getValue();
+        }
+        return new SessionSnapshot(room.getRoomId(), room.getRoomName(), room.getGameType(), room.getHostUserId(),
+                room.getMaxPlayers(), session.getSessionUuid(), session.getStartedAtMillis(), userIds, positions);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(roomId);
+        out.writeUTF(roomName != null ? roomName : "");
+        out.writeUTF(gameType);
+        out.writeInt(hostUserId);
+        out.writeInt(maxPlayers);
+        out.writeLong(sessionUuid.getMostSignificantBits());
+        out.writeLong(sessionUuid.getLeastSignificantBits());
+        out.writeLong(startedAtMillis);
+        out.writeShort(userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            out.writeInt(userIds[i]);
+            out.writeInt(positions[i]);
+        }
+    }
+
+    static SessionSnapshot readFrom(DataInputStream in) throws IOException {
+        int roomId = in.readInt();
+        String roomName = in.readUTF();
+        String gameType = in.readUTF();
+        int hostUserId = in.readInt();
+        int maxPlayers = in.readInt();
+        UUID sessionUuid = new UUID(in.readLong(), in.readLong());
+        long startedAtMillis = in.readLong();
+        int n = in.readUnsignedShort();
+        int[] userIds = new int[n];
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            userIds[i] = in.readInt();
+            positions[i] = in.readInt();
+        }
+        return new SessionSnapshot(roomId, roomName, gameType, hostUserId, maxPlayers, sessionUuid,
+                startedAtMillis, userIds, positions);
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    public String getGameType() {
+        return gameType;
+    }
+
+    public int getHostUserId() {
+        return hostUserId;
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    public UUID getSessionUuid() {
+        return sessionUuid;
+    }
+
+    public long getJournalId() {
+        return sessionUuid.getMostSignificantBits() ^ sessionUuid.getLeastSignificantBits();
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public int getPlayerCount() {
+        return userIds.length;
+    }
+
+    public int getUserId(int index) {
+        return userIds[index];
+    }
+
+    public int getPosition(int index) {
+        return positions[index];
+    }
+}
@@ -0,0 +1,192 @@
+package com.mygame.server.snapshot;
+
+import com.mygame.server.game.GameSession;
+import com.mygame.server.game.GameSessionManager;
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.room.GameRoom;
+import com.mygame.server.session.ResumeTokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Định kỳ ghi snapshot của mọi session đang chạy ({@link SessionSnapshot}) cùng nonce resume
+ * token vào {@code snapshot.file} (mặc định {@code snapshot/sessions.snap}), mỗi
+ * {@code snapshot.intervalMillis} (mặc định 2000), trên thread {@code session-snapshot}.
+ *
+ * Snapshot là incremental: bytes của mỗi room được giữ lại và chỉ encode lại khi session đổi hoặc
+ * {@link GameRoom#getVersion()} tăng; file chỉ được ghi lại khi có gì đó đổi. State ván chơi nằm
+ * trong hand journal nên game thread không bị đụng tới. Lúc khởi động
+ * {@link com.mygame.server.replay.SessionRestorer} đọc file này và journal để dựng lại các bàn.
+ * Tắt bằng {@code -Dsnapshot.enabled=false}.
+ */
+public class SessionSnapshotter {
+    private static final Logger logger = LoggerFactory.getLogger(SessionSnapshotter.class);
+
+    private static SessionSnapshotter instance;
+
+    private final boolean enabled;
+    private final Path file;
+    private final long intervalMillis;
+    private final LatencyHistogram writeTime;
+    private final LongAdder encodedRooms;
+    private final LongAdder failures;
+    // roomId -> bytes đã encode; chỉ thread snapshot (hoặc shutdown, dưới lock) đụng tới
+    private final Map<Integer, Encoded> encoded = new HashMap<>();
+
+    private ScheduledExecutorService executor;
+    private GameSessionManager sessionManager;
+    private Map<Integer, Long> lastNonces = new HashMap<>();
+    private boolean written;
+    private volatile int lastSessions;
+    private volatile int lastBytes;
+
+    private SessionSnapshotter() {
+        this.enabled = Boolean.parseBoolean(System.getProperty("snapshot.enabled", "true"));
+        this.file = Paths.get(System.getProperty("snapshot.file", "snapshot/sessions.snap"));
+        this.intervalMillis = Math.max(100, Integer.getInteger("snapshot.intervalMillis", 2000));
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.writeTime = metrics.histogram("snapshot.write");
+        this.encodedRooms = metrics.counter("snapshot.rooms_encoded");
+        this.failures = metrics.counter("snapshot.failures");
+        metrics.gauge("snapshot.sessions", () -> lastSessions);
+        metrics.gauge("snapshot.bytes", () -> lastBytes);
+    }
+
+    public static synchronized SessionSnapshotter getInstance() {
+        if (instance == null) {
+            instance = new SessionSnapshotter();
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public synchronized void start(GameSessionManager sessionManager) {
+        if (!enabled || executor != null) {
+            return;
+        }
+        this.sessionManager = sessionManager;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Session snapshot ở {} (mỗi {} ms)", file.toAbsolutePath(), intervalMillis);
+    }
+
+    /**
+     * Dừng thread snapshot và ghi snapshot cuối cùng (gọi sau khi server đã ngừng nhận packet).
+     */
+    public synchronized void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        snapshotQuietly();
+        logger.info("Đã ghi snapshot cuối: {} session, {} bytes", lastSessions, lastBytes);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot(sessionManager.getSessions());
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            logger.error("Lỗi khi ghi session snapshot {}: {}", file, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ghi snapshot của các session (roomId -> session) nếu có gì đổi so với lần trước;
+     * trả về số session trong snapshot.
+     */
+    public synchronized int snapshot(Map<Integer, GameSession> sessions) throws IOException {
+        long start = System.nanoTime();
+        boolean changed = !written;
+        List<byte[]> entries = new ArrayList<>(sessions.size());
+        for (GameSession session : sessions.values()) {
+            GameRoom room = session.getRoom();
+            if (room == null) {
+                continue;
+            }
+            Encoded entry = encoded.get(room.getRoomId());
+            int version = room.getVersion();
+            if (entry == null || entry.session != session || entry.version != version) {
+                entry = new Encoded(session, version, encode(room, session));
+                encoded.put(room.getRoomId(), entry);
+                encodedRooms.increment();
+                changed = true;
+            }
+            entry.seen = true;
+            entries.add(entry.bytes);
+        }
+        for (Iterator<Encoded> it = encoded.values().iterator(); it.hasNext(); ) {
+            Encoded entry = it.next();
+            if (!entry.seen) {
+                it.remove(); // session đã đóng
+                changed = true;
+            }
+            entry.seen = false;
+        }
+
+        Map<Integer, Long> nonces = ResumeTokenService.getInstance().exportNonces();
+        if (!changed && nonces.equals(lastNonces)) {
+            return entries.size();
+        }
+        lastBytes = SnapshotFile.write(file, System.currentTimeMillis(), entries, nonces);
+        lastNonces = nonces;
+        lastSessions = entries.size();
+        written = true;
+        writeTime.recordNanos(System.nanoTime() - start);
+        return entries.size();
+    }
+
+    private static byte[] encode(GameRoom room, GameSession session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        SessionSnapshot.of(room, session).writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static final class Encoded {
+        final GameSession session;
+        final int version;
+        final byte[] bytes;
+        boolean seen;
+
+        Encoded(GameSession session, int version, byte[] bytes) {
+            this.session = session;
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+}
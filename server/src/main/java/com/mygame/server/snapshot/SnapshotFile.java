@@ -0,0 +1,141 @@
+package com.mygame.server.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * File snapshot: {@code int magic, int version, long writtenAt, int n, n x SessionSnapshot,
+ * int m, m x (int userId, long nonce)} và CRC32 của toàn bộ phần trước ở cuối file.
+ *
+ * Ghi ra file tạm, fsync rồi rename đè lên file cũ, nên sau khi sập luôn còn nguyên một snapshot
+ * (cũ hoặc mới); file hỏng (CRC sai) bị coi như không có snapshot.
+ */
+public final class SnapshotFile {
+    static final int MAGIC = 0x534E4150; // "SNAP"
+    static final int VERSION = 1;
+
+    private final long writtenAtMillis;
+    private final List<SessionSnapshot> sessions;
+    private final Map<Integer, Long> resumeNonces;
+
+    private SnapshotFile(long writtenAtMillis, List<SessionSnapshot> sessions, Map<Integer, Long> resumeNonces) {
+        this.writtenAtMillis = writtenAtMillis;
+        this.sessions = sessions;
+        this.resumeNonces = resumeNonces;
+    }
+
+    /**
+     * Đọc snapshot; trả về null nếu chưa có file.
+     */
+    public static SnapshotFile read(Path file) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (bytes.length < 4) {
+            throw new IOException("Snapshot " + file + " bị cắt cụt");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) {
+            throw new IOException("Snapshot " + file + " sai CRC");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file + " không phải file snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Snapshot " + file + " version " + version + " không hỗ trợ");
+        }
+        long writtenAt = in.readLong();
+        int n = in.readInt();
+        List<SessionSnapshot> sessions = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            sessions.add(SessionSnapshot.readFrom(in));
+        }
+        int m = in.readInt();
+        Map<Integer, Long> nonces = new HashMap<>(m * 2);
+        for (int i = 0; i < m; i++) {
+            nonces.put(in.readInt(), in.readLong());
+        }
+        return new SnapshotFile(writtenAt, Collections.unmodifiableList(sessions), Collections.unmodifiableMap(nonces));
+    }
+
+    /**
+     * Ghi snapshot từ các session đã encode sẵn ({@link SessionSnapshot#writeTo}); trả về số byte.
+     */
+    static int write(Path file, long writtenAtMillis, Collection<byte[]> encodedSessions,
+                     Map<Integer, Long> resumeNonces) throws IOException {
+        int size = 24 + resumeNonces.size() * 12;
+        for (byte[] encoded : encodedSessions) {
+            size += encoded.length;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size + 4);
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(bytes, crc));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(writtenAtMillis);
+        out.writeInt(encodedSessions.size());
+        for (byte[] encoded : encodedSessions) {
+            out.write(encoded);
+        }
+        out.writeInt(resumeNonces.size());
+        for (Map.Entry<Integer, Long> entry : resumeNonces.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        out.flush();
+        new DataOutputStream(bytes).writeInt((int) crc.getValue());
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return buffer.capacity();
+    }
+
+    public long getWrittenAtMillis() {
+        return writtenAtMillis;
+    }
+
+    public List<SessionSnapshot> getSessions() {
+        return sessions;
+    }
+
+    public Map<Integer, Long> getResumeNonces() {
+        return resumeNonces;
+    }
+}
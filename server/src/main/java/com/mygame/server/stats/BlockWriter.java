@@ -0,0 +1,178 @@
+package com.mygame.server.stats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Ghi một block stats từ các dòng đã sắp theo (playerId, game, timestamp): mỗi cột một
+ * {@link ColumnFile}, index mỗi (playerId, game) một entry cố định {@link StatsBlock#ENTRY_BYTES}
+ * bytes gồm vị trí dòng đầu và tổng hợp của các dòng đó. Dùng cho cả seal lẫn merge block.
+ */
+final class BlockWriter implements Closeable {
+    private final Path dir;
+    private final ColumnFile.Writer timestamps;
+    private final ColumnFile.Writer players;
+    private final ColumnFile.Writer games;
+    private final ColumnFile.Writer results;
+    private final ColumnFile.Writer flags;
+    private final ColumnFile.Writer credits;
+    private final ColumnFile.Writer pots;
+    private final FileChannel index;
+    private final ByteBuffer entries = ByteBuffer.allocate(StatsBlock.ENTRY_BYTES * 1024);
+
+    private int rows;
+    private int entryCount;
+    private long minTs = Long.MAX_VALUE;
+    private long maxTs = Long.MIN_VALUE;
+
+    // Entry đang gom
+    private int entryPlayer;
+    private int entryGame = -1;
+    private int entryFirstRow;
+    private int hands;
+    private int wins;
+    private int losses;
+    private int detailed;
+    private int vpip;
+    private long pot;
+    private long net;
+    private long firstTs;
+    private long lastTs;
+
+    BlockWriter(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        this.timestamps = new ColumnFile.Writer(dir.resolve(StatsBlock.TIMESTAMPS), true);
+        this.players = new ColumnFile.Writer(dir.resolve(StatsBlock.PLAYERS), true);
+        this.games = new ColumnFile.Writer(dir.resolve(StatsBlock.GAMES), false);
+        this.results = new ColumnFile.Writer(dir.resolve(StatsBlock.RESULTS), false);
+        this.flags = new ColumnFile.Writer(dir.resolve(StatsBlock.FLAGS), false);
+        this.credits = new ColumnFile.Writer(dir.resolve(StatsBlock.CREDITS), false);
+        this.pots = new ColumnFile.Writer(dir.resolve(StatsBlock.POTS), false);
+        this.index = FileChannel.open(dir.resolve(StatsBlock.INDEX), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.index.position(StatsBlock.HEADER_BYTES);
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    void add(long timestamp, int playerId, byte game, byte result, byte flag, long creditsChange, long handPot)
+            throws IOException {
+        if (playerId != entryPlayer || game != entryGame) {
+            flushEntry();
+            entryPlayer = playerId;
+            entryGame = game;
+            entryFirstRow = rows;
+        }
+        timestamps.add(timestamp);
+        players.add(playerId);
+        games.add(game);
+        results.add(result);
+        flags.add(flag);
+        credits.add(creditsChange);
+        pots.add(handPot);
+        rows++;
+        minTs = Math.min(minTs, timestamp);
+        maxTs = Math.max(maxTs, timestamp);
+
+        hands++;
+        if (result == SettledHand.WIN) {
+            wins++;
+        } else if (result == SettledHand.LOSE) {
+            losses++;
+        }
+        if ((flag & SettledHand.FLAG_DETAILED) != 0) {
+            detailed++;
+            pot += handPot;
+            if ((flag & SettledHand.FLAG_VPIP) != 0) {
+                vpip++;
+            }
+        }
+        net += creditsChange;
+        firstTs = Math.min(firstTs, timestamp);
+        lastTs = Math.max(lastTs, timestamp);
+    }
+
+    private void flushEntry() throws IOException {
+        if (hands > 0) {
+            if (entries.remaining() < StatsBlock.ENTRY_BYTES) {
+                writeEntries();
+            }
+            entries.putInt(entryPlayer).putInt(entryGame).putInt(entryFirstRow).putInt(hands)
+                    .putInt(wins).putInt(losses).putInt(detailed).putInt(vpip)
+                    .putLong(pot).putLong(net).putLong(firstTs).putLong(lastTs);
+            entryCount++;
+        }
+        hands = 0;
+        wins = 0;
+        losses = 0;
+        detailed = 0;
+        vpip = 0;
+        pot = 0;
+        net = 0;
+        firstTs = Long.MAX_VALUE;
+        lastTs = Long.MIN_VALUE;
+    }
+
+    private void writeEntries() throws IOException {
+        entries.flip();
+        while (entries.hasRemaining()) {
+            index.write(entries);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Ghi entry cuối, footer các cột và header index, fsync mọi file. {@code replaces} là tên các
+     * block mà block này thay thế (merge), để lần khởi động sau xoá nốt nếu crash trước khi xoá.
+     */
+    void finish(int level, List<String> replaces) throws IOException {
+        flushEntry();
+        writeEntries();
+        for (ColumnFile.Writer column : new ColumnFile.Writer[]{timestamps, players, games, results, flags, credits, pots}) {
+            column.finish();
+        }
+        if (!replaces.isEmpty()) {
+            try (FileChannel file = FileChannel.open(dir.resolve(StatsBlock.REPLACES), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer names = ByteBuffer.wrap(String.join("\n", replaces).getBytes(StandardCharsets.UTF_8));
+                while (names.hasRemaining()) {
+                    file.write(names);
+                }
+                file.force(true);
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(StatsBlock.HEADER_BYTES);
+        header.putInt(StatsBlock.MAGIC).putInt(StatsBlock.VERSION).putInt(level).putInt(entryCount)
+                .putLong(rows).putLong(minTs).putLong(maxTs);
+        header.flip();
+        while (header.hasRemaining()) {
+            index.write(header, header.position());
+        }
+        index.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Closeable file : new Closeable[]{timestamps, players, games, results, flags, credits, pots, index}) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
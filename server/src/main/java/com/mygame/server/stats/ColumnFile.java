@@ -0,0 +1,206 @@
+package com.mygame.server.stats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Một cột của block stats: giá trị được chia thành chunk {@link #CHUNK_ROWS} dòng, mỗi chunk là
+ * varint zigzag (tuỳ chọn delta với dòng trước trong chunk) rồi nén deflate riêng, để query chỉ
+ * giải nén các chunk chứa dòng của người chơi cần tìm.
+ *
+ * File: các chunk nối tiếp, rồi footer {@code int chunks, int rows, long offsets[chunks + 1]},
+ * 8 bytes cuối là vị trí footer.
+ */
+final class ColumnFile {
+    static final int CHUNK_ROWS = 4096;
+
+    private ColumnFile() {
+    }
+
+    static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final boolean delta;
+        private final long[] values = new long[CHUNK_ROWS];
+        private final byte[] encoded = new byte[CHUNK_ROWS * 10];
+        private byte[] compressed = new byte[CHUNK_ROWS * 10 + 64];
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private long[] offsets = new long[64];
+        private int chunks;
+        private int buffered;
+        private int rows;
+        private long position;
+
+        Writer(Path file, boolean delta) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.delta = delta;
+        }
+
+        void add(long value) throws IOException {
+            values[buffered++] = value;
+            rows++;
+            if (buffered == CHUNK_ROWS) {
+                flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            int length = 0;
+            long previous = 0;
+            for (int i = 0; i < buffered; i++) {
+                long value = delta ? values[i] - previous : values[i];
+                previous = values[i];
+                long zigzag = (value << 1) ^ (value >> 63);
+                while ((zigzag & ~0x7FL) != 0) {
+                    encoded[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                    zigzag >>>= 7;
+                }
+                encoded[length++] = (byte) zigzag;
+            }
+            deflater.reset();
+            deflater.setInput(encoded, 0, length);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+            if (chunks + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[chunks++] = position;
+            writeFully(ByteBuffer.wrap(compressed, 0, size));
+            buffered = 0;
+        }
+
+        /**
+         * Ghi chunk cuối và footer rồi fsync.
+         */
+        void finish() throws IOException {
+            if (buffered > 0) {
+                flushChunk();
+            }
+            offsets[chunks] = position;
+            long footer = position;
+            ByteBuffer buffer = ByteBuffer.allocate(8 + (chunks + 1) * 8 + 8);
+            buffer.putInt(chunks).putInt(rows);
+            for (int i = 0; i <= chunks; i++) {
+                buffer.putLong(offsets[i]);
+            }
+            buffer.putLong(footer);
+            buffer.flip();
+            writeFully(buffer);
+            channel.force(true);
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    /**
+     * Đọc chunk bằng positional read, dùng được từ nhiều thread cùng lúc.
+     */
+    static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final boolean delta;
+        private final long[] offsets;
+        private final int rows;
+
+        Reader(Path file, boolean delta) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.delta = delta;
+            try {
+                long size = channel.size();
+                long footer = readAt(size - 8, 8).getLong();
+                ByteBuffer header = readAt(footer, 8);
+                int chunks = header.getInt();
+                this.rows = header.getInt();
+                ByteBuffer table = readAt(footer + 8, (chunks + 1) * 8);
+                this.offsets = new long[chunks + 1];
+                for (int i = 0; i <= chunks; i++) {
+                    offsets[i] = table.getLong();
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw new IOException(file + ": footer cột không hợp lệ", e);
+            }
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        /**
+         * Giải nén chunk vào {@code values}; trả về số dòng của chunk.
+         */
+        int readChunk(int chunk, long[] values) throws IOException {
+            int count = Math.min(CHUNK_ROWS, rows - chunk * CHUNK_ROWS);
+            ByteBuffer data = readAt(offsets[chunk], (int) (offsets[chunk + 1] - offsets[chunk]));
+            byte[] encoded = new byte[count * 10];
+            Inflater inflater = new Inflater();
+            int length;
+            try {
+                inflater.setInput(data.array(), 0, data.limit());
+                length = inflater.inflate(encoded);
+            } catch (DataFormatException e) {
+                throw new IOException("Chunk " + chunk + " hỏng: " + e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+            int at = 0;
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                long zigzag = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (at >= length) {
+                        throw new IOException("Chunk " + chunk + " bị cắt cụt");
+                    }
+                    b = encoded[at++];
+                    zigzag |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                long value = (zigzag >>> 1) ^ -(zigzag & 1);
+                previous = delta ? previous + value : value;
+                values[i] = previous;
+            }
+            return count;
+        }
+
+        private ByteBuffer readAt(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Hết file khi đọc cột");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
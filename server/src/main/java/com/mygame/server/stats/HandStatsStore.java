@@ -0,0 +1,617 @@
+package com.mygame.server.stats;
+
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.shared.model.GameType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Kho thống kê ván chơi dạng cột, nhúng trong server, để trả lời win rate / VPIP / pot trung bình
+ * / credits ròng của một người chơi trong một khoảng thời gian mà không phải quét match_history.
+ *
+ * Game thread chỉ gọi {@link #submit} (offer không block, hàng đợi đầy thì bỏ và đếm ở
+ * {@code stats.dropped}); thread {@code hand-stats} thêm dòng vào block đang mở và tail log.
+ * Block đầy ({@code stats.blockRows} dòng, mặc định 65536) được seal thành thư mục
+ * {@code block-NNNNNNNN} trong {@code stats.dir} (mặc định {@code stats}), xem {@link StatsBlock}.
+ * Thread {@code hand-stats-compact} gộp mỗi {@code stats.mergeFactor} (mặc định 8) block cùng
+ * cấp thành một block cấp trên, tới tối đa {@code stats.maxBlockRows} dòng (mặc định 16M), để số
+ * block và số entry index không tăng theo số ván.
+ *
+ * Tail log giữ các dòng của block đang mở qua các lần restart; nó được flush sau mỗi batch nhưng
+ * không fsync, nên crash có thể mất vài trăm ms cuối. Lần đầu chạy (thư mục rỗng) store được nạp từ
+ * match_history ({@code stats.backfill}, mặc định bật); các dòng này không có pot/VPIP.
+ * Tắt hẳn bằng {@code -Dstats.enabled=false}.
+ */
+public class HandStatsStore {
+    private static final Logger logger = LoggerFactory.getLogger(HandStatsStore.class);
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 512;
+    private static final long MAX_WAIT_MS = 200;
+    private static final long RETIRE_GRACE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int TAIL_MAGIC = 0x5441494C; // "TAIL"
+    private static final int TAIL_VERSION = 1;
+    private static final int TAIL_ROW_BYTES = 8 + 4 + 1 + 1 + 1 + 8 + 8;
+    private static final String TAIL_FILE = "tail.log";
+    private static final String BLOCK_PREFIX = "block-";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final Comparator<StatsBlock.Cursor> ROW_ORDER = Comparator
+            .<StatsBlock.Cursor>comparingInt(c -> c.player)
+            .thenComparingInt(c -> c.game)
+            .thenComparingLong(c -> c.timestamp);
+
+    private static HandStatsStore instance;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int blockRows;
+    private final int mergeFactor;
+    private final long maxBlockRows;
+    private final boolean backfill;
+    private final BlockingQueue<SettledHand> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger nextSeq = new AtomicInteger();
+    private final LongAdder rows;
+    private final LongAdder dropped;
+    private final LongAdder failures;
+    private final LatencyHistogram queryTime;
+    private final LatencyHistogram sealTime;
+    private final LatencyHistogram mergeTime;
+
+    // Block đang mở và danh sách block đã seal đổi cùng nhau dưới lock này
+    private final Object lock = new Object();
+    private volatile List<StatsBlock> blocks = Collections.emptyList();
+    private StatsBlockBuilder open;
+
+    // Chỉ thread hand-stats (hoặc start/shutdown) đụng tới
+    private int openSeq;
+    private DataOutputStream tail;
+    private Thread writerThread;
+    // Chỉ thread compact (hoặc shutdown, sau khi nó dừng) đụng tới: block đã bị gộp -> lúc gộp
+    private final Map<StatsBlock, Long> retired = new LinkedHashMap<>();
+    private ExecutorService compactor;
+    private volatile boolean running;
+
+    private HandStatsStore() {
+        this.enabled = Boolean.parseBoolean(System.getProperty("stats.enabled", "true"));
+        this.dir = Paths.get(System.getProperty("stats.dir", "stats"));
+        this.blockRows = Math.max(1024, Integer.getInteger("stats.blockRows", 65536));
+        this.mergeFactor = Math.max(2, Integer.getInteger("stats.mergeFactor", 8));
+        this.maxBlockRows = Math.max(blockRows, Integer.getInteger("stats.maxBlockRows", 16 << 20));
+        this.backfill = Boolean.parseBoolean(System.getProperty("stats.backfill", "true"));
+        this.open = new StatsBlockBuilder(blockRows);
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.rows = metrics.counter("stats.rows");
+        this.dropped = metrics.counter("stats.dropped");
+        this.failures = metrics.counter("stats.failures");
+        this.queryTime = metrics.histogram("stats.query");
+        this.sealTime = metrics.histogram("stats.seal");
+        this.mergeTime = metrics.histogram("stats.merge");
+        metrics.gauge("stats.blocks", () -> blocks.size());
+        metrics.gauge("stats.queue_depth", queue::size);
+    }
+
+    public static synchronized HandStatsStore getInstance() {
+        if (instance == null) {
+            instance = new HandStatsStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Mở các block và tail log có sẵn (hoặc backfill từ match_history nếu chưa có gì) rồi bắt đầu
+     * nhận ván. Lỗi đĩa lúc mở thì store bị tắt, server vẫn chạy.
+     */
+    public synchronized void start(Storage storage) {
+        if (!enabled || running) {
+            return;
+        }
+        long start = System.nanoTime();
+        running = true;
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "hand-stats-compact");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Files.createDirectories(dir);
+            Set<Integer> sealedSeqs = openBlocks();
+            recoverTail(sealedSeqs);
+            if (backfill && blocks.isEmpty() && open.rows() == 0 && storage != null) {
+                backfill(storage);
+            }
+            resetTail();
+        } catch (IOException | SQLException e) {
+            logger.error("Không mở được hand stats store ở {}, tắt thống kê: {}", dir.toAbsolutePath(), e.getMessage(), e);
+            running = false;
+            compactor.shutdownNow();
+            compactor = null;
+            return;
+        }
+        compactor.execute(this::compactQuietly);
+        writerThread = new Thread(this::writerLoop, "hand-stats");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Hand stats store ở {}: {} block, {} dòng đang mở ({} ms)", dir.toAbsolutePath(),
+                blocks.size(), open.rows(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Đưa một ván đã settle vào hàng đợi. Không bao giờ block.
+     */
+    public void submit(SettledHand hand) {
+        if (!running) {
+            return;
+        }
+        if (!queue.offer(hand)) {
+            long before = dropped.sum();
+            dropped.add(hand.size);
+            if (before == 0 || before / 1000 != (before + hand.size) / 1000) {
+                logger.warn("Hand stats queue đầy, bỏ {} dòng (tổng đã bỏ: {})", hand.size, before + hand.size);
+            }
+        }
+    }
+
+    /**
+     * Thống kê của người chơi với các ván có thời điểm trong [fromMillis, toMillis];
+     * {@code gameType} null là mọi loại game.
+     */
+    public PlayerStats query(int playerId, GameType gameType, long fromMillis, long toMillis) {
+        long start = System.nanoTime();
+        int game = gameType == null ? -1 : gameType.ordinal();
+        PlayerStats stats = new PlayerStats();
+        List<StatsBlock> sealed;
+        synchronized (lock) {
+            sealed = blocks;
+            open.accumulate(playerId, game, fromMillis, toMillis, stats);
+        }
+        for (StatsBlock block : sealed) {
+            try {
+                block.accumulate(playerId, game, fromMillis, toMillis, stats);
+            } catch (IOException e) {
+                failures.increment();
+                logger.warn("Lỗi khi đọc block stats {}: {}", block.dir.getFileName(), e.getMessage());
+            }
+        }
+        queryTime.recordNanos(System.nanoTime() - start);
+        return stats;
+    }
+
+    private void writerLoop() {
+        List<SettledHand> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                SettledHand first = queue.poll(MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            for (SettledHand hand : batch) {
+                byte game = (byte) hand.gameType.ordinal();
+                for (int i = 0; i < hand.size; i++) {
+                    try {
+                        append(hand.timestampMillis, hand.playerIds[i], game, hand.results[i], hand.flags[i],
+                                hand.creditChanges[i], hand.pot);
+                    } catch (IOException e) {
+                        failures.increment();
+                        dropped.increment();
+                        logger.error("Lỗi khi ghi hand stats: {}", e.getMessage(), e);
+                    }
+                }
+            }
+            batch.clear();
+            try {
+                if (tail != null) {
+                    tail.flush();
+                }
+            } catch (IOException e) {
+                failures.increment();
+                logger.error("Lỗi khi flush tail log stats: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void append(long timestamp, int playerId, byte game, byte result, byte flags, long credits, long pot)
+            throws IOException {
+        if (open.isFull()) {
+            seal();
+        }
+        synchronized (lock) {
+            open.append(timestamp, playerId, game, result, flags, credits, pot);
+        }
+        if (tail != null) {
+            writeRow(tail, timestamp, playerId, game, result, flags, credits, pot);
+        }
+        rows.increment();
+    }
+
+    /**
+     * Ghi block đang mở ra đĩa (thư mục tạm rồi rename), thay nó bằng block mới và làm mới tail log.
+     */
+    private void seal() throws IOException {
+        long start = System.nanoTime();
+        String name = blockName(openSeq);
+        Path tmp = dir.resolve(name + TMP_SUFFIX);
+        deleteRecursively(tmp);
+        try (BlockWriter writer = new BlockWriter(tmp)) {
+            open.writeTo(writer);
+            writer.finish(0, Collections.emptyList());
+        }
+        Path target = dir.resolve(name);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        StatsBlock block = StatsBlock.open(target);
+        synchronized (lock) {
+            List<StatsBlock> sealed = new ArrayList<>(blocks.size() + 1);
+            sealed.addAll(blocks);
+            sealed.add(block);
+            blocks = Collections.unmodifiableList(sealed);
+            open = new StatsBlockBuilder(blockRows);
+        }
+        openSeq = nextSeq.getAndIncrement();
+        resetTail();
+        sealTime.recordNanos(System.nanoTime() - start);
+        logger.debug("Đã seal block stats {}: {} dòng, {} entry", name, block.rows, block.entries);
+        compactor.execute(this::compactQuietly);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            logger.error("Lỗi khi gộp block stats: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gộp các block cùng cấp cho tới khi không cấp nào còn đủ {@code mergeFactor} block gộp được.
+     */
+    private void compact() throws IOException {
+        closeRetired(false);
+        while (running) {
+            List<StatsBlock> inputs = pickMerge(blocks);
+            if (inputs == null) {
+                return;
+            }
+            merge(inputs);
+        }
+    }
+
+    /**
+     * {@code mergeFactor} block cũ nhất của cấp thấp nhất có đủ block, nếu tổng số dòng không vượt
+     * {@code maxBlockRows}; null nếu không có gì để gộp.
+     */
+    private List<StatsBlock> pickMerge(List<StatsBlock> current) {
+        Map<Integer, List<StatsBlock>> byLevel = new TreeMap<>();
+        for (StatsBlock block : current) {
+            byLevel.computeIfAbsent(block.level, level -> new ArrayList<>()).add(block);
+        }
+        for (List<StatsBlock> level : byLevel.values()) {
+            if (level.size() < mergeFactor) {
+                continue;
+            }
+            List<StatsBlock> inputs = level.subList(0, mergeFactor);
+            long total = 0;
+            for (StatsBlock block : inputs) {
+                total += block.rows;
+            }
+            if (total <= maxBlockRows) {
+                return inputs;
+            }
+        }
+        return null;
+    }
+
+    private void merge(List<StatsBlock> inputs) throws IOException {
+        long start = System.nanoTime();
+        int level = inputs.get(0).level + 1;
+        String name = blockName(nextSeq.getAndIncrement());
+        Path tmp = dir.resolve(name + TMP_SUFFIX);
+        deleteRecursively(tmp);
+        List<String> replaces = new ArrayList<>(inputs.size());
+        PriorityQueue<StatsBlock.Cursor> heads = new PriorityQueue<>(inputs.size(), ROW_ORDER);
+        for (StatsBlock input : inputs) {
+            replaces.add(input.dir.getFileName().toString());
+            StatsBlock.Cursor cursor = input.cursor();
+            if (cursor.next()) {
+                heads.add(cursor);
+            }
+        }
+        try (BlockWriter writer = new BlockWriter(tmp)) {
+            while (!heads.isEmpty()) {
+                StatsBlock.Cursor c = heads.poll();
+                writer.add(c.timestamp, c.player, c.game, c.result, c.flag, c.creditsChange, c.pot);
+                if (c.next()) {
+                    heads.add(c);
+                }
+                if ((writer.rows() & 0xFFFF) == 0 && !running) {
+                    throw new IOException("store đang dừng, bỏ dở merge " + name);
+                }
+            }
+            writer.finish(level, replaces);
+        } catch (IOException e) {
+            deleteRecursively(tmp);
+            throw e;
+        }
+        Path target = dir.resolve(name);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        StatsBlock merged = StatsBlock.open(target);
+        synchronized (lock) {
+            List<StatsBlock> next = new ArrayList<>(blocks);
+            int at = next.indexOf(inputs.get(0));
+            next.removeAll(inputs);
+            next.add(Math.max(0, Math.min(at, next.size())), merged);
+            blocks = Collections.unmodifiableList(next);
+        }
+        // Query đang chạy vẫn đọc được: file đã mở, index đã mmap; đóng hẳn sau một lúc
+        long now = System.nanoTime();
+        for (StatsBlock input : inputs) {
+            deleteRecursively(input.dir);
+            retired.put(input, now);
+        }
+        mergeTime.recordNanos(System.nanoTime() - start);
+        logger.info("Đã gộp {} block stats thành {} (cấp {}, {} dòng, {} entry) trong {} ms", inputs.size(), name,
+                level, merged.rows, merged.entries, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void closeRetired(boolean all) {
+        long now = System.nanoTime();
+        retired.entrySet().removeIf(entry -> {
+            if (!all && now - entry.getValue() < RETIRE_GRACE_NANOS) {
+                return false;
+            }
+            closeQuietly(entry.getKey());
+            return true;
+        });
+    }
+
+    /**
+     * Mở các block trong thư mục; trả về mọi sequence đã dùng (kể cả block đã bị gộp).
+     * Block còn sót lại sau khi đã được gộp (crash trước khi xoá) và thư mục tạm bị xoá.
+     */
+    private Set<Integer> openBlocks() throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        Set<String> replaced = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, BLOCK_PREFIX + "*")) {
+            for (Path path : stream) {
+                if (path.getFileName().toString().endsWith(TMP_SUFFIX)) {
+                    deleteRecursively(path); // seal/merge dở dang, dữ liệu vẫn còn ở tail log hoặc block cũ
+                    continue;
+                }
+                dirs.add(path);
+                Path replaces = path.resolve(StatsBlock.REPLACES);
+                if (Files.exists(replaces)) {
+                    for (String name : new String(Files.readAllBytes(replaces), StandardCharsets.UTF_8).split("\n")) {
+                        replaced.add(name.trim());
+                    }
+                }
+            }
+        }
+        Collections.sort(dirs);
+        Set<Integer> seqs = new HashSet<>();
+        for (String name : replaced) {
+            seqs.add(parseSeq(name));
+        }
+        List<StatsBlock> opened = new ArrayList<>(dirs.size());
+        try {
+            for (Path path : dirs) {
+                String name = path.getFileName().toString();
+                seqs.add(parseSeq(name));
+                if (replaced.contains(name)) {
+                    deleteRecursively(path);
+                    continue;
+                }
+                opened.add(StatsBlock.open(path));
+            }
+        } catch (IOException e) {
+            opened.forEach(HandStatsStore::closeQuietly);
+            throw e;
+        }
+        blocks = Collections.unmodifiableList(opened);
+        nextSeq.set(seqs.isEmpty() ? 0 : Collections.max(seqs) + 1);
+        return seqs;
+    }
+
+    /**
+     * Nạp lại các dòng của block đang mở từ tail log. Tail của một block đã seal (crash sau khi
+     * rename nhưng trước khi làm mới tail) thì bỏ qua; dòng ghi dở ở cuối cũng bị bỏ.
+     */
+    private void recoverTail(Set<Integer> sealedSeqs) throws IOException {
+        Path file = dir.resolve(TAIL_FILE);
+        openSeq = -1;
+        if (Files.exists(file)) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)));
+            try {
+                if (in.readInt() != TAIL_MAGIC || in.readInt() != TAIL_VERSION) {
+                    logger.warn("Tail log stats {} không hợp lệ, bỏ qua", file);
+                } else {
+                    int seq = in.readInt();
+                    if (sealedSeqs.contains(seq)) {
+                        logger.info("Tail log stats thuộc block {} đã seal, bỏ qua", seq);
+                    } else {
+                        openSeq = seq;
+                        nextSeq.set(Math.max(nextSeq.get(), seq + 1));
+                        int recovered = 0;
+                        while (in.available() >= TAIL_ROW_BYTES) {
+                            append(in.readLong(), in.readInt(), in.readByte(), in.readByte(), in.readByte(),
+                                    in.readLong(), in.readLong());
+                            recovered++;
+                        }
+                        if (recovered > 0) {
+                            logger.info("Đã nạp lại {} dòng stats từ tail log", recovered);
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                logger.warn("Tail log stats {} bị cắt cụt ở header, bỏ qua", file);
+            }
+        }
+        if (openSeq < 0) {
+            openSeq = nextSeq.getAndIncrement();
+        }
+    }
+
+    private void backfill(Storage storage) throws IOException, SQLException {
+        logger.info("Hand stats store trống, đang nạp từ match_history...");
+        long[] count = new long[1];
+        IOException[] error = new IOException[1];
+        try (StorageSession session = storage.openSession()) {
+            storage.matchHistory().scanMatches(session, record -> {
+                if (error[0] != null) {
+                    return;
+                }
+                GameType gameType;
+                try {
+                    gameType = GameType.valueOf(record.getGameType());
+                } catch (IllegalArgumentException e) {
+                    return;
+                }
+                try {
+                    append(record.getTimestampMillis(), record.getUserId(), (byte) gameType.ordinal(),
+                            SettledHand.resultCode(record.getResult()), (byte) 0, record.getCreditsChange(), 0);
+                    count[0]++;
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            session.rollback();
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+        logger.info("Đã nạp {} dòng match_history vào hand stats store", count[0]);
+    }
+
+    /**
+     * Viết lại tail log cho block đang mở (header + các dòng hiện có) rồi mở để ghi tiếp.
+     */
+    private void resetTail() throws IOException {
+        if (tail != null) {
+            tail.close();
+            tail = null;
+        }
+        Path file = dir.resolve(TAIL_FILE);
+        Path tmp = dir.resolve(TAIL_FILE + TMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(TAIL_MAGIC);
+            out.writeInt(TAIL_VERSION);
+            out.writeInt(openSeq);
+            for (int r = 0; r < open.rows(); r++) {
+                writeRow(out, open.timestamp(r), open.player(r), open.game(r), open.result(r), open.flags(r),
+                        open.credits(r), open.pot(r));
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        tail = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 1 << 16));
+    }
+
+    private static void writeRow(DataOutputStream out, long timestamp, int playerId, byte game, byte result,
+                                 byte flags, long credits, long pot) throws IOException {
+        out.writeLong(timestamp);
+        out.writeInt(playerId);
+        out.writeByte(game);
+        out.writeByte(result);
+        out.writeByte(flags);
+        out.writeLong(credits);
+        out.writeLong(pot);
+    }
+
+    private static String blockName(int seq) {
+        return String.format("%s%08d", BLOCK_PREFIX, seq);
+    }
+
+    private static int parseSeq(String name) throws IOException {
+        try {
+            return Integer.parseInt(name.substring(BLOCK_PREFIX.length()));
+        } catch (RuntimeException e) {
+            throw new IOException("Tên block stats không hợp lệ: " + name);
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static void closeQuietly(StatsBlock block) {
+        try {
+            block.close();
+        } catch (IOException e) {
+            logger.warn("Lỗi khi đóng block stats {}: {}", block.dir.getFileName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Dừng nhận ván, ghi hết hàng đợi vào tail log. Block đang mở được giữ trong tail cho lần chạy sau.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(10_000);
+            compactor.shutdown();
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (tail != null) {
+                tail.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Lỗi khi đóng tail log stats: {}", e.getMessage());
+        }
+        closeRetired(true);
+        blocks.forEach(HandStatsStore::closeQuietly);
+        logger.info("Hand stats store đã dừng ({} block, {} dòng đang mở, bỏ: {})", blocks.size(), open.rows(), dropped.sum());
+    }
+}
@@ -0,0 +1,284 @@
+package com.mygame.server.stats;
+
+import com.mygame.server.database.DatabaseHealthMonitor;
+import com.mygame.server.database.UserDAO;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.storage.StorageSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm cơ bản trên bảng users (total_wins, total_losses, hands_played, biggest_pot).
+ *
+ * Game thread chỉ cộng delta vào bộ nhớ: user được chia vào {@link #STRIPES} stripe, mỗi stripe
+ * một lock và một map delta, nên các bàn khác nhau gần như không tranh lock. Cứ
+ * {@code counters.flushMillis} một background thread lấy delta của mọi stripe và ghi bằng một
+ * câu UPDATE duy nhất ({@link UserDAO#addCounters}); settle ván không tốn thêm round trip nào.
+ *
+ * Delta đang ghi được giữ riêng tới khi commit, để {@link #pending} vẫn cộng đúng khi đọc profile
+ * trong lúc flush; ghi lỗi thì delta được gộp lại cho lần flush sau.
+ */
+public class PlayerCounterService {
+    private static final Logger logger = LoggerFactory.getLogger(PlayerCounterService.class);
+
+    private static final int STRIPES = 64;
+
+    private static PlayerCounterService instance;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long flushMillis;
+    private final LongAdder hands;
+    private final LongAdder flushes;
+    private final LongAdder rowsFlushed;
+    private final LongAdder flushErrors;
+
+    private Storage storage;
+    private UserDAO userDAO;
+    private StorageSession session;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    private PlayerCounterService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.flushMillis = Math.max(100, Integer.getInteger("counters.flushMillis", 5000));
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        hands = metrics.counter("counters.hands");
+        flushes = metrics.counter("counters.flushes");
+        rowsFlushed = metrics.counter("counters.rows_flushed");
+        flushErrors = metrics.counter("counters.flush_errors");
+        metrics.gauge("counters.pending_users", this::pendingUsers);
+    }
+
+    public static synchronized PlayerCounterService getInstance() {
+        if (instance == null) {
+            instance = new PlayerCounterService();
+        }
+        return instance;
+    }
+
+    /**
+     * Bắt đầu flush định kỳ. User chưa từng được đếm (hands_played = 0) được tính lại từ
+     * match_history một lần, để số liệu trước khi có bộ đếm không bị mất.
+     */
+    public synchronized void start(Storage storage) {
+        if (running) {
+            return;
+        }
+        this.storage = storage;
+        this.userDAO = storage.users();
+        try {
+            session = storage.openSession();
+            int backfilled = userDAO.backfillCounters(session);
+            session.commit();
+            if (backfilled > 0) {
+                logger.info("Đã tính bộ đếm của {} user từ match_history", backfilled);
+            }
+        } catch (SQLException e) {
+            logger.warn("Không thể backfill bộ đếm user: {}", e.getMessage());
+            closeSession();
+        }
+
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "player-counter-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        // Delta dồn trong bộ nhớ khi database lỗi, ghi ngay khi circuit breaker đóng lại
+        DatabaseHealthMonitor.getInstance().onRecovered(() -> {
+            if (running) {
+                scheduler.execute(this::flush);
+            }
+        });
+        logger.info("Player counter service đã khởi động (flush mỗi {} ms)", flushMillis);
+    }
+
+    /**
+     * Một ván kết thúc với người chơi này. {@code pot} chỉ tính vào biggest_pot khi thắng.
+     */
+    public void record(int userId, boolean won, boolean lost, long pot) {
+        if (!running) {
+            return;
+        }
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            Delta delta = stripe.pending.computeIfAbsent(userId, k -> new Delta());
+            delta.hands++;
+            if (won) {
+                delta.wins++;
+                delta.biggestPot = Math.max(delta.biggestPot, pot);
+            } else if (lost) {
+                delta.losses++;
+            }
+        }
+        hands.increment();
+    }
+
+    /**
+     * Delta của user chưa có trong database (chưa flush hoặc đang flush). Cộng vào giá trị đọc
+     * từ bảng users để hiển thị số mới nhất.
+     */
+    public Delta pending(int userId) {
+        Delta result = new Delta();
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            result.add(stripe.pending.get(userId));
+            result.add(stripe.flushing.get(userId));
+        }
+        return result;
+    }
+
+    private Stripe stripe(int userId) {
+        return stripes[(userId * 0x9E3779B9 >>> 16) & (STRIPES - 1)];
+    }
+
+    private int pendingUsers() {
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total += stripe.pending.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Ghi delta của mọi stripe trong một câu lệnh. Chạy trên thread flusher (hoặc lúc shutdown).
+     */
+    private void flush() {
+        if (!DatabaseHealthMonitor.getInstance().isAvailable()) {
+            return; // Circuit breaker mở: giữ nguyên delta, thử lại khi breaker đóng
+        }
+        List<Integer> userIds = new ArrayList<>();
+        List<Integer> wins = new ArrayList<>();
+        List<Integer> losses = new ArrayList<>();
+        List<Integer> handCounts = new ArrayList<>();
+        List<Long> biggestPots = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.pending.isEmpty()) {
+                    continue;
+                }
+                stripe.flushing = stripe.pending;
+                stripe.pending = new HashMap<>();
+                for (Map.Entry<Integer, Delta> entry : stripe.flushing.entrySet()) {
+                    Delta delta = entry.getValue();
+                    userIds.add(entry.getKey());
+                    wins.add(delta.wins);
+                    losses.add(delta.losses);
+                    handCounts.add(delta.hands);
+                    biggestPots.add(delta.biggestPot);
+                }
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        boolean committed = false;
+        try {
+            if (session == null || session.isClosed()) {
+                session = storage.openSession();
+            }
+            int written = userDAO.addCounters(session, userIds.toArray(new Integer[0]),
+                    wins.toArray(new Integer[0]), losses.toArray(new Integer[0]),
+                    handCounts.toArray(new Integer[0]), biggestPots.toArray(new Long[0]));
+            session.commit();
+            committed = true;
+            flushes.increment();
+            rowsFlushed.add(written);
+            logger.debug("Đã ghi bộ đếm của {} user", written);
+        } catch (SQLException e) {
+            flushErrors.increment();
+            logger.warn("Lỗi khi ghi bộ đếm user, sẽ thử lại: {}", e.getMessage());
+            closeSession();
+        } finally {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    if (!committed) {
+                        for (Map.Entry<Integer, Delta> entry : stripe.flushing.entrySet()) {
+                            stripe.pending.computeIfAbsent(entry.getKey(), k -> new Delta()).add(entry.getValue());
+                        }
+                    }
+                    stripe.flushing = Map.of();
+                }
+            }
+        }
+    }
+
+    private void closeSession() {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (SQLException ignored) {
+            // Session đã hỏng, bỏ qua
+        }
+        session = null;
+    }
+
+    /**
+     * Dừng flusher và ghi nốt delta còn trong bộ nhớ.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        closeSession();
+        logger.info("Player counter service đã dừng (ván: {}, dòng đã ghi: {})", hands.sum(), rowsFlushed.sum());
+    }
+
+    /**
+     * Delta bộ đếm của một user. Trong stripe chỉ truy cập khi giữ lock của stripe.
+     */
+    public static final class Delta {
+        private int wins;
+        private int losses;
+        private int hands;
+        private long biggestPot;
+
+        void add(Delta other) {
+            if (other == null) {
+                return;
+            }
+            wins += other.wins;
+            losses += other.losses;
+            hands += other.hands;
+            biggestPot = Math.max(biggestPot, other.biggestPot);
+        }
+
+        public int getWins() { return wins; }
+        public int getLosses() { return losses; }
+        public int getHands() { return hands; }
+        public long getBiggestPot() { return biggestPot; }
+    }
+
+    private static final class Stripe {
+        Map<Integer, Delta> pending = new HashMap<>();
+        // Delta đã lấy ra để ghi nhưng chưa commit
+        Map<Integer, Delta> flushing = Map.of();
+    }
+}
@@ -0,0 +1,97 @@
+package com.mygame.server.stats;
+
+/**
+ * Kết quả tổng hợp của {@link HandStatsStore#query}: số ván, thắng/thua, VPIP, pot và credits ròng
+ * của một người chơi trong một khoảng thời gian.
+ *
+ * Pot và VPIP chỉ có ở các ván ghi trực tiếp từ game ({@link #getDetailedHands()}); các dòng nạp
+ * từ match_history cũ chỉ có kết quả và credits. VPIP chỉ có nghĩa với Poker.
+ */
+public class PlayerStats {
+    private long hands;
+    private long wins;
+    private long losses;
+    private long detailedHands;
+    private long vpipHands;
+    private long potTotal;
+    private long netCredits;
+
+    void add(long hands, long wins, long losses, long detailedHands, long vpipHands, long potTotal, long netCredits) {
+        this.hands += hands;
+        this.wins += wins;
+        this.losses += losses;
+        this.detailedHands += detailedHands;
+        this.vpipHands += vpipHands;
+        this.potTotal += potTotal;
+        this.netCredits += netCredits;
+    }
+
+    void addRow(byte result, byte flags, long creditsChange, long pot) {
+        hands++;
+        if (result == SettledHand.WIN) {
+            wins++;
+        } else if (result == SettledHand.LOSE) {
+            losses++;
+        }
+        if ((flags & SettledHand.FLAG_DETAILED) != 0) {
+            detailedHands++;
+            potTotal += pot;
+            if ((flags & SettledHand.FLAG_VPIP) != 0) {
+                vpipHands++;
+            }
+        }
+        netCredits += creditsChange;
+    }
+
+    public long getHands() {
+        return hands;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getLosses() {
+        return losses;
+    }
+
+    public long getDetailedHands() {
+        return detailedHands;
+    }
+
+    public long getVpipHands() {
+        return vpipHands;
+    }
+
+    public long getPotTotal() {
+        return potTotal;
+    }
+
+    public long getNetCredits() {
+        return netCredits;
+    }
+
+    /**
+     * Tỉ lệ thắng trên tổng số ván, 0..1.
+     */
+    public double getWinRate() {
+        return hands == 0 ? 0 : (double) wins / hands;
+    }
+
+    /**
+     * Tỉ lệ ván tự nguyện bỏ tiền vào pot trước flop, 0..1.
+     */
+    public double getVpip() {
+        return detailedHands == 0 ? 0 : (double) vpipHands / detailedHands;
+    }
+
+    public double getAveragePot() {
+        return detailedHands == 0 ? 0 : (double) potTotal / detailedHands;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PlayerStats{hands=%d, wins=%d, losses=%d, vpip=%.3f, avgPot=%.1f, net=%d}",
+                hands, wins, losses, getVpip(), getAveragePot(), netCredits);
+    }
+}
@@ -0,0 +1,56 @@
+package com.mygame.server.stats;
+
+import com.mygame.shared.model.GameType;
+
+/**
+ * Một ván đã settle chờ đưa vào {@link HandStatsStore}: mỗi người chơi một dòng.
+ */
+public class SettledHand {
+    public static final byte DRAW = 0;
+    public static final byte WIN = 1;
+    public static final byte LOSE = 2;
+
+    static final byte FLAG_VPIP = 1;
+    static final byte FLAG_DETAILED = 2; // pot và VPIP được ghi (không phải dòng nạp từ match_history)
+
+    final long timestampMillis;
+    final GameType gameType;
+    final long pot;
+    final int[] playerIds;
+    final byte[] results;
+    final long[] creditChanges;
+    final byte[] flags;
+    int size;
+
+    public SettledHand(long timestampMillis, GameType gameType, long pot, int players) {
+        this.timestampMillis = timestampMillis;
+        this.gameType = gameType;
+        this.pot = pot;
+        this.playerIds = new int[players];
+        this.results = new byte[players];
+        this.creditChanges = new long[players];
+        this.flags = new byte[players];
+    }
+
+    /**
+     * Thêm kết quả của một người chơi; {@code result} là WIN/LOSE/DRAW như match_history.
+     */
+    public SettledHand add(int playerId, String result, long creditsChange, boolean vpip) {
+        playerIds[size] = playerId;
+        results[size] = resultCode(result);
+        creditChanges[size] = creditsChange;
+        flags[size] = (byte) (FLAG_DETAILED | (vpip ? FLAG_VPIP : 0));
+        size++;
+        return this;
+    }
+
+    static byte resultCode(String result) {
+        if ("WIN".equals(result)) {
+            return WIN;
+        }
+        if ("LOSE".equals(result)) {
+            return LOSE;
+        }
+        return DRAW;
+    }
+}
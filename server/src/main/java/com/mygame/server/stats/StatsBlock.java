@@ -0,0 +1,232 @@
+package com.mygame.server.stats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Một block đã seal của {@link HandStatsStore}: thư mục {@code block-NNNNNNNN} gồm mỗi cột một
+ * {@link ColumnFile} và {@code index.idx}, các dòng sắp theo (playerId, game, timestamp).
+ *
+ * Index gồm entry cố định {@link #ENTRY_BYTES} bytes, sắp theo (playerId, game), mỗi entry giữ
+ * dòng đầu, số ván, thắng, thua, VPIP, pot, credits ròng và khoảng thời gian các ván của người
+ * chơi đó trong block. Index được mmap (không nằm trên heap): query chỉ cần binary search rồi
+ * cộng tổng, và chỉ giải nén các chunk chứa dòng của người chơi khi khoảng thời gian cắt ngang
+ * các ván của họ trong block.
+ */
+final class StatsBlock implements Closeable {
+    static final String TIMESTAMPS = "ts.col";
+    static final String PLAYERS = "player.col";
+    static final String GAMES = "game.col";
+    static final String RESULTS = "result.col";
+    static final String FLAGS = "flags.col";
+    static final String CREDITS = "credits.col";
+    static final String POTS = "pot.col";
+    static final String INDEX = "index.idx";
+    static final String REPLACES = "replaces";
+
+    static final int MAGIC = 0x53544154; // "STAT"
+    static final int VERSION = 1;
+    // int magic, int version, int level, int entries, long rows, long minTs, long maxTs
+    static final int HEADER_BYTES = 4 * 4 + 3 * 8;
+    // int player, int game, int firstRow, int hands, int wins, int losses, int detailed, int vpip,
+    // long pot, long net, long firstTs, long lastTs
+    static final int ENTRY_BYTES = 8 * 4 + 4 * 8;
+
+    final Path dir;
+    final int level;
+    final int entries;
+    final long rows;
+    final long minTs;
+    final long maxTs;
+
+    private final MappedByteBuffer index;
+    private final ColumnFile.Reader timestamps;
+    private final ColumnFile.Reader players;
+    private final ColumnFile.Reader games;
+    private final ColumnFile.Reader results;
+    private final ColumnFile.Reader flags;
+    private final ColumnFile.Reader credits;
+    private final ColumnFile.Reader pots;
+
+    private StatsBlock(Path dir, MappedByteBuffer index, ColumnFile.Reader[] columns) {
+        this.dir = dir;
+        this.index = index;
+        this.level = index.getInt(8);
+        this.entries = index.getInt(12);
+        this.rows = index.getLong(16);
+        this.minTs = index.getLong(24);
+        this.maxTs = index.getLong(32);
+        this.timestamps = columns[0];
+        this.players = columns[1];
+        this.games = columns[2];
+        this.results = columns[3];
+        this.flags = columns[4];
+        this.credits = columns[5];
+        this.pots = columns[6];
+    }
+
+    static StatsBlock open(Path dir) throws IOException {
+        MappedByteBuffer index;
+        try (FileChannel channel = FileChannel.open(dir.resolve(INDEX), StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (index.capacity() < HEADER_BYTES || index.getInt(0) != MAGIC || index.getInt(4) != VERSION
+                || index.capacity() != HEADER_BYTES + (long) index.getInt(12) * ENTRY_BYTES) {
+            throw new IOException(dir + " không phải block stats được hỗ trợ");
+        }
+        String[] names = {TIMESTAMPS, PLAYERS, GAMES, RESULTS, FLAGS, CREDITS, POTS};
+        ColumnFile.Reader[] columns = new ColumnFile.Reader[names.length];
+        try {
+            for (int i = 0; i < names.length; i++) {
+                boolean delta = i <= 1; // timestamp và playerId tăng dần trong block
+                columns[i] = new ColumnFile.Reader(dir.resolve(names[i]), delta);
+                if (columns[i].rows() != index.getLong(16)) {
+                    throw new IOException(dir.resolve(names[i]) + ": số dòng không khớp index");
+                }
+            }
+        } catch (IOException e) {
+            for (ColumnFile.Reader column : columns) {
+                if (column != null) {
+                    column.close();
+                }
+            }
+            throw e;
+        }
+        return new StatsBlock(dir, index, columns);
+    }
+
+    /**
+     * Cộng các ván của người chơi ({@code game} < 0: mọi loại game) có thời điểm trong [from, to].
+     */
+    void accumulate(int playerId, int game, long from, long to, PlayerStats out) throws IOException {
+        if (to < minTs || from > maxTs) {
+            return;
+        }
+        for (int i = firstEntry(playerId); i < entries && entryInt(i, 0) == playerId; i++) {
+            if (game >= 0 && entryInt(i, 1) != game) {
+                continue;
+            }
+            long firstTs = entryLong(i, 48);
+            long lastTs = entryLong(i, 56);
+            if (lastTs < from || firstTs > to) {
+                continue;
+            }
+            if (from <= firstTs && lastTs <= to) {
+                out.add(entryInt(i, 3), entryInt(i, 4), entryInt(i, 5), entryInt(i, 6), entryInt(i, 7),
+                        entryLong(i, 32), entryLong(i, 40));
+            } else {
+                scan(entryInt(i, 2), entryInt(i, 3), from, to, out);
+            }
+        }
+    }
+
+    /**
+     * Entry đầu tiên có playerId >= {@code playerId}.
+     */
+    private int firstEntry(int playerId) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entryInt(mid, 0) < playerId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void scan(int firstRow, int count, long from, long to, PlayerStats out) throws IOException {
+        long[] ts = new long[ColumnFile.CHUNK_ROWS];
+        long[] result = new long[ColumnFile.CHUNK_ROWS];
+        long[] flag = new long[ColumnFile.CHUNK_ROWS];
+        long[] credit = new long[ColumnFile.CHUNK_ROWS];
+        long[] pot = new long[ColumnFile.CHUNK_ROWS];
+        int end = firstRow + count;
+        for (int chunk = firstRow / ColumnFile.CHUNK_ROWS; chunk * ColumnFile.CHUNK_ROWS < end; chunk++) {
+            timestamps.readChunk(chunk, ts);
+            results.readChunk(chunk, result);
+            flags.readChunk(chunk, flag);
+            credits.readChunk(chunk, credit);
+            pots.readChunk(chunk, pot);
+            int base = chunk * ColumnFile.CHUNK_ROWS;
+            for (int r = Math.max(firstRow, base) - base; r < Math.min(end - base, ColumnFile.CHUNK_ROWS); r++) {
+                if (ts[r] >= from && ts[r] <= to) {
+                    out.addRow((byte) result[r], (byte) flag[r], credit[r], pot[r]);
+                }
+            }
+        }
+    }
+
+    private int entryInt(int entry, int field) {
+        return index.getInt(HEADER_BYTES + entry * ENTRY_BYTES + field * 4);
+    }
+
+    private long entryLong(int entry, int offset) {
+        return index.getLong(HEADER_BYTES + entry * ENTRY_BYTES + offset);
+    }
+
+    /**
+     * Duyệt mọi dòng theo thứ tự lưu, dùng khi merge block.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ColumnFile.Reader column : new ColumnFile.Reader[]{timestamps, players, games, results, flags, credits, pots}) {
+            column.close();
+        }
+    }
+
+    final class Cursor {
+        private final long[][] chunk = new long[7][ColumnFile.CHUNK_ROWS];
+        private int chunkIndex = -1;
+        private int chunkRows;
+        private int at;
+        private long row = -1;
+
+        long timestamp;
+        int player;
+        byte game;
+        byte result;
+        byte flag;
+        long creditsChange;
+        long pot;
+
+        /**
+         * Chuyển sang dòng kế tiếp; false khi hết block.
+         */
+        boolean next() throws IOException {
+            if (row + 1 >= rows) {
+                return false;
+            }
+            row++;
+            if (++at >= chunkRows) {
+                chunkIndex++;
+                chunkRows = timestamps.readChunk(chunkIndex, chunk[0]);
+                players.readChunk(chunkIndex, chunk[1]);
+                games.readChunk(chunkIndex, chunk[2]);
+                results.readChunk(chunkIndex, chunk[3]);
+                flags.readChunk(chunkIndex, chunk[4]);
+                credits.readChunk(chunkIndex, chunk[5]);
+                pots.readChunk(chunkIndex, chunk[6]);
+                at = 0;
+            }
+            timestamp = chunk[0][at];
+            player = (int) chunk[1][at];
+            game = (byte) chunk[2][at];
+            result = (byte) chunk[3][at];
+            flag = (byte) chunk[4][at];
+            creditsChange = chunk[5][at];
+            pot = chunk[6][at];
+            return true;
+        }
+    }
+}
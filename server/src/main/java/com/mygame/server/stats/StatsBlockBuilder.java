@@ -0,0 +1,173 @@
+package com.mygame.server.stats;
+
+import com.mygame.shared.model.GameType;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Block đang mở của {@link HandStatsStore}: các cột nằm trong mảng, tổng hợp theo
+ * (playerId, gameType) được cập nhật khi thêm dòng. Đầy thì được ghi ra qua {@link BlockWriter}.
+ * Không thread-safe, store giữ lock khi đọc/ghi.
+ */
+final class StatsBlockBuilder {
+    private final int capacity;
+    private final long[] timestamps;
+    private final int[] players;
+    private final byte[] games;
+    private final byte[] results;
+    private final byte[] flags;
+    private final long[] credits;
+    private final long[] pots;
+    private final Map<Long, Aggregate> aggregates = new HashMap<>();
+    private int rows;
+    private long minTs = Long.MAX_VALUE;
+    private long maxTs = Long.MIN_VALUE;
+
+    StatsBlockBuilder(int capacity) {
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.players = new int[capacity];
+        this.games = new byte[capacity];
+        this.results = new byte[capacity];
+        this.flags = new byte[capacity];
+        this.credits = new long[capacity];
+        this.pots = new long[capacity];
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    boolean isFull() {
+        return rows == capacity;
+    }
+
+    void append(long timestamp, int playerId, byte game, byte result, byte flag, long creditsChange, long pot) {
+        timestamps[rows] = timestamp;
+        players[rows] = playerId;
+        games[rows] = game;
+        results[rows] = result;
+        flags[rows] = flag;
+        credits[rows] = creditsChange;
+        pots[rows] = pot;
+        rows++;
+        minTs = Math.min(minTs, timestamp);
+        maxTs = Math.max(maxTs, timestamp);
+        aggregates.computeIfAbsent(key(playerId, game), k -> new Aggregate()).add(timestamp, result, flag, creditsChange, pot);
+    }
+
+    /**
+     * Dòng thứ {@code row}, dùng khi ghi lại tail log.
+     */
+    long timestamp(int row) {
+        return timestamps[row];
+    }
+
+    int player(int row) {
+        return players[row];
+    }
+
+    byte game(int row) {
+        return games[row];
+    }
+
+    byte result(int row) {
+        return results[row];
+    }
+
+    byte flags(int row) {
+        return flags[row];
+    }
+
+    long credits(int row) {
+        return credits[row];
+    }
+
+    long pot(int row) {
+        return pots[row];
+    }
+
+    void accumulate(int playerId, int game, long from, long to, PlayerStats out) {
+        if (rows == 0 || to < minTs || from > maxTs) {
+            return;
+        }
+        int partialGames = 0;
+        int last = game >= 0 ? game : GameType.values().length - 1;
+        for (int g = Math.max(game, 0); g <= last; g++) {
+            Aggregate aggregate = aggregates.get(key(playerId, (byte) g));
+            if (aggregate == null || aggregate.lastTs < from || aggregate.firstTs > to) {
+                continue;
+            }
+            if (from <= aggregate.firstTs && aggregate.lastTs <= to) {
+                out.add(aggregate.hands, aggregate.wins, aggregate.losses, aggregate.detailed, aggregate.vpip,
+                        aggregate.pot, aggregate.net);
+            } else {
+                partialGames |= 1 << g;
+            }
+        }
+        if (partialGames == 0) {
+            return;
+        }
+        for (int r = 0; r < rows; r++) {
+            if (players[r] == playerId && (partialGames & (1 << games[r])) != 0
+                    && timestamps[r] >= from && timestamps[r] <= to) {
+                out.addRow(results[r], flags[r], credits[r], pots[r]);
+            }
+        }
+    }
+
+    /**
+     * Ghi các dòng theo thứ tự (playerId, game, timestamp) vào {@code writer}.
+     */
+    void writeTo(BlockWriter writer) throws IOException {
+        Integer[] order = new Integer[rows];
+        for (int r = 0; r < rows; r++) {
+            order[r] = r;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(r -> players[r])
+                .thenComparingInt(r -> games[r])
+                .thenComparingLong(r -> timestamps[r]));
+        for (int r : order) {
+            writer.add(timestamps[r], players[r], games[r], results[r], flags[r], credits[r], pots[r]);
+        }
+    }
+
+    private static long key(int playerId, byte game) {
+        return ((long) playerId << 8) | (game & 0xFF);
+    }
+
+    private static final class Aggregate {
+        int hands;
+        int wins;
+        int losses;
+        int detailed;
+        int vpip;
+        long pot;
+        long net;
+        long firstTs = Long.MAX_VALUE;
+        long lastTs = Long.MIN_VALUE;
+
+        void add(long timestamp, byte result, byte flag, long creditsChange, long handPot) {
+            hands++;
+            if (result == SettledHand.WIN) {
+                wins++;
+            } else if (result == SettledHand.LOSE) {
+                losses++;
+            }
+            if ((flag & SettledHand.FLAG_DETAILED) != 0) {
+                detailed++;
+                pot += handPot;
+                if ((flag & SettledHand.FLAG_VPIP) != 0) {
+                    vpip++;
+                }
+            }
+            net += creditsChange;
+            firstTs = Math.min(firstTs, timestamp);
+            lastTs = Math.max(lastTs, timestamp);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.mygame.server.storage;
+
+import com.mygame.server.database.RoomDAO;
+import com.mygame.server.database.UserDAO;
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.timer.Timeout;
+import com.mygame.server.timer.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chạy thao tác DAO trên pool I/O riêng và trả về {@link CompletableFuture}, để thread nhận
+ * packet không bị chặn bởi database và handler gộp được nhiều lookup độc lập.
+ *
+ * Mỗi lời gọi có deadline (hẹn trên {@link TimingWheel}) và một executor sở hữu, thường là
+ * {@link com.mygame.server.room.GameRoom#getExecutor()} hoặc executor của
+ * {@link com.mygame.server.session.ClientSession}: future luôn hoàn thành (kết quả, lỗi hay
+ * {@link TimeoutException}) trên executor đó, nên callback đọc/ghi state của room hay kết nối
+ * không cần lock. Huỷ future hoặc hết deadline trước khi thao tác bắt đầu thì thao tác bị bỏ;
+ * thao tác đang chạy thì chạy nốt (JDBC không ngắt được an toàn) và kết quả bị bỏ qua.
+ *
+ * Kích thước pool lấy từ {@link Storage#ioParallelism()} (PostgreSQL: mỗi thread một connection
+ * riêng, {@code db.ioConnections}), ghi đè bằng {@code storage.ioThreads}. Deadline mặc định
+ * {@code storage.asyncTimeoutMs} (mặc định 2000).
+ */
+public class AsyncDao {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDao.class);
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("storage.asyncTimeoutMs", 2000L);
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private static AsyncDao instance;
+
+    private volatile Storage storage;
+    private volatile ThreadPoolExecutor io;
+    private final TimingWheel timers = TimingWheel.getInstance();
+    private final LatencyHistogram latency;
+    private final LongAdder calls;
+    private final LongAdder timeouts;
+    private final LongAdder late;
+    private final LongAdder rejected;
+
+    private AsyncDao() {
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.latency = metrics.histogram("storage.async");
+        this.calls = metrics.counter("storage.async.calls");
+        this.timeouts = metrics.counter("storage.async.timeouts");
+        this.late = metrics.counter("storage.async.late");
+        this.rejected = metrics.counter("storage.async.rejected");
+        metrics.gauge("storage.async.queue", this::queued);
+    }
+
+    public static synchronized AsyncDao getInstance() {
+        if (instance == null) {
+            instance = new AsyncDao();
+        }
+        return instance;
+    }
+
+    public synchronized void start(Storage storage) {
+        if (this.storage != null) {
+            return;
+        }
+        int threads = Integer.getInteger("storage.ioThreads", storage.ioParallelism());
+        AtomicInteger counter = new AtomicInteger();
+        io = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(() -> {
+                        storage.onIoThreadStart();
+                        r.run();
+                    }, "storage-io-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.storage = storage;
+        logger.info("Async DAO sẵn sàng ({} thread I/O, deadline mặc định {} ms)", threads, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Chạy {@code call} trên pool I/O với deadline mặc định.
+     */
+    public <T> CompletableFuture<T> submit(Call<T> call, Executor owner) {
+        return submit(call, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, owner);
+    }
+
+    /**
+     * Chạy {@code call} trên pool I/O. Future hoàn thành trên {@code owner}; quá {@code timeout}
+     * thì hoàn thành với {@link TimeoutException}.
+     */
+    public <T> CompletableFuture<T> submit(Call<T> call, long timeout, TimeUnit unit, Executor owner) {
+        Storage current = storage;
+        if (current == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Async DAO chưa khởi động"));
+        }
+        calls.increment();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+
+        ThreadPoolExecutor pool = io;
+        IoTask task = new IoTask(start, () -> {
+            if (result.isDone()) {
+                return; // Đã huỷ hoặc hết deadline khi còn trong hàng đợi
+            }
+            try {
+                T value = call.call(current);
+                latency.recordNanos(System.nanoTime() - start);
+                owner.execute(() -> {
+                    if (!result.complete(value)) {
+                        late.increment();
+                    }
+                });
+            } catch (Exception e) {
+                latency.recordNanos(System.nanoTime() - start);
+                owner.execute(() -> result.completeExceptionally(e));
+            }
+        });
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new SQLException("Hàng đợi storage đã đầy", e));
+        }
+
+        Timeout deadline = timers.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException("Storage quá " + unit.toMillis(timeout) + " ms"))) {
+                timeouts.increment();
+            }
+        }, timeout, unit, owner);
+        result.whenComplete((value, error) -> {
+            deadline.cancel();
+            if (result.isCancelled() || error instanceof TimeoutException) {
+                pool.remove(task);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<UserDAO.UserProfile> getUserProfile(int userId, long timeout, TimeUnit unit,
+                                                                 Executor owner) {
+        return submit(storage -> storage.users().getUserProfile(userId), timeout, unit, owner);
+    }
+
+    public CompletableFuture<List<RoomDAO.RoomData>> getWaitingRooms(String gameType, int limit, Executor owner) {
+        return submit(storage -> storage.rooms().getWaitingRooms(gameType, limit), owner);
+    }
+
+    /**
+     * Thao tác cũ nhất còn trong hàng đợi I/O đã chờ bao lâu (0 nếu hàng đợi rỗng). Đây là độ trễ
+     * hàng đợi storage mà admission control dùng để biết database có theo kịp không.
+     */
+    public long oldestQueuedNanos(long now) {
+        ThreadPoolExecutor current = io;
+        Runnable head = current != null ? current.getQueue().peek() : null;
+        return head instanceof IoTask ? now - ((IoTask) head).enqueuedNanos : 0;
+    }
+
+    private long queued() {
+        ThreadPoolExecutor current = io;
+        return current != null ? current.getQueue().size() : 0;
+    }
+
+    public synchronized void shutdown() {
+        if (storage == null) {
+            return;
+        }
+        storage = null;
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Async DAO còn {} thao tác chưa chạy khi tắt", io.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Thao tác trong hàng đợi I/O, nhớ thời điểm vào hàng.
+     */
+    private static final class IoTask implements Runnable {
+        final long enqueuedNanos;
+        private final Runnable body;
+
+        IoTask(long enqueuedNanos, Runnable body) {
+            this.enqueuedNanos = enqueuedNanos;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+    }
+
+    /**
+     * Một thao tác DAO chạy trên thread I/O.
+     */
+    public interface Call<T> {
+        T call(Storage storage) throws SQLException;
+    }
+}
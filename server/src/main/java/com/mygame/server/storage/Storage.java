@@ -0,0 +1,85 @@
+package com.mygame.server.storage;
+
+import com.mygame.server.database.DailyRewardDAO;
+import com.mygame.server.database.DatabaseManager;
+import com.mygame.server.database.JdbcStorage;
+import com.mygame.server.database.LeaderboardDAO;
+import com.mygame.server.database.MatchHistoryDAO;
+import com.mygame.server.database.QuestDAO;
+import com.mygame.server.database.RoomDAO;
+import com.mygame.server.database.UserDAO;
+import com.mygame.server.storage.embedded.EmbeddedStorage;
+import com.mygame.server.wallet.WalletStore;
+
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+/**
+ * Backend lưu trữ của server: nguồn của mọi DAO và session.
+ *
+ * Hai bản cài đặt, chọn bằng system property {@code storage.engine}:
+ * - {@code postgres} (mặc định): {@link JdbcStorage}, PostgreSQL qua JDBC.
+ * - {@code embedded}: {@link EmbeddedStorage}, key-value store dạng log-structured trong thư mục
+ *   {@code storage.dir} (mặc định {@code data/storage}), không cần service ngoài. Dùng cho
+ *   deployment một node, benchmark và load test.
+ *
+ * Lỗi vẫn là {@link SQLException} ở cả hai backend để handler không phải đổi cách xử lý.
+ */
+public interface Storage {
+    String name();
+
+    /**
+     * Kết nối/mở dữ liệu và tạo schema nếu cần. Gọi một lần trước mọi thao tác khác.
+     */
+    void open() throws SQLException;
+
+    /**
+     * Session riêng cho một worker nền. Caller chịu trách nhiệm đóng.
+     */
+    StorageSession openSession() throws SQLException;
+
+    UserDAO users();
+
+    RoomDAO rooms();
+
+    QuestDAO quests();
+
+    MatchHistoryDAO matchHistory();
+
+    LeaderboardDAO leaderboard();
+
+    DailyRewardDAO dailyRewards();
+
+    /**
+     * Phần lưu trữ của wallet {@code walletId} (số dư đã flush, checkpoint, idempotency key).
+     */
+    WalletStore walletStore(String walletId);
+
+    boolean isConnected();
+
+    /**
+     * Số thao tác DAO có thể chạy song song an toàn (kích thước pool I/O của {@link AsyncDao}).
+     */
+    int ioParallelism();
+
+    /**
+     * Gọi một lần trên mỗi thread I/O của {@link AsyncDao} trước thao tác đầu tiên, để engine gắn
+     * tài nguyên riêng cho thread (vd. connection JDBC).
+     */
+    default void onIoThreadStart() {
+    }
+
+    void close();
+
+    static Storage create() {
+        String engine = System.getProperty("storage.engine", "postgres");
+        switch (engine) {
+            case "postgres":
+                return new JdbcStorage(DatabaseManager.getInstance());
+            case "embedded":
+                return new EmbeddedStorage(Paths.get(System.getProperty("storage.dir", "data/storage")));
+            default:
+                throw new IllegalArgumentException("storage.engine không hợp lệ: " + engine);
+        }
+    }
+}
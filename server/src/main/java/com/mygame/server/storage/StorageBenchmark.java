@@ -0,0 +1,244 @@
+package com.mygame.server.storage;
+
+import com.mygame.server.database.DatabaseManager;
+import com.mygame.server.database.JdbcStorage;
+import com.mygame.server.database.UserDAO;
+import com.mygame.server.history.MatchRecord;
+import com.mygame.server.metrics.LatencyHistogram;
+import com.mygame.server.storage.embedded.EmbeddedStorage;
+import com.mygame.server.wallet.WalletStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Chạy cùng một workload trên hai backend {@link Storage} (embedded KvStore và PostgreSQL/JDBC)
+ * rồi in throughput và độ trễ của từng thao tác:
+ * - {@code profile}: đọc profile (login, lobby), song song trên {@code threads} thread như AsyncDao.
+ * - {@code history.read}: trang lịch sử đầu tiên của một user, song song.
+ * - {@code leaderboard}: top 50, song song.
+ * - {@code history.write}: một lô dòng match_history trong một session rồi commit, một thread như
+ *   background writer.
+ * - {@code wallet.flush}: flush delta của một ván xuống {@link WalletStore}, một thread như flusher
+ *   của WalletService.
+ *
+ * <pre>
+ * java -cp server.jar com.mygame.server.storage.StorageBenchmark [ops] [threads] [users]
+ * </pre>
+ * Postgres dùng cấu hình trong {@link DatabaseManager}; không kết nối được thì chỉ chạy embedded.
+ * Benchmark dùng các user {@code bench_storage_*} và wallet id {@code bench_storage}, dữ liệu
+ * embedded nằm trong thư mục tạm và bị xoá khi xong.
+ */
+public class StorageBenchmark {
+    private static final String WALLET_ID = "bench_storage";
+    private static final String PASSWORD = "bench-password";
+    private static final int PLAYERS_PER_HAND = 4;
+    private static final long STAKE = 100;
+
+    public static void main(String[] args) throws Exception {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        System.out.printf("Ops/phase: %,d, threads: %d, users: %d%n", ops, threads, users);
+
+        Path dir = Files.createTempDirectory("storage-bench");
+        try {
+            run(new EmbeddedStorage(dir), ops, threads, users);
+        } finally {
+            deleteDir(dir);
+        }
+
+        JdbcStorage jdbc;
+        try {
+            jdbc = new JdbcStorage(DatabaseManager.getInstance());
+            jdbc.open();
+        } catch (SQLException | IllegalStateException e) {
+            System.out.printf("postgres: bỏ qua, không kết nối được (%s)%n", e.getMessage());
+            return;
+        }
+        run(jdbc, ops, threads, users);
+    }
+
+    private static void run(Storage storage, int ops, int threads, int users) throws Exception {
+        storage.open();
+        WalletStore wallet = storage.walletStore(WALLET_ID);
+        try {
+            wallet.open();
+            int[] userIds = ensureBenchUsers(storage, users);
+            // Lượt đầu để JIT warm-up và nạp cache, chỉ in lượt sau
+            for (int round = 0; round < 2; round++) {
+                boolean report = round == 1;
+                long seq = System.currentTimeMillis() * 1000 + round * (long) ops;
+                parallel(storage, "profile", ops, threads, report,
+                        () -> storage.users().getUserProfile(random(userIds)));
+                serial(storage, "history.write", ops / PLAYERS_PER_HAND, report, i -> writeHistory(storage, userIds, i));
+                parallel(storage, "history.read", ops, threads, report,
+                        () -> storage.matchHistory().getRecentMatches(random(userIds), 20));
+                parallel(storage, "leaderboard", ops / 10, threads, report,
+                        () -> storage.leaderboard().getTopPlayers(50));
+                serial(storage, "wallet.flush", ops / PLAYERS_PER_HAND, report,
+                        i -> flushHand(wallet, userIds, seq + i, i));
+            }
+        } finally {
+            wallet.close();
+            cleanup(storage);
+            storage.close();
+        }
+    }
+
+    private static void parallel(Storage storage, String op, int ops, int threads, boolean report,
+                                 Call call) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                storage.onIoThreadStart();
+                for (int i = thread; i < ops; i += threads) {
+                    long opStart = System.nanoTime();
+                    call.call();
+                    latency.recordNanos(System.nanoTime() - opStart);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        if (report) {
+            print(storage, op, ops, System.nanoTime() - start, latency);
+        }
+    }
+
+    private static void serial(Storage storage, String op, int ops, boolean report, IndexedCall call)
+            throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            long opStart = System.nanoTime();
+            call.call(i);
+            latency.recordNanos(System.nanoTime() - opStart);
+        }
+        if (report) {
+            print(storage, op, ops, System.nanoTime() - start, latency);
+        }
+    }
+
+    private static void print(Storage storage, String op, int ops, long nanos, LatencyHistogram latency) {
+        System.out.printf("%-9s %-14s %,10.0f ops/s   p50 %,6d us   p99 %,7d us   max %,7d us%n",
+                storage.name(), op, ops / (nanos / 1e9), latency.getPercentileMicros(0.50),
+                latency.getPercentileMicros(0.99), latency.getMaxMicros());
+    }
+
+    /**
+     * Một ván {@link #PLAYERS_PER_HAND} người: mỗi người một dòng lịch sử, ghi chung một commit.
+     */
+    private static void writeHistory(Storage storage, int[] userIds, int hand) throws SQLException {
+        List<MatchRecord> records = new ArrayList<>(PLAYERS_PER_HAND);
+        long now = System.currentTimeMillis();
+        int winner = hand % PLAYERS_PER_HAND;
+        for (int p = 0; p < PLAYERS_PER_HAND; p++) {
+            boolean won = p == winner;
+            records.add(new MatchRecord(userIds[(hand + p) % userIds.length], "POKER", "MULTIPLAYER",
+                    won ? "WIN" : "LOSE", won ? STAKE * (PLAYERS_PER_HAND - 1) : -STAKE,
+                    PLAYERS_PER_HAND - 1, 60, now));
+        }
+        try (StorageSession session = storage.openSession()) {
+            storage.matchHistory().saveMatches(session, records);
+            session.commit();
+        }
+    }
+
+    /**
+     * Delta của một ván (tổng bằng 0) cùng idempotency key của nó, như một lần flush của WalletService.
+     */
+    private static void flushHand(WalletStore wallet, int[] userIds, long seq, int hand) throws SQLException {
+        Map<Integer, Long> deltas = new TreeMap<>();
+        int winner = hand % PLAYERS_PER_HAND;
+        for (int p = 0; p < PLAYERS_PER_HAND; p++) {
+            deltas.merge(userIds[(hand + p) % userIds.length],
+                    p == winner ? STAKE * (PLAYERS_PER_HAND - 1) : -STAKE, Long::sum);
+        }
+        List<String> keys = new ArrayList<>(1);
+        keys.add("bench:" + seq);
+        List<Long> keySeqs = new ArrayList<>(1);
+        keySeqs.add(seq);
+        wallet.flush(deltas, keys, keySeqs, seq);
+    }
+
+    private static int[] ensureBenchUsers(Storage storage, int count) throws SQLException {
+        UserDAO users = storage.users();
+        int[] userIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            String username = "bench_storage_" + i;
+            UserDAO.UserProfile profile;
+            try {
+                profile = users.register(username, PASSWORD);
+            } catch (SQLException e) {
+                profile = users.login(username, PASSWORD); // đã có từ lần chạy trước
+            }
+            userIds[i] = profile.getId();
+        }
+        return userIds;
+    }
+
+    private static int random(int[] userIds) {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+
+    /**
+     * Postgres: xoá lịch sử và idempotency key benchmark đã ghi (user benchmark được giữ lại).
+     */
+    private static void cleanup(Storage storage) throws SQLException {
+        if (!(storage instanceof JdbcStorage)) {
+            return;
+        }
+        Connection conn = DatabaseManager.getInstance().getConnection();
+        try (PreparedStatement history = conn.prepareStatement(
+                     "DELETE FROM match_history WHERE user_id IN "
+                             + "(SELECT user_id FROM users WHERE username LIKE 'bench\\_storage\\_%')");
+             PreparedStatement ops = conn.prepareStatement("DELETE FROM wallet_ops WHERE wallet_id = ?");
+             PreparedStatement state = conn.prepareStatement("DELETE FROM wallet_state WHERE wallet_id = ?")) {
+            history.executeUpdate();
+            ops.setString(1, WALLET_ID);
+            ops.executeUpdate();
+            state.setString(1, WALLET_ID);
+            state.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private static void deleteDir(Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private interface Call {
+        void call() throws SQLException;
+    }
+
+    private interface IndexedCall {
+        void call(int index) throws SQLException;
+    }
+}
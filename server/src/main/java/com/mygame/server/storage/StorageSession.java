@@ -0,0 +1,22 @@
+package com.mygame.server.storage;
+
+import java.sql.SQLException;
+
+/**
+ * Đơn vị transaction do caller quản lý (thay cho {@link java.sql.Connection} riêng của các worker
+ * nền). Các method DAO nhận session ghi vào transaction của nó; {@link #commit()} làm các ghi đó
+ * thấy được và bền vững cùng lúc. Không thread-safe: mỗi worker giữ session riêng.
+ */
+public interface StorageSession extends AutoCloseable {
+    void commit() throws SQLException;
+
+    void rollback() throws SQLException;
+
+    /**
+     * true nếu session đã đóng hoặc hỏng, caller cần mở session mới.
+     */
+    boolean isClosed() throws SQLException;
+
+    @Override
+    void close() throws SQLException;
+}
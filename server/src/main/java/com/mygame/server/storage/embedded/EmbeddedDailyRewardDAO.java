@@ -0,0 +1,60 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.database.DailyRewardDAO;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.wallet.WalletService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link DailyRewardDAO} trên embedded storage.
+ */
+class EmbeddedDailyRewardDAO implements DailyRewardDAO {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedDailyRewardDAO.class);
+
+    private final EmbeddedStorage storage;
+
+    EmbeddedDailyRewardDAO(EmbeddedStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public Map<Integer, Long> loadRecentClaims(StorageSession session, LocalDateTime since) throws SQLException {
+        EmbeddedSession.of(session);
+        long sinceMillis = EmbeddedUserDAO.toMillis(since);
+        Map<Integer, Long> claims = new HashMap<>();
+        storage.scanPrefix(Keys.table(Keys.LAST_DAILY_REWARD), (key, value) -> {
+            long claimedAt = ByteBuffer.wrap(value).getLong();
+            if (claimedAt > sinceMillis) {
+                claims.put(Keys.intAt(key, 1), claimedAt);
+            }
+            return true;
+        });
+        return claims;
+    }
+
+    @Override
+    public long claimDailyReward(int userId, LocalDateTime claimedAt) throws SQLException {
+        long creditsReward = DailyRewardDAO.randomReward();
+
+        // Cộng credits qua wallet trước; key theo ngày nên claim lặp lại không được trả hai lần
+        String key = "daily:" + userId + ":" + claimedAt.toLocalDate();
+        if (!WalletService.getInstance().creditAndWait(key, userId, creditsReward)) {
+            throw new SQLException("Đã nhận daily reward hôm nay");
+        }
+
+        long claimedMillis = EmbeddedUserDAO.toMillis(claimedAt);
+        storage.write(txn -> {
+            txn.put(Keys.of(Keys.LAST_DAILY_REWARD, userId), EmbeddedUserDAO.longValue(claimedMillis));
+            return null;
+        });
+        logger.info("User {} đã nhận daily reward: {} credits", userId, creditsReward);
+        return creditsReward;
+    }
+}
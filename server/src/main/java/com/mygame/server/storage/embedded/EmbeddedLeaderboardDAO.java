@@ -0,0 +1,76 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.database.LeaderboardDAO;
+import com.mygame.server.database.UserDAO;
+import com.mygame.server.stats.PlayerCounterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link LeaderboardDAO} trên embedded storage. Index LEADERBOARD được wallet flush cập nhật cùng
+ * batch với credits, nên một trang là một lần scan ngay sau cursor.
+ */
+class EmbeddedLeaderboardDAO implements LeaderboardDAO {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedLeaderboardDAO.class);
+
+    private final EmbeddedStorage storage;
+    private final UserDAO userDAO;
+
+    EmbeddedLeaderboardDAO(EmbeddedStorage storage, UserDAO userDAO) {
+        this.storage = storage;
+        this.userDAO = userDAO;
+    }
+
+    @Override
+    public List<LeaderboardEntry> getPage(long cursorCredits, int cursorUserId, int rankOffset, int limit)
+            throws SQLException {
+        byte[] prefix = Keys.table(Keys.LEADERBOARD);
+        byte[] from = cursorUserId == 0 ? prefix : Keys.after(Keys.leaderboard(cursorCredits, cursorUserId));
+
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        storage.scan(from, new byte[]{Keys.LEADERBOARD + 1}, (key, ignored) -> {
+            int userId = ~Keys.intAt(key, 9);
+            long credits = ~Keys.longAt(key, 1);
+            LeaderboardEntry entry = new LeaderboardEntry();
+            entry.setRank(rankOffset + entries.size() + 1);
+            entry.setUserId(userId);
+            entry.setUsername(((EmbeddedUserDAO) userDAO).username(userId));
+            entry.setCredits(credits);
+            entry.setRankEnum(userDAO.calculateRank(credits));
+            // Bộ đếm đã lưu cộng delta chưa flush
+            EmbeddedUserDAO.Counters counters = EmbeddedUserDAO.Counters.read(storage.get(Keys.of(Keys.COUNTERS, userId)));
+            PlayerCounterService.Delta pending = PlayerCounterService.getInstance().pending(userId);
+            entry.setTotalWins(counters.wins + pending.getWins());
+            entry.setTotalLosses(counters.losses + pending.getLosses());
+            entries.add(entry);
+            return entries.size() < limit;
+        });
+
+        logger.debug("Đã lấy {} players từ leaderboard", entries.size());
+        return entries;
+    }
+
+    /**
+     * Đếm số entry có credits lớn hơn (các key đứng trước {@code [~credits]}).
+     */
+    @Override
+    public int getPlayerRank(int userId) throws SQLException {
+        byte[] value = storage.get(Keys.of(Keys.CREDITS, userId));
+        if (value == null) {
+            return -1; // Không tìm thấy
+        }
+        long credits = ByteBuffer.wrap(value).getLong();
+        byte[] end = ByteBuffer.allocate(9).put(Keys.LEADERBOARD).putLong(~credits).array();
+        int[] ahead = {0};
+        storage.scan(Keys.table(Keys.LEADERBOARD), end, (key, ignored) -> {
+            ahead[0]++;
+            return true;
+        });
+        return ahead[0] + 1;
+    }
+}
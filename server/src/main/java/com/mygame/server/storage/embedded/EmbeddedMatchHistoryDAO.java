@@ -0,0 +1,114 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.database.MatchHistoryDAO;
+import com.mygame.server.history.MatchRecord;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.storage.kv.KvStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link MatchHistoryDAO} trên embedded storage. Index MATCH_BY_USER sắp (timestamp, match_id) giảm
+ * dần trong từng user nên một trang là một lần scan ngay sau cursor.
+ */
+class EmbeddedMatchHistoryDAO implements MatchHistoryDAO {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedMatchHistoryDAO.class);
+
+    private final EmbeddedStorage storage;
+
+    EmbeddedMatchHistoryDAO(EmbeddedStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void saveMatch(int userId, String gameType, String matchMode, String result, long creditsChange,
+                          int opponentCount, int durationSeconds) throws SQLException {
+        MatchRecord record = new MatchRecord(userId, gameType, matchMode, result, creditsChange, opponentCount,
+                durationSeconds, System.currentTimeMillis());
+        storage.write(txn -> {
+            insert(txn, record);
+            return null;
+        });
+        logger.info("Đã lưu lịch sử trận đấu cho user {}: {} - {}", userId, gameType, result);
+    }
+
+    @Override
+    public void saveMatches(StorageSession session, List<MatchRecord> records) throws SQLException {
+        List<MatchRecord> copy = new ArrayList<>(records);
+        EmbeddedSession.of(session).defer(txn -> {
+            for (MatchRecord record : copy) {
+                insert(txn, record);
+            }
+            return null;
+        });
+    }
+
+    private static void insert(Txn txn, MatchRecord record) throws SQLException {
+        int matchId = EmbeddedStorage.nextId(txn, "match");
+        long micros = record.getTimestampMillis() * 1000L;
+        txn.put(Keys.of(Keys.MATCH, matchId), new Row()
+                .putInt(record.getUserId())
+                .putString(record.getGameType())
+                .putString(record.getMatchMode())
+                .putString(record.getResult())
+                .putLong(record.getCreditsChange())
+                .putInt(record.getOpponentCount())
+                .putInt(record.getDurationSeconds())
+                .putLong(micros)
+                .toBytes());
+        txn.put(Keys.matchByUser(record.getUserId(), micros, matchId), new byte[0]);
+    }
+
+    @Override
+    public List<MatchHistoryEntry> getMatchesPage(int userId, long cursorTimestampMicros, int cursorMatchId,
+                                                  int limit) throws SQLException {
+        byte[] prefix = Keys.of(Keys.MATCH_BY_USER, userId);
+        byte[] from = cursorMatchId == 0 ? prefix
+                : Keys.after(Keys.matchByUser(userId, cursorTimestampMicros, cursorMatchId));
+
+        List<MatchHistoryEntry> matches = new ArrayList<>();
+        storage.scan(from, KvStore.prefixEnd(prefix), (key, ignored) -> {
+            int matchId = ~Keys.intAt(key, 13);
+            byte[] value = storage.get(Keys.of(Keys.MATCH, matchId));
+            if (value == null) {
+                return true;
+            }
+            Row.Reader row = Row.read(value);
+            row.getInt();
+            MatchHistoryEntry entry = new MatchHistoryEntry();
+            entry.setId(matchId);
+            entry.setGameType(row.getString());
+            entry.setMatchMode(row.getString());
+            entry.setResult(row.getString());
+            entry.setCreditsChange(row.getLong());
+            entry.setOpponentCount(row.getInt());
+            entry.setDurationSeconds(row.getInt());
+            long micros = row.getLong();
+            entry.setTimestamp(EmbeddedUserDAO.toLocal(Math.floorDiv(micros, 1000L)));
+            entry.setTimestampMicros(micros);
+            matches.add(entry);
+            return matches.size() < limit;
+        });
+        return matches;
+    }
+
+    @Override
+    public void scanMatches(StorageSession session, Consumer<MatchRecord> consumer) throws SQLException {
+        EmbeddedSession.of(session);
+        storage.scanPrefix(Keys.table(Keys.MATCH), (key, value) -> {
+            consumer.accept(readRecord(value));
+            return true;
+        });
+    }
+
+    static MatchRecord readRecord(byte[] value) {
+        Row.Reader row = Row.read(value);
+        return new MatchRecord(row.getInt(), row.getString(), row.getString(), row.getString(), row.getLong(),
+                row.getInt(), row.getInt(), Math.floorDiv(row.getLong(), 1000L));
+    }
+}
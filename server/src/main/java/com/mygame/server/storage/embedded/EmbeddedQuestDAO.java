@@ -0,0 +1,251 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.database.QuestDAO;
+import com.mygame.server.quest.QuestDefinition;
+import com.mygame.server.quest.QuestEventType;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.wallet.WalletService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link QuestDAO} trên embedded storage. Progress có key {@code [epochDay][userId][questId]} nên
+ * đọc progress của một user hay cả một ngày đều là một lần scan theo prefix.
+ */
+class EmbeddedQuestDAO implements QuestDAO {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedQuestDAO.class);
+
+    private final EmbeddedStorage storage;
+
+    EmbeddedQuestDAO(EmbeddedStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Quest mặc định như schema.sql, chỉ khi bảng config còn trống.
+     */
+    void seedDefaults() throws SQLException {
+        storage.write(txn -> {
+            boolean[] empty = {true};
+            txn.scanPrefix(Keys.table(Keys.QUEST_CONFIG), (key, value) -> {
+                empty[0] = false;
+                return false;
+            });
+            if (!empty[0]) {
+                return null;
+            }
+            seed(txn, "Login today", "ANY", 1);
+            seed(txn, "Play 5 hands", "ANY", 5);
+            seed(txn, "Win 2 matches", "ANY", 2);
+            seed(txn, "Play 3 Poker matches", "POKER", 3);
+            seed(txn, "Bet 5000 total", "ANY", 5000);
+            logger.info("Đã tạo quest config mặc định");
+            return null;
+        });
+    }
+
+    private static void seed(Txn txn, String description, String gameType, int targetCount) throws SQLException {
+        int questId = EmbeddedStorage.nextId(txn, "quest");
+        txn.put(Keys.of(Keys.QUEST_CONFIG, questId), new Row().putString(description).putString(gameType)
+                .putString(QuestEventType.infer(description).name()).putInt(targetCount).putLong(QUEST_REWARD).toBytes());
+    }
+
+    @Override
+    public List<QuestDefinition> loadQuestConfig(StorageSession session) throws SQLException {
+        EmbeddedSession.of(session);
+        List<QuestDefinition> quests = new ArrayList<>();
+        storage.scanPrefix(Keys.table(Keys.QUEST_CONFIG), (key, value) -> {
+            Row.Reader row = Row.read(value);
+            String description = row.getString();
+            String gameType = row.getString();
+            String eventType = row.getString();
+            quests.add(new QuestDefinition(
+                Keys.intAt(key, 1),
+                description,
+                gameType,
+                eventType != null ? QuestEventType.valueOf(eventType) : QuestEventType.infer(description),
+                row.getInt(),
+                row.getLong()
+            ));
+            return true;
+        });
+        return quests;
+    }
+
+    @Override
+    public String questConfigFingerprint(StorageSession session) throws SQLException {
+        EmbeddedSession.of(session);
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        storage.scanPrefix(Keys.table(Keys.QUEST_CONFIG), (key, value) -> {
+            md5.update(key);
+            md5.update(value);
+            return true;
+        });
+        StringBuilder hex = new StringBuilder();
+        for (byte b : md5.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public List<QuestProgress> loadProgress(StorageSession session, int userId, LocalDate date) throws SQLException {
+        EmbeddedSession.of(session);
+        return loadProgress(userId, date);
+    }
+
+    @Override
+    public List<QuestProgress> loadProgress(int userId, LocalDate date) throws SQLException {
+        List<QuestProgress> rows = new ArrayList<>();
+        storage.scanPrefix(Keys.of(Keys.QUEST_PROGRESS, (int) date.toEpochDay(), userId), (key, value) -> {
+            rows.add(progress(key, value));
+            return true;
+        });
+        return rows;
+    }
+
+    @Override
+    public Map<Integer, List<QuestProgress>> loadAllProgress(StorageSession session, LocalDate date) throws SQLException {
+        EmbeddedSession.of(session);
+        Map<Integer, List<QuestProgress>> rows = new HashMap<>();
+        storage.scanPrefix(Keys.of(Keys.QUEST_PROGRESS, (int) date.toEpochDay()), (key, value) -> {
+            QuestProgress row = progress(key, value);
+            if (row.getCurrentProgress() > 0 || row.isClaimed()) {
+                rows.computeIfAbsent(Keys.intAt(key, 5), k -> new ArrayList<>()).add(row);
+            }
+            return true;
+        });
+        return rows;
+    }
+
+    /**
+     * Chọn user đăng nhập từ activeSince ngay lúc gọi; dòng progress được chèn (nếu chưa có) khi
+     * caller commit.
+     */
+    @Override
+    public int assignDailyQuests(StorageSession session, LocalDate date, LocalDateTime activeSince) throws SQLException {
+        EmbeddedSession embedded = EmbeddedSession.of(session);
+        long since = EmbeddedUserDAO.toMillis(activeSince);
+        List<Integer> userIds = new ArrayList<>();
+        storage.scanPrefix(Keys.table(Keys.LAST_LOGIN), (key, value) -> {
+            if (ByteBuffer.wrap(value).getLong() >= since) {
+                userIds.add(Keys.intAt(key, 1));
+            }
+            return true;
+        });
+        List<Integer> questIds = questIds();
+        int day = (int) date.toEpochDay();
+        int planned = 0;
+        for (int userId : userIds) {
+            for (int questId : questIds) {
+                if (storage.get(Keys.of(Keys.QUEST_PROGRESS, day, userId, questId)) == null) {
+                    planned++;
+                }
+            }
+        }
+
+        embedded.defer(txn -> {
+            byte[] empty = progressValue(0, false);
+            for (int userId : userIds) {
+                for (int questId : questIds) {
+                    byte[] key = Keys.of(Keys.QUEST_PROGRESS, day, userId, questId);
+                    if (!txn.exists(key)) {
+                        txn.put(key, empty);
+                    }
+                }
+            }
+            return null;
+        });
+        return planned;
+    }
+
+    @Override
+    public int saveProgress(StorageSession session, Integer[] userIds, Integer[] questIds, String[] dates,
+                            Integer[] progress) throws SQLException {
+        EmbeddedSession embedded = EmbeddedSession.of(session);
+        Set<Integer> known = new HashSet<>(questIds());
+        int[] days = new int[dates.length];
+        int rows = 0;
+        for (int i = 0; i < dates.length; i++) {
+            days[i] = (int) LocalDate.parse(dates[i]).toEpochDay();
+            rows += known.contains(questIds[i]) ? 1 : 0;
+        }
+
+        embedded.defer(txn -> {
+            for (int i = 0; i < userIds.length; i++) {
+                if (!known.contains(questIds[i])) {
+                    continue;
+                }
+                byte[] key = Keys.of(Keys.QUEST_PROGRESS, days[i], userIds[i], questIds[i]);
+                byte[] value = txn.get(key);
+                Row.Reader row = value != null ? Row.read(value) : null;
+                int current = row != null ? row.getInt() : 0;
+                boolean claimed = row != null && row.getBoolean();
+                if (value == null || progress[i] > current) {
+                    txn.put(key, progressValue(Math.max(current, progress[i]), claimed));
+                }
+            }
+            return null;
+        });
+        return rows;
+    }
+
+    @Override
+    public boolean claimQuestReward(int userId, int questId, LocalDate date, int progress) throws SQLException {
+        // Add credits (always 20,000) qua wallet; key theo ngày chặn claim trùng
+        String key = "quest:" + userId + ":" + questId + ":" + date;
+        if (!WalletService.getInstance().creditAndWait(key, userId, QUEST_REWARD)) {
+            logger.warn("Quest {} reward already paid to user {}", questId, userId);
+        }
+
+        storage.write(txn -> {
+            byte[] progressKey = Keys.of(Keys.QUEST_PROGRESS, (int) date.toEpochDay(), userId, questId);
+            byte[] value = txn.get(progressKey);
+            int current = value != null ? Row.read(value).getInt() : 0;
+            txn.put(progressKey, progressValue(Math.max(current, progress), true));
+            return null;
+        });
+        logger.info("User {} claimed quest {} reward: {} credits", userId, questId, QUEST_REWARD);
+        return true;
+    }
+
+    private List<Integer> questIds() throws SQLException {
+        List<Integer> questIds = new ArrayList<>();
+        storage.scanPrefix(Keys.table(Keys.QUEST_CONFIG), (key, value) -> {
+            questIds.add(Keys.intAt(key, 1));
+            return true;
+        });
+        return questIds;
+    }
+
+    private static QuestProgress progress(byte[] key, byte[] value) {
+        Row.Reader row = Row.read(value);
+        QuestProgress progress = new QuestProgress();
+        progress.setQuestId(Keys.intAt(key, 9));
+        progress.setCurrentProgress(row.getInt());
+        progress.setClaimed(row.getBoolean());
+        return progress;
+    }
+
+    private static byte[] progressValue(int progress, boolean claimed) {
+        return new Row().putInt(progress).putBoolean(claimed).toBytes();
+    }
+}
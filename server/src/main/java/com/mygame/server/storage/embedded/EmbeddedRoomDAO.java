@@ -0,0 +1,244 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.database.RoomDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link RoomDAO} trên embedded storage. current_players được đếm lại từ ROOM_PLAYER trong cùng
+ * write với thao tác thêm/xoá player.
+ */
+class EmbeddedRoomDAO implements RoomDAO {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedRoomDAO.class);
+
+    private final EmbeddedStorage storage;
+
+    EmbeddedRoomDAO(EmbeddedStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public RoomData createRoom(String roomName, String gameType, int hostUserId, int maxPlayers) throws SQLException {
+        long now = System.currentTimeMillis();
+        int roomId = storage.write(txn -> {
+            if (!txn.exists(Keys.of(Keys.USER, hostUserId))) {
+                throw new SQLException("User not found");
+            }
+            int id = EmbeddedStorage.nextId(txn, "room");
+            Room room = new Room();
+            room.name = roomName;
+            room.gameType = gameType;
+            room.hostUserId = hostUserId;
+            room.maxPlayers = maxPlayers;
+            room.currentPlayers = 1;
+            room.status = "WAITING";
+            room.createdAt = now;
+            txn.put(Keys.of(Keys.ROOM, id), room.toBytes());
+            txn.put(Keys.of(Keys.ROOM_PLAYER, id, hostUserId), position(0));
+            return id;
+        });
+        logger.info("Đã tạo room: {} (ID: {})", roomName, roomId);
+        return getRoomData(roomId);
+    }
+
+    @Override
+    public void addPlayerToRoom(int roomId, int userId, int position) throws SQLException {
+        storage.write(txn -> {
+            Room room = requireRoom(txn, roomId);
+            if (!txn.exists(Keys.of(Keys.USER, userId))) {
+                throw new SQLException("User not found");
+            }
+            byte[] key = Keys.of(Keys.ROOM_PLAYER, roomId, userId);
+            if (!txn.exists(key)) {
+                txn.put(key, position(position));
+            }
+            updatePlayerCount(txn, roomId, room);
+            return null;
+        });
+        logger.debug("Đã thêm player {} vào room {}", userId, roomId);
+    }
+
+    @Override
+    public void removePlayerFromRoom(int roomId, int userId) throws SQLException {
+        storage.write(txn -> {
+            txn.delete(Keys.of(Keys.ROOM_PLAYER, roomId, userId));
+            byte[] value = txn.get(Keys.of(Keys.ROOM, roomId));
+            if (value != null) {
+                updatePlayerCount(txn, roomId, Room.read(value));
+            }
+            return null;
+        });
+        logger.debug("Đã xóa player {} khỏi room {}", userId, roomId);
+    }
+
+    private void updatePlayerCount(Txn txn, int roomId, Room room) throws SQLException {
+        int[] count = {0};
+        txn.scanPrefix(Keys.of(Keys.ROOM_PLAYER, roomId), (key, value) -> {
+            count[0]++;
+            return true;
+        });
+        room.currentPlayers = count[0];
+        txn.put(Keys.of(Keys.ROOM, roomId), room.toBytes());
+    }
+
+    @Override
+    public RoomData getRoomData(int roomId) throws SQLException {
+        byte[] value = storage.get(Keys.of(Keys.ROOM, roomId));
+        if (value == null) {
+            throw new SQLException("Room không tồn tại");
+        }
+        RoomData room = Room.read(value).toData(roomId);
+        room.setPlayers(getRoomPlayers(roomId));
+        return room;
+    }
+
+    @Override
+    public List<RoomPlayerData> getRoomPlayers(int roomId) throws SQLException {
+        EmbeddedUserDAO userDAO = (EmbeddedUserDAO) storage.users();
+        List<RoomPlayerData> players = new ArrayList<>();
+        storage.scanPrefix(Keys.of(Keys.ROOM_PLAYER, roomId), (key, value) -> {
+            RoomPlayerData player = new RoomPlayerData();
+            player.setUserId(Keys.intAt(key, 5));
+            player.setUsername(userDAO.username(player.getUserId()));
+            player.setPosition(ByteBuffer.wrap(value).getInt());
+            players.add(player);
+            return true;
+        });
+        players.sort(Comparator.comparingInt(RoomPlayerData::getPosition));
+        return players;
+    }
+
+    /**
+     * Số room ít (chỉ room đang tồn tại) nên quét cả bảng rồi lọc.
+     */
+    @Override
+    public List<RoomData> getWaitingRooms(String gameType, int limit) throws SQLException {
+        List<RoomData> rooms = new ArrayList<>();
+        List<Long> createdAt = new ArrayList<>();
+        storage.scanPrefix(Keys.table(Keys.ROOM), (key, value) -> {
+            Room room = Room.read(value);
+            if ("WAITING".equals(room.status) && (gameType == null || gameType.equals(room.gameType))
+                    && room.currentPlayers < room.maxPlayers) {
+                rooms.add(room.toData(Keys.intAt(key, 1)));
+                createdAt.add(room.createdAt);
+            }
+            return true;
+        });
+
+        // Mới nhất trước (roomId tăng dần theo thời gian tạo)
+        rooms.sort(Comparator.comparing(RoomData::getCreatedAt).thenComparingInt(RoomData::getRoomId).reversed());
+        List<RoomData> result = new ArrayList<>(rooms.subList(0, Math.min(limit, rooms.size())));
+        EmbeddedUserDAO userDAO = (EmbeddedUserDAO) storage.users();
+        for (RoomData room : result) {
+            String host = userDAO.username(room.getHostUserId());
+            room.setHostUsername(host != null ? host : "Unknown");
+        }
+        return result;
+    }
+
+    @Override
+    public void updateHost(int roomId, int newHostId) throws SQLException {
+        storage.write(txn -> {
+            Room room = requireRoom(txn, roomId);
+            room.hostUserId = newHostId;
+            txn.put(Keys.of(Keys.ROOM, roomId), room.toBytes());
+            return null;
+        });
+        logger.info("Đã cập nhật host của room {} thành user {}", roomId, newHostId);
+    }
+
+    @Override
+    public void updateRoomStatus(int roomId, String status) throws SQLException {
+        long now = System.currentTimeMillis();
+        storage.write(txn -> {
+            byte[] value = txn.get(Keys.of(Keys.ROOM, roomId));
+            if (value == null) {
+                return null;
+            }
+            Room room = Room.read(value);
+            room.status = status;
+            if ("PLAYING".equals(status)) {
+                room.startedAt = now;
+            }
+            txn.put(Keys.of(Keys.ROOM, roomId), room.toBytes());
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteRoom(int roomId) throws SQLException {
+        storage.write(txn -> {
+            txn.scanPrefix(Keys.of(Keys.ROOM_PLAYER, roomId), (key, value) -> {
+                txn.delete(key);
+                return true;
+            });
+            txn.delete(Keys.of(Keys.ROOM, roomId));
+            return null;
+        });
+        logger.info("Đã xóa room: {}", roomId);
+    }
+
+    private static Room requireRoom(Txn txn, int roomId) throws SQLException {
+        byte[] value = txn.get(Keys.of(Keys.ROOM, roomId));
+        if (value == null) {
+            throw new SQLException("Room không tồn tại");
+        }
+        return Room.read(value);
+    }
+
+    private static byte[] position(int position) {
+        return ByteBuffer.allocate(4).putInt(position).array();
+    }
+
+    /**
+     * Một dòng game_rooms.
+     */
+    private static final class Room {
+        String name;
+        String gameType;
+        int hostUserId;
+        int maxPlayers;
+        int currentPlayers;
+        String status;
+        long createdAt;
+        long startedAt;
+
+        static Room read(byte[] value) {
+            Row.Reader row = Row.read(value);
+            Room room = new Room();
+            room.name = row.getString();
+            room.gameType = row.getString();
+            room.hostUserId = row.getInt();
+            room.maxPlayers = row.getInt();
+            room.currentPlayers = row.getInt();
+            room.status = row.getString();
+            room.createdAt = row.getLong();
+            room.startedAt = row.getLong();
+            return room;
+        }
+
+        byte[] toBytes() {
+            return new Row().putString(name).putString(gameType).putInt(hostUserId).putInt(maxPlayers)
+                    .putInt(currentPlayers).putString(status).putLong(createdAt).putLong(startedAt).toBytes();
+        }
+
+        RoomData toData(int roomId) {
+            RoomData data = new RoomData();
+            data.setRoomId(roomId);
+            data.setRoomName(name);
+            data.setGameType(gameType);
+            data.setHostUserId(hostUserId);
+            data.setMaxPlayers(maxPlayers);
+            data.setCurrentPlayers(currentPlayers);
+            data.setStatus(status);
+            data.setCreatedAt(EmbeddedUserDAO.toLocal(createdAt));
+            return data;
+        }
+    }
+}
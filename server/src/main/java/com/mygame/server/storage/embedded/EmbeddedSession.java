@@ -0,0 +1,73 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.storage.StorageSession;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Session của {@link EmbeddedStorage}. Đọc thấy dữ liệu đã commit; các ghi được giữ lại và chạy
+ * cùng nhau trong một {@link EmbeddedStorage#write} lúc commit, nên read-modify-write (cộng bộ
+ * đếm, GREATEST progress) không bị ghi đè bởi thread khác.
+ */
+final class EmbeddedSession implements StorageSession {
+    private final EmbeddedStorage storage;
+    private final List<EmbeddedStorage.Op<?>> pending = new ArrayList<>();
+    private boolean closed;
+
+    EmbeddedSession(EmbeddedStorage storage) {
+        this.storage = storage;
+    }
+
+    static EmbeddedSession of(StorageSession session) throws SQLException {
+        if (!(session instanceof EmbeddedSession)) {
+            throw new IllegalArgumentException("Session không thuộc embedded storage: " + session);
+        }
+        EmbeddedSession embedded = (EmbeddedSession) session;
+        if (embedded.closed) {
+            throw new SQLException("Session đã đóng");
+        }
+        return embedded;
+    }
+
+    void defer(EmbeddedStorage.Op<?> op) {
+        pending.add(op);
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        if (closed) {
+            throw new SQLException("Session đã đóng");
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            storage.write(txn -> {
+                for (EmbeddedStorage.Op<?> op : pending) {
+                    op.apply(txn);
+                }
+                return null;
+            });
+        } finally {
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void rollback() {
+        pending.clear();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        pending.clear();
+        closed = true;
+    }
+}
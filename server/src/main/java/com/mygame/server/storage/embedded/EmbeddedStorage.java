@@ -0,0 +1,232 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.database.DailyRewardDAO;
+import com.mygame.server.database.LeaderboardDAO;
+import com.mygame.server.database.MatchHistoryDAO;
+import com.mygame.server.database.QuestDAO;
+import com.mygame.server.database.RoomDAO;
+import com.mygame.server.database.UserDAO;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.server.storage.Storage;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.storage.kv.KvIterator;
+import com.mygame.server.storage.kv.KvStore;
+import com.mygame.server.wallet.WalletStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Storage nhúng trên {@link KvStore}: không cần PostgreSQL, dữ liệu nằm trong một thư mục.
+ *
+ * Mỗi bảng là một khoảng key ({@link Keys}); index phụ (username, leaderboard, lịch sử theo user)
+ * được ghi cùng batch với dòng chính nên luôn khớp. Đọc không khoá. Mọi ghi đi qua
+ * {@link #write}: chạy dưới một lock (nên read-modify-write là tuần tự), append vào WAL, rồi fsync
+ * ngoài lock để các thread ghi cùng lúc dùng chung một lần fsync.
+ *
+ * Cấu hình: {@code storage.memtableMB} (mặc định 16), {@code storage.compactionTrigger}
+ * (mặc định 4), {@code storage.noSync} (bỏ fsync, chỉ dùng cho benchmark).
+ */
+public class EmbeddedStorage implements Storage {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStorage.class);
+
+    private final Path dir;
+    private final Object writeLock = new Object();
+    private final UserDAO userDAO;
+    private final RoomDAO roomDAO;
+    private final QuestDAO questDAO;
+    private final MatchHistoryDAO matchHistoryDAO;
+    private final LeaderboardDAO leaderboardDAO;
+    private final DailyRewardDAO dailyRewardDAO;
+    private volatile KvStore store;
+
+    public EmbeddedStorage(Path dir) {
+        this.dir = dir;
+        this.userDAO = new EmbeddedUserDAO(this);
+        this.roomDAO = new EmbeddedRoomDAO(this);
+        this.questDAO = new EmbeddedQuestDAO(this);
+        this.matchHistoryDAO = new EmbeddedMatchHistoryDAO(this);
+        this.leaderboardDAO = new EmbeddedLeaderboardDAO(this, userDAO);
+        this.dailyRewardDAO = new EmbeddedDailyRewardDAO(this);
+    }
+
+    @Override
+    public String name() {
+        return "embedded";
+    }
+
+    @Override
+    public synchronized void open() throws SQLException {
+        if (store != null) {
+            return;
+        }
+        long memtableBytes = Integer.getInteger("storage.memtableMB", 16) * 1024L * 1024L;
+        int compactionTrigger = Integer.getInteger("storage.compactionTrigger", 4);
+        boolean sync = !Boolean.getBoolean("storage.noSync");
+        try {
+            store = KvStore.open(dir, memtableBytes, compactionTrigger, sync);
+        } catch (IOException e) {
+            throw new SQLException("Không thể mở embedded storage " + dir + ": " + e.getMessage(), e);
+        }
+        ((EmbeddedQuestDAO) questDAO).seedDefaults();
+
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        KvStore opened = store;
+        metrics.gauge("storage.tables", opened::tableCount);
+        metrics.gauge("storage.memtable_bytes", opened::memtableBytes);
+        metrics.gauge("storage.disk_bytes", opened::diskBytes);
+        logger.info("Embedded storage đã mở tại {} (memtable {} MB, fsync: {})",
+                dir.toAbsolutePath(), memtableBytes / (1024 * 1024), sync);
+    }
+
+    @Override
+    public StorageSession openSession() throws SQLException {
+        requireOpen();
+        return new EmbeddedSession(this);
+    }
+
+    @Override
+    public UserDAO users() {
+        return userDAO;
+    }
+
+    @Override
+    public RoomDAO rooms() {
+        return roomDAO;
+    }
+
+    @Override
+    public QuestDAO quests() {
+        return questDAO;
+    }
+
+    @Override
+    public MatchHistoryDAO matchHistory() {
+        return matchHistoryDAO;
+    }
+
+    @Override
+    public LeaderboardDAO leaderboard() {
+        return leaderboardDAO;
+    }
+
+    @Override
+    public DailyRewardDAO dailyRewards() {
+        return dailyRewardDAO;
+    }
+
+    @Override
+    public WalletStore walletStore(String walletId) {
+        return new EmbeddedWalletStore(this, walletId);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return store != null;
+    }
+
+    /**
+     * Đọc không khoá, ghi tự tuần tự hoá bằng write lock.
+     */
+    @Override
+    public int ioParallelism() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            logger.error("Lỗi khi đóng embedded storage: {}", e.getMessage(), e);
+        }
+        store = null;
+    }
+
+    byte[] get(byte[] key) throws SQLException {
+        try {
+            return requireOpen().get(key);
+        } catch (IOException e) {
+            throw new SQLException("Lỗi đọc embedded storage: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Duyệt [from, to) theo thứ tự key tới khi visitor trả về false.
+     */
+    void scan(byte[] from, byte[] to, Visitor visitor) throws SQLException {
+        try {
+            KvIterator it = requireOpen().scan(from, to);
+            while (it.next()) {
+                if (!visitor.visit(it.key(), it.value())) {
+                    return;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw new SQLException("Lỗi đọc embedded storage: " + e.getMessage(), e.getCause());
+        }
+    }
+
+    void scanPrefix(byte[] prefix, Visitor visitor) throws SQLException {
+        scan(prefix, KvStore.prefixEnd(prefix), visitor);
+    }
+
+    /**
+     * Chạy op trên một {@link Txn} dưới write lock rồi ghi mọi thay đổi của nó thành một batch
+     * nguyên tử. Op ném lỗi thì không có gì được ghi. Trả về sau khi batch đã fsync.
+     */
+    <T> T write(Op<T> op) throws SQLException {
+        KvStore current = requireOpen();
+        T result;
+        long lsn;
+        try {
+            synchronized (writeLock) {
+                Txn txn = new Txn(this);
+                result = op.apply(txn);
+                if (txn.isEmpty()) {
+                    return result;
+                }
+                lsn = current.append(txn.toBatch());
+            }
+            current.sync(lsn);
+        } catch (IOException e) {
+            throw new SQLException("Lỗi ghi embedded storage: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Id tiếp theo của sequence {@code name} (bắt đầu từ 1), như SERIAL.
+     */
+    static int nextId(Txn txn, String name) throws SQLException {
+        byte[] key = Keys.of(Keys.META, name);
+        byte[] value = txn.get(key);
+        int next = (value != null ? ByteBuffer.wrap(value).getInt() : 0) + 1;
+        txn.put(key, ByteBuffer.allocate(4).putInt(next).array());
+        return next;
+    }
+
+    private KvStore requireOpen() throws SQLException {
+        KvStore current = store;
+        if (current == null) {
+            throw new SQLException("Embedded storage chưa mở");
+        }
+        return current;
+    }
+
+    interface Op<T> {
+        T apply(Txn txn) throws SQLException;
+    }
+
+    interface Visitor {
+        boolean visit(byte[] key, byte[] value) throws SQLException;
+    }
+}
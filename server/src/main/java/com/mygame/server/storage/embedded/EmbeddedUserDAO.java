@@ -0,0 +1,231 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.database.UserDAO;
+import com.mygame.server.stats.PlayerCounterService;
+import com.mygame.server.storage.StorageSession;
+import com.mygame.server.wallet.WalletService;
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link UserDAO} trên embedded storage. Credits, bộ đếm và last_login nằm ở key riêng để
+ * wallet flush, counter flush và login không ghi đè lên nhau.
+ */
+class EmbeddedUserDAO implements UserDAO {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedUserDAO.class);
+    private static final long INITIAL_CREDITS = 50000;
+
+    private final EmbeddedStorage storage;
+
+    EmbeddedUserDAO(EmbeddedStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public UserProfile register(String username, String password) throws SQLException {
+        // Hash ngoài write lock (BCrypt chậm có chủ đích)
+        String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt());
+        long now = System.currentTimeMillis();
+
+        int userId = storage.write(txn -> {
+            byte[] usernameKey = Keys.of(Keys.USERNAME, username);
+            if (txn.exists(usernameKey)) {
+                throw new SQLException("Account already exists");
+            }
+            int id = EmbeddedStorage.nextId(txn, "user");
+            txn.put(Keys.of(Keys.USER, id), new Row().putString(username).putString(passwordHash).putLong(now).toBytes());
+            txn.put(usernameKey, ByteBuffer.allocate(4).putInt(id).array());
+            txn.put(Keys.of(Keys.CREDITS, id), longValue(INITIAL_CREDITS));
+            txn.put(Keys.leaderboard(INITIAL_CREDITS, id), new byte[0]);
+            return id;
+        });
+        logger.info("Đã đăng ký user mới: {} (ID: {})", username, userId);
+        return getUserProfile(userId);
+    }
+
+    @Override
+    public UserProfile login(String username, String password) throws SQLException {
+        byte[] id = storage.get(Keys.of(Keys.USERNAME, username));
+        byte[] user = id != null ? storage.get(Keys.of(Keys.USER, ByteBuffer.wrap(id).getInt())) : null;
+        if (user == null) {
+            logger.warn("User not found: {}", username);
+            throw new SQLException("Incorrect username or password");
+        }
+        Row.Reader row = Row.read(user);
+        row.getString();
+        String storedHash = row.getString();
+        if (!BCrypt.checkpw(password, storedHash)) {
+            logger.warn("Incorrect password for user: {}", username);
+            throw new SQLException("Incorrect username or password");
+        }
+        int userId = ByteBuffer.wrap(id).getInt();
+        long now = System.currentTimeMillis();
+        storage.write(txn -> {
+            txn.put(Keys.of(Keys.LAST_LOGIN, userId), longValue(now));
+            return null;
+        });
+        logger.info("User đăng nhập thành công: {}", username);
+        return getUserProfile(userId);
+    }
+
+    @Override
+    public UserProfile getUserProfile(int userId) throws SQLException {
+        byte[] user = storage.get(Keys.of(Keys.USER, userId));
+        if (user == null) {
+            throw new SQLException("User not found");
+        }
+        Row.Reader row = Row.read(user);
+        UserProfile profile = new UserProfile();
+        profile.setId(userId);
+        profile.setUsername(row.getString());
+        row.getString();
+        profile.setCreatedAt(toLocal(row.getLong()));
+
+        // Wallet giữ số dư mới nhất (storage có thể chưa flush kịp)
+        long credits = WalletService.getInstance().getBalanceOrDefault(userId, storedCredits(userId));
+        profile.setCredits(credits);
+        profile.setRank(calculateRank(credits));
+
+        // Bộ đếm đã lưu cộng delta chưa flush
+        Counters counters = Counters.read(storage.get(Keys.of(Keys.COUNTERS, userId)));
+        PlayerCounterService.Delta pending = PlayerCounterService.getInstance().pending(userId);
+        profile.setTotalWins(counters.wins + pending.getWins());
+        profile.setTotalLosses(counters.losses + pending.getLosses());
+        profile.setHandsPlayed(counters.hands + pending.getHands());
+        profile.setBiggestPot(Math.max(counters.biggestPot, pending.getBiggestPot()));
+
+        byte[] lastLogin = storage.get(Keys.of(Keys.LAST_LOGIN, userId));
+        if (lastLogin != null) {
+            profile.setLastLogin(toLocal(ByteBuffer.wrap(lastLogin).getLong()));
+        }
+        return profile;
+    }
+
+    @Override
+    public int addCounters(StorageSession session, Integer[] userIds, Integer[] wins, Integer[] losses,
+                           Integer[] hands, Long[] biggestPots) throws SQLException {
+        int existing = 0;
+        for (Integer userId : userIds) {
+            if (storage.get(Keys.of(Keys.USER, userId)) != null) {
+                existing++;
+            }
+        }
+        EmbeddedSession.of(session).defer(txn -> {
+            for (int i = 0; i < userIds.length; i++) {
+                if (!txn.exists(Keys.of(Keys.USER, userIds[i]))) {
+                    continue;
+                }
+                byte[] key = Keys.of(Keys.COUNTERS, userIds[i]);
+                Counters counters = Counters.read(txn.get(key));
+                counters.wins += wins[i];
+                counters.losses += losses[i];
+                counters.hands += hands[i];
+                counters.biggestPot = Math.max(counters.biggestPot, biggestPots[i]);
+                txn.put(key, counters.toBytes());
+            }
+            return null;
+        });
+        return existing;
+    }
+
+    /**
+     * User chưa có bộ đếm (hands_played = 0) được tính từ lịch sử trận của chính user đó.
+     */
+    @Override
+    public int backfillCounters(StorageSession session) throws SQLException {
+        List<int[]> rows = new ArrayList<>();
+        storage.scanPrefix(Keys.table(Keys.USER), (key, value) -> {
+            int userId = Keys.intAt(key, 1);
+            if (Counters.read(storage.get(Keys.of(Keys.COUNTERS, userId))).hands > 0) {
+                return true;
+            }
+            int[] counts = {userId, 0, 0, 0};
+            storage.scanPrefix(Keys.of(Keys.MATCH_BY_USER, userId), (indexKey, ignored) -> {
+                byte[] match = storage.get(Keys.of(Keys.MATCH, ~Keys.intAt(indexKey, 13)));
+                if (match != null) {
+                    String result = EmbeddedMatchHistoryDAO.readRecord(match).getResult();
+                    counts[1] += "WIN".equals(result) ? 1 : 0;
+                    counts[2] += "LOSE".equals(result) ? 1 : 0;
+                    counts[3]++;
+                }
+                return true;
+            });
+            if (counts[3] > 0) {
+                rows.add(counts);
+            }
+            return true;
+        });
+        EmbeddedSession.of(session).defer(txn -> {
+            for (int[] counts : rows) {
+                byte[] key = Keys.of(Keys.COUNTERS, counts[0]);
+                Counters counters = Counters.read(txn.get(key));
+                if (counters.hands > 0) {
+                    continue;
+                }
+                counters.wins = counts[1];
+                counters.losses = counts[2];
+                counters.hands = counts[3];
+                txn.put(key, counters.toBytes());
+            }
+            return null;
+        });
+        return rows.size();
+    }
+
+    long storedCredits(int userId) throws SQLException {
+        byte[] value = storage.get(Keys.of(Keys.CREDITS, userId));
+        return value != null ? ByteBuffer.wrap(value).getLong() : 0L;
+    }
+
+    String username(int userId) throws SQLException {
+        byte[] user = storage.get(Keys.of(Keys.USER, userId));
+        return user != null ? Row.read(user).getString() : null;
+    }
+
+    static byte[] longValue(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    static LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * wins, losses, hands_played, biggest_pot của một user.
+     */
+    static final class Counters {
+        int wins;
+        int losses;
+        int hands;
+        long biggestPot;
+
+        static Counters read(byte[] value) {
+            Counters counters = new Counters();
+            if (value != null) {
+                Row.Reader row = Row.read(value);
+                counters.wins = row.getInt();
+                counters.losses = row.getInt();
+                counters.hands = row.getInt();
+                counters.biggestPot = row.getLong();
+            }
+            return counters;
+        }
+
+        byte[] toBytes() {
+            return new Row().putInt(wins).putInt(losses).putInt(hands).putLong(biggestPot).toBytes();
+        }
+    }
+}
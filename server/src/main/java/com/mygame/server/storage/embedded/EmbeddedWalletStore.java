@@ -0,0 +1,116 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.wallet.WalletStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WalletStore} trên embedded storage. Mỗi flush là một write: credits, index leaderboard,
+ * idempotency key và checkpoint cùng vào một batch của WAL.
+ */
+final class EmbeddedWalletStore implements WalletStore {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedWalletStore.class);
+
+    private final EmbeddedStorage storage;
+    private final String walletId;
+
+    EmbeddedWalletStore(EmbeddedStorage storage, String walletId) {
+        this.storage = storage;
+        this.walletId = walletId;
+    }
+
+    @Override
+    public void open() throws SQLException {
+        if (!storage.isConnected()) {
+            throw new SQLException("Embedded storage chưa mở");
+        }
+    }
+
+    @Override
+    public long loadCheckpoint() throws SQLException {
+        byte[] value = storage.get(Keys.of(Keys.WALLET_STATE, walletId));
+        return value != null ? ByteBuffer.wrap(value).getLong() : 0L;
+    }
+
+    @Override
+    public List<String> loadRecentKeys(int limit, int retentionDays) throws SQLException {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        List<byte[]> expired = new ArrayList<>();
+        ArrayDeque<String> keys = new ArrayDeque<>();
+        // Key sắp theo seq tăng dần: giữ lại limit key cuối cùng
+        storage.scanPrefix(Keys.walletOps(walletId), (key, value) -> {
+            Row.Reader row = Row.read(value);
+            String opKey = row.getString();
+            if (row.getLong() < cutoff) {
+                expired.add(key);
+                return true;
+            }
+            keys.addLast(opKey);
+            if (keys.size() > limit) {
+                keys.removeFirst();
+            }
+            return true;
+        });
+
+        if (!expired.isEmpty()) {
+            storage.write(txn -> {
+                for (byte[] key : expired) {
+                    txn.delete(key);
+                }
+                return null;
+            });
+            logger.info("Đã xoá {} idempotency key cũ hơn {} ngày", expired.size(), retentionDays);
+        }
+        return new ArrayList<>(keys);
+    }
+
+    @Override
+    public long loadBalance(int userId) throws SQLException {
+        byte[] value = storage.get(Keys.of(Keys.CREDITS, userId));
+        if (value == null) {
+            throw new SQLException("User not found");
+        }
+        return ByteBuffer.wrap(value).getLong();
+    }
+
+    @Override
+    public void flush(Map<Integer, Long> deltas, List<String> keys, List<Long> keySeqs, long lastSeq) throws SQLException {
+        long now = System.currentTimeMillis();
+        storage.write(txn -> {
+            for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                int userId = entry.getKey();
+                byte[] creditsKey = Keys.of(Keys.CREDITS, userId);
+                byte[] value = txn.get(creditsKey);
+                if (value == null) {
+                    continue; // User không tồn tại: giống UPDATE không khớp dòng nào
+                }
+                long credits = ByteBuffer.wrap(value).getLong();
+                long updated = credits + entry.getValue();
+                txn.put(creditsKey, EmbeddedUserDAO.longValue(updated));
+                txn.delete(Keys.leaderboard(credits, userId));
+                txn.put(Keys.leaderboard(updated, userId), new byte[0]);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                txn.put(Keys.walletOp(walletId, keySeqs.get(i)), new Row().putString(keys.get(i)).putLong(now).toBytes());
+            }
+            txn.put(Keys.of(Keys.WALLET_STATE, walletId), EmbeddedUserDAO.longValue(lastSeq));
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        // Store thuộc về EmbeddedStorage, đóng cùng storage
+    }
+}
@@ -0,0 +1,87 @@
+package com.mygame.server.storage.embedded;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout key của {@link EmbeddedStorage}: byte đầu là bảng, sau đó các cột của khoá chính dạng
+ * big-endian để thứ tự byte trùng thứ tự số (id không âm). Cột sắp giảm dần được lưu dạng
+ * bitwise NOT.
+ */
+final class Keys {
+    static final byte USER = 1;              // [userId] -> username, password hash, created_at
+    static final byte USERNAME = 2;          // [username UTF-8] -> userId
+    static final byte LEADERBOARD = 3;       // [~credits][~userId] -> (trống)
+    static final byte ROOM = 4;              // [roomId] -> room
+    static final byte ROOM_PLAYER = 5;       // [roomId][userId] -> position
+    static final byte QUEST_CONFIG = 6;      // [questId] -> quest
+    static final byte QUEST_PROGRESS = 7;    // [epochDay][userId][questId] -> progress, claimed
+    static final byte MATCH = 8;             // [matchId] -> match
+    static final byte META = 9;              // [tên sequence] -> giá trị cuối
+    static final byte WALLET_STATE = 10;     // [walletId] -> last_seq
+    static final byte WALLET_OP = 11;        // [len][walletId][seq] -> op key, created_at
+    static final byte CREDITS = 12;          // [userId] -> credits đã flush từ wallet
+    static final byte COUNTERS = 13;         // [userId] -> wins, losses, hands, biggest pot
+    static final byte LAST_LOGIN = 14;       // [userId] -> epoch millis
+    static final byte LAST_DAILY_REWARD = 15; // [userId] -> epoch millis
+    static final byte MATCH_BY_USER = 16;    // [userId][~micros][~matchId] -> (trống)
+
+    private Keys() {
+    }
+
+    static byte[] table(byte table) {
+        return new byte[]{table};
+    }
+
+    static byte[] of(byte table, int a) {
+        return ByteBuffer.allocate(5).put(table).putInt(a).array();
+    }
+
+    static byte[] of(byte table, int a, int b) {
+        return ByteBuffer.allocate(9).put(table).putInt(a).putInt(b).array();
+    }
+
+    static byte[] of(byte table, int a, int b, int c) {
+        return ByteBuffer.allocate(13).put(table).putInt(a).putInt(b).putInt(c).array();
+    }
+
+    static byte[] of(byte table, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + bytes.length).put(table).put(bytes).array();
+    }
+
+    static byte[] leaderboard(long credits, int userId) {
+        return ByteBuffer.allocate(13).put(LEADERBOARD).putLong(~credits).putInt(~userId).array();
+    }
+
+    static byte[] matchByUser(int userId, long micros, int matchId) {
+        return ByteBuffer.allocate(17).put(MATCH_BY_USER).putInt(userId).putLong(~micros).putInt(~matchId).array();
+    }
+
+    static byte[] walletOps(String walletId) {
+        byte[] bytes = walletId.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + bytes.length).put(WALLET_OP).put((byte) bytes.length).put(bytes).array();
+    }
+
+    static byte[] walletOp(String walletId, long seq) {
+        byte[] prefix = walletOps(walletId);
+        return ByteBuffer.allocate(prefix.length + 8).put(prefix).putLong(seq).array();
+    }
+
+    /**
+     * Key nhỏ nhất lớn hơn {@code key}: dùng để bắt đầu scan ngay sau một cursor.
+     */
+    static byte[] after(byte[] key) {
+        byte[] next = new byte[key.length + 1];
+        System.arraycopy(key, 0, next, 0, key.length);
+        return next;
+    }
+
+    static int intAt(byte[] key, int offset) {
+        return ByteBuffer.wrap(key, offset, 4).getInt();
+    }
+
+    static long longAt(byte[] key, int offset) {
+        return ByteBuffer.wrap(key, offset, 8).getLong();
+    }
+}
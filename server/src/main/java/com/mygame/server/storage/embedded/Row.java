@@ -0,0 +1,91 @@
+package com.mygame.server.storage.embedded;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Mã hoá value của {@link EmbeddedStorage}: các cột nối tiếp nhau theo thứ tự cố định, chuỗi có
+ * độ dài int phía trước (-1 = null). Cột mới chỉ được thêm vào cuối; {@link Reader} trả giá trị
+ * mặc định khi đọc quá cuối value cũ.
+ */
+final class Row {
+    private byte[] buffer = new byte[64];
+    private int size;
+
+    Row putInt(int value) {
+        ensure(4);
+        ByteBuffer.wrap(buffer, size, 4).putInt(value);
+        size += 4;
+        return this;
+    }
+
+    Row putLong(long value) {
+        ensure(8);
+        ByteBuffer.wrap(buffer, size, 8).putLong(value);
+        size += 8;
+        return this;
+    }
+
+    Row putBoolean(boolean value) {
+        ensure(1);
+        buffer[size++] = (byte) (value ? 1 : 0);
+        return this;
+    }
+
+    Row putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+        return this;
+    }
+
+    byte[] toBytes() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensure(int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+
+    static Reader read(byte[] value) {
+        return new Reader(value);
+    }
+
+    static final class Reader {
+        private final ByteBuffer buffer;
+
+        private Reader(byte[] value) {
+            this.buffer = ByteBuffer.wrap(value);
+        }
+
+        int getInt() {
+            return buffer.remaining() >= 4 ? buffer.getInt() : 0;
+        }
+
+        long getLong() {
+            return buffer.remaining() >= 8 ? buffer.getLong() : 0L;
+        }
+
+        boolean getBoolean() {
+            return buffer.hasRemaining() && buffer.get() != 0;
+        }
+
+        String getString() {
+            int length = getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return null;
+            }
+            String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+    }
+}
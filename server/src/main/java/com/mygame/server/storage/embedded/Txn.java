@@ -0,0 +1,88 @@
+package com.mygame.server.storage.embedded;
+
+import com.mygame.server.storage.kv.KvStore;
+import com.mygame.server.storage.kv.WriteBatch;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Các ghi của một thao tác {@link EmbeddedStorage#write}, chưa vào store. Đọc qua txn thấy cả
+ * ghi của chính nó. Chỉ dùng bên trong write lock của storage.
+ */
+final class Txn {
+    // Đánh dấu key đã xoá trong txn; so sánh theo identity
+    private static final byte[] DELETED = new byte[0];
+
+    private final EmbeddedStorage storage;
+    private final TreeMap<byte[], byte[]> writes = new TreeMap<>(Arrays::compareUnsigned);
+
+    Txn(EmbeddedStorage storage) {
+        this.storage = storage;
+    }
+
+    byte[] get(byte[] key) throws SQLException {
+        byte[] value = writes.get(key);
+        if (value != null) {
+            return value == DELETED ? null : value;
+        }
+        return storage.get(key);
+    }
+
+    boolean exists(byte[] key) throws SQLException {
+        return get(key) != null;
+    }
+
+    void put(byte[] key, byte[] value) {
+        writes.put(key, value);
+    }
+
+    void delete(byte[] key) {
+        writes.put(key, DELETED);
+    }
+
+    /**
+     * Duyệt các key bắt đầu bằng {@code prefix}, gồm cả ghi của txn. Nạp cả khoảng vào bộ nhớ nên
+     * chỉ dùng cho khoảng nhỏ (ví dụ players của một room).
+     */
+    void scanPrefix(byte[] prefix, EmbeddedStorage.Visitor visitor) throws SQLException {
+        TreeMap<byte[], byte[]> merged = new TreeMap<>(Arrays::compareUnsigned);
+        storage.scan(prefix, KvStore.prefixEnd(prefix), (key, value) -> {
+            merged.put(key, value);
+            return true;
+        });
+        byte[] end = KvStore.prefixEnd(prefix);
+        NavigableMap<byte[], byte[]> own = end != null ? writes.subMap(prefix, true, end, false) : writes.tailMap(prefix, true);
+        for (Map.Entry<byte[], byte[]> entry : own.entrySet()) {
+            if (entry.getValue() == DELETED) {
+                merged.remove(entry.getKey());
+            } else {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<byte[], byte[]> entry : merged.entrySet()) {
+            if (!visitor.visit(entry.getKey(), entry.getValue())) {
+                return;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    WriteBatch toBatch() {
+        WriteBatch batch = new WriteBatch();
+        for (Map.Entry<byte[], byte[]> entry : writes.entrySet()) {
+            if (entry.getValue() == DELETED) {
+                batch.delete(entry.getKey());
+            } else {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return batch;
+    }
+}
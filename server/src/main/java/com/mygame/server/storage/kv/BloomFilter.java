@@ -0,0 +1,89 @@
+package com.mygame.server.storage.kv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter của một SSTable (10 bit mỗi key, 7 hàm hash, tỉ lệ dương tính giả ~1%), để
+ * {@link KvStore#get} bỏ qua các SSTable chắc chắn không chứa key mà không phải đọc block.
+ */
+final class BloomFilter {
+    static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final int bitCount;
+
+    private BloomFilter(long[] bits) {
+        this.bits = bits;
+        this.bitCount = bits.length * 64;
+    }
+
+    /**
+     * Dựng filter từ hash của các key ({@link #hash}).
+     */
+    static BloomFilter build(long[] hashes, int count) {
+        int bitCount = Math.max(64, count * BITS_PER_KEY);
+        BloomFilter filter = new BloomFilter(new long[(bitCount + 63) / 64]);
+        for (int i = 0; i < count; i++) {
+            filter.add(hashes[i]);
+        }
+        return filter;
+    }
+
+    private void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash 64-bit của key (FNV-1a rồi trộn bit kiểu murmur finalizer).
+     */
+    static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    int serializedBytes() {
+        return 4 + bits.length * 8;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(bits.length);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+    }
+
+    static BloomFilter readFrom(ByteBuffer buffer) {
+        long[] bits = new long[buffer.getInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new BloomFilter(bits);
+    }
+}
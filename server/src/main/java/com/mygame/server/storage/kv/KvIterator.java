@@ -0,0 +1,15 @@
+package com.mygame.server.storage.kv;
+
+/**
+ * Duyệt các cặp key/value theo thứ tự key tăng dần (so sánh byte không dấu).
+ *
+ * Gọi {@link #next()} trước khi đọc dòng đầu tiên. Iterator của {@link KvStore} không bao giờ
+ * trả về tombstone; nội bộ engine thì {@link #value()} = null nghĩa là key đã bị xoá.
+ */
+public interface KvIterator {
+    boolean next();
+
+    byte[] key();
+
+    byte[] value();
+}
@@ -0,0 +1,525 @@
+package com.mygame.server.storage.kv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key-value store nhúng kiểu log-structured (LSM) trong một thư mục.
+ *
+ * Ghi: mỗi {@link WriteBatch} là một record trong WAL rồi vào memtable (skip list). Khi memtable
+ * vượt {@code memtableBytes} nó được đóng băng và một thread nền ghi thành {@link SSTable} bất
+ * biến, sau đó WAL tương ứng bị xoá. Khi có từ {@code compactionTrigger} SSTable, các file mới
+ * nhất được gộp (size-tiered: gộp thêm file cũ hơn nếu nó không lớn hơn nhiều phần đang gộp), và
+ * tombstone được bỏ khi gộp tới file cũ nhất.
+ *
+ * Đọc: memtable, memtable đang flush, rồi các SSTable từ mới tới cũ; bloom filter loại các file
+ * không chứa key. Đọc không cần lock: trạng thái hiện tại là một {@link Version} bất biến.
+ *
+ * Bền vững: {@link #append} chỉ ghi vào WAL (dưới write lock), {@link #sync} fsync tới một vị trí
+ * và gộp các writer đang chờ thành một lần fsync. MANIFEST (danh sách SSTable) được ghi ra file tạm
+ * rồi rename nguyên tử; khi mở lại, SSTable không có trong MANIFEST bị xoá và WAL còn lại được
+ * replay.
+ */
+public final class KvStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(KvStore.class);
+
+    private static final String MANIFEST = "MANIFEST";
+    // Reader của SSTable đã bị thay thế được đóng sau khoảng này để scan đang chạy đọc xong
+    private static final long RETIRE_GRACE_MS = 60_000;
+    private static final long RETRY_MS = 1_000;
+
+    private final Path dir;
+    private final long memtableBytes;
+    private final int compactionTrigger;
+    private final boolean syncWrites;
+
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final Object manifestLock = new Object();
+    private final ExecutorService flusher;
+    private final ScheduledThreadPoolExecutor compactor;
+    // Reader đã bị compaction thay thế, chờ hết RETIRE_GRACE_MS mới đóng
+    private final Set<SSTable.Reader> retired = ConcurrentHashMap.newKeySet();
+
+    private volatile Version version;
+    private volatile WriteAheadLog wal;
+    private long nextFileNumber;
+    private volatile long appendedLsn;
+    private long syncedLsn;
+    private boolean compacting;
+    private volatile boolean closed;
+
+    private KvStore(Path dir, long memtableBytes, int compactionTrigger, boolean syncWrites) {
+        this.dir = dir;
+        this.memtableBytes = memtableBytes;
+        this.compactionTrigger = compactionTrigger;
+        this.syncWrites = syncWrites;
+        this.flusher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "kv-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        this.compactor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "kv-compact");
+            t.setDaemon(true);
+            return t;
+        });
+        // close() tự đóng các reader đang chờ, không phải đợi hết RETIRE_GRACE_MS
+        compactor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Mở (hoặc tạo) store trong {@code dir}. {@code syncWrites} = false bỏ fsync khi commit (chỉ
+     * dùng cho benchmark/test: crash có thể mất các ghi gần nhất nhưng không làm hỏng dữ liệu).
+     */
+    public static KvStore open(Path dir, long memtableBytes, int compactionTrigger, boolean syncWrites)
+            throws IOException {
+        Files.createDirectories(dir);
+        KvStore store = new KvStore(dir, memtableBytes, Math.max(2, compactionTrigger), syncWrites);
+        try {
+            store.recover();
+        } catch (IOException | RuntimeException e) {
+            store.flusher.shutdownNow();
+            store.compactor.shutdownNow();
+            throw e;
+        }
+        return store;
+    }
+
+    private void recover() throws IOException {
+        List<Long> live = new ArrayList<>();
+        long next = 1;
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 2 && parts[0].equals("next")) {
+                    next = Long.parseLong(parts[1]);
+                } else if (parts.length == 2 && parts[0].equals("table")) {
+                    live.add(Long.parseLong(parts[1]));
+                }
+            }
+        }
+
+        List<SSTable.Reader> tables = new ArrayList<>();
+        TreeMap<Long, Path> wals = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    long number = Long.parseLong(name.substring(4, name.length() - 4));
+                    wals.put(number, file);
+                    next = Math.max(next, number + 1);
+                } else if (name.startsWith("sst-") && name.endsWith(".sst")) {
+                    long number = Long.parseLong(name.substring(4, name.length() - 4));
+                    next = Math.max(next, number + 1);
+                    if (!live.contains(number)) {
+                        // Output của flush/compaction chưa kịp vào MANIFEST, hoặc input đã bị thay thế
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+        for (long number : live) {
+            tables.add(SSTable.Reader.open(dir.resolve(SSTable.fileName(number)), number));
+        }
+        nextFileNumber = next;
+
+        // Replay WAL vào một memtable rồi ghi luôn thành SSTable để bắt đầu với WAL trống
+        Memtable recovered = new Memtable(0);
+        int batches = 0;
+        for (Path file : wals.values()) {
+            batches += WriteAheadLog.replay(file, recovered::apply);
+        }
+        if (!recovered.isEmpty()) {
+            long number = nextFileNumber++;
+            tables.add(0, writeTable(recovered.iterator(null, null), number, false));
+            logger.info("KV store {}: replay {} batch từ {} file WAL", dir, batches, wals.size());
+        }
+        writeManifest(tables);
+        for (Path file : wals.values()) {
+            Files.delete(file);
+        }
+
+        wal = WriteAheadLog.create(dir, nextFileNumber++);
+        version = new Version(new Memtable(wal.number), null, Collections.unmodifiableList(tables));
+        logger.info("KV store {} đã mở ({} SSTable, {} entry)", dir, tables.size(), entryCount(tables));
+        scheduleCompactionIfNeeded();
+    }
+
+    public byte[] get(byte[] key) throws IOException {
+        Version current = version;
+        byte[] value = current.mem.get(key);
+        if (value == null && current.imm != null) {
+            value = current.imm.get(key);
+        }
+        if (value == null) {
+            long hash = BloomFilter.hash(key);
+            for (SSTable.Reader table : current.tables) {
+                value = table.get(key, hash);
+                if (value != null) {
+                    break;
+                }
+            }
+        }
+        return value == Memtable.TOMBSTONE ? null : value;
+    }
+
+    /**
+     * Các key trong [from, to) theo thứ tự tăng dần; {@code to} = null là tới hết. Iterator đọc trên
+     * trạng thái lúc gọi (ghi sau đó có thể thấy hoặc không), lỗi đọc ném {@link java.io.UncheckedIOException}.
+     */
+    public KvIterator scan(byte[] from, byte[] to) {
+        Version current = version;
+        List<KvIterator> sources = new ArrayList<>(current.tables.size() + 2);
+        sources.add(current.mem.iterator(from, to));
+        if (current.imm != null) {
+            sources.add(current.imm.iterator(from, to));
+        }
+        for (SSTable.Reader table : current.tables) {
+            sources.add(table.iterator(from, to));
+        }
+        return new MergingIterator(sources, true);
+    }
+
+    public void put(byte[] key, byte[] value) throws IOException {
+        write(new WriteBatch().put(key, value));
+    }
+
+    public void delete(byte[] key) throws IOException {
+        write(new WriteBatch().delete(key));
+    }
+
+    public KvIterator scanPrefix(byte[] prefix) {
+        return scan(prefix, prefixEnd(prefix));
+    }
+
+    /**
+     * Key nhỏ nhất lớn hơn mọi key bắt đầu bằng {@code prefix} (null nếu không có).
+     */
+    public static byte[] prefixEnd(byte[] prefix) {
+        byte[] end = prefix.clone();
+        for (int i = end.length - 1; i >= 0; i--) {
+            if (end[i] != (byte) 0xFF) {
+                end[i]++;
+                return Arrays.copyOf(end, i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ghi batch rồi fsync (nếu bật) trước khi trả về.
+     */
+    public void write(WriteBatch batch) throws IOException {
+        sync(append(batch));
+    }
+
+    /**
+     * Ghi batch vào WAL và memtable, chưa fsync: thấy được ngay với reader. Trả về vị trí để
+     * truyền cho {@link #sync}. Các batch được áp dụng theo đúng thứ tự gọi.
+     */
+    public long append(WriteBatch batch) throws IOException {
+        byte[] payload = batch.encode();
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IOException("KV store đã đóng");
+            }
+            Version current = version;
+            if (current.mem.bytes() >= memtableBytes) {
+                rotate();
+                current = version;
+            }
+            appendedLsn += wal.append(payload);
+            current.mem.apply(batch);
+            return appendedLsn;
+        }
+    }
+
+    /**
+     * fsync WAL tới ít nhất {@code lsn}. Writer tới trong lúc một lần force đang chạy sẽ được force
+     * ở lần kế tiếp cùng các writer khác (group commit).
+     */
+    public void sync(long lsn) throws IOException {
+        if (!syncWrites) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedLsn >= lsn) {
+                return;
+            }
+            // Rotation đổi WAL dưới syncLock (sau khi force file cũ) nên ở đây wal cố định, và mọi
+            // byte tới target nằm trong wal hiện tại hoặc đã được force
+            long target = appendedLsn;
+            wal.force();
+            syncedLsn = target;
+        }
+    }
+
+    /**
+     * Đóng băng memtable hiện tại và mở WAL mới. Gọi dưới writeLock; chờ nếu memtable trước vẫn
+     * đang flush (giới hạn bộ nhớ khi ghi nhanh hơn đĩa).
+     */
+    private void rotate() throws IOException {
+        while (version.imm != null) {
+            if (closed) {
+                throw new IOException("KV store đã đóng");
+            }
+            try {
+                writeLock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Bị ngắt khi chờ flush memtable", e);
+            }
+        }
+        WriteAheadLog next = WriteAheadLog.create(dir, nextFileNumber++);
+        synchronized (syncLock) {
+            wal.close();
+            syncedLsn = appendedLsn;
+            wal = next;
+        }
+        Version current = version;
+        version = new Version(new Memtable(next.number), current.mem, current.tables);
+        flusher.execute(this::flushImmutable);
+    }
+
+    private void flushImmutable() {
+        Memtable imm = version.imm;
+        if (imm == null) {
+            return;
+        }
+        try {
+            long number;
+            synchronized (writeLock) {
+                number = nextFileNumber++;
+            }
+            SSTable.Reader table = writeTable(imm.iterator(null, null), number, false);
+            synchronized (manifestLock) {
+                List<SSTable.Reader> tables = new ArrayList<>(version.tables.size() + 1);
+                tables.add(table);
+                tables.addAll(version.tables);
+                writeManifest(tables);
+                synchronized (writeLock) {
+                    version = new Version(version.mem, null, Collections.unmodifiableList(tables));
+                    writeLock.notifyAll();
+                }
+            }
+            Files.deleteIfExists(dir.resolve(WriteAheadLog.fileName(imm.walNumber)));
+            logger.debug("KV store {}: flush memtable {} entry -> {}", dir, imm.size(), table.file.getFileName());
+            scheduleCompactionIfNeeded();
+        } catch (IOException | RuntimeException e) {
+            // Memtable vẫn giữ dữ liệu và WAL vẫn còn; thử lại, writer chờ tới khi flush được
+            logger.error("KV store {}: lỗi khi flush memtable, thử lại sau {} ms: {}", dir, RETRY_MS, e.getMessage(), e);
+            if (!closed) {
+                compactor.schedule(() -> flusher.execute(this::flushImmutable), RETRY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        synchronized (manifestLock) {
+            if (compacting || closed || version.tables.size() < compactionTrigger) {
+                return;
+            }
+            compacting = true;
+        }
+        compactor.execute(this::compact);
+    }
+
+    /**
+     * Gộp {@code compactionTrigger} SSTable mới nhất, thêm dần file cũ hơn khi file đó không lớn
+     * hơn 2 lần tổng đang gộp, để mỗi byte chỉ bị ghi lại O(log n) lần.
+     */
+    private void compact() {
+        try {
+            List<SSTable.Reader> snapshot = version.tables;
+            int count = Math.min(compactionTrigger, snapshot.size());
+            long bytes = 0;
+            for (int i = 0; i < count; i++) {
+                bytes += snapshot.get(i).sizeBytes;
+            }
+            while (count < snapshot.size() && snapshot.get(count).sizeBytes <= 2 * bytes) {
+                bytes += snapshot.get(count++).sizeBytes;
+            }
+            List<SSTable.Reader> inputs = new ArrayList<>(snapshot.subList(0, count));
+            boolean includesOldest = count == snapshot.size();
+
+            List<KvIterator> sources = new ArrayList<>(inputs.size());
+            for (SSTable.Reader input : inputs) {
+                sources.add(input.iterator(null, null));
+            }
+            long number;
+            synchronized (writeLock) {
+                number = nextFileNumber++;
+            }
+            long start = System.nanoTime();
+            SSTable.Reader output = writeTable(new MergingIterator(sources, false), number, includesOldest);
+
+            synchronized (manifestLock) {
+                // Flush có thể đã thêm SSTable mới ở đầu danh sách trong lúc gộp
+                List<SSTable.Reader> tables = new ArrayList<>(version.tables);
+                int at = tables.indexOf(inputs.get(0));
+                tables.removeAll(inputs);
+                if (output.entries > 0) {
+                    tables.add(at, output);
+                }
+                writeManifest(tables);
+                synchronized (writeLock) {
+                    version = new Version(version.mem, version.imm, Collections.unmodifiableList(tables));
+                }
+                compacting = false;
+            }
+            if (output.entries == 0) {
+                output.close();
+                Files.deleteIfExists(output.file);
+            }
+            for (SSTable.Reader input : inputs) {
+                Files.deleteIfExists(input.file);
+            }
+            retired.addAll(inputs);
+            compactor.schedule(() -> {
+                retired.removeAll(inputs);
+                closeAll(inputs);
+            }, RETIRE_GRACE_MS, TimeUnit.MILLISECONDS);
+            logger.info("KV store {}: gộp {} SSTable ({} KB) -> {} entry trong {} ms", dir, inputs.size(),
+                    bytes / 1024, output.entries, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.error("KV store {}: lỗi khi compact, thử lại sau {} ms: {}", dir, RETRY_MS, e.getMessage(), e);
+            synchronized (manifestLock) {
+                compacting = false;
+            }
+            if (!closed) {
+                compactor.schedule(this::scheduleCompactionIfNeeded, RETRY_MS, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    private SSTable.Reader writeTable(KvIterator entries, long number, boolean dropTombstones) throws IOException {
+        Path file = dir.resolve(SSTable.fileName(number));
+        Path tmp = dir.resolve(SSTable.fileName(number) + ".tmp");
+        SSTable.write(tmp, entries, dropTombstones);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        return SSTable.Reader.open(file, number);
+    }
+
+    private void writeManifest(List<SSTable.Reader> tables) throws IOException {
+        StringBuilder content = new StringBuilder();
+        synchronized (writeLock) {
+            content.append("next ").append(nextFileNumber).append('\n');
+        }
+        for (SSTable.Reader table : tables) {
+            content.append("table ").append(table.number).append('\n');
+        }
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        Files.write(tmp, content.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public int tableCount() {
+        return version.tables.size();
+    }
+
+    public long memtableBytes() {
+        Version current = version;
+        return current.mem.bytes() + (current.imm != null ? current.imm.bytes() : 0);
+    }
+
+    public long diskBytes() {
+        long total = 0;
+        for (SSTable.Reader table : version.tables) {
+            total += table.sizeBytes;
+        }
+        return total;
+    }
+
+    private static long entryCount(List<SSTable.Reader> tables) {
+        long total = 0;
+        for (SSTable.Reader table : tables) {
+            total += table.entries;
+        }
+        return total;
+    }
+
+    private static void closeAll(List<SSTable.Reader> tables) {
+        for (SSTable.Reader table : tables) {
+            try {
+                table.close();
+            } catch (IOException e) {
+                logger.warn("Lỗi khi đóng {}: {}", table.file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dừng nhận ghi, chờ flush/compact đang chạy rồi đóng file. Memtable không cần flush: WAL đã
+     * được fsync và sẽ được replay lần mở sau.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            writeLock.notifyAll();
+        }
+        flusher.shutdown();
+        compactor.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (syncLock) {
+            wal.close();
+            syncedLsn = appendedLsn;
+        }
+        closeAll(version.tables);
+        closeAll(new ArrayList<>(retired));
+        retired.clear();
+        logger.info("KV store {} đã đóng", dir);
+    }
+
+    /**
+     * Trạng thái đọc bất biến: memtable, memtable đang flush (có thể null), SSTable từ mới tới cũ.
+     */
+    private static final class Version {
+        final Memtable mem;
+        final Memtable imm;
+        final List<SSTable.Reader> tables;
+
+        Version(Memtable mem, Memtable imm, List<SSTable.Reader> tables) {
+            this.mem = mem;
+            this.imm = imm;
+            this.tables = tables;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mygame.server.storage.kv;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phần ghi mới nhất của {@link KvStore}, sắp theo key. Delete được giữ như tombstone để che các
+ * giá trị cũ trong SSTable. Ghi chỉ xảy ra dưới write lock của store; đọc không cần lock.
+ */
+final class Memtable {
+    // Đánh dấu key đã xoá; so sánh theo identity
+    static final byte[] TOMBSTONE = new byte[0];
+    // Chi phí ước lượng của một entry trong skip list
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final ConcurrentSkipListMap<byte[], byte[]> entries = new ConcurrentSkipListMap<>(Arrays::compareUnsigned);
+    private final AtomicLong bytes = new AtomicLong();
+    // WAL chứa các ghi của memtable này, xoá được sau khi memtable đã flush thành SSTable
+    final long walNumber;
+
+    Memtable(long walNumber) {
+        this.walNumber = walNumber;
+    }
+
+    void apply(WriteBatch batch) {
+        for (int i = 0; i < batch.keys.size(); i++) {
+            byte[] key = batch.keys.get(i);
+            byte[] value = batch.values.get(i);
+            byte[] previous = entries.put(key, value != null ? value : TOMBSTONE);
+            long delta = key.length + (value != null ? value.length : 0) + ENTRY_OVERHEAD;
+            if (previous != null) {
+                delta -= key.length + previous.length + ENTRY_OVERHEAD;
+            }
+            bytes.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Giá trị trong memtable: null nếu không có key, {@link #TOMBSTONE} nếu đã xoá.
+     */
+    byte[] get(byte[] key) {
+        return entries.get(key);
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Các entry trong [from, to); to = null là tới hết. Tombstone trả về value null.
+     */
+    KvIterator iterator(byte[] from, byte[] to) {
+        NavigableMap<byte[], byte[]> range;
+        if (from == null && to == null) {
+            range = entries;
+        } else if (to == null) {
+            range = entries.tailMap(from, true);
+        } else if (from == null) {
+            range = entries.headMap(to, false);
+        } else {
+            range = entries.subMap(from, true, to, false);
+        }
+        Iterator<Map.Entry<byte[], byte[]>> it = range.entrySet().iterator();
+        return new KvIterator() {
+            private byte[] key;
+            private byte[] value;
+
+            @Override
+            public boolean next() {
+                if (!it.hasNext()) {
+                    key = null;
+                    value = null;
+                    return false;
+                }
+                Map.Entry<byte[], byte[]> entry = it.next();
+                key = entry.getKey();
+                value = entry.getValue() == TOMBSTONE ? null : entry.getValue();
+                return true;
+            }
+
+            @Override
+            public byte[] key() {
+                return key;
+            }
+
+            @Override
+            public byte[] value() {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.mygame.server.storage.kv;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Gộp nhiều iterator đã sắp thành một. Với key trùng, nguồn đứng trước trong danh sách (mới hơn)
+ * thắng; {@code hideTombstones} bỏ luôn các key mà giá trị mới nhất là tombstone.
+ */
+final class MergingIterator implements KvIterator {
+    private final PriorityQueue<Head> heads;
+    private final boolean hideTombstones;
+    private byte[] key;
+    private byte[] value;
+
+    MergingIterator(List<KvIterator> sources, boolean hideTombstones) {
+        this.hideTombstones = hideTombstones;
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int cmp = Arrays.compareUnsigned(a.source.key(), b.source.key());
+            return cmp != 0 ? cmp : Integer.compare(a.priority, b.priority);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            KvIterator source = sources.get(i);
+            if (source.next()) {
+                heads.add(new Head(source, i));
+            }
+        }
+    }
+
+    @Override
+    public boolean next() {
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            byte[] nextKey = head.source.key();
+            byte[] nextValue = head.source.value();
+            advance(head);
+            // Các nguồn cũ hơn có cùng key bị che
+            while (!heads.isEmpty() && Arrays.equals(heads.peek().source.key(), nextKey)) {
+                advance(heads.poll());
+            }
+            if (nextValue == null && hideTombstones) {
+                continue;
+            }
+            key = nextKey;
+            value = nextValue;
+            return true;
+        }
+        key = null;
+        value = null;
+        return false;
+    }
+
+    private void advance(Head head) {
+        if (head.source.next()) {
+            heads.add(head);
+        }
+    }
+
+    @Override
+    public byte[] key() {
+        return key;
+    }
+
+    @Override
+    public byte[] value() {
+        return value;
+    }
+
+    private static final class Head {
+        final KvIterator source;
+        final int priority;
+
+        Head(KvIterator source, int priority) {
+            this.source = source;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.mygame.server.storage.kv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * File bất biến chứa các entry đã sắp theo key của {@link KvStore}.
+ *
+ * Layout: các data block ~{@link #BLOCK_BYTES} bytes gồm entry
+ * {@code varint keyLength, varint valueLength + 1 (0 = tombstone), key, value}; index mỗi block
+ * một dòng {@code varint keyLength, lastKey, long offset, int length, int crc32}; bloom filter;
+ * footer {@link #FOOTER_BYTES} bytes. Index và bloom filter nằm trên heap, data block đọc bằng
+ * positional read (page cache của OS làm cache).
+ */
+final class SSTable {
+    static final int BLOCK_BYTES = 4096;
+    static final int MAGIC = 0x4B565354; // "KVST"
+    // long indexOffset, int indexLength, long bloomOffset, int bloomLength, long entries, int magic
+    static final int FOOTER_BYTES = 8 + 4 + 8 + 4 + 8 + 4;
+
+    private SSTable() {
+    }
+
+    static String fileName(long number) {
+        return String.format("sst-%08d.sst", number);
+    }
+
+    /**
+     * Ghi các entry của iterator (đã sắp, không trùng key) ra file rồi fsync.
+     * {@code dropTombstones} khi file này thay thế cho toàn bộ dữ liệu cũ hơn (full compaction).
+     */
+    static long write(Path file, KvIterator entries, boolean dropTombstones) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_BYTES * 2);
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            long[] hashes = new long[1024];
+            long count = 0;
+            long position = 0;
+            byte[] lastKey = null;
+
+            while (entries.next()) {
+                byte[] key = entries.key();
+                byte[] value = entries.value();
+                if (value == null && dropTombstones) {
+                    continue;
+                }
+                WriteBatch.writeVarint(block, key.length);
+                WriteBatch.writeVarint(block, value != null ? value.length + 1 : 0);
+                block.write(key, 0, key.length);
+                if (value != null) {
+                    block.write(value, 0, value.length);
+                }
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                }
+                hashes[(int) count++] = BloomFilter.hash(key);
+                lastKey = key;
+                if (block.size() >= BLOCK_BYTES) {
+                    position = writeBlock(channel, position, block, lastKey, index);
+                }
+            }
+            if (block.size() > 0) {
+                position = writeBlock(channel, position, block, lastKey, index);
+            }
+
+            long indexOffset = position;
+            position += writeFully(channel, position, ByteBuffer.wrap(index.toByteArray()));
+            BloomFilter bloom = BloomFilter.build(hashes, (int) count);
+            ByteBuffer bloomBytes = ByteBuffer.allocate(bloom.serializedBytes());
+            bloom.writeTo(bloomBytes);
+            bloomBytes.flip();
+            long bloomOffset = position;
+            position += writeFully(channel, position, bloomBytes);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+            footer.putLong(indexOffset).putInt(index.size()).putLong(bloomOffset).putInt(bloom.serializedBytes())
+                    .putLong(count).putInt(MAGIC);
+            footer.flip();
+            writeFully(channel, position, footer);
+            channel.force(true);
+            return count;
+        }
+    }
+
+    private static long writeBlock(FileChannel channel, long position, ByteArrayOutputStream block, byte[] lastKey,
+                                   ByteArrayOutputStream index) throws IOException {
+        byte[] data = block.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        int length = writeFully(channel, position, ByteBuffer.wrap(data));
+        WriteBatch.writeVarint(index, lastKey.length);
+        index.write(lastKey, 0, lastKey.length);
+        ByteBuffer entry = ByteBuffer.allocate(16);
+        entry.putLong(position).putInt(length).putInt((int) crc.getValue());
+        index.write(entry.array(), 0, 16);
+        block.reset();
+        return position + length;
+    }
+
+    private static int writeFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + length - buffer.remaining());
+        }
+        return length;
+    }
+
+    /**
+     * SSTable đã mở. Đọc từ nhiều thread cùng lúc được.
+     */
+    static final class Reader implements AutoCloseable {
+        final long number;
+        final Path file;
+        final long entries;
+        final long sizeBytes;
+        private final FileChannel channel;
+        private final byte[][] lastKeys;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final int[] crcs;
+        private final BloomFilter bloom;
+
+        private Reader(long number, Path file, FileChannel channel, long sizeBytes, long entries, byte[][] lastKeys,
+                       long[] offsets, int[] lengths, int[] crcs, BloomFilter bloom) {
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+            this.sizeBytes = sizeBytes;
+            this.entries = entries;
+            this.lastKeys = lastKeys;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.crcs = crcs;
+            this.bloom = bloom;
+        }
+
+        static Reader open(Path file, long number) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < FOOTER_BYTES) {
+                    throw new IOException(file + ": file quá ngắn");
+                }
+                ByteBuffer footer = readAt(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+                long indexOffset = footer.getLong();
+                int indexLength = footer.getInt();
+                long bloomOffset = footer.getLong();
+                int bloomLength = footer.getInt();
+                long entries = footer.getLong();
+                if (footer.getInt() != MAGIC) {
+                    throw new IOException(file + ": sai magic");
+                }
+                byte[] index = readAt(channel, indexOffset, indexLength).array();
+                BloomFilter bloom = BloomFilter.readFrom(readAt(channel, bloomOffset, bloomLength));
+
+                int capacity = 16;
+                byte[][] lastKeys = new byte[capacity][];
+                long[] offsets = new long[capacity];
+                int[] lengths = new int[capacity];
+                int[] crcs = new int[capacity];
+                int blocks = 0;
+                int[] at = {0};
+                while (at[0] < index.length) {
+                    if (blocks == capacity) {
+                        capacity *= 2;
+                        lastKeys = Arrays.copyOf(lastKeys, capacity);
+                        offsets = Arrays.copyOf(offsets, capacity);
+                        lengths = Arrays.copyOf(lengths, capacity);
+                        crcs = Arrays.copyOf(crcs, capacity);
+                    }
+                    int keyLength = WriteBatch.readVarint(index, at);
+                    lastKeys[blocks] = Arrays.copyOfRange(index, at[0], at[0] + keyLength);
+                    at[0] += keyLength;
+                    ByteBuffer entry = ByteBuffer.wrap(index, at[0], 16);
+                    offsets[blocks] = entry.getLong();
+                    lengths[blocks] = entry.getInt();
+                    crcs[blocks] = entry.getInt();
+                    at[0] += 16;
+                    blocks++;
+                }
+                return new Reader(number, file, channel, size, entries, Arrays.copyOf(lastKeys, blocks),
+                        Arrays.copyOf(offsets, blocks), Arrays.copyOf(lengths, blocks), Arrays.copyOf(crcs, blocks),
+                        bloom);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e instanceof IOException ? (IOException) e : new IOException(file + ": SSTable hỏng", e);
+            }
+        }
+
+        /**
+         * Giá trị của key: null nếu file không có key, {@link Memtable#TOMBSTONE} nếu key đã bị xoá.
+         */
+        byte[] get(byte[] key, long hash) throws IOException {
+            if (!bloom.mightContain(hash)) {
+                return null;
+            }
+            int block = findBlock(key);
+            if (block >= lastKeys.length) {
+                return null;
+            }
+            byte[] data = readBlock(block);
+            int[] at = {0};
+            while (at[0] < data.length) {
+                int keyLength = WriteBatch.readVarint(data, at);
+                int valueLength = WriteBatch.readVarint(data, at) - 1;
+                int cmp = Arrays.compareUnsigned(data, at[0], at[0] + keyLength, key, 0, key.length);
+                at[0] += keyLength;
+                if (cmp == 0) {
+                    return valueLength < 0 ? Memtable.TOMBSTONE : Arrays.copyOfRange(data, at[0], at[0] + valueLength);
+                }
+                if (cmp > 0) {
+                    return null;
+                }
+                at[0] += Math.max(0, valueLength);
+            }
+            return null;
+        }
+
+        /**
+         * Block đầu tiên có lastKey >= key.
+         */
+        private int findBlock(byte[] key) {
+            int low = 0;
+            int high = lastKeys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Arrays.compareUnsigned(lastKeys[mid], key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private byte[] readBlock(int block) throws IOException {
+            byte[] data = readAt(channel, offsets[block], lengths[block]).array();
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != crcs[block]) {
+                throw new IOException(file + ": block " + block + " sai checksum");
+            }
+            return data;
+        }
+
+        /**
+         * Các entry trong [from, to), tombstone trả về value null. Lỗi đọc được ném ra dưới dạng
+         * {@link java.io.UncheckedIOException}.
+         */
+        KvIterator iterator(byte[] from, byte[] to) {
+            return new KvIterator() {
+                private int block = from == null ? 0 : findBlock(from);
+                private byte[] data;
+                private final int[] at = {0};
+                private byte[] key;
+                private byte[] value;
+
+                @Override
+                public boolean next() {
+                    while (true) {
+                        if (data == null || at[0] >= data.length) {
+                            if (block >= lastKeys.length) {
+                                return finish();
+                            }
+                            try {
+                                data = readBlock(block++);
+                            } catch (IOException e) {
+                                throw new java.io.UncheckedIOException(e);
+                            }
+                            at[0] = 0;
+                        }
+                        int keyLength = WriteBatch.readVarint(data, at);
+                        int valueLength = WriteBatch.readVarint(data, at) - 1;
+                        byte[] nextKey = Arrays.copyOfRange(data, at[0], at[0] + keyLength);
+                        at[0] += keyLength;
+                        byte[] nextValue = valueLength < 0 ? null : Arrays.copyOfRange(data, at[0], at[0] + valueLength);
+                        at[0] += Math.max(0, valueLength);
+                        if (from != null && Arrays.compareUnsigned(nextKey, from) < 0) {
+                            continue;
+                        }
+                        if (to != null && Arrays.compareUnsigned(nextKey, to) >= 0) {
+                            return finish();
+                        }
+                        key = nextKey;
+                        value = nextValue;
+                        return true;
+                    }
+                }
+
+                private boolean finish() {
+                    block = lastKeys.length;
+                    data = null;
+                    key = null;
+                    value = null;
+                    return false;
+                }
+
+                @Override
+                public byte[] key() {
+                    return key;
+                }
+
+                @Override
+                public byte[] value() {
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Hết file khi đọc SSTable");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.mygame.server.storage.kv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Một file WAL của {@link KvStore}: mỗi {@link WriteBatch} là một record
+ * {@code int length, int crc32, payload}. Store lo việc khoá và group commit.
+ */
+final class WriteAheadLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int HEADER_BYTES = 8;
+
+    final long number;
+    final Path file;
+    private final FileChannel channel;
+
+    private WriteAheadLog(long number, Path file, FileChannel channel) {
+        this.number = number;
+        this.file = file;
+        this.channel = channel;
+    }
+
+    static WriteAheadLog create(Path dir, long number) throws IOException {
+        Path file = dir.resolve(fileName(number));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        return new WriteAheadLog(number, file, channel);
+    }
+
+    static String fileName(long number) {
+        return String.format("wal-%08d.log", number);
+    }
+
+    /**
+     * Ghi record (chưa fsync), trả về số byte đã ghi.
+     */
+    int append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return buffer.limit();
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * Đọc lại các batch trong file. Dừng ở record đầu tiên bị cắt cụt hoặc sai checksum (phần ghi
+     * dở lúc crash); trả về số batch đọc được.
+     */
+    static int replay(Path file, Consumer<WriteBatch> consumer) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int batches = 0;
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                logger.warn("WAL {} bị cắt cụt ở byte {}, bỏ phần sau", file.getFileName(), buffer.position() - HEADER_BYTES);
+                return batches;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, buffer.position(), length);
+            if ((int) crc.getValue() != expected) {
+                logger.warn("WAL {} sai checksum ở byte {}, bỏ phần sau", file.getFileName(), buffer.position() - HEADER_BYTES);
+                return batches;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            consumer.accept(WriteBatch.decode(payload));
+            batches++;
+        }
+        return batches;
+    }
+}
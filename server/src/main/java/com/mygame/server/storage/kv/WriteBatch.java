@@ -0,0 +1,105 @@
+package com.mygame.server.storage.kv;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nhóm put/delete được ghi nguyên tử: một record WAL, áp dụng vào memtable cùng lúc.
+ */
+public final class WriteBatch {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    final List<byte[]> keys = new ArrayList<>();
+    // null = delete
+    final List<byte[]> values = new ArrayList<>();
+
+    public WriteBatch put(byte[] key, byte[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value null, dùng delete()");
+        }
+        keys.add(key);
+        values.add(value);
+        return this;
+    }
+
+    public WriteBatch delete(byte[] key) {
+        keys.add(key);
+        values.add(null);
+        return this;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    /**
+     * {@code count, (type, keyLength, key, [valueLength, value])*}, độ dài là varint.
+     */
+    byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + keys.size() * 32);
+        writeVarint(out, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i);
+            byte[] value = values.get(i);
+            out.write(value != null ? PUT : DELETE);
+            writeVarint(out, key.length);
+            out.write(key, 0, key.length);
+            if (value != null) {
+                writeVarint(out, value.length);
+                out.write(value, 0, value.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static WriteBatch decode(byte[] data) {
+        int[] at = {0};
+        int count = readVarint(data, at);
+        WriteBatch batch = new WriteBatch();
+        for (int i = 0; i < count; i++) {
+            byte type = data[at[0]++];
+            byte[] key = readBytes(data, at, readVarint(data, at));
+            if (type == PUT) {
+                batch.put(key, readBytes(data, at, readVarint(data, at)));
+            } else if (type == DELETE) {
+                batch.delete(key);
+            } else {
+                throw new IllegalStateException("Loại thao tác không hợp lệ: " + type);
+            }
+        }
+        return batch;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(byte[] data, int[] at) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[at[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static byte[] readBytes(byte[] data, int[] at, int length) {
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, at[0], bytes, 0, length);
+        at[0] += length;
+        return bytes;
+    }
+}
@@ -0,0 +1,60 @@
+package com.mygame.server.timer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Handle của một timer trong {@link TimingWheel}. Huỷ là O(1): chỉ đổi trạng thái,
+ * node được gỡ khỏi bucket ở tick kế tiếp của worker.
+ */
+public final class Timeout {
+    private static final int ST_INIT = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final TimingWheel wheel;
+    final Runnable task;
+    final Executor executor;
+    final long deadline; // nano, tính từ lúc wheel khởi động
+
+    private volatile int state = ST_INIT;
+
+    // Chỉ worker của wheel đọc/ghi các field dưới đây
+    long remainingRounds;
+    Timeout next;
+    Timeout prev;
+    TimingWheel.Bucket bucket;
+
+    Timeout(TimingWheel wheel, Runnable task, Executor executor, long deadline) {
+        this.wheel = wheel;
+        this.task = task;
+        this.executor = executor;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Huỷ timer. Trả về false nếu timer đã chạy hoặc đã bị huỷ trước đó.
+     */
+    public boolean cancel() {
+        if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+            return false;
+        }
+        wheel.onCancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state == ST_CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state == ST_EXPIRED;
+    }
+
+    boolean markExpired() {
+        return STATE.compareAndSet(this, ST_INIT, ST_EXPIRED);
+    }
+}
@@ -0,0 +1,248 @@
+package com.mygame.server.timer;
+
+import com.mygame.server.metrics.ServerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel cho các timer của server (hết lượt, hết giờ vote, room trống).
+ *
+ * Schedule và cancel là O(1) và không lock: timer mới vào một hàng đợi, worker chuyển
+ * vào bucket ở tick kế tiếp; timer bị huỷ chỉ đổi trạng thái và được gỡ khỏi bucket sau.
+ * Độ chính xác bằng một tick ({@value #DEFAULT_TICK_MILLIS} ms với instance dùng chung),
+ * đủ cho timeout tính bằng giây.
+ *
+ * Task hết hạn được đẩy sang {@link Executor} truyền vào lúc schedule (thường là executor
+ * của room), nên worker không bao giờ chạy logic game và state của room chỉ bị một thread chạm.
+ */
+public class TimingWheel {
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int DEFAULT_TICKS_PER_WHEEL = 512;
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static TimingWheel instance;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final LongAdder expiredCount = new LongAdder();
+    private final Thread worker;
+    private final long startTime;
+
+    private volatile boolean running = true;
+    private long tick; // chỉ worker dùng
+
+    public TimingWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickDuration và ticksPerWheel phải > 0");
+        }
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Wheel dùng chung của server, tick {@value #DEFAULT_TICK_MILLIS} ms.
+     */
+    public static synchronized TimingWheel getInstance() {
+        if (instance == null) {
+            instance = new TimingWheel("timing-wheel", DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS,
+                    DEFAULT_TICKS_PER_WHEEL);
+            ServerMetrics metrics = ServerMetrics.getInstance();
+            metrics.gauge("timers.pending", instance::pendingTimeouts);
+            metrics.gauge("timers.expired", instance::expiredTimeouts);
+        }
+        return instance;
+    }
+
+    /**
+     * Hẹn {@code task} chạy trên {@code executor} sau {@code delay}.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit, Executor executor) {
+        if (!running) {
+            throw new RejectedExecutionException("TimingWheel đã dừng");
+        }
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(0, delay)) - startTime;
+        Timeout timeout = new Timeout(this, task, executor, deadline);
+        pendingCount.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public long pendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    public long expiredTimeouts() {
+        return expiredCount.sum();
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void onCancelled(Timeout timeout) {
+        cancelled.add(timeout);
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                break;
+            }
+            removeCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+        logger.info("TimingWheel {} dừng, {} timer chưa chạy", worker.getName(), pendingCount.get());
+    }
+
+    /**
+     * Ngủ tới cuối tick hiện tại; trả về thời điểm đó (tính từ startTime), -1 nếu wheel dừng.
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (running) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return deadline;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+        return -1;
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                // Huỷ trước khi vào bucket: node trong hàng cancelled sẽ bị bỏ qua
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick); // deadline đã qua thì chạy ở tick này
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            pendingCount.decrementAndGet();
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        if (!timeout.markExpired()) {
+            return; // vừa bị huỷ, removeCancelled sẽ trừ pendingCount
+        }
+        pendingCount.decrementAndGet();
+        expiredCount.increment();
+        try {
+            timeout.executor.execute(timeout.task);
+        } catch (RuntimeException e) {
+            logger.error("Không thể chạy timer: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Danh sách liên kết đôi các timer trong cùng một slot.
+     */
+    final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * Chạy các timer đến hạn ở tick này; {@code remainingRounds <= 0} nghĩa là deadline
+         * nằm trước {@code deadline} (transferPending đã đặt đúng slot).
+         */
+        void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    fire(timeout);
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.mygame.server.timer;
+
+import com.mygame.server.metrics.LatencyHistogram;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo chi phí schedule/cancel khi mỗi room giữ một timer hết lượt, so với
+ * {@link ScheduledThreadPoolExecutor} (heap, O(log n) mỗi thao tác), và độ trễ khi timer hết hạn.
+ *
+ * <pre>
+ * java -cp server.jar com.mygame.server.timer.TimingWheelBenchmark [rooms] [turnsPerRoom]
+ * </pre>
+ * Mỗi "lượt" là một cancel + một schedule mới, đúng như GameSessionManager làm sau mỗi action.
+ */
+public class TimingWheelBenchmark {
+    private static final long TURN_TIMEOUT_SECONDS = 30;
+    private static final Runnable NOOP = () -> { };
+    private static final Executor DIRECT = Runnable::run;
+
+    public static void main(String[] args) throws Exception {
+        int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int turns = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        System.out.printf("Rooms: %,d, turns/room: %d%n", rooms, turns);
+
+        // Chạy hai lần, lần đầu để JIT warm-up
+        for (int run = 0; run < 2; run++) {
+            boolean report = run == 1;
+            runWheel(rooms, turns, report);
+            runScheduledExecutor(rooms, turns, report);
+        }
+        runExpiry(rooms);
+    }
+
+    private static void runWheel(int rooms, int turns, boolean report) throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("bench-wheel", TimingWheel.DEFAULT_TICK_MILLIS,
+                TimeUnit.MILLISECONDS, 512);
+        Timeout[] timers = new Timeout[rooms];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rooms; i++) {
+            timers[i] = wheel.schedule(NOOP, TURN_TIMEOUT_SECONDS, TimeUnit.SECONDS, DIRECT);
+        }
+        long scheduleNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int t = 0; t < turns; t++) {
+            for (int i = 0; i < rooms; i++) {
+                timers[i].cancel();
+                timers[i] = wheel.schedule(NOOP, TURN_TIMEOUT_SECONDS, TimeUnit.SECONDS, DIRECT);
+            }
+        }
+        long turnNanos = System.nanoTime() - start;
+
+        for (int i = 0; i < rooms; i++) {
+            timers[i].cancel();
+        }
+        // Chờ worker gỡ hết timer đã huỷ
+        long drainStart = System.nanoTime();
+        while (wheel.pendingTimeouts() > 0) {
+            Thread.sleep(10);
+        }
+        long drainMillis = (System.nanoTime() - drainStart) / 1_000_000;
+        wheel.shutdown();
+
+        if (report) {
+            System.out.printf("TimingWheel:            schedule %6.0f ns/op, cancel+schedule %6.0f ns/turn, drain %d ms%n",
+                    (double) scheduleNanos / rooms, (double) turnNanos / ((long) rooms * turns), drainMillis);
+        }
+    }
+
+    private static void runScheduledExecutor(int rooms, int turns, boolean report) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true); // nếu không, task đã huỷ nằm lại heap tới deadline
+        ScheduledFuture<?>[] timers = new ScheduledFuture<?>[rooms];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rooms; i++) {
+            timers[i] = executor.schedule(NOOP, TURN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        long scheduleNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int t = 0; t < turns; t++) {
+            for (int i = 0; i < rooms; i++) {
+                timers[i].cancel(false);
+                timers[i] = executor.schedule(NOOP, TURN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+        long turnNanos = System.nanoTime() - start;
+        executor.shutdownNow();
+
+        if (report) {
+            System.out.printf("ScheduledThreadPool:    schedule %6.0f ns/op, cancel+schedule %6.0f ns/turn%n",
+                    (double) scheduleNanos / rooms, (double) turnNanos / ((long) rooms * turns));
+        }
+    }
+
+    /**
+     * Mỗi room một timer hết hạn ngẫu nhiên trong 2 giây; đo độ trễ so với deadline.
+     */
+    private static void runExpiry(int rooms) throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("bench-wheel", TimingWheel.DEFAULT_TICK_MILLIS,
+                TimeUnit.MILLISECONDS, 512);
+        LatencyHistogram lateness = new LatencyHistogram();
+        CountDownLatch done = new CountDownLatch(rooms);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < rooms; i++) {
+            long delayMillis = random.nextLong(2_000);
+            long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            wheel.schedule(() -> {
+                lateness.recordNanos(System.nanoTime() - due);
+                done.countDown();
+            }, delayMillis, TimeUnit.MILLISECONDS, DIRECT);
+        }
+        done.await();
+        wheel.shutdown();
+        System.out.printf("Expiry lateness (tick %d ms): p50 %d us, p99 %d us, max %d us%n",
+                TimingWheel.DEFAULT_TICK_MILLIS, lateness.getPercentileMicros(0.50),
+                lateness.getPercentileMicros(0.99), lateness.getMaxMicros());
+    }
+}
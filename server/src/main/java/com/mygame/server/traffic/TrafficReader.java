@@ -0,0 +1,162 @@
+package com.mygame.server.traffic;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Đọc tuần tự các frame do {@link TrafficRecorder} ghi, cũ nhất trước. Frame ghi dở ở cuối file
+ * (server bị kill) bị bỏ qua. Không thread-safe.
+ */
+public class TrafficReader implements AutoCloseable {
+    private final List<Path> files;
+    private int fileIndex;
+    private DataInputStream in;
+    private long startedAtMillis;
+
+    private long micros;
+    private int connectionId;
+    private int userId;
+    private int roomId;
+    private byte kind;
+    private byte[] payload;
+    private long index = -1;
+
+    private TrafficReader(List<Path> files) {
+        this.files = files;
+    }
+
+    /**
+     * Mở một file traffic hoặc mọi file trong thư mục.
+     */
+    public static TrafficReader open(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return new TrafficReader(listFiles(path));
+        }
+        return new TrafficReader(Collections.singletonList(path));
+    }
+
+    /**
+     * Các file traffic trong thư mục, cũ nhất trước (tên file bắt đầu bằng thời điểm tạo).
+     */
+    public static List<Path> listFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "traffic-*" + TrafficRecorder.FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Chuyển sang frame kế tiếp; false khi đã hết.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (in == null && !openNext()) {
+                return false;
+            }
+            try {
+                long frameMicros = in.readLong();
+                int frameConnection = in.readInt();
+                int frameUser = in.readInt();
+                int frameRoom = in.readInt();
+                byte frameKind = in.readByte();
+                byte[] framePayload = new byte[in.readInt()];
+                in.readFully(framePayload);
+                micros = frameMicros;
+                connectionId = frameConnection;
+                userId = frameUser;
+                roomId = frameRoom;
+                kind = frameKind;
+                payload = framePayload;
+                index++;
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+
+    private boolean openNext() throws IOException {
+        while (fileIndex < files.size()) {
+            Path file = files.get(fileIndex++);
+            DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            try {
+                if (stream.readInt() != TrafficRecorder.MAGIC || stream.readInt() != TrafficRecorder.VERSION) {
+                    throw new IOException(file + " không phải file traffic được hỗ trợ");
+                }
+                startedAtMillis = stream.readLong();
+            } catch (EOFException e) {
+                stream.close();
+                continue;
+            }
+            in = stream;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+        fileIndex = files.size();
+    }
+
+    /**
+     * Thời điểm recorder bắt đầu ghi (micros của frame tính từ đây).
+     */
+    public long startedAtMillis() {
+        return startedAtMillis;
+    }
+
+    /**
+     * Số thứ tự của frame hiện tại trong toàn bộ bản ghi, bắt đầu từ 0.
+     */
+    public long index() {
+        return index;
+    }
+
+    public long micros() {
+        return micros;
+    }
+
+    public int connectionId() {
+        return connectionId;
+    }
+
+    /**
+     * User của kết nối lúc nhận packet, 0 nếu chưa đăng nhập.
+     */
+    public int userId() {
+        return userId;
+    }
+
+    /**
+     * Room của user lúc nhận packet, 0 nếu không ở room nào.
+     */
+    public int roomId() {
+        return roomId;
+    }
+
+    public byte kind() {
+        return kind;
+    }
+
+    public byte[] payload() {
+        return payload;
+    }
+}
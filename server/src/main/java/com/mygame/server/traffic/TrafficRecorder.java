@@ -0,0 +1,257 @@
+package com.mygame.server.traffic;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryonet.Connection;
+import com.mygame.server.metrics.ServerMetrics;
+import com.mygame.shared.network.Network;
+import com.mygame.shared.network.packets.LoginRequest;
+import com.mygame.shared.network.packets.RegisterRequest;
+import com.mygame.shared.network.packets.ResumeRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ghi lại mọi packet client gửi tới server (kèm kết nối/ngắt kết nối) để phát lại bằng
+ * {@link TrafficReplayer} khi benchmark với tải đúng hình dạng production.
+ *
+ * Chỉ bật khi chạy với {@code -Dtraffic.record=true}. File ghi vào {@code traffic.dir} (mặc định
+ * {@code traffic}), mỗi file tối đa {@code traffic.fileMegabytes} (mặc định 256), giữ tối đa
+ * {@code traffic.maxFiles} file (mặc định 20, xoá cũ nhất trước).
+ *
+ * Packet được encode lại bằng Kryo đăng ký như {@link Network#registerPackets} (chính là frame
+ * trên dây) trên thread nhận packet, rồi đưa qua hàng đợi ({@code traffic.queueFrames}, mặc định
+ * 65536) cho thread {@code traffic-recorder} ghi ra đĩa; hàng đợi đầy thì frame bị bỏ và đếm ở
+ * {@code traffic.dropped}, không bao giờ chặn server. Password và resume token không được ghi.
+ *
+ * File: {@code int magic, int version, long startedAtMillis}, rồi các frame
+ * {@code long micros, int connectionId, int userId, int roomId, byte kind, int length, payload};
+ * micros tính từ lúc recorder start, userId/roomId là của kết nối tại thời điểm nhận.
+ */
+public class TrafficRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    public static final byte CONNECTED = 1;
+    public static final byte PACKET = 2;    // payload: Kryo writeClassAndObject
+    public static final byte DISCONNECTED = 3;
+
+    static final int MAGIC = 0x54524146; // "TRAF"
+    static final int VERSION = 1;
+    static final int FRAME_HEADER_BYTES = 8 + 4 + 4 + 4 + 1 + 4;
+    static final String FILE_SUFFIX = ".tr";
+
+    private static final byte[] END = new byte[0];
+
+    private static TrafficRecorder instance;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long fileBytes;
+    private final int maxFiles;
+    private final BlockingQueue<byte[]> queue;
+    private final LongAdder frames;
+    private final LongAdder dropped;
+    private final LongAdder bytes;
+    // Chỉ dùng dưới lock của chính nó
+    private final Kryo kryo = new Kryo();
+    private final Output output = new Output(4096, -1);
+
+    private volatile boolean recording;
+    private long startNanos;
+    private long startedAtMillis;
+    private Thread writer;
+    private int fileSeq;
+
+    private TrafficRecorder() {
+        this.enabled = Boolean.getBoolean("traffic.record");
+        this.dir = Paths.get(System.getProperty("traffic.dir", "traffic"));
+        this.fileBytes = (long) Integer.getInteger("traffic.fileMegabytes", 256) << 20;
+        this.maxFiles = Math.max(1, Integer.getInteger("traffic.maxFiles", 20));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1024, Integer.getInteger("traffic.queueFrames", 65536)));
+        ServerMetrics metrics = ServerMetrics.getInstance();
+        this.frames = metrics.counter("traffic.frames");
+        this.dropped = metrics.counter("traffic.dropped");
+        this.bytes = metrics.counter("traffic.bytes");
+        Network.registerPackets(kryo);
+    }
+
+    public static synchronized TrafficRecorder getInstance() {
+        if (instance == null) {
+            instance = new TrafficRecorder();
+        }
+        return instance;
+    }
+
+    public synchronized void start() {
+        if (!enabled || writer != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            logger.error("Không thể tạo thư mục traffic {}, không ghi traffic: {}", dir.toAbsolutePath(), e.getMessage());
+            return;
+        }
+        startNanos = System.nanoTime();
+        startedAtMillis = System.currentTimeMillis();
+        writer = new Thread(this::writeLoop, "traffic-recorder");
+        writer.setDaemon(true);
+        writer.start();
+        recording = true;
+        logger.info("Đang ghi traffic vào {} (file {} MB, giữ {} file)", dir.toAbsolutePath(), fileBytes >> 20, maxFiles);
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public void connected(Connection connection) {
+        if (recording) {
+            record(connection.getID(), 0, 0, CONNECTED, null);
+        }
+    }
+
+    public void received(Connection connection, int userId, int roomId, Object packet) {
+        if (recording) {
+            record(connection.getID(), userId, roomId, PACKET, redact(packet));
+        }
+    }
+
+    public void disconnected(Connection connection) {
+        if (recording) {
+            record(connection.getID(), 0, 0, DISCONNECTED, null);
+        }
+    }
+
+    /**
+     * Ngừng nhận frame và chờ thread ghi xả hết hàng đợi.
+     */
+    public synchronized void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        recording = false;
+        try {
+            queue.put(END);
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        logger.info("Đã dừng ghi traffic: {} frame, {} bị bỏ", frames.sum(), dropped.sum());
+    }
+
+    private void record(int connectionId, int userId, int roomId, byte kind, Object packet) {
+        byte[] frame;
+        synchronized (output) {
+            output.clear();
+            output.writeLong(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            output.writeInt(connectionId);
+            output.writeInt(userId);
+            output.writeInt(roomId);
+            output.writeByte(kind);
+            output.writeInt(0); // length, điền sau
+            if (packet != null) {
+                kryo.writeClassAndObject(output, packet);
+            }
+            int length = output.position() - FRAME_HEADER_BYTES;
+            byte[] buffer = output.getBuffer();
+            int at = FRAME_HEADER_BYTES - 4;
+            buffer[at] = (byte) (length >>> 24);
+            buffer[at + 1] = (byte) (length >>> 16);
+            buffer[at + 2] = (byte) (length >>> 8);
+            buffer[at + 3] = (byte) length;
+            frame = output.toBytes();
+        }
+        if (queue.offer(frame)) {
+            frames.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Bản sao không có credential: bản phát lại đăng nhập bằng tài khoản test.
+     */
+    private static Object redact(Object packet) {
+        if (packet instanceof LoginRequest) {
+            return new LoginRequest();
+        }
+        if (packet instanceof RegisterRequest) {
+            return new RegisterRequest();
+        }
+        if (packet instanceof ResumeRequest) {
+            return new ResumeRequest();
+        }
+        return packet;
+    }
+
+    private void writeLoop() {
+        DataOutputStream out = null;
+        long written = 0;
+        try {
+            while (true) {
+                byte[] frame = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (frame == null) {
+                    if (out != null) {
+                        out.flush();
+                    }
+                    continue;
+                }
+                if (frame == END) {
+                    break;
+                }
+                if (out == null || written >= fileBytes) {
+                    if (out != null) {
+                        out.close();
+                    }
+                    out = newFile();
+                    written = 16;
+                }
+                out.write(frame);
+                written += frame.length;
+                bytes.add(frame.length);
+            }
+        } catch (IOException e) {
+            recording = false;
+            logger.error("Lỗi khi ghi traffic, dừng ghi: {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logger.warn("Lỗi khi đóng file traffic: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private DataOutputStream newFile() throws IOException {
+        Path file = dir.resolve(String.format("traffic-%013d-%04d%s", System.currentTimeMillis(), fileSeq++, FILE_SUFFIX));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(startedAtMillis);
+
+        List<Path> files = TrafficReader.listFiles(dir);
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            Files.deleteIfExists(files.get(i));
+            logger.info("Đã xoá file traffic cũ {}", files.get(i).getFileName());
+        }
+        return out;
+    }
+}
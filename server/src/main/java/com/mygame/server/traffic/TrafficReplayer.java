@@ -0,0 +1,381 @@
+package com.mygame.server.traffic;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.mygame.shared.network.Network;
+import com.mygame.shared.network.packets.CreateRoomRequest;
+import com.mygame.shared.network.packets.CreateRoomResponse;
+import com.mygame.shared.network.packets.DailyRewardRequest;
+import com.mygame.shared.network.packets.JoinRoomRequest;
+import com.mygame.shared.network.packets.JoinRoomResponse;
+import com.mygame.shared.network.packets.LeaveRoomRequest;
+import com.mygame.shared.network.packets.LoginRequest;
+import com.mygame.shared.network.packets.LoginResponse;
+import com.mygame.shared.network.packets.MatchHistoryRequest;
+import com.mygame.shared.network.packets.PlayerStatsRequest;
+import com.mygame.shared.network.packets.RegisterRequest;
+import com.mygame.shared.network.packets.RegisterResponse;
+import com.mygame.shared.network.packets.ResumeRequest;
+import com.mygame.shared.network.packets.ResumeResponse;
+import com.mygame.shared.network.packets.StartGameRequest;
+import com.mygame.shared.network.packets.game.PlayAgainVotePacket;
+import com.mygame.shared.network.packets.game.PlayerActionPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Phát lại traffic do {@link TrafficRecorder} ghi vào một server test: mỗi kết nối đã ghi là một
+ * KryoNet client mới, packet được gửi lại đúng nhịp gốc (1x), nhanh hơn N lần, hoặc nhanh nhất có
+ * thể ({@code max}):
+ *
+ * <pre>
+ * java -cp server.jar com.mygame.server.traffic.TrafficReplayer traffic [1|10|max] [host]
+ * </pre>
+ *
+ * Mặc định nối vào localhost; đừng trỏ vào production. Mỗi user đã ghi được gán một tài khoản test
+ * ({@code traffic.accountPrefix} + số thứ tự, password {@code traffic.accountPassword}); tài khoản
+ * chưa có được đăng ký ở lần login đầu tiên, nên lần chạy đầu có thêm tải BCrypt. Id trong packet
+ * được đổi sang id thật của lần chạy: playerId/userId thành user của chính client, roomId đã ghi
+ * thành room mà client tạo ra nó đang ở (room được gán cho kết nối đầu tiên xuất hiện trong đó).
+ * Packet cần một room chưa map được sau {@code traffic.mapWaitMillis} (mặc định 2000) vẫn được gửi
+ * với id cũ và được đếm ở kết quả.
+ *
+ * Mỗi client có một update thread của KryoNet, nên số kết nối đồng thời bị giới hạn bởi máy chạy.
+ */
+public class TrafficReplayer {
+    private static final Logger logger = LoggerFactory.getLogger(TrafficReplayer.class);
+
+    private final Path recording;
+    private final double speed; // <= 0: nhanh nhất có thể
+    private final String host;
+    private final int tcpPort;
+    private final int udpPort;
+    private final String accountPrefix;
+    private final String accountPassword;
+    private final long mapWaitNanos;
+    private final Kryo kryo = new Kryo();
+
+    // Từ lượt đọc đầu: kết nối (epoch, id) -> user đã ghi, room đã ghi -> kết nối đầu tiên ở trong đó
+    private final Map<Long, Integer> recordedUsers = new HashMap<>();
+    private final Map<Integer, Long> roomOwners = new HashMap<>();
+
+    private final Map<Integer, Account> accounts = new HashMap<>();
+    private final Map<Long, ReplayClient> clients = new HashMap<>();
+    private final Map<Integer, Integer> rooms = new ConcurrentHashMap<>(); // room đã ghi -> room thật
+
+    private long frames;
+    private long sent;
+    private long connections;
+    private long failedConnects;
+    private long unmapped;
+    private long maxLagNanos;
+
+    public TrafficReplayer(Path recording, double speed, String host) {
+        this.recording = recording;
+        this.speed = speed;
+        this.host = host;
+        this.tcpPort = Integer.getInteger("traffic.tcpPort", 54555);
+        this.udpPort = Integer.getInteger("traffic.udpPort", 54777);
+        this.accountPrefix = System.getProperty("traffic.accountPrefix", "loadtest-");
+        this.accountPassword = System.getProperty("traffic.accountPassword", "loadtest-password");
+        this.mapWaitNanos = TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("traffic.mapWaitMillis", 2000));
+        Network.registerPackets(kryo);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path recording = Paths.get(args.length > 0 ? args[0] : "traffic");
+        String mode = args.length > 1 ? args[1] : "1";
+        double speed = "max".equalsIgnoreCase(mode) ? 0 : Double.parseDouble(mode);
+        String host = args.length > 2 ? args[2] : "localhost";
+        System.out.println(new TrafficReplayer(recording, speed, host).replay());
+        System.exit(0);
+    }
+
+    /**
+     * Phát lại toàn bộ bản ghi; trả về tóm tắt.
+     */
+    public String replay() throws IOException {
+        scan();
+        long start = System.nanoTime();
+        long epochStart = start;
+        long firstMicros = -1;
+        long epochMillis = 0;
+        int epoch = -1;
+        try (TrafficReader reader = TrafficReader.open(recording)) {
+            while (reader.next()) {
+                if (reader.startedAtMillis() != epochMillis || epoch < 0) {
+                    // Server đã restart trong lúc ghi: id kết nối bắt đầu lại
+                    epochMillis = reader.startedAtMillis();
+                    epoch++;
+                    closeAll();
+                    epochStart = System.nanoTime();
+                    firstMicros = reader.micros();
+                }
+                frames++;
+                if (speed > 0) {
+                    long due = epochStart + (long) ((reader.micros() - firstMicros) * 1000 / speed);
+                    long lag = System.nanoTime() - due;
+                    if (lag < 0) {
+                        LockSupport.parkNanos(-lag);
+                    } else if (lag > maxLagNanos) {
+                        maxLagNanos = lag;
+                    }
+                }
+                apply(key(epoch, reader.connectionId()), reader);
+            }
+        }
+        closeAll();
+        long elapsed = System.nanoTime() - start;
+        return String.format("Phát lại %d frame: %d packet, %d kết nối (%d lỗi), %d packet có room chưa map, "
+                        + "trễ tối đa %d ms, trong %d ms (%.0f packet/s)",
+                frames, sent, connections, failedConnects, unmapped, TimeUnit.NANOSECONDS.toMillis(maxLagNanos),
+                TimeUnit.NANOSECONDS.toMillis(elapsed), sent * 1e9 / Math.max(1, elapsed));
+    }
+
+    /**
+     * Lượt đọc đầu: user của từng kết nối và kết nối đầu tiên vào mỗi room.
+     */
+    private void scan() throws IOException {
+        long epochMillis = 0;
+        int epoch = -1;
+        try (TrafficReader reader = TrafficReader.open(recording)) {
+            while (reader.next()) {
+                if (reader.startedAtMillis() != epochMillis || epoch < 0) {
+                    epochMillis = reader.startedAtMillis();
+                    epoch++;
+                }
+                long connection = key(epoch, reader.connectionId());
+                if (reader.userId() != 0 && !recordedUsers.containsKey(connection)) {
+                    recordedUsers.put(connection, reader.userId());
+                    accounts.computeIfAbsent(reader.userId(), id -> new Account(accountPrefix + (accounts.size() + 1)));
+                }
+                if (reader.roomId() != 0) {
+                    roomOwners.putIfAbsent(reader.roomId(), connection);
+                }
+            }
+        }
+        logger.info("Bản ghi có {} kết nối đã đăng nhập, {} user, {} room", recordedUsers.size(), accounts.size(),
+                roomOwners.size());
+    }
+
+    private void apply(long connection, TrafficReader reader) {
+        switch (reader.kind()) {
+            case TrafficRecorder.CONNECTED:
+                connect(connection);
+                break;
+            case TrafficRecorder.DISCONNECTED: {
+                ReplayClient client = clients.remove(connection);
+                if (client != null) {
+                    client.client.close();
+                }
+                break;
+            }
+            case TrafficRecorder.PACKET: {
+                ReplayClient client = clients.get(connection);
+                if (client == null) {
+                    client = connect(connection); // kết nối mở trước khi bắt đầu ghi
+                }
+                if (client == null) {
+                    return;
+                }
+                Long owner = reader.roomId() != 0 ? roomOwners.get(reader.roomId()) : null;
+                if (owner != null && owner == connection && client.liveRoomId != 0
+                        && !rooms.containsKey(reader.roomId())) {
+                    rooms.put(reader.roomId(), client.liveRoomId);
+                }
+                Object packet = kryo.readClassAndObject(new Input(reader.payload()));
+                client.client.sendTCP(rewrite(client, packet));
+                sent++;
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private ReplayClient connect(long connection) {
+        Integer recordedUser = recordedUsers.get(connection);
+        Account account = recordedUser != null ? accounts.get(recordedUser) : null;
+        ReplayClient client = new ReplayClient(account);
+        Network.registerPackets(client.client.getKryo());
+        client.client.addListener(client);
+        client.client.start();
+        try {
+            client.client.connect(5000, host, tcpPort, udpPort);
+        } catch (IOException e) {
+            failedConnects++;
+            client.client.stop();
+            logger.warn("Không kết nối được tới {}:{}: {}", host, tcpPort, e.getMessage());
+            return null;
+        }
+        connections++;
+        ReplayClient previous = clients.put(connection, client);
+        if (previous != null) {
+            previous.client.close();
+        }
+        return client;
+    }
+
+    /**
+     * Đổi credential và id đã ghi sang tài khoản test và id của lần chạy này.
+     */
+    private Object rewrite(ReplayClient client, Object packet) {
+        Account account = client.account;
+        if (packet instanceof LoginRequest || packet instanceof RegisterRequest) {
+            if (account == null) {
+                return packet; // login thất bại ở bản ghi: gửi credential rỗng, cũng thất bại
+            }
+            return login(account);
+        }
+        if (packet instanceof ResumeRequest) {
+            ((ResumeRequest) packet).resumeToken = account != null ? account.resumeToken : null;
+            return packet;
+        }
+        int userId = account != null ? account.liveUserId : 0;
+        if (packet instanceof PlayerActionPacket) {
+            PlayerActionPacket action = (PlayerActionPacket) packet;
+            action.setPlayerId(userId);
+            action.setRoomId(mapRoom(action.getRoomId()));
+        } else if (packet instanceof PlayAgainVotePacket) {
+            PlayAgainVotePacket vote = (PlayAgainVotePacket) packet;
+            vote.setPlayerId(userId);
+            vote.setRoomId(mapRoom(vote.getRoomId()));
+        } else if (packet instanceof JoinRoomRequest) {
+            client.liveRoomId = 0;
+            ((JoinRoomRequest) packet).setRoomId(mapRoom(((JoinRoomRequest) packet).getRoomId()));
+        } else if (packet instanceof CreateRoomRequest) {
+            client.liveRoomId = 0;
+        } else if (packet instanceof LeaveRoomRequest) {
+            ((LeaveRoomRequest) packet).setRoomId(mapRoom(((LeaveRoomRequest) packet).getRoomId()));
+        } else if (packet instanceof StartGameRequest) {
+            ((StartGameRequest) packet).setRoomId(mapRoom(((StartGameRequest) packet).getRoomId()));
+        } else if (packet instanceof DailyRewardRequest) {
+            ((DailyRewardRequest) packet).userId = userId;
+        } else if (packet instanceof MatchHistoryRequest) {
+            ((MatchHistoryRequest) packet).userId = userId;
+        } else if (packet instanceof PlayerStatsRequest) {
+            ((PlayerStatsRequest) packet).userId = userId;
+        }
+        return packet;
+    }
+
+    private LoginRequest login(Account account) {
+        LoginRequest login = new LoginRequest();
+        login.username = account.name;
+        login.password = accountPassword;
+        return login;
+    }
+
+    /**
+     * Room thật của room đã ghi: room mà kết nối đầu tiên vào room đó đang ở (chờ tối đa
+     * traffic.mapWaitMillis cho response tạo room của nó).
+     */
+    private int mapRoom(int recordedRoomId) {
+        if (recordedRoomId == 0) {
+            return 0;
+        }
+        Integer live = rooms.get(recordedRoomId);
+        if (live != null) {
+            return live;
+        }
+        Long owner = roomOwners.get(recordedRoomId);
+        ReplayClient client = owner != null ? clients.get(owner) : null;
+        long deadline = System.nanoTime() + mapWaitNanos;
+        while (client != null && client.liveRoomId == 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        if (client == null || client.liveRoomId == 0) {
+            unmapped++;
+            return recordedRoomId;
+        }
+        rooms.put(recordedRoomId, client.liveRoomId);
+        return client.liveRoomId;
+    }
+
+    private void closeAll() {
+        for (ReplayClient client : clients.values()) {
+            client.client.close();
+        }
+        clients.clear();
+        rooms.clear();
+    }
+
+    private static long key(int epoch, int connectionId) {
+        return ((long) epoch << 32) | (connectionId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Tài khoản test thay cho một user đã ghi (dùng chung cho mọi kết nối của user đó).
+     */
+    private static final class Account {
+        final String name;
+        volatile int liveUserId;
+        volatile String resumeToken;
+        volatile boolean registerTried;
+
+        Account(String name) {
+            this.name = name;
+        }
+    }
+
+    private final class ReplayClient extends Listener {
+        final Client client = new Client(16384, 8192);
+        final Account account;
+        volatile int liveRoomId;
+
+        ReplayClient(Account account) {
+            this.account = account;
+        }
+
+        @Override
+        public void received(Connection connection, Object object) {
+            if (object instanceof LoginResponse) {
+                LoginResponse response = (LoginResponse) object;
+                if (account == null) {
+                    return;
+                }
+                if (response.success && response.playerProfile != null) {
+                    account.liveUserId = response.playerProfile.id;
+                    account.resumeToken = response.resumeToken;
+                } else if (!account.registerTried) {
+                    // Tài khoản test chưa có: đăng ký rồi login lại
+                    account.registerTried = true;
+                    connection.sendTCP(new RegisterRequest(account.name, accountPassword));
+                }
+            } else if (object instanceof RegisterResponse) {
+                if (account != null) {
+                    connection.sendTCP(login(account));
+                }
+            } else if (object instanceof ResumeResponse) {
+                ResumeResponse response = (ResumeResponse) object;
+                if (response.success && account != null) {
+                    account.liveUserId = response.userId;
+                    account.resumeToken = response.resumeToken;
+                    liveRoomId = response.roomId;
+                }
+            } else if (object instanceof CreateRoomResponse) {
+                CreateRoomResponse response = (CreateRoomResponse) object;
+                if (response.isSuccess() && response.getRoomInfo() != null) {
+                    liveRoomId = response.getRoomInfo().getRoomId();
+                }
+            } else if (object instanceof JoinRoomResponse) {
+                JoinRoomResponse response = (JoinRoomResponse) object;
+                if (response.isSuccess() && response.getRoomInfo() != null) {
+                    liveRoomId = response.getRoomInfo().getRoomId();
+                }
+            }
+        }
+    }
+}
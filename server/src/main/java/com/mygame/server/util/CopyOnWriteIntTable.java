@@ -0,0 +1,76 @@
+package com.mygame.server.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Map int -> Object đọc không cần lock, cho dữ liệu đọc trên mỗi packet nhưng ít khi đổi.
+ *
+ * Chia thành {@link #STRIPES} {@link IntObjectHashMap}; mỗi lần ghi copy stripe chứa key, sửa bản
+ * copy rồi publish qua {@link AtomicReferenceArray} (volatile), nên reader luôn thấy một stripe
+ * nhất quán và ghi chỉ tốn O(size / STRIPES). Các lần ghi phải được caller đồng bộ với nhau.
+ */
+public final class CopyOnWriteIntTable<V> {
+    private static final int STRIPES = 64;
+
+    private final AtomicReferenceArray<IntObjectHashMap<V>> stripes = new AtomicReferenceArray<>(STRIPES);
+    private volatile int size;
+
+    public CopyOnWriteIntTable(int expectedSize) {
+        int perStripe = Math.max(4, expectedSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.set(i, new IntObjectHashMap<>(perStripe));
+        }
+    }
+
+    public V get(int key) {
+        return stripes.get(stripe(key)).get(key);
+    }
+
+    /**
+     * @return giá trị cũ, hoặc null nếu key chưa có
+     */
+    public V put(int key, V value) {
+        int stripe = stripe(key);
+        IntObjectHashMap<V> copy = new IntObjectHashMap<>(stripes.get(stripe));
+        V previous = copy.put(key, value);
+        stripes.set(stripe, copy);
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    /**
+     * @return giá trị đã xoá, hoặc null nếu key không tồn tại
+     */
+    public V remove(int key) {
+        int stripe = stripe(key);
+        IntObjectHashMap<V> current = stripes.get(stripe);
+        if (current.get(key) == null) {
+            return null;
+        }
+        IntObjectHashMap<V> copy = new IntObjectHashMap<>(current);
+        V previous = copy.remove(key);
+        stripes.set(stripe, copy);
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Duyệt từng stripe theo bản đang publish; ghi đồng thời có thể thấy hoặc không.
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.get(i).forEachValue(action);
+        }
+    }
+
+    private static int stripe(int key) {
+        return HashUtil.mix(key) >>> 26; // 6 bit cao, stripe dùng bit thấp cho slot
+    }
+}
@@ -0,0 +1,30 @@
+package com.mygame.server.util;
+
+/**
+ * Hàm hỗ trợ cho các hash map open addressing trong package này.
+ */
+final class HashUtil {
+    private static final int INT_PHI = 0x9E3779B9;
+
+    private HashUtil() {
+    }
+
+    /**
+     * Trộn bit của key (id tuần tự 1, 2, 3... sẽ dồn cụm nếu dùng trực tiếp với linear probing).
+     */
+    static int mix(int key) {
+        int h = key * INT_PHI;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Kích thước bảng (luỹ thừa của 2) đủ chứa expectedSize phần tử với loadFactor cho trước.
+     */
+    static int tableSize(int expectedSize, float loadFactor) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 2) / loadFactor);
+        if (needed > (1 << 30)) {
+            throw new IllegalArgumentException("Map quá lớn: " + expectedSize);
+        }
+        return Math.max(4, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+}
@@ -0,0 +1,194 @@
+package com.mygame.server.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Map int -> Object dùng open addressing (linear probing), không boxing key.
+ *
+ * Key 0 lưu riêng (FREE_KEY đánh dấu ô trống), xoá bằng backward-shift.
+ * Giá trị null không được hỗ trợ (get trả về null nghĩa là không có key).
+ * Không thread-safe: caller tự đồng bộ.
+ */
+public class IntObjectHashMap<V> {
+    private static final int FREE_KEY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private V zeroValue;
+
+    public IntObjectHashMap(int expectedSize) {
+        allocate(HashUtil.tableSize(expectedSize, LOAD_FACTOR));
+    }
+
+    /**
+     * Bản sao độc lập của {@code other}.
+     */
+    public IntObjectHashMap(IntObjectHashMap<V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        mask = other.mask;
+        size = other.size;
+        resizeAt = other.resizeAt;
+        zeroValue = other.zeroValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == FREE_KEY) {
+            return zeroValue;
+        }
+        int idx = HashUtil.mix(key) & mask;
+        while (true) {
+            int k = keys[idx];
+            if (k == FREE_KEY) {
+                return null;
+            }
+            if (k == key) {
+                return (V) values[idx];
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    /**
+     * @return giá trị cũ, hoặc null nếu key chưa có
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value null");
+        }
+        if (key == FREE_KEY) {
+            V previous = zeroValue;
+            if (previous == null) {
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int idx = HashUtil.mix(key) & mask;
+        while (true) {
+            int k = keys[idx];
+            if (k == FREE_KEY) {
+                keys[idx] = key;
+                values[idx] = value;
+                if (++size >= resizeAt) {
+                    rehash(keys.length * 2);
+                }
+                return null;
+            }
+            if (k == key) {
+                V previous = (V) values[idx];
+                values[idx] = value;
+                return previous;
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    /**
+     * @return giá trị đã xoá, hoặc null nếu key không tồn tại
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == FREE_KEY) {
+            V previous = zeroValue;
+            if (previous != null) {
+                zeroValue = null;
+                size--;
+            }
+            return previous;
+        }
+        int idx = HashUtil.mix(key) & mask;
+        while (true) {
+            int k = keys[idx];
+            if (k == FREE_KEY) {
+                return null;
+            }
+            if (k == key) {
+                V previous = (V) values[idx];
+                shiftKeys(idx);
+                size--;
+                return previous;
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        if (zeroValue != null) {
+            action.accept(zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                action.accept((V) values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, null);
+        zeroValue = null;
+        size = 0;
+    }
+
+    private void shiftKeys(int pos) {
+        // Dời các key phía sau lên để chuỗi probe không bị đứt
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            int k;
+            while (true) {
+                k = keys[pos];
+                if (k == FREE_KEY) {
+                    keys[last] = FREE_KEY;
+                    values[last] = null;
+                    return;
+                }
+                int slot = HashUtil.mix(k) & mask;
+                if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        size = zeroValue != null ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            int k = oldKeys[i];
+            if (k != FREE_KEY) {
+                put(k, (V) oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mygame.server.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor chạy task tuần tự (mỗi lúc một task, đúng thứ tự submit) trên một executor
+ * dùng chung. Mỗi room có một instance, nên nhiều room chạy song song trên pool chung
+ * mà state của một room không cần lock.
+ */
+public class SerialExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private static final int MAX_TASKS_PER_DRAIN = 64; // nhường thread cho room khác
+
+    // Tổng task đang chờ trên mọi SerialExecutor (dùng cho admission control)
+    private static final AtomicLong QUEUED = new AtomicLong();
+
+    private final Executor backing;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public SerialExecutor(Executor backing) {
+        this.backing = backing;
+    }
+
+    public static long queuedTasks() {
+        return QUEUED.get();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        QUEUED.incrementAndGet();
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                backing.execute(this::drain);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < MAX_TASKS_PER_DRAIN; i++) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                QUEUED.decrementAndGet();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Lỗi trong task tuần tự: {}", e.getMessage(), e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            scheduleDrain();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.mygame.server.wallet;
+
+/**
+ * Thao tác wallet bị từ chối vì số dư không đủ và không có phần thắng nào để bù.
+ */
+public class InsufficientCreditsException extends RuntimeException {
+    public InsufficientCreditsException(String message) {
+        super(message);
+    }
+}
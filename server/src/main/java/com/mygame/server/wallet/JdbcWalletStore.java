@@ -0,0 +1,222 @@
+package com.mygame.server.wallet;
+
+import com.mygame.server.database.DatabaseManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link WalletStore} trên PostgreSQL.
+ *
+ * Dùng hai connection riêng: một cho flusher thread, một (synchronized) cho việc đọc
+ * số dư khi account chưa có trong bộ nhớ. Không đụng tới connection dùng chung của
+ * {@link DatabaseManager}. Connection gặp lỗi bị đóng và mở lại qua
+ * {@link DatabaseManager#openConnection()} (đi qua circuit breaker) ở lần dùng sau, nên wallet
+ * tự nối lại sau khi PostgreSQL restart.
+ */
+public final class JdbcWalletStore implements WalletStore {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcWalletStore.class);
+
+    private final DatabaseManager dbManager;
+    private final String walletId;
+    private Connection flushConnection;
+    private Connection readConnection;
+
+    public JdbcWalletStore(DatabaseManager dbManager, String walletId) {
+        this.dbManager = dbManager;
+        this.walletId = walletId;
+    }
+
+    @Override
+    public void open() throws SQLException {
+        flushConnection();
+        synchronized (this) {
+            readConnection();
+        }
+    }
+
+    /**
+     * Connection của flusher, mở lại nếu lần trước bị bỏ do lỗi. Chỉ thread flusher (hoặc lúc
+     * start/shutdown) gọi.
+     */
+    private Connection flushConnection() throws SQLException {
+        if (flushConnection == null || flushConnection.isClosed()) {
+            flushConnection = dbManager.openConnection();
+        }
+        return flushConnection;
+    }
+
+    /**
+     * Connection đọc số dư; caller giữ lock {@code this}.
+     */
+    private Connection readConnection() throws SQLException {
+        if (readConnection == null || readConnection.isClosed()) {
+            readConnection = dbManager.openConnection();
+        }
+        return readConnection;
+    }
+
+    /**
+     * Bỏ connection flusher sau lỗi (đóng connection cũng rollback transaction dở).
+     */
+    private void dropFlushConnection() {
+        closeQuietly(flushConnection);
+        flushConnection = null;
+    }
+
+    /**
+     * Seq lớn nhất đã được flush xuống database (0 nếu wallet chưa flush lần nào).
+     */
+    @Override
+    public long loadCheckpoint() throws SQLException {
+        String insertSql = "INSERT INTO wallet_state (wallet_id, last_seq) VALUES (?, 0) ON CONFLICT (wallet_id) DO NOTHING";
+        String selectSql = "SELECT last_seq FROM wallet_state WHERE wallet_id = ?";
+        try (PreparedStatement insert = flushConnection().prepareStatement(insertSql);
+             PreparedStatement select = flushConnection.prepareStatement(selectSql)) {
+            insert.setString(1, walletId);
+            insert.executeUpdate();
+            select.setString(1, walletId);
+            long lastSeq = 0;
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    lastSeq = rs.getLong(1);
+                }
+            }
+            flushConnection.commit();
+            return lastSeq;
+        } catch (SQLException e) {
+            dropFlushConnection();
+            throw e;
+        }
+    }
+
+    /**
+     * Nạp các idempotency key gần nhất để chặn thao tác lặp lại sau khi restart.
+     * Key cũ hơn retentionDays bị xoá luôn.
+     */
+    @Override
+    public List<String> loadRecentKeys(int limit, int retentionDays) throws SQLException {
+        String purgeSql = "DELETE FROM wallet_ops WHERE wallet_id = ? AND created_at < CURRENT_TIMESTAMP - make_interval(days => ?)";
+        String selectSql = "SELECT op_key FROM wallet_ops WHERE wallet_id = ? ORDER BY seq DESC LIMIT ?";
+        List<String> keys = new ArrayList<>();
+        try (PreparedStatement purge = flushConnection().prepareStatement(purgeSql);
+             PreparedStatement select = flushConnection.prepareStatement(selectSql)) {
+            purge.setString(1, walletId);
+            purge.setInt(2, retentionDays);
+            int purged = purge.executeUpdate();
+            if (purged > 0) {
+                logger.info("Đã xoá {} idempotency key cũ hơn {} ngày", purged, retentionDays);
+            }
+
+            select.setString(1, walletId);
+            select.setInt(2, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getString(1));
+                }
+            }
+            flushConnection.commit();
+        } catch (SQLException e) {
+            dropFlushConnection();
+            throw e;
+        }
+        // Trả về theo thứ tự cũ -> mới để LRU giữ lại key mới nhất
+        Collections.reverse(keys);
+        return keys;
+    }
+
+    /**
+     * Đọc số dư hiện tại trong database.
+     */
+    @Override
+    public long loadBalance(int userId) throws SQLException {
+        String sql = "SELECT credits FROM users WHERE user_id = ?";
+        synchronized (this) {
+            try (PreparedStatement pstmt = readConnection().prepareStatement(sql)) {
+                pstmt.setInt(1, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        long credits = rs.getLong(1);
+                        readConnection.commit();
+                        return credits;
+                    }
+                }
+                readConnection.commit();
+            } catch (SQLException e) {
+                closeQuietly(readConnection);
+                readConnection = null;
+                throw e;
+            }
+        }
+        throw new SQLException("User not found");
+    }
+
+    /**
+     * Ghi các delta đã gộp, các idempotency key và checkpoint mới trong cùng một transaction.
+     */
+    @Override
+    public void flush(Map<Integer, Long> deltas, List<String> keys, List<Long> keySeqs, long lastSeq) throws SQLException {
+        String creditSql = "UPDATE users SET credits = credits + ? WHERE user_id = ?";
+        String keySql = "INSERT INTO wallet_ops (wallet_id, op_key, seq) VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+        String checkpointSql = "UPDATE wallet_state SET last_seq = ?, updated_at = CURRENT_TIMESTAMP WHERE wallet_id = ?";
+
+        try (PreparedStatement creditStmt = flushConnection().prepareStatement(creditSql);
+             PreparedStatement keyStmt = flushConnection.prepareStatement(keySql);
+             PreparedStatement checkpointStmt = flushConnection.prepareStatement(checkpointSql)) {
+            for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                creditStmt.setLong(1, entry.getValue());
+                creditStmt.setInt(2, entry.getKey());
+                creditStmt.addBatch();
+            }
+            creditStmt.executeBatch();
+
+            for (int i = 0; i < keys.size(); i++) {
+                keyStmt.setString(1, walletId);
+                keyStmt.setString(2, keys.get(i));
+                keyStmt.setLong(3, keySeqs.get(i));
+                keyStmt.addBatch();
+            }
+            keyStmt.executeBatch();
+
+            checkpointStmt.setLong(1, lastSeq);
+            checkpointStmt.setString(2, walletId);
+            checkpointStmt.executeUpdate();
+
+            flushConnection.commit();
+        } catch (SQLException e) {
+            dropFlushConnection();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        dropFlushConnection();
+        synchronized (this) {
+            closeQuietly(readConnection);
+            readConnection = null;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Lỗi khi đóng wallet connection: {}", e.getMessage());
+        }
+    }
+}
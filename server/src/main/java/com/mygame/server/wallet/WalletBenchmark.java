@@ -0,0 +1,182 @@
+package com.mygame.server.wallet;
+
+import com.mygame.server.database.DatabaseManager;
+import com.mygame.server.database.JdbcStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * So sánh throughput settle ván giữa đường cũ (mỗi player một UPDATE + commit)
+ * và {@link WalletService} (log + group commit + flush theo batch).
+ *
+ * Chạy với database cấu hình trong {@link DatabaseManager}:
+ * <pre>
+ * java -cp server.jar com.mygame.server.wallet.WalletBenchmark [settlements] [playersPerTable] [threads]
+ * </pre>
+ * Benchmark dùng các user {@code bench_wallet_*} riêng và wallet id {@code bench},
+ * không ảnh hưởng checkpoint của wallet chính.
+ */
+public class WalletBenchmark {
+    private static final String WALLET_ID = "bench";
+    private static final long STAKE = 100;
+
+    public static void main(String[] args) throws Exception {
+        int settlements = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        dbManager.connect();
+        dbManager.initDatabase();
+        int[] userIds = ensureBenchUsers(dbManager, players * threads);
+
+        System.out.printf("Settlements: %d, players/table: %d, threads: %d%n", settlements, players, threads);
+
+        double legacy = runLegacy(dbManager, userIds, settlements, players, threads);
+        System.out.printf("Legacy (UPDATE + commit per player): %,.0f settlements/s%n", legacy);
+
+        Path dir = Files.createTempDirectory("wallet-bench");
+        WalletService wallet = new WalletService(WALLET_ID);
+        wallet.start(new JdbcStorage(dbManager), dir);
+        try {
+            long start = System.nanoTime();
+            double walletRate = runWallet(wallet, userIds, settlements, players, threads);
+            System.out.printf("Wallet (log + group commit):          %,.0f settlements/s (%d fsync)%n",
+                    walletRate, wallet.getSyncCount());
+            System.out.printf("Speedup: %.1fx%n", walletRate / legacy);
+            wallet.shutdown();
+            System.out.printf("Wallet total incl. final flush: %d ms (%d flushes)%n",
+                    (System.nanoTime() - start) / 1_000_000, wallet.getFlushCount());
+        } finally {
+            wallet.shutdown();
+            cleanup(dbManager, dir);
+            dbManager.close();
+        }
+    }
+
+    private static double runLegacy(DatabaseManager dbManager, int[] userIds, int settlements,
+                                    int players, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int table = t;
+            futures.add(pool.submit(() -> {
+                // Mỗi thread một connection, giống một DAO độc lập
+                try (Connection conn = dbManager.openConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(
+                             "UPDATE users SET credits = credits + ? WHERE user_id = ?")) {
+                    for (int s = table; s < settlements; s += threads) {
+                        Map<Integer, Long> deltas = deltas(userIds, table, players, s);
+                        for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+                            pstmt.setLong(1, entry.getValue());
+                            pstmt.setInt(2, entry.getKey());
+                            pstmt.executeUpdate();
+                            conn.commit();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        return settlements / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double runWallet(WalletService wallet, int[] userIds, int settlements,
+                                    int players, int threads) throws Exception {
+        String run = Long.toString(System.currentTimeMillis());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int table = t;
+            futures.add(pool.submit(() -> {
+                // Mỗi "bàn" settle tuần tự và chờ durable, giống GameSessionManager
+                for (int s = table; s < settlements; s += threads) {
+                    CompletableFuture<Boolean> done = wallet.settle("bench:" + run + ":" + s,
+                            deltas(userIds, table, players, s));
+                    done.join();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        return settlements / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Người thắng xoay vòng nhận stake của những người còn lại, tổng delta bằng 0.
+     */
+    private static Map<Integer, Long> deltas(int[] userIds, int table, int players, int settlement) {
+        Map<Integer, Long> deltas = new HashMap<>();
+        int winner = settlement % players;
+        for (int p = 0; p < players; p++) {
+            int userId = userIds[table * players + p];
+            deltas.put(userId, p == winner ? STAKE * (players - 1) : -STAKE);
+        }
+        return deltas;
+    }
+
+    private static int[] ensureBenchUsers(DatabaseManager dbManager, int count) throws SQLException {
+        Connection conn = dbManager.getConnection();
+        String insertSql = "INSERT INTO users (username, password_hash, credits) VALUES (?, '-', 1000000) " +
+                "ON CONFLICT (username) DO NOTHING";
+        String selectSql = "SELECT user_id FROM users WHERE username = ?";
+        int[] userIds = new int[count];
+        try (PreparedStatement insert = conn.prepareStatement(insertSql);
+             PreparedStatement select = conn.prepareStatement(selectSql)) {
+            for (int i = 0; i < count; i++) {
+                String username = "bench_wallet_" + i;
+                insert.setString(1, username);
+                insert.executeUpdate();
+                select.setString(1, username);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    userIds[i] = rs.getInt(1);
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        return userIds;
+    }
+
+    private static void cleanup(DatabaseManager dbManager, Path dir) throws Exception {
+        Connection conn = dbManager.getConnection();
+        try (PreparedStatement ops = conn.prepareStatement("DELETE FROM wallet_ops WHERE wallet_id = ?");
+             PreparedStatement state = conn.prepareStatement("DELETE FROM wallet_state WHERE wallet_id = ?")) {
+            ops.setString(1, WALLET_ID);
+            ops.executeUpdate();
+            state.setString(1, WALLET_ID);
+            state.executeUpdate();
+            conn.commit();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.mygame.server.wallet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log cho wallet, chia thành nhiều segment file.
+ *
+ * Mỗi record được frame bằng length(4) | crc32(4) | payload. Một writer thread duy nhất
+ * gom tất cả record đang chờ, ghi một lần và gọi fsync một lần cho cả batch (group commit),
+ * rồi mới complete future của từng record. Segment được đặt tên theo seq đầu tiên của nó
+ * để có thể xoá các segment đã flush xuống database.
+ */
+final class WalletLog {
+    private static final Logger logger = LoggerFactory.getLogger(WalletLog.class);
+
+    private static final String PREFIX = "wallet-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    private static final int MAX_BATCH = 1024;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    private final TreeMap<Long, Path> segments = new TreeMap<>(); // firstSeq -> file, guarded by itself
+
+    private FileChannel channel;
+    private long activeSegmentSeq;
+    private Thread writerThread;
+    private volatile boolean running;
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    // Thống kê group commit (chỉ writer thread ghi)
+    private volatile long syncCount;
+    private volatile long recordCount;
+
+    WalletLog(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Đọc lại toàn bộ segment theo thứ tự seq. Tail bị ghi dở (crash giữa chừng) sẽ bị cắt bỏ.
+     *
+     * @return seq lớn nhất đọc được, hoặc 0 nếu log rỗng
+     */
+    long replay(Consumer<WalletRecord> consumer) throws IOException {
+        Files.createDirectories(dir);
+        synchronized (segments) {
+            segments.clear();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    try {
+                        long firstSeq = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                        segments.put(firstSeq, file);
+                    } catch (NumberFormatException e) {
+                        logger.warn("Bỏ qua file không đúng định dạng trong wallet log: {}", name);
+                    }
+                }
+            }
+        }
+
+        long maxSeq = 0;
+        for (Path file : new ArrayList<>(segments.values())) {
+            maxSeq = Math.max(maxSeq, replaySegment(file, consumer));
+        }
+        return maxSeq;
+    }
+
+    private long replaySegment(Path file, Consumer<WalletRecord> consumer) throws IOException {
+        long maxSeq = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            long position = 0;
+            long size = ch.size();
+            while (position < size) {
+                header.clear();
+                if (readFully(ch, header, position) < HEADER_BYTES) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || length > MAX_PAYLOAD_BYTES || position + HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(ch, payload, position + HEADER_BYTES);
+                payload.flip();
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                WalletRecord record = WalletRecord.readPayload(payload);
+                maxSeq = Math.max(maxSeq, record.seq);
+                consumer.accept(record);
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                logger.warn("Wallet log {} có {} bytes hỏng ở cuối, cắt bỏ", file.getFileName(), size - position);
+                ch.truncate(position);
+                ch.force(true);
+            }
+        }
+        return maxSeq;
+    }
+
+    private static int readFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = ch.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Mở segment mới bắt đầu từ nextSeq và khởi động writer thread.
+     *
+     * @param onDurable được gọi (trên writer thread) với các record vừa fsync xong
+     */
+    void start(long nextSeq, Consumer<List<WalletRecord>> onDurable) throws IOException {
+        openSegment(nextSeq);
+        running = true;
+        writerThread = new Thread(() -> writerLoop(onDurable), "wallet-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Đưa record vào hàng đợi ghi. Caller phải gọi theo đúng thứ tự seq.
+     * Future complete khi record đã được fsync.
+     */
+    CompletableFuture<Void> append(WalletRecord record) {
+        PendingAppend pending = new PendingAppend(record);
+        if (!running) {
+            pending.future.completeExceptionally(new IOException("Wallet log đã đóng"));
+            return pending.future;
+        }
+        queue.add(pending);
+        return pending.future;
+    }
+
+    private void writerLoop(Consumer<List<WalletRecord>> onDurable) {
+        List<PendingAppend> batch = new ArrayList<>(MAX_BATCH);
+        List<WalletRecord> records = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            long batchStart = -1;
+            try {
+                batchStart = channel.position();
+                for (PendingAppend pending : batch) {
+                    writeRecord(pending.record);
+                    records.add(pending.record);
+                }
+                flushBuffer();
+                channel.force(false);
+                batchStart = -1;
+                syncCount++;
+                recordCount += batch.size();
+
+                try {
+                    onDurable.accept(records);
+                } catch (RuntimeException e) {
+                    logger.error("Lỗi trong wallet log callback: {}", e.getMessage(), e);
+                }
+                for (PendingAppend pending : batch) {
+                    pending.future.complete(null);
+                }
+
+                if (channel.position() >= segmentBytes) {
+                    openSegment(batch.get(batch.size() - 1).record.seq + 1);
+                }
+            } catch (Exception e) {
+                logger.error("Lỗi khi ghi wallet log: {}", e.getMessage(), e);
+                if (batchStart >= 0) {
+                    // Batch chưa durable: huỷ phần ghi dở và báo lỗi cho caller
+                    discardPartialBatch(batchStart);
+                    for (PendingAppend pending : batch) {
+                        pending.future.completeExceptionally(e);
+                    }
+                }
+            } finally {
+                writeBuffer.clear();
+                batch.clear();
+                records.clear();
+            }
+        }
+
+        // Huỷ những record còn sót lại nếu thread bị ngắt
+        PendingAppend leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.future.completeExceptionally(new IOException("Wallet log đã đóng"));
+        }
+    }
+
+    /**
+     * Cắt bỏ phần batch đã ghi dở, tránh để record hỏng nằm giữa log làm replay dừng sớm.
+     */
+    private void discardPartialBatch(long batchStart) {
+        try {
+            channel.truncate(batchStart);
+            channel.position(batchStart);
+        } catch (IOException e) {
+            logger.error("Không thể cắt bỏ batch ghi dở trong wallet log: {}", e.getMessage());
+        }
+    }
+
+    private void writeRecord(WalletRecord record) throws IOException {
+        int payloadSize = record.payloadSize();
+        if (writeBuffer.remaining() < HEADER_BYTES + payloadSize) {
+            flushBuffer();
+            if (writeBuffer.capacity() < HEADER_BYTES + payloadSize) {
+                writeBuffer = ByteBuffer.allocateDirect(HEADER_BYTES + payloadSize);
+            }
+        }
+        int start = writeBuffer.position();
+        writeBuffer.position(start + HEADER_BYTES);
+        record.writePayload(writeBuffer);
+
+        ByteBuffer payload = writeBuffer.duplicate();
+        payload.position(start + HEADER_BYTES).limit(start + HEADER_BYTES + payloadSize);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        writeBuffer.putInt(start, payloadSize);
+        writeBuffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Path file = dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        activeSegmentSeq = firstSeq;
+        synchronized (segments) {
+            segments.put(firstSeq, file);
+        }
+        logger.debug("Mở wallet log segment {}", file.getFileName());
+    }
+
+    /**
+     * Xoá các segment mà mọi record đều có seq <= checkpointSeq (đã nằm trong database).
+     */
+    void deleteSegmentsUpTo(long checkpointSeq) {
+        List<Path> toDelete = new ArrayList<>();
+        synchronized (segments) {
+            Map.Entry<Long, Path> entry = segments.firstEntry();
+            while (entry != null) {
+                Map.Entry<Long, Path> next = segments.higherEntry(entry.getKey());
+                if (next == null || next.getKey() > checkpointSeq + 1 || entry.getKey() == activeSegmentSeq) {
+                    break;
+                }
+                toDelete.add(entry.getValue());
+                segments.remove(entry.getKey());
+                entry = next;
+            }
+        }
+        for (Path file : toDelete) {
+            try {
+                Files.deleteIfExists(file);
+                logger.debug("Đã xoá wallet log segment {}", file.getFileName());
+            } catch (IOException e) {
+                logger.warn("Không xoá được wallet log segment {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dừng nhận record mới, chờ writer ghi hết hàng đợi rồi đóng segment.
+     */
+    void close() {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Lỗi khi đóng wallet log: {}", e.getMessage());
+        }
+    }
+
+    long getSyncCount() {
+        return syncCount;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    private static final class PendingAppend {
+        final WalletRecord record;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingAppend(WalletRecord record) {
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.mygame.server.wallet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Một bản ghi trong wallet log: một thao tác (có idempotency key) gồm một hoặc nhiều
+ * thay đổi credits được áp dụng nguyên tử.
+ *
+ * Layout payload: seq(8) | timestamp(8) | keyLen(2) | key | count(4) | count x (userId(4) | delta(8))
+ */
+final class WalletRecord {
+    final long seq;
+    final long timestamp;
+    final String key;
+    final int[] userIds;
+    final long[] deltas;
+
+    private final byte[] keyBytes;
+
+    WalletRecord(long seq, long timestamp, String key, int[] userIds, long[] deltas) {
+        this.seq = seq;
+        this.timestamp = timestamp;
+        this.key = key;
+        this.userIds = userIds;
+        this.deltas = deltas;
+        this.keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Idempotency key quá dài: " + keyBytes.length + " bytes");
+        }
+    }
+
+    int payloadSize() {
+        return 8 + 8 + 2 + keyBytes.length + 4 + userIds.length * 12;
+    }
+
+    void writePayload(ByteBuffer buffer) {
+        buffer.putLong(seq);
+        buffer.putLong(timestamp);
+        buffer.putShort((short) keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putInt(userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            buffer.putInt(userIds[i]);
+            buffer.putLong(deltas[i]);
+        }
+    }
+
+    static WalletRecord readPayload(ByteBuffer buffer) {
+        long seq = buffer.getLong();
+        long timestamp = buffer.getLong();
+        byte[] keyBytes = new byte[buffer.getShort()];
+        buffer.get(keyBytes);
+        int count = buffer.getInt();
+        int[] userIds = new int[count];
+        long[] deltas = new long[count];
+        for (int i = 0; i < count; i++) {
+            userIds[i] = buffer.getInt();
+            deltas[i] = buffer.getLong();
+        }
+        return new WalletRecord(seq, timestamp, new String(keyBytes, StandardCharsets.UTF_8), userIds, deltas);
+    }
+}
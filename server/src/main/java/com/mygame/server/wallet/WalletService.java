@@ -0,0 +1,560 @@
+package com.mygame.server.wallet;
+
+import com.mygame.server.database.DatabaseHealthMonitor;
+import com.mygame.server.storage.AsyncDao;
+import com.mygame.server.storage.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ví credits của người chơi, giữ số dư trong bộ nhớ.
+ *
+ * Mỗi thao tác:
+ * 1. Kiểm tra idempotency key - key đã thấy thì bỏ qua (trả về false), nên settle lại
+ *    cùng một ván không bao giờ trả tiền hai lần.
+ * 2. Cập nhật số dư trong bộ nhớ (không cho âm, xem {@link #settle}) và ghi record vào
+ *    {@link WalletLog}.
+ * 3. Future complete khi record đã fsync (group commit với các thao tác khác).
+ *
+ * Các delta đã durable được gộp theo user và flush xuống bảng users định kỳ trong một
+ * transaction cùng checkpoint seq. Khi khởi động, record sau checkpoint được replay
+ * và flush trước khi server nhận kết nối.
+ *
+ * Account được nạp từ database lần đầu dùng tới (hoặc lúc login, xem {@link #preload}) và giữ lại
+ * trong bộ nhớ tới khi không được dùng quá {@code wallet.accountIdleMinutes} (mặc định 30) và không
+ * còn delta chưa flush. Mọi thay đổi credits phải đi qua service này, nếu không số dư trong bộ nhớ
+ * sẽ lệch với database.
+ *
+ * Khi circuit breaker database mở, settle của account đã nạp vẫn chạy bình thường (chỉ cần log
+ * cục bộ); flush tạm dừng, delta dồn trong log và được flush ngay khi breaker đóng lại.
+ */
+public class WalletService {
+    private static final Logger logger = LoggerFactory.getLogger(WalletService.class);
+
+    public static final String MAIN_WALLET_ID = "main";
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 500;
+    private static final int RECENT_KEY_CAPACITY = 100_000;
+    private static final int KEY_RETENTION_DAYS = 30;
+    private static final long ACCOUNT_IDLE_NANOS =
+            TimeUnit.MINUTES.toNanos(Long.getLong("wallet.accountIdleMinutes", 30));
+    private static final long EVICT_INTERVAL_MS = 60_000;
+
+    private static WalletService instance;
+
+    private final String walletId;
+    private final Object lock = new Object();
+
+    // Các field dưới đây được bảo vệ bởi lock
+    private final Map<Integer, Account> accounts = new HashMap<>();
+    private final LinkedHashMap<String, Boolean> recentKeys = new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_KEY_CAPACITY;
+        }
+    };
+    private long nextSeq = 1;
+
+    // Các delta đã durable nhưng chưa flush, được bảo vệ bởi pendingLock
+    private final Object pendingLock = new Object();
+    private TreeMap<Integer, Long> pendingDeltas = new TreeMap<>();
+    private List<String> pendingKeys = new ArrayList<>();
+    private List<Long> pendingKeySeqs = new ArrayList<>();
+    private long pendingMaxSeq;
+
+    private final DatabaseHealthMonitor health = DatabaseHealthMonitor.getInstance();
+    private WalletLog log;
+    private WalletStore store;
+    private ScheduledExecutorService flusher;
+    private volatile boolean started;
+
+    // Thống kê
+    private volatile long flushCount;
+    private volatile long duplicateCount;
+    private volatile long shortfallCount;
+    private volatile long evictedCount;
+
+    WalletService(String walletId) {
+        this.walletId = walletId;
+    }
+
+    public static synchronized WalletService getInstance() {
+        if (instance == null) {
+            instance = new WalletService(MAIN_WALLET_ID);
+        }
+        return instance;
+    }
+
+    /**
+     * Replay wallet log, đồng bộ database rồi bắt đầu nhận thao tác.
+     * Thư mục log lấy từ system property {@code wallet.dir} (mặc định {@code data/wallet}).
+     */
+    public void start(Storage storage) throws IOException, SQLException {
+        start(storage, Paths.get(System.getProperty("wallet.dir", "data/wallet")));
+    }
+
+    synchronized void start(Storage storage, Path dir) throws IOException, SQLException {
+        if (started) {
+            return;
+        }
+        store = storage.walletStore(walletId);
+        store.open();
+
+        long checkpoint = store.loadCheckpoint();
+        List<String> keys = store.loadRecentKeys(RECENT_KEY_CAPACITY, KEY_RETENTION_DAYS);
+        synchronized (lock) {
+            for (String key : keys) {
+                recentKeys.put(key, Boolean.TRUE);
+            }
+        }
+
+        log = new WalletLog(dir, SEGMENT_BYTES);
+        int[] replayed = new int[1];
+        long maxSeq = log.replay(record -> {
+            synchronized (lock) {
+                recentKeys.put(record.key, Boolean.TRUE);
+            }
+            if (record.seq > checkpoint) {
+                addPending(record);
+                replayed[0]++;
+            }
+        });
+        if (replayed[0] > 0) {
+            logger.info("Wallet {}: replay {} thao tác chưa flush (checkpoint {}, log tới seq {})",
+                    walletId, replayed[0], checkpoint, maxSeq);
+        }
+
+        // Đồng bộ database trước khi nạp account, để số dư đọc từ database là chính xác
+        flushPending();
+
+        synchronized (lock) {
+            nextSeq = Math.max(checkpoint, maxSeq) + 1;
+        }
+        log.start(nextSeq, this::onDurable);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wallet-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        // Cùng thread với flush, nên không có flush nào đang dở khi kiểm tra delta chưa flush
+        flusher.scheduleWithFixedDelay(this::evictIdleAccounts, EVICT_INTERVAL_MS, EVICT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        health.onRecovered(() -> {
+            if (started) {
+                flusher.execute(this::flushQuietly);
+            }
+        });
+
+        started = true;
+        logger.info("Wallet {} đã sẵn sàng (seq tiếp theo: {})", walletId, nextSeq);
+    }
+
+    /**
+     * Áp dụng nguyên tử một nhóm thay đổi credits (vd. kết quả một ván).
+     *
+     * Người thua không đủ credits chỉ mất số đang có; phần thiếu được trừ vào phần thắng (chia theo
+     * tỉ lệ), nên settlement tổng bằng 0 vẫn tổng bằng 0 và không sinh credits. Nếu phần thắng
+     * không đủ bù (vd. trừ credits một user), cả thao tác bị từ chối với
+     * {@link InsufficientCreditsException}.
+     *
+     * @param key    idempotency key, vd. {@code settle:<sessionId>}
+     * @param deltas userId -> thay đổi credits
+     * @return future trả về true khi đã durable, false nếu key đã được xử lý trước đó
+     */
+    public CompletableFuture<Boolean> settle(String key, Map<Integer, Long> deltas) {
+        if (!started) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Wallet chưa khởi động"));
+        }
+        try {
+            for (Integer userId : deltas.keySet()) {
+                ensureLoaded(userId);
+            }
+        } catch (SQLException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        WalletRecord record;
+        CompletableFuture<Void> durable;
+        synchronized (lock) {
+            if (recentKeys.containsKey(key)) {
+                duplicateCount++;
+                logger.warn("Wallet: bỏ qua thao tác trùng key {}", key);
+                return CompletableFuture.completedFuture(Boolean.FALSE);
+            }
+
+            int[] userIds = new int[deltas.size()];
+            long[] applied = new long[deltas.size()];
+            long shortfall = 0;
+            long winnings = 0;
+            int i = 0;
+            for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+                long balance = accounts.get(entry.getKey()).balance;
+                long delta = entry.getValue();
+                if (balance + delta < 0) {
+                    shortfall += -(balance + delta);
+                    delta = -balance;
+                } else if (delta > 0) {
+                    winnings += delta;
+                }
+                userIds[i] = entry.getKey();
+                applied[i] = delta;
+                i++;
+            }
+            if (shortfall > 0) {
+                if (shortfall > winnings) {
+                    shortfallCount++;
+                    logger.warn("Wallet: từ chối {} - thiếu {} credits, phần thắng chỉ có {}", key, shortfall, winnings);
+                    return CompletableFuture.failedFuture(new InsufficientCreditsException(
+                            "Không đủ credits (thiếu " + shortfall + ")"));
+                }
+                scaleWinnings(applied, shortfall, winnings);
+                shortfallCount++;
+                logger.warn("Wallet: {} - người thua thiếu {} credits, trừ tương ứng vào phần thắng ({})",
+                        key, shortfall, winnings);
+            }
+            for (int j = 0; j < userIds.length; j++) {
+                accounts.get(userIds[j]).balance += applied[j];
+            }
+            recentKeys.put(key, Boolean.TRUE);
+
+            record = new WalletRecord(nextSeq++, System.currentTimeMillis(), key, userIds, applied);
+            // Enqueue trong lock để thứ tự trong log khớp với thứ tự seq
+            durable = log.append(record);
+        }
+
+        return durable.handle((ignored, error) -> {
+            if (error != null) {
+                revert(record);
+                throw new CompletionException(error);
+            }
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Giảm các delta dương trong {@code applied} tổng cộng đúng {@code shortfall} (theo tỉ lệ, phần
+     * dư do làm tròn trừ mỗi người 1 credit). Yêu cầu {@code 0 < shortfall <= winnings}.
+     */
+    static void scaleWinnings(long[] applied, long shortfall, long winnings) {
+        BigInteger total = BigInteger.valueOf(winnings);
+        long remaining = shortfall;
+        for (int j = 0; j < applied.length; j++) {
+            if (applied[j] > 0) {
+                long cut = BigInteger.valueOf(shortfall).multiply(BigInteger.valueOf(applied[j]))
+                        .divide(total).longValueExact();
+                applied[j] -= cut;
+                remaining -= cut;
+            }
+        }
+        // Phần dư < số người thắng; tổng phần thắng còn lại >= phần dư nên vòng lặp luôn dừng
+        while (remaining > 0) {
+            for (int j = 0; j < applied.length && remaining > 0; j++) {
+                if (applied[j] > 0) {
+                    applied[j]--;
+                    remaining--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cộng (hoặc trừ) credits cho một user.
+     */
+    public CompletableFuture<Boolean> credit(String key, int userId, long amount) {
+        Map<Integer, Long> deltas = new HashMap<>();
+        deltas.put(userId, amount);
+        return settle(key, deltas);
+    }
+
+    /**
+     * Phiên bản blocking của {@link #credit} cho các DAO. Lỗi được bọc thành SQLException
+     * để caller giữ nguyên cách xử lý lỗi hiện có.
+     */
+    public boolean creditAndWait(String key, int userId, long amount) throws SQLException {
+        try {
+            return credit(key, userId, amount).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Bị ngắt khi chờ wallet", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Lỗi wallet: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Số dư hiện tại (nạp từ database nếu account chưa có trong bộ nhớ).
+     */
+    public long getBalance(int userId) throws SQLException {
+        ensureLoaded(userId);
+        synchronized (lock) {
+            Account account = accounts.get(userId);
+            account.lastUsed = System.nanoTime();
+            return account.balance;
+        }
+    }
+
+    /**
+     * Như {@link #getBalance} nhưng không chặn caller: account chưa có trong bộ nhớ thì được nạp trên
+     * pool I/O của {@link AsyncDao}. Future luôn hoàn thành trên {@code owner}.
+     */
+    public CompletableFuture<Long> getBalanceAsync(int userId, Executor owner) {
+        synchronized (lock) {
+            Account account = accounts.get(userId);
+            if (account != null) {
+                account.lastUsed = System.nanoTime();
+                CompletableFuture<Long> result = new CompletableFuture<>();
+                long balance = account.balance;
+                owner.execute(() -> result.complete(balance));
+                return result;
+            }
+        }
+        return AsyncDao.getInstance().submit(storage -> getBalance(userId), owner);
+    }
+
+    /**
+     * Số dư của account đã có trong bộ nhớ, không bao giờ đọc database (dùng khi đang giữ lock
+     * hoặc trên executor của room). Account chưa nạp thì ném SQLException.
+     */
+    public long getLoadedBalance(int userId) throws SQLException {
+        synchronized (lock) {
+            Account account = accounts.get(userId);
+            if (account == null) {
+                throw new SQLException("Số dư của user " + userId + " chưa được nạp");
+            }
+            account.lastUsed = System.nanoTime();
+            return account.balance;
+        }
+    }
+
+    /**
+     * Số dư trong bộ nhớ nếu account đã được nạp, ngược lại trả về fallback
+     * (thường là giá trị vừa đọc từ database).
+     */
+    public long getBalanceOrDefault(int userId, long fallback) {
+        synchronized (lock) {
+            Account account = accounts.get(userId);
+            return account != null ? account.balance : fallback;
+        }
+    }
+
+    /**
+     * Nạp account với số dư vừa đọc từ database (vd. lúc login) nếu chưa có trong bộ nhớ, để bàn
+     * mở sau đó và settle của user không cần tới database.
+     */
+    public void preload(int userId, long balance) {
+        synchronized (lock) {
+            // Cùng lý do với ensureLoaded: chưa có account thì chưa có delta nào chưa flush
+            accounts.putIfAbsent(userId, new Account(balance));
+        }
+    }
+
+    private void ensureLoaded(int userId) throws SQLException {
+        synchronized (lock) {
+            Account account = accounts.get(userId);
+            if (account != null) {
+                account.lastUsed = System.nanoTime(); // settle ngay sau đó không gặp account vừa bị bỏ
+                return;
+            }
+        }
+        // Đọc database ngoài lock. User chưa có account thì cũng chưa có delta nào chưa flush,
+        // nên giá trị trong database là chính xác.
+        long balance = store.loadBalance(userId);
+        synchronized (lock) {
+            accounts.putIfAbsent(userId, new Account(balance));
+        }
+    }
+
+    /**
+     * Bỏ khỏi bộ nhớ các account không được dùng quá {@link #ACCOUNT_IDLE_NANOS} và không còn delta
+     * chưa flush, để lần nạp sau đọc lại từ database vẫn đúng. Chạy trên thread flusher.
+     */
+    private void evictIdleAccounts() {
+        Set<Integer> unflushed;
+        synchronized (pendingLock) {
+            unflushed = new HashSet<>(pendingDeltas.keySet());
+        }
+        long now = System.nanoTime();
+        int evicted = 0;
+        synchronized (lock) {
+            Iterator<Map.Entry<Integer, Account>> it = accounts.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Account> entry = it.next();
+                if (now - entry.getValue().lastUsed > ACCOUNT_IDLE_NANOS && !unflushed.contains(entry.getKey())) {
+                    it.remove();
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            evictedCount += evicted;
+            logger.debug("Wallet {}: bỏ {} account không dùng", walletId, evicted);
+        }
+    }
+
+    private void revert(WalletRecord record) {
+        synchronized (lock) {
+            for (int i = 0; i < record.userIds.length; i++) {
+                Account account = accounts.get(record.userIds[i]);
+                if (account != null) {
+                    account.balance -= record.deltas[i];
+                }
+            }
+            recentKeys.remove(record.key);
+        }
+        logger.error("Wallet: huỷ thao tác {} vì không ghi được log", record.key);
+    }
+
+    private void onDurable(List<WalletRecord> records) {
+        for (WalletRecord record : records) {
+            addPending(record);
+        }
+    }
+
+    private void addPending(WalletRecord record) {
+        synchronized (pendingLock) {
+            for (int i = 0; i < record.userIds.length; i++) {
+                pendingDeltas.merge(record.userIds[i], record.deltas[i], Long::sum);
+            }
+            pendingKeys.add(record.key);
+            pendingKeySeqs.add(record.seq);
+            pendingMaxSeq = Math.max(pendingMaxSeq, record.seq);
+        }
+    }
+
+    private void flushQuietly() {
+        if (!health.isAvailable()) {
+            return; // Delta vẫn nằm trong log, flush lại khi breaker đóng
+        }
+        try {
+            flushPending();
+        } catch (SQLException e) {
+            logger.error("Wallet flush thất bại, sẽ thử lại: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Wallet flush lỗi: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Flush các delta đã durable xuống database. Thất bại thì gộp lại vào pending để lần sau thử tiếp.
+     */
+    private void flushPending() throws SQLException {
+        TreeMap<Integer, Long> deltas;
+        List<String> keys;
+        List<Long> keySeqs;
+        long maxSeq;
+        synchronized (pendingLock) {
+            if (pendingKeys.isEmpty()) {
+                return;
+            }
+            deltas = pendingDeltas;
+            keys = pendingKeys;
+            keySeqs = pendingKeySeqs;
+            maxSeq = pendingMaxSeq;
+            pendingDeltas = new TreeMap<>();
+            pendingKeys = new ArrayList<>();
+            pendingKeySeqs = new ArrayList<>();
+        }
+
+        long start = System.nanoTime();
+        try {
+            store.flush(deltas, keys, keySeqs, maxSeq);
+        } catch (SQLException e) {
+            synchronized (pendingLock) {
+                for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+                    pendingDeltas.merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+                keys.addAll(pendingKeys);
+                keySeqs.addAll(pendingKeySeqs);
+                pendingKeys = keys;
+                pendingKeySeqs = keySeqs;
+            }
+            throw e;
+        }
+        flushCount++;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Wallet {}: flush {} thao tác / {} user tới seq {} trong {} ms",
+                    walletId, keys.size(), deltas.size(), maxSeq, (System.nanoTime() - start) / 1_000_000);
+        }
+
+        if (log != null) {
+            log.deleteSegmentsUpTo(maxSeq);
+        }
+    }
+
+    /**
+     * Dừng nhận thao tác, ghi hết log và flush lần cuối xuống database.
+     */
+    public synchronized void shutdown() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        try {
+            flushPending();
+        } catch (SQLException e) {
+            logger.error("Wallet flush cuối cùng thất bại, dữ liệu sẽ được replay khi khởi động lại: {}", e.getMessage());
+        }
+        store.close();
+        logger.info("Wallet {} đã dừng ({} fsync cho {} thao tác, {} lần flush, {} thao tác trùng, {} lần thiếu credits, "
+                        + "{} account không dùng đã bỏ)",
+                walletId, log.getSyncCount(), log.getRecordCount(), flushCount, duplicateCount, shortfallCount,
+                evictedCount);
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    long getSyncCount() {
+        return log.getSyncCount();
+    }
+
+    long getFlushCount() {
+        return flushCount;
+    }
+
+    private static final class Account {
+        long balance;
+        long lastUsed = System.nanoTime();
+
+        Account(long balance) {
+            this.balance = balance;
+        }
+    }
+}
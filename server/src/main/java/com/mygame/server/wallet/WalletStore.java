@@ -0,0 +1,36 @@
+package com.mygame.server.wallet;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Phần lưu trữ của wallet: đọc số dư ban đầu, checkpoint và flush các delta đã gộp.
+ * {@link #flush} chỉ được gọi từ một thread (flusher); {@link #loadBalance} có thể gọi song song.
+ */
+public interface WalletStore {
+    void open() throws SQLException;
+
+    /**
+     * Seq lớn nhất đã được flush (0 nếu wallet chưa flush lần nào).
+     */
+    long loadCheckpoint() throws SQLException;
+
+    /**
+     * Nạp các idempotency key gần nhất (cũ -> mới) để chặn thao tác lặp lại sau khi restart.
+     * Key cũ hơn retentionDays bị xoá luôn.
+     */
+    List<String> loadRecentKeys(int limit, int retentionDays) throws SQLException;
+
+    /**
+     * Đọc số dư đã flush của user.
+     */
+    long loadBalance(int userId) throws SQLException;
+
+    /**
+     * Ghi các delta đã gộp, các idempotency key và checkpoint mới một cách nguyên tử.
+     */
+    void flush(Map<Integer, Long> deltas, List<String> keys, List<Long> keySeqs, long lastSeq) throws SQLException;
+
+    void close();
+}
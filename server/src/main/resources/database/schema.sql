@@ -13,10 +13,14 @@ CREATE TABLE IF NOT EXISTS users (
     current_rank VARCHAR(20) DEFAULT 'IRON',
     total_wins INT DEFAULT 0,
     total_losses INT DEFAULT 0,
+    hands_played INT DEFAULT 0, -- counters flushed in batches by PlayerCounterService
+    biggest_pot BIGINT DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     last_login TIMESTAMP,
     last_daily_reward TIMESTAMP
 );
+ALTER TABLE users ADD COLUMN IF NOT EXISTS hands_played INT DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS biggest_pot BIGINT DEFAULT 0;
 
 -- ============================================
 -- 2. RANKING SYSTEM (Logic-based, no separate table)
@@ -42,6 +46,9 @@ CREATE TABLE IF NOT EXISTS daily_quest_config (
     reward_credits BIGINT NOT NULL
 );
 
+-- Game event that advances the quest: 'LOGIN', 'HAND_PLAYED', 'HAND_WON', 'BET'
+ALTER TABLE daily_quest_config ADD COLUMN IF NOT EXISTS event_type VARCHAR(20);
+
 -- User quest progress (resets daily)
 CREATE TABLE IF NOT EXISTS user_quest_progress (
     user_id INT REFERENCES users(user_id) ON DELETE CASCADE,
@@ -93,6 +100,26 @@ CREATE TABLE IF NOT EXISTS room_players (
     PRIMARY KEY (room_id, user_id)
 );
 
+-- ============================================
+-- 5. WALLET (in-memory balances + write-ahead log)
+-- ============================================
+
+-- Last wallet log sequence already applied to users.credits
+CREATE TABLE IF NOT EXISTS wallet_state (
+    wallet_id VARCHAR(32) PRIMARY KEY,
+    last_seq BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Idempotency keys of applied wallet operations (settlements, rewards)
+CREATE TABLE IF NOT EXISTS wallet_ops (
+    wallet_id VARCHAR(32) NOT NULL,
+    op_key VARCHAR(128) NOT NULL,
+    seq BIGINT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (wallet_id, op_key)
+);
+
 -- ============================================
 -- INDEXES FOR PERFORMANCE
 -- ============================================
@@ -104,8 +131,14 @@ CREATE INDEX IF NOT EXISTS idx_active_rooms_game_type ON active_rooms(game_type)
 CREATE INDEX IF NOT EXISTS idx_match_history_game_type ON match_history(game_type);
 CREATE INDEX IF NOT EXISTS idx_match_history_user_id ON match_history(user_id);
 CREATE INDEX IF NOT EXISTS idx_match_history_timestamp ON match_history(timestamp DESC);
+-- Keyset pagination: (user_id, timestamp, match_id) with the listed columns included for index-only scans
+CREATE INDEX IF NOT EXISTS idx_match_history_user_page ON match_history(user_id, timestamp DESC, match_id DESC)
+    INCLUDE (game_type, match_mode, result, credits_change, opponent_count, duration_seconds);
+CREATE INDEX IF NOT EXISTS idx_users_leaderboard_page ON users(credits DESC, user_id DESC)
+    INCLUDE (username, current_rank, total_wins, total_losses);
 CREATE INDEX IF NOT EXISTS idx_room_players_room_id ON room_players(room_id);
 CREATE INDEX IF NOT EXISTS idx_room_players_user_id ON room_players(user_id);
+CREATE INDEX IF NOT EXISTS idx_wallet_ops_seq ON wallet_ops(wallet_id, seq DESC);
 
 -- ============================================
 -- COMMENTS
@@ -116,6 +149,8 @@ COMMENT ON TABLE user_quest_progress IS 'User progress on daily quests (resets a
 COMMENT ON TABLE active_rooms IS 'Active game rooms in lobby';
 COMMENT ON TABLE match_history IS 'Completed match records for analytics';
 COMMENT ON TABLE room_players IS 'Many-to-many relationship between rooms and players';
+COMMENT ON TABLE wallet_state IS 'Wallet log checkpoint (last sequence flushed to users.credits)';
+COMMENT ON TABLE wallet_ops IS 'Idempotency keys of applied wallet operations';
 
 -- ============================================
 -- INITIAL DATA: Daily Quest Configurations (5 quests, 20,000 credits each)
@@ -137,3 +172,12 @@ BEGIN
             ('Bet 5000 total', 'ANY', 5000, 20000);
     END IF;
 END $$;
+
+-- Backfill event_type for configs created before the column existed
+UPDATE daily_quest_config SET event_type = CASE
+        WHEN LOWER(description) LIKE '%login%' THEN 'LOGIN'
+        WHEN LOWER(description) LIKE '%win%' THEN 'HAND_WON'
+        WHEN LOWER(description) LIKE '%bet%' THEN 'BET'
+        ELSE 'HAND_PLAYED'
+    END
+WHERE event_type IS NULL;
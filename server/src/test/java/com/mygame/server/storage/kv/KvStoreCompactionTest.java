@@ -0,0 +1,106 @@
+package com.mygame.server.storage.kv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static com.mygame.server.storage.kv.WriteAheadLogTest.bytes;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ghi/ghi đè/xoá qua nhiều lần flush và compaction rồi so với một TreeMap: giá trị mới nhất thắng,
+ * key đã xoá không sống lại, kể cả sau khi mở lại store.
+ */
+class KvStoreCompactionTest {
+    private static final int KEYS = 500;
+    private static final int OPERATIONS = 20_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compactionKeepsLatestValuesAndDropsDeletes() throws Exception {
+        TreeMap<String, String> expected = new TreeMap<>();
+        Random random = new Random(42);
+        try (KvStore store = KvStore.open(dir, 16 * 1024, 3, false)) {
+            for (int i = 0; i < OPERATIONS; i++) {
+                String key = String.format("k%05d", random.nextInt(KEYS));
+                if (random.nextInt(4) == 0) {
+                    store.delete(bytes(key));
+                    expected.remove(key);
+                } else {
+                    String value = key + "@" + i;
+                    store.put(bytes(key), bytes(value));
+                    expected.put(key, value);
+                }
+            }
+            awaitCompaction(store, 3);
+            verify(store, expected);
+        }
+
+        try (KvStore store = KvStore.open(dir, 16 * 1024, 3, false)) {
+            verify(store, expected);
+        }
+    }
+
+    @Test
+    void deletedKeysStayDeletedThroughCompaction() throws Exception {
+        try (KvStore store = KvStore.open(dir, 4 * 1024, 2, false)) {
+            for (int i = 0; i < 300; i++) {
+                store.put(bytes(String.format("k%05d", i)), bytes("value-" + i));
+            }
+            for (int i = 0; i < 300; i++) {
+                store.delete(bytes(String.format("k%05d", i)));
+            }
+            // Đẩy nốt memtable chứa delete xuống đĩa
+            for (int i = 0; i < 200; i++) {
+                store.put(bytes(String.format("z%05d", i)), bytes("filler-" + i));
+            }
+            awaitCompaction(store, 2);
+            for (int i = 0; i < 300; i++) {
+                assertNull(store.get(bytes(String.format("k%05d", i))));
+            }
+            KvIterator it = store.scanPrefix(bytes("k"));
+            assertFalse(it.next());
+        }
+    }
+
+    private static void verify(KvStore store, TreeMap<String, String> expected) throws IOException {
+        for (int i = 0; i < KEYS; i++) {
+            String key = String.format("k%05d", i);
+            String value = expected.get(key);
+            if (value == null) {
+                assertNull(store.get(bytes(key)), key);
+            } else {
+                assertArrayEquals(bytes(value), store.get(bytes(key)), key);
+            }
+        }
+        KvIterator it = store.scan(null, null);
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertTrue(it.next());
+            assertEquals(entry.getKey(), new String(it.key()));
+            assertEquals(entry.getValue(), new String(it.value()));
+        }
+        assertFalse(it.next());
+    }
+
+    /**
+     * Chờ flush/compaction nền đưa số SSTable về dưới ngưỡng trigger.
+     */
+    private static void awaitCompaction(KvStore store, int trigger) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (store.tableCount() >= trigger || store.tableCount() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "compaction không xong, còn " + store.tableCount());
+            Thread.sleep(20);
+        }
+    }
+}
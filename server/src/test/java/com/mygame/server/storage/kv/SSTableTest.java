@@ -0,0 +1,102 @@
+package com.mygame.server.storage.kv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mygame.server.storage.kv.WriteAheadLogTest.bytes;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đọc SSTable nhiều block: point lookup, tombstone, range scan và bloom filter.
+ */
+class SSTableTest {
+    private static final int KEYS = 5_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void lookupsAcrossBlocks() throws IOException {
+        Memtable mem = new Memtable(0);
+        WriteBatch batch = new WriteBatch();
+        for (int i = 0; i < KEYS; i += 2) {
+            batch.put(key(i), bytes("value-" + i));
+        }
+        batch.delete(key(10));
+        mem.apply(batch);
+        Path file = dir.resolve(SSTable.fileName(1));
+        assertEquals(KEYS / 2, SSTable.write(file, mem.iterator(null, null), false));
+
+        try (SSTable.Reader table = SSTable.Reader.open(file, 1)) {
+            assertTrue(table.sizeBytes > 4 * SSTable.BLOCK_BYTES, "cần nhiều block");
+            for (int i = 0; i < KEYS; i++) {
+                byte[] value = table.get(key(i), BloomFilter.hash(key(i)));
+                if (i == 10) {
+                    assertSame(Memtable.TOMBSTONE, value);
+                } else if (i % 2 == 0) {
+                    assertArrayEquals(bytes("value-" + i), value);
+                } else {
+                    assertNull(value);
+                }
+            }
+            assertNull(table.get(bytes("zzz"), BloomFilter.hash(bytes("zzz"))));
+
+            // [key(100), key(200)): các key chẵn, tombstone không nằm trong khoảng
+            List<String> keys = new ArrayList<>();
+            KvIterator it = table.iterator(key(100), key(200));
+            while (it.next()) {
+                keys.add(new String(it.key()));
+            }
+            assertEquals(50, keys.size());
+            assertEquals(new String(key(100)), keys.get(0));
+            assertEquals(new String(key(198)), keys.get(49));
+        }
+    }
+
+    @Test
+    void droppedTombstonesAreNotWritten() throws IOException {
+        Memtable mem = new Memtable(0);
+        mem.apply(new WriteBatch().put(bytes("a"), bytes("1")).delete(bytes("b")).put(bytes("c"), bytes("3")));
+        Path file = dir.resolve(SSTable.fileName(1));
+        assertEquals(2, SSTable.write(file, mem.iterator(null, null), true));
+        try (SSTable.Reader table = SSTable.Reader.open(file, 1)) {
+            assertNull(table.get(bytes("b"), BloomFilter.hash(bytes("b"))));
+            assertArrayEquals(bytes("3"), table.get(bytes("c"), BloomFilter.hash(bytes("c"))));
+        }
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndFewFalsePositives() {
+        long[] hashes = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            hashes[i] = BloomFilter.hash(key(i));
+        }
+        BloomFilter filter = BloomFilter.build(hashes, KEYS);
+        for (long hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+        int falsePositives = 0;
+        for (int i = KEYS; i < 2 * KEYS; i++) {
+            if (filter.mightContain(BloomFilter.hash(key(i)))) {
+                falsePositives++;
+            }
+        }
+        // ~1% theo thiết kế (10 bit/key, 7 hash); chừa biên cho dao động
+        assertTrue(falsePositives < KEYS * 3 / 100, "false positives: " + falsePositives);
+        assertFalse(BloomFilter.build(new long[0], 0).mightContain(BloomFilter.hash(bytes("x"))));
+    }
+
+    private static byte[] key(int i) {
+        return bytes(String.format("user:%08d", i));
+    }
+}
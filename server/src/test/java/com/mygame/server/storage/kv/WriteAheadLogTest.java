@@ -0,0 +1,107 @@
+package com.mygame.server.storage.kv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Replay WAL khi record cuối bị ghi dở (crash giữa lúc append).
+ */
+class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayStopsAtTornRecord() throws IOException {
+        Path file;
+        try (WriteAheadLog wal = WriteAheadLog.create(dir, 1)) {
+            file = wal.file;
+            for (int i = 0; i < 5; i++) {
+                wal.append(new WriteBatch().put(bytes("k" + i), bytes("v" + i)).encode());
+            }
+        }
+        truncate(file, 3);
+
+        List<WriteBatch> batches = new ArrayList<>();
+        assertEquals(4, WriteAheadLog.replay(file, batches::add));
+        Memtable mem = new Memtable(0);
+        batches.forEach(mem::apply);
+        assertArrayEquals(bytes("v3"), mem.get(bytes("k3")));
+        assertNull(mem.get(bytes("k4")));
+    }
+
+    @Test
+    void replayStopsAtBadChecksum() throws IOException {
+        Path file;
+        int secondRecord;
+        try (WriteAheadLog wal = WriteAheadLog.create(dir, 1)) {
+            file = wal.file;
+            secondRecord = wal.append(new WriteBatch().put(bytes("a"), bytes("1")).encode());
+            wal.append(new WriteBatch().put(bytes("b"), bytes("2")).encode());
+            wal.append(new WriteBatch().put(bytes("c"), bytes("3")).encode());
+        }
+        // Lật một byte payload của record thứ hai
+        byte[] data = Files.readAllBytes(file);
+        data[secondRecord + 8] ^= 0x55;
+        Files.write(file, data);
+
+        assertEquals(1, WriteAheadLog.replay(file, batch -> { }));
+    }
+
+    @Test
+    void storeRecoversWritesBeforeTornTail() throws IOException {
+        try (KvStore store = KvStore.open(dir, 1 << 20, 4, true)) {
+            for (int i = 0; i < 10; i++) {
+                store.put(bytes("key" + i), bytes("value" + i));
+            }
+            store.delete(bytes("key0"));
+            store.put(bytes("key9"), bytes("last"));
+        }
+        // Memtable chưa flush: toàn bộ dữ liệu nằm trong WAL; cắt record cuối (put key9=last)
+        truncate(onlyWal(), 1);
+
+        try (KvStore store = KvStore.open(dir, 1 << 20, 4, true)) {
+            assertNull(store.get(bytes("key0")));
+            for (int i = 1; i < 10; i++) {
+                assertArrayEquals(bytes("value" + i), store.get(bytes("key" + i)));
+            }
+            store.put(bytes("after"), bytes("crash"));
+        }
+        try (KvStore store = KvStore.open(dir, 1 << 20, 4, true)) {
+            assertArrayEquals(bytes("crash"), store.get(bytes("after")));
+            assertArrayEquals(bytes("value9"), store.get(bytes("key9")));
+        }
+    }
+
+    private Path onlyWal() throws IOException {
+        List<Path> wals = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "wal-*.log")) {
+            files.forEach(wals::add);
+        }
+        assertEquals(1, wals.size());
+        return wals.get(0);
+    }
+
+    private static void truncate(Path file, int bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - bytes);
+        }
+    }
+
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,46 +1,62 @@
 package com.mygame.shared.game.card;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 /**
- * Class đại diện cho bộ bài 52 lá
+ * Class đại diện cho bộ bài 52 lá.
+ *
+ * 52 lá được tạo một lần và dùng lại: chia bài chỉ tăng con trỏ, {@link #reset()} xáo lại
+ * mảng tại chỗ (Fisher-Yates), nên mỗi ván mới không cấp phát gì.
  */
 public class Deck {
-    private List<Card> cards;
+    private static final int SIZE = 52;
+
+    private final Card[] cards = new Card[SIZE];
+    private final Card[] ordered = new Card[SIZE];
+    private final Random random = new Random();
+    private int next;
 
     public Deck() {
+        int i = 0;
+        for (Suit suit : Suit.values()) {
+            for (int rank = 2; rank <= 14; rank++) {
+                ordered[i++] = new Card(rank, suit);
+            }
+        }
         initializeDeck();
     }
 
     /**
-     * Khởi tạo bộ bài 52 lá
+     * Đưa bộ bài về đủ 52 lá theo thứ tự ban đầu
      */
     private void initializeDeck() {
-        cards = new ArrayList<>();
-        for (Suit suit : Suit.values()) {
-            for (int rank = 2; rank <= 14; rank++) {
-                cards.add(new Card(rank, suit));
-            }
-        }
+        System.arraycopy(ordered, 0, cards, 0, SIZE);
+        next = 0;
     }
 
     /**
-     * Xáo bài
+     * Xáo các lá còn lại
      */
     public void shuffle() {
-        Collections.shuffle(cards, new java.util.Random());
+        for (int i = SIZE - 1; i > next; i--) {
+            int j = next + random.nextInt(i - next + 1);
+            Card tmp = cards[i];
+            cards[i] = cards[j];
+            cards[j] = tmp;
+        }
     }
 
     /**
      * Chia một lá bài
      */
     public Card deal() {
-        if (cards.isEmpty()) {
+        if (next >= SIZE) {
             throw new IllegalStateException("Deck is empty");
         }
-        return cards.remove(0);
+        return cards[next++];
     }
 
     /**
@@ -49,7 +65,7 @@ public class Deck {
     public List<Card> deal(int count) {
         List<Card> dealt = new ArrayList<>();
         for (int i = 0; i < count; i++) {
-            if (cards.isEmpty())
+            if (isEmpty())
                 break;
             dealt.add(deal());
         }
@@ -60,14 +76,14 @@ public class Deck {
      * Kiểm tra còn bài không
      */
     public boolean isEmpty() {
-        return cards.isEmpty();
+        return next >= SIZE;
     }
 
     /**
      * Số lá bài còn lại
      */
     public int remainingCards() {
-        return cards.size();
+        return SIZE - next;
     }
 
     /**
@@ -78,10 +94,38 @@ public class Deck {
         shuffle();
     }
 
+    /**
+     * Số lá của cả bộ bài (kể cả các lá đã chia)
+     */
+    public int size() {
+        return SIZE;
+    }
+
+    /**
+     * Lá thứ index theo thứ tự chia của lần xáo hiện tại (kể cả lá đã chia), không cấp phát
+     */
+    public Card cardAt(int index) {
+        return cards[index];
+    }
+
+    /**
+     * Xếp lại đủ 52 lá theo thứ tự cho trước thay vì xáo (replay một hand đã ghi).
+     * Mã lá: {@code suit.ordinal() * 13 + rank - 2}.
+     */
+    public void arrange(byte[] order) {
+        if (order.length != SIZE) {
+            throw new IllegalArgumentException("Deck order must have " + SIZE + " cards");
+        }
+        for (int i = 0; i < SIZE; i++) {
+            cards[i] = ordered[order[i]];
+        }
+        next = 0;
+    }
+
     /**
      * Lấy tất cả cards (không xóa)
      */
     public List<Card> getCards() {
-        return new ArrayList<>(cards);
+        return new ArrayList<>(Arrays.asList(cards).subList(next, SIZE));
     }
 }
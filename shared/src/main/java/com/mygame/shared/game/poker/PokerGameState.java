@@ -163,7 +163,13 @@ public class PokerGameState {
     }
 
     public void dealHoleCards(int playerId, List<Card> cards) {
-        playerHoles.put(playerId, new ArrayList<>(cards));
+        List<Card> hole = playerHoles.get(playerId);
+        if (hole == null) {
+            playerHoles.put(playerId, new ArrayList<>(cards));
+        } else {
+            hole.clear();
+            hole.addAll(cards);
+        }
     }
 
     public void addCommunityCard(Card card) {
@@ -228,6 +234,42 @@ public class PokerGameState {
         lastRaiseAmount = bigBlind; // Reset min-raise to big blind
     }
 
+    /**
+     * Reset toàn bộ state của hand (bài, cược, fold, pot) tại chỗ để chia hand mới
+     * ở cùng bàn; chỉ giữ lại chips và blinds.
+     */
+    public void resetForNewHand() {
+        currentStage = Stage.PREFLOP;
+        communityCards.clear();
+        for (List<Card> hole : playerHoles.values()) {
+            hole.clear();
+        }
+        for (Integer playerId : playerChips.keySet()) {
+            playerBets.put(playerId, 0L);
+            playerFolded.put(playerId, false);
+        }
+        pot = 0;
+        currentBet = 0;
+        lastRaiseAmount = bigBlind;
+        totalContributions.clear();
+        sidePots.clear();
+    }
+
+    /**
+     * Đặt lại chips của người chơi (rebuy giữa các hand).
+     */
+    public void setPlayerChips(int playerId, long chips) {
+        playerChips.put(playerId, chips);
+    }
+
+    public void setDealerPosition(int dealerPosition) {
+        this.dealerPosition = dealerPosition;
+    }
+
+    public int getDealerPosition() {
+        return dealerPosition;
+    }
+
     /**
      * Award pot to winner (legacy single pot).
      */
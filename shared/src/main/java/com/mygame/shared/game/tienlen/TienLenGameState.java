@@ -8,6 +8,8 @@ import java.util.*;
  * Tracks hands, current trick, turn, skipped players, and finish order.
  */
 public class TienLenGameState {
+    private static final int HAND_SIZE = 13;
+
     private Map<Integer, List<Card>> playerHands; // userId -> hand (13 cards)
     private List<Card> currentTrick; // Cards currently on board
     private TienLenCombinationType currentTrickType;
@@ -33,21 +35,30 @@ public class TienLenGameState {
 
     /**
      * Reset the game state for a new game with the same players.
+     * Các list/map được clear tại chỗ (không cấp phát lại) để chơi lại nhanh.
      */
     public void reset(List<Integer> playerIds) {
-        this.playerHands.clear();
         this.currentTrick.clear();
         this.currentTrickType = null;
         this.currentPlayerTurn = 0;
         this.lastPlayedPlayer = -1;
-        this.playerOrder = new ArrayList<>(playerIds);
+        if (!playerOrder.equals(playerIds)) {
+            playerOrder.clear();
+            playerOrder.addAll(playerIds);
+            playerHands.keySet().retainAll(playerIds);
+        }
         this.playerFinished.clear();
         this.skippedPlayers.clear();
         this.winners.clear();
         // Keep playerCredits as they are (persist across games)
 
         for (Integer playerId : playerIds) {
-            playerHands.put(playerId, new ArrayList<>());
+            List<Card> hand = playerHands.get(playerId);
+            if (hand == null) {
+                playerHands.put(playerId, new ArrayList<>(HAND_SIZE));
+            } else {
+                hand.clear();
+            }
             playerFinished.put(playerId, false);
         }
     }
@@ -65,7 +76,7 @@ public class TienLenGameState {
         this.playerCredits = new HashMap<>();
 
         for (Integer playerId : playerIds) {
-            playerHands.put(playerId, new ArrayList<>());
+            playerHands.put(playerId, new ArrayList<>(HAND_SIZE));
             playerFinished.put(playerId, false);
             playerCredits.put(playerId, 0L);
         }
@@ -87,6 +98,19 @@ public class TienLenGameState {
         CardCollection.sortHandTienLen(playerHands.get(playerId));
     }
 
+    /**
+     * Chia bài đã sắp xếp sẵn (copy vào list có sẵn của người chơi, không sort lại).
+     */
+    public void dealSortedHand(int playerId, List<Card> sortedCards) {
+        List<Card> hand = playerHands.get(playerId);
+        if (hand == null) {
+            playerHands.put(playerId, new ArrayList<>(sortedCards));
+        } else {
+            hand.clear();
+            hand.addAll(sortedCards);
+        }
+    }
+
     /**
      * Start a new round (clear board and skipped status).
      * Usually called when everyone skips or a Chop clears the round.
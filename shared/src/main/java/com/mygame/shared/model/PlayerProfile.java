@@ -15,6 +15,8 @@ public class PlayerProfile implements KryoSerializable {
     public Rank rank;
     public int totalWins;
     public int totalLosses;
+    public int handsPlayed;
+    public long biggestPot;
     
     public PlayerProfile() {}
     
@@ -35,6 +37,8 @@ public class PlayerProfile implements KryoSerializable {
         kryo.writeObject(output, rank);
         output.writeInt(totalWins);
         output.writeInt(totalLosses);
+        output.writeInt(handsPlayed);
+        output.writeLong(biggestPot);
     }
     
     @Override
@@ -45,5 +49,7 @@ public class PlayerProfile implements KryoSerializable {
         rank = kryo.readObject(input, Rank.class);
         totalWins = input.readInt();
         totalLosses = input.readInt();
+        handsPlayed = input.readInt();
+        biggestPot = input.readLong();
     }
 }
@@ -32,6 +32,9 @@ public class Network {
         kryo.register(LoginResponse.class);
         kryo.register(RegisterRequest.class);
         kryo.register(RegisterResponse.class);
+        kryo.register(ResumeRequest.class);
+        kryo.register(ResumeResponse.class);
+        kryo.register(HeartbeatPacket.class);
 
         // Register lobby packets
         kryo.register(LeaderboardRequest.class);
@@ -66,6 +69,7 @@ public class Network {
         kryo.register(com.mygame.shared.network.packets.game.GameStartPacket.class);
         kryo.register(com.mygame.shared.network.packets.game.GameEndPacket.class);
         kryo.register(com.mygame.shared.network.packets.game.PlayerTurnPacket.class);
+        kryo.register(com.mygame.shared.network.packets.game.ActionAckPacket.class);
 
         // Register game state classes for Poker
         kryo.register(com.mygame.shared.game.poker.PokerGameState.class);
@@ -83,5 +87,9 @@ public class Network {
         // Register voting packets for play again system
         kryo.register(com.mygame.shared.network.packets.game.PlayAgainVotePacket.class);
         kryo.register(com.mygame.shared.network.packets.game.PlayAgainStatusPacket.class);
+
+        // Register player stats packets
+        kryo.register(PlayerStatsRequest.class);
+        kryo.register(PlayerStatsResponse.class);
     }
 }
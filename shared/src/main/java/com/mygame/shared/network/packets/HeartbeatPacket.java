@@ -0,0 +1,24 @@
+package com.mygame.shared.network.packets;
+
+/**
+ * Heartbeat của ứng dụng: server gửi cho các kết nối đang ở trong room, client gửi lại
+ * nguyên packet. sentAt là đồng hồ của server, dùng để đo round-trip.
+ */
+public class HeartbeatPacket {
+    private long sentAt;
+
+    public HeartbeatPacket() {
+    }
+
+    public HeartbeatPacket(long sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(long sentAt) {
+        this.sentAt = sentAt;
+    }
+}
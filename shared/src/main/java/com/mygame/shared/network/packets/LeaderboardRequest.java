@@ -7,19 +7,34 @@ import com.esotericsoftware.kryo.io.Output;
 
 /**
  * Leaderboard request packet.
+ * Keyset pagination on (credits, userId): leave cursorUserId = 0 for the first page,
+ * then pass back the cursor from {@link LeaderboardResponse}.
  */
 public class LeaderboardRequest implements KryoSerializable {
     public int limit;
+    public long cursorCredits;
+    public int cursorUserId; // 0 = first page
+    public int rankOffset;   // number of entries already shown, used to number ranks
     
     public LeaderboardRequest() {}
     
+    public boolean isFirstPage() {
+        return cursorUserId == 0;
+    }
+    
     @Override
     public void write(Kryo kryo, Output output) {
         output.writeInt(limit);
+        output.writeLong(cursorCredits);
+        output.writeInt(cursorUserId);
+        output.writeInt(rankOffset);
     }
     
     @Override
     public void read(Kryo kryo, Input input) {
         limit = input.readInt();
+        cursorCredits = input.readLong();
+        cursorUserId = input.readInt();
+        rankOffset = input.readInt();
     }
 }
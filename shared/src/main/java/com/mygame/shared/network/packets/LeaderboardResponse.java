@@ -14,6 +14,11 @@ import java.util.List;
  */
 public class LeaderboardResponse implements KryoSerializable {
     public List<LeaderboardEntry> entries = new ArrayList<>();
+    public boolean firstPage = true; // client replaces the list instead of appending
+    public boolean hasMore;
+    public long nextCursorCredits;
+    public int nextCursorUserId;
+    public int nextRankOffset;
     
     public LeaderboardResponse() {}
     
@@ -23,6 +28,11 @@ public class LeaderboardResponse implements KryoSerializable {
         for (LeaderboardEntry entry : entries) {
             kryo.writeObject(output, entry);
         }
+        output.writeBoolean(firstPage);
+        output.writeBoolean(hasMore);
+        output.writeLong(nextCursorCredits);
+        output.writeInt(nextCursorUserId);
+        output.writeInt(nextRankOffset);
     }
     
     @Override
@@ -32,5 +42,10 @@ public class LeaderboardResponse implements KryoSerializable {
         for (int i = 0; i < size; i++) {
             entries.add(kryo.readObject(input, LeaderboardEntry.class));
         }
+        firstPage = input.readBoolean();
+        hasMore = input.readBoolean();
+        nextCursorCredits = input.readLong();
+        nextCursorUserId = input.readInt();
+        nextRankOffset = input.readInt();
     }
 }
@@ -13,6 +13,8 @@ public class LoginResponse implements KryoSerializable {
     public boolean success;
     public PlayerProfile playerProfile;
     public String errorMessage;
+    // Token để kết nối lại không cần login (xem ResumeRequest)
+    public String resumeToken;
     
     public LoginResponse() {}
     
@@ -21,6 +23,7 @@ public class LoginResponse implements KryoSerializable {
         output.writeBoolean(success);
         kryo.writeObjectOrNull(output, playerProfile, PlayerProfile.class);
         output.writeString(errorMessage);
+        output.writeString(resumeToken);
     }
     
     @Override
@@ -28,5 +31,6 @@ public class LoginResponse implements KryoSerializable {
         success = input.readBoolean();
         playerProfile = kryo.readObjectOrNull(input, PlayerProfile.class);
         errorMessage = input.readString();
+        resumeToken = input.readString();
     }
 }
@@ -6,11 +6,15 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 /**
- * Packet yêu cầu lấy lịch sử trận đấu
+ * Packet yêu cầu lấy lịch sử trận đấu.
+ * Phân trang theo keyset (timestamp, matchId): trang đầu để cursorMatchId = 0,
+ * trang sau dùng cursor trả về trong {@link MatchHistoryResponse}.
  */
 public class MatchHistoryRequest implements KryoSerializable {
     public int userId;
     public int limit = 5; // Default
+    public long cursorTimestampMicros; // timestamp của dòng cuối trang trước
+    public int cursorMatchId;          // 0 = trang đầu
     
     public MatchHistoryRequest() {
     }
@@ -20,16 +24,31 @@ public class MatchHistoryRequest implements KryoSerializable {
         this.limit = limit;
     }
     
+    public MatchHistoryRequest(int userId, int limit, long cursorTimestampMicros, int cursorMatchId) {
+        this.userId = userId;
+        this.limit = limit;
+        this.cursorTimestampMicros = cursorTimestampMicros;
+        this.cursorMatchId = cursorMatchId;
+    }
+    
+    public boolean isFirstPage() {
+        return cursorMatchId == 0;
+    }
+    
     @Override
     public void write(Kryo kryo, Output output) {
         output.writeInt(userId);
         output.writeInt(limit);
+        output.writeLong(cursorTimestampMicros);
+        output.writeInt(cursorMatchId);
     }
     
     @Override
     public void read(Kryo kryo, Input input) {
         userId = input.readInt();
         limit = input.readInt();
+        cursorTimestampMicros = input.readLong();
+        cursorMatchId = input.readInt();
     }
 }
 
@@ -14,6 +14,10 @@ import java.util.List;
  */
 public class MatchHistoryResponse implements KryoSerializable {
     public List<MatchHistoryEntry> entries = new ArrayList<>();
+    public boolean firstPage = true;  // client thay thế danh sách thay vì nối thêm
+    public boolean hasMore;
+    public long nextCursorTimestampMicros;
+    public int nextCursorMatchId;
     
     public MatchHistoryResponse() {
     }
@@ -24,6 +28,10 @@ public class MatchHistoryResponse implements KryoSerializable {
         for (MatchHistoryEntry entry : entries) {
             kryo.writeObject(output, entry);
         }
+        output.writeBoolean(firstPage);
+        output.writeBoolean(hasMore);
+        output.writeLong(nextCursorTimestampMicros);
+        output.writeInt(nextCursorMatchId);
     }
     
     @Override
@@ -33,6 +41,10 @@ public class MatchHistoryResponse implements KryoSerializable {
         for (int i = 0; i < size; i++) {
             entries.add(kryo.readObject(input, MatchHistoryEntry.class));
         }
+        firstPage = input.readBoolean();
+        hasMore = input.readBoolean();
+        nextCursorTimestampMicros = input.readLong();
+        nextCursorMatchId = input.readInt();
     }
 }
 
@@ -0,0 +1,45 @@
+package com.mygame.shared.network.packets;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.mygame.shared.model.GameType;
+
+/**
+ * Packet yêu cầu thống kê của một người chơi trong khoảng [fromMillis, toMillis].
+ * gameType null = mọi loại game; toMillis = 0 nghĩa là tới hiện tại.
+ */
+public class PlayerStatsRequest implements KryoSerializable {
+    public int userId;
+    public GameType gameType;
+    public long fromMillis;
+    public long toMillis;
+
+    public PlayerStatsRequest() {
+    }
+
+    public PlayerStatsRequest(int userId, GameType gameType, long fromMillis, long toMillis) {
+        this.userId = userId;
+        this.gameType = gameType;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output) {
+        output.writeInt(userId);
+        output.writeInt(gameType == null ? -1 : gameType.ordinal());
+        output.writeLong(fromMillis);
+        output.writeLong(toMillis);
+    }
+
+    @Override
+    public void read(Kryo kryo, Input input) {
+        userId = input.readInt();
+        int type = input.readInt();
+        gameType = type >= 0 && type < GameType.values().length ? GameType.values()[type] : null;
+        fromMillis = input.readLong();
+        toMillis = input.readLong();
+    }
+}
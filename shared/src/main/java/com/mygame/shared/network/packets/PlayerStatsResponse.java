@@ -0,0 +1,55 @@
+package com.mygame.shared.network.packets;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Packet phản hồi thống kê người chơi. vpip và averagePot chỉ tính trên các ván có dữ liệu
+ * pot (ván cũ trước khi có thống kê không có); vpip chỉ có nghĩa với Poker.
+ * success = false thì chỉ errorMessage có nghĩa.
+ */
+public class PlayerStatsResponse implements KryoSerializable {
+    public boolean success;
+    public String errorMessage;
+    public int userId;
+    public long hands;
+    public long wins;
+    public long losses;
+    public double winRate;
+    public double vpip;
+    public double averagePot;
+    public long netCredits;
+
+    public PlayerStatsResponse() {
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output) {
+        output.writeBoolean(success);
+        output.writeString(errorMessage);
+        output.writeInt(userId);
+        output.writeLong(hands);
+        output.writeLong(wins);
+        output.writeLong(losses);
+        output.writeDouble(winRate);
+        output.writeDouble(vpip);
+        output.writeDouble(averagePot);
+        output.writeLong(netCredits);
+    }
+
+    @Override
+    public void read(Kryo kryo, Input input) {
+        success = input.readBoolean();
+        errorMessage = input.readString();
+        userId = input.readInt();
+        hands = input.readLong();
+        wins = input.readLong();
+        losses = input.readLong();
+        winRate = input.readDouble();
+        vpip = input.readDouble();
+        averagePot = input.readDouble();
+        netCredits = input.readLong();
+    }
+}
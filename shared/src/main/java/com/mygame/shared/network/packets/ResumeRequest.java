@@ -0,0 +1,29 @@
+package com.mygame.shared.network.packets;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Gửi ngay sau khi kết nối lại: dùng resume token nhận được lúc login thay cho username/password.
+ */
+public class ResumeRequest implements KryoSerializable {
+    public String resumeToken;
+
+    public ResumeRequest() {}
+
+    public ResumeRequest(String resumeToken) {
+        this.resumeToken = resumeToken;
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output) {
+        output.writeString(resumeToken);
+    }
+
+    @Override
+    public void read(Kryo kryo, Input input) {
+        resumeToken = input.readString();
+    }
+}
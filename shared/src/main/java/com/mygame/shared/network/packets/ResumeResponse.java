@@ -0,0 +1,38 @@
+package com.mygame.shared.network.packets;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kết quả resume. Thành công thì có token mới (token cũ hết hiệu lực) và room mà ghế
+ * còn được giữ (0 nếu không ở room nào); các packet bị lỡ được gửi ngay sau response này.
+ */
+public class ResumeResponse implements KryoSerializable {
+    public boolean success;
+    public int userId;
+    public int roomId;
+    public String resumeToken;
+    public String errorMessage;
+
+    public ResumeResponse() {}
+
+    @Override
+    public void write(Kryo kryo, Output output) {
+        output.writeBoolean(success);
+        output.writeInt(userId, true);
+        output.writeInt(roomId, true);
+        output.writeString(resumeToken);
+        output.writeString(errorMessage);
+    }
+
+    @Override
+    public void read(Kryo kryo, Input input) {
+        success = input.readBoolean();
+        userId = input.readInt(true);
+        roomId = input.readInt(true);
+        resumeToken = input.readString();
+        errorMessage = input.readString();
+    }
+}
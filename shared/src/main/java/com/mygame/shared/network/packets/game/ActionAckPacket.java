@@ -0,0 +1,51 @@
+package com.mygame.shared.network.packets.game;
+
+/**
+ * Server xác nhận đã nhận một {@link PlayerActionPacket} có sequence. Client xoá action
+ * khỏi danh sách chờ gửi lại khi nhận ack với bất kỳ status nào.
+ */
+public class ActionAckPacket {
+    private int roomId;
+    private long sequence;
+    private int status;
+
+    public ActionAckPacket() {
+    }
+
+    public ActionAckPacket(int roomId, long sequence, int status) {
+        this.roomId = roomId;
+        this.sequence = sequence;
+        this.status = status;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(int roomId) {
+        this.roomId = roomId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    // Action đã được xử lý
+    public static final int STATUS_ACCEPTED = 0;
+    // Đã nhận sequence này trước đó, bỏ qua
+    public static final int STATUS_DUPLICATE = 1;
+    // Sequence quá cũ so với cửa sổ dedupe, bỏ qua
+    public static final int STATUS_STALE = 2;
+}
@@ -11,6 +11,10 @@ import java.util.List;
  * Thiết kế nhẹ, đủ cho cả Poker và Tiến Lên:
  * - POKER: dùng actionType (FOLD/CHECK/CALL/RAISE/ALL_IN) + amount.
  * - TIENLEN: dùng actionType (PLAY/SKIP) + cards.
+ *
+ * sequence tăng dần trong một phiên login của client (NetworkService tự đánh số); server
+ * bỏ action trùng/cũ và trả {@link ActionAckPacket} để client xoá action đã xác nhận.
+ * 0 = không đánh số (action do server tự tạo khi hết giờ).
  */
 public class PlayerActionPacket {
     private int roomId;
@@ -19,6 +23,7 @@ public class PlayerActionPacket {
     private String actionType;
     private long amount; // dùng cho bet/raise trong Poker
     private java.util.List<Card> cards; // dùng cho Tiến Lên (các lá đánh ra)
+    private long sequence;
 
     public PlayerActionPacket() {
     }
@@ -70,4 +75,12 @@ public class PlayerActionPacket {
     public void setCards(java.util.List<Card> cards) {
         this.cards = cards;
     }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
 }